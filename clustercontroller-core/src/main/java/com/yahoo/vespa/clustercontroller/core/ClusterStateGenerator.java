@@ -144,7 +144,7 @@ public class ClusterStateGenerator {
         return new AnnotatedClusterState(workingState, reasonToBeDown, nodeStateReasons);
     }
 
-    private static boolean nodeIsConsideredTooUnstable(final NodeInfo nodeInfo, final Params params) {
+    static boolean nodeIsConsideredTooUnstable(final NodeInfo nodeInfo, final Params params) {
         return (params.maxPrematureCrashes != 0
                 && nodeInfo.getPrematureCrashCount() > params.maxPrematureCrashes);
     }
@@ -156,7 +156,7 @@ public class ClusterStateGenerator {
         baseline.setDescription(wanted.getDescription());
     }
 
-    private static NodeState computeEffectiveNodeState(final NodeInfo nodeInfo,
+    static NodeState computeEffectiveNodeState(final NodeInfo nodeInfo,
                                                        final Params params,
                                                        Map<Node, NodeStateReason> nodeStateReasons)
     {
@@ -268,8 +268,13 @@ public class ClusterStateGenerator {
                 .withDistribution(params.cluster.getDistribution())
                 .withNodesSafelySetToMaintenance(params.cluster.nodesSafelySetTo(State.MAINTENANCE))
                 .build();
-        GroupAvailabilityCalculator.Result result = calc.calculate(workingState);
+        applyGroupAvailabilityResult(calc.calculate(workingState), workingState, nodeStateReasons);
+    }
 
+    static void applyGroupAvailabilityResult(GroupAvailabilityCalculator.Result result,
+                                             ClusterState workingState,
+                                             Map<Node, NodeStateReason> nodeStateReasons)
+    {
         for (int index : result.nodesThatShouldBeMaintained()) {
             setNewNodeState(index, NodeType.STORAGE, State.MAINTENANCE,
                     "too many safe maintenance nodes in group", NodeStateReason.GROUP_IN_MAINTENANCE,
@@ -309,7 +314,7 @@ public class ClusterStateGenerator {
     // this will just have to start splitting out in the background before being allowed
     // to join the cluster.
 
-    private static int inferDistributionBitCount(final ContentCluster cluster,
+    static int inferDistributionBitCount(final ContentCluster cluster,
                                                  final ClusterState state,
                                                  final Params params)
     {
@@ -346,7 +351,7 @@ public class ClusterStateGenerator {
                 .count();
     }
 
-    private static Optional<ClusterStateReason> clusterDownReason(final ClusterState state, final Params params) {
+    static Optional<ClusterStateReason> clusterDownReason(final ClusterState state, final Params params) {
         final ContentCluster cluster = params.cluster;
 
         final long upStorageCount = countAvailableNodesOfType(NodeType.STORAGE, cluster, state);
@@ -60,6 +60,7 @@ public class FleetController implements NodeListener, SlobrokListener, SystemSta
     private final RpcServer rpcServer;
     private final DatabaseHandler database;
     private final MasterElectionHandler masterElectionHandler;
+    private final IncrementalClusterStateGenerator clusterStateGenerator = new IncrementalClusterStateGenerator();
     private Thread runner = null;
     private final AtomicBoolean running = new AtomicBoolean(true);
     private FleetControllerOptions options;
@@ -947,7 +948,7 @@ public class FleetController implements NodeListener, SlobrokListener, SystemSta
         params.currentTimeInMillis(timer.getCurrentTimeInMillis())
                 .cluster(cluster)
                 .lowestObservedDistributionBitCount(stateVersionTracker.getLowestObservedDistributionBits());
-        return ClusterStateGenerator.generatedStateFrom(params);
+        return clusterStateGenerator.generatedStateFrom(params);
     }
 
     private void emitEventsForAlteredStateEdges(final ClusterStateBundle fromState,
@@ -10,6 +10,7 @@ import com.yahoo.vdslib.state.Node;
 import com.yahoo.vdslib.state.NodeType;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -192,6 +193,23 @@ class GroupAvailabilityCalculator {
         return visitor.result();
     }
 
+    /**
+     * Calculates the result for the given leaf groups only, i.e. nodes in any other group are
+     * neither considered nor part of the returned result. This allows a caller tracking which
+     * nodes have changed state to re-evaluate only the groups that contain these nodes.
+     */
+    public Result calculateForLeafGroups(ClusterState state, Collection<Group> leafGroups) {
+        if (isFlatCluster(distribution.getRootGroup())) {
+            return new Result();
+        }
+        InsufficientAvailabilityGroupVisitor visitor = new InsufficientAvailabilityGroupVisitor(
+                state, nodesSafelySetToMaintenance, safeMaintenanceGroupThreshold);
+        for (Group group : leafGroups) {
+            visitor.visitGroup(group);
+        }
+        return visitor.result();
+    }
+
     public Set<Integer> nodesThatShouldBeDown(ClusterState state) {
         return calculate(state).nodesThatShouldBeDown();
     }
@@ -0,0 +1,263 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.clustercontroller.core;
+
+import com.yahoo.vdslib.distribution.ConfiguredNode;
+import com.yahoo.vdslib.distribution.Distribution;
+import com.yahoo.vdslib.distribution.Group;
+import com.yahoo.vdslib.state.ClusterState;
+import com.yahoo.vdslib.state.Node;
+import com.yahoo.vdslib.state.NodeState;
+import com.yahoo.vdslib.state.NodeType;
+import com.yahoo.vdslib.state.State;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cluster state generator which produces exactly the same states as
+ * {@link ClusterStateGenerator#generatedStateFrom(ClusterStateGenerator.Params)}, but which
+ * retains derived per-node and per-group state between invocations, so that only the nodes
+ * and leaf groups affected by a change have to be re-derived.
+ *
+ * Effective states of storage nodes that are initializing, stopping, down or considered too
+ * unstable depend on the current time (init progress timeouts and transient maintenance
+ * grace periods), and are therefore always re-derived. All other node states are only
+ * re-derived when the node's reported state, wanted state, start timestamp or premature
+ * crash count has changed since the previous generation.
+ *
+ * Any change to the generator parameters that affects more than a single node, or to the
+ * set of nodes or the distribution of the cluster, causes all retained state to be discarded.
+ *
+ * Not thread safe.
+ */
+class IncrementalClusterStateGenerator {
+
+    private record NodeInputs(NodeState reported, NodeState wanted, int prematureCrashCount, long startTimestamp) {
+
+        static NodeInputs of(NodeInfo nodeInfo) {
+            return new NodeInputs(nodeInfo.getReportedState().clone(), nodeInfo.getWantedState().clone(),
+                                  nodeInfo.getPrematureCrashCount(), nodeInfo.getStartTimestamp());
+        }
+
+        boolean matches(NodeInfo nodeInfo) {
+            return prematureCrashCount == nodeInfo.getPrematureCrashCount()
+                    && startTimestamp == nodeInfo.getStartTimestamp()
+                    && identical(reported, nodeInfo.getReportedState())
+                    && identical(wanted, nodeInfo.getWantedState());
+        }
+
+        // NodeState.equals() does not consider the description, but it is propagated into the generated state
+        private static boolean identical(NodeState a, NodeState b) {
+            return a.equals(b) && a.getDescription().equals(b.getDescription());
+        }
+
+    }
+
+    /** An effective node state along with the inputs it was derived from, or null inputs if it may change with time */
+    private record DerivedNodeState(NodeInputs inputs, NodeState state) {
+
+        boolean canBeReusedFor(NodeInfo nodeInfo) {
+            return inputs != null && inputs.matches(nodeInfo);
+        }
+
+    }
+
+    /** Parameters that, if changed, may alter the effective state of any node or group */
+    private record GlobalInputs(ContentCluster cluster,
+                                Distribution distribution,
+                                int maxPrematureCrashes,
+                                Map<NodeType, Integer> transitionTimes,
+                                int maxInitProgressTimeMs,
+                                double minNodeRatioPerGroup) {
+
+        static GlobalInputs of(ClusterStateGenerator.Params params) {
+            return new GlobalInputs(params.cluster, params.cluster.getDistribution(), params.maxPrematureCrashes,
+                                    Map.copyOf(params.transitionTimes), params.maxInitProgressTimeMs,
+                                    params.minNodeRatioPerGroup);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if ( ! (o instanceof GlobalInputs other)) return false;
+            return cluster == other.cluster
+                    && distribution == other.distribution
+                    && maxPrematureCrashes == other.maxPrematureCrashes
+                    && transitionTimes.equals(other.transitionTimes)
+                    && maxInitProgressTimeMs == other.maxInitProgressTimeMs
+                    && minNodeRatioPerGroup == other.minNodeRatioPerGroup;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(cluster), System.identityHashCode(distribution),
+                                maxPrematureCrashes, transitionTimes, maxInitProgressTimeMs, minNodeRatioPerGroup);
+        }
+
+    }
+
+    private GlobalInputs globalInputs = null;
+    private final Map<Node, DerivedNodeState> derivedNodeStates = new HashMap<>();
+    /** Effective node states before implicit group takedowns are applied */
+    private ClusterState nodeLevelState = ClusterState.emptyState();
+    private final Map<Node, NodeStateReason> nodeLevelReasons = new HashMap<>();
+
+    private Map<Integer, Group> leafGroupOfStorageNode = null;
+    private Set<Integer> nodesSafelySetToMaintenance = Set.of();
+    private final Set<Integer> implicitlyMaintained = new HashSet<>();
+    private final Set<Integer> implicitlyDown = new HashSet<>();
+
+    private int nodesDerivedInLastGeneration = 0;
+    private int groupsEvaluatedInLastGeneration = 0;
+
+    AnnotatedClusterState generatedStateFrom(ClusterStateGenerator.Params params) {
+        GlobalInputs inputs = GlobalInputs.of(params);
+        if ( ! inputs.equals(globalInputs)) {
+            reset();
+            globalInputs = inputs;
+        }
+        Set<Integer> storageNodesWithChangedState = new HashSet<>();
+        if ( ! deriveChangedNodeStates(params, storageNodesWithChangedState)) {
+            // One or more nodes have been removed from the cluster since last generation
+            reset();
+            globalInputs = inputs;
+            deriveChangedNodeStates(params, storageNodesWithChangedState);
+        }
+        deriveChangedGroupStates(params, storageNodesWithChangedState);
+
+        ClusterState workingState = nodeLevelState.clone();
+        Map<Node, NodeStateReason> nodeStateReasons = new HashMap<>(nodeLevelReasons);
+        ClusterStateGenerator.applyGroupAvailabilityResult(
+                new GroupAvailabilityCalculator.Result(implicitlyMaintained, implicitlyDown),
+                workingState, nodeStateReasons);
+
+        Optional<ClusterStateReason> reasonToBeDown = ClusterStateGenerator.clusterDownReason(workingState, params);
+        if (reasonToBeDown.isPresent()) {
+            workingState.setClusterState(State.DOWN);
+        }
+        workingState.setDistributionBits(ClusterStateGenerator.inferDistributionBitCount(params.cluster, workingState, params));
+
+        return new AnnotatedClusterState(workingState, reasonToBeDown, nodeStateReasons);
+    }
+
+    /** Returns the number of nodes whose effective state had to be derived in the last generation */
+    int nodesDerivedInLastGeneration() { return nodesDerivedInLastGeneration; }
+
+    /** Returns the number of leaf groups whose availability had to be evaluated in the last generation */
+    int groupsEvaluatedInLastGeneration() { return groupsEvaluatedInLastGeneration; }
+
+    private void reset() {
+        globalInputs = null;
+        derivedNodeStates.clear();
+        nodeLevelState = ClusterState.emptyState();
+        nodeLevelReasons.clear();
+        leafGroupOfStorageNode = null;
+        nodesSafelySetToMaintenance = Set.of();
+        implicitlyMaintained.clear();
+        implicitlyDown.clear();
+    }
+
+    /**
+     * Re-derives the effective state of all nodes whose inputs have changed, adding the index of
+     * every storage node whose state has changed to the given set.
+     *
+     * @return false if there are nodes with retained state which are no longer part of the cluster
+     */
+    private boolean deriveChangedNodeStates(ClusterStateGenerator.Params params, Set<Integer> storageNodesWithChangedState) {
+        Map<Node, NodeStateReason> reasons = new HashMap<>();
+        int retainedNodesSeen = 0;
+        int newNodes = 0;
+        nodesDerivedInLastGeneration = 0;
+        for (NodeInfo nodeInfo : params.cluster.getNodeInfos()) {
+            Node node = nodeInfo.getNode();
+            DerivedNodeState previous = derivedNodeStates.get(node);
+            if (previous == null) {
+                ++newNodes;
+            } else {
+                ++retainedNodesSeen;
+                if (previous.canBeReusedFor(nodeInfo)) continue;
+            }
+
+            reasons.clear();
+            NodeState state = ClusterStateGenerator.computeEffectiveNodeState(nodeInfo, params, reasons);
+            NodeInputs inputs = mayChangeWithTime(nodeInfo, params) ? null : NodeInputs.of(nodeInfo);
+            derivedNodeStates.put(node, new DerivedNodeState(inputs, state));
+            nodeLevelState.setNodeState(node, state);
+            nodeLevelReasons.remove(node);
+            nodeLevelReasons.putAll(reasons);
+            ++nodesDerivedInLastGeneration;
+
+            if (nodeInfo.isStorage() && (previous == null || previous.state().getState() != state.getState())) {
+                storageNodesWithChangedState.add(node.getIndex());
+            }
+        }
+        return retainedNodesSeen + newNodes == derivedNodeStates.size();
+    }
+
+    private static boolean mayChangeWithTime(NodeInfo nodeInfo, ClusterStateGenerator.Params params) {
+        return nodeInfo.isStorage()
+                && (nodeInfo.getReportedState().getState().oneOf("isd")
+                    || ClusterStateGenerator.nodeIsConsideredTooUnstable(nodeInfo, params));
+    }
+
+    private void deriveChangedGroupStates(ClusterStateGenerator.Params params, Set<Integer> storageNodesWithChangedState) {
+        Set<Integer> safelyMaintained = Set.copyOf(params.cluster.nodesSafelySetTo(State.MAINTENANCE));
+        Set<Group> dirtyGroups = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (leafGroupOfStorageNode == null) {
+            leafGroupOfStorageNode = new HashMap<>();
+            for (Group leaf : LeafGroups.enumerateFrom(params.cluster.getDistribution().getRootGroup())) {
+                for (ConfiguredNode node : leaf.getNodes()) {
+                    leafGroupOfStorageNode.put(node.index(), leaf);
+                }
+                dirtyGroups.add(leaf);
+            }
+        }
+        addLeafGroupsOf(storageNodesWithChangedState, dirtyGroups);
+        if ( ! safelyMaintained.equals(nodesSafelySetToMaintenance)) {
+            addLeafGroupsOf(symmetricDifference(safelyMaintained, nodesSafelySetToMaintenance), dirtyGroups);
+            nodesSafelySetToMaintenance = safelyMaintained;
+        }
+        groupsEvaluatedInLastGeneration = dirtyGroups.size();
+        if (dirtyGroups.isEmpty()) return;
+
+        GroupAvailabilityCalculator calculator = new GroupAvailabilityCalculator.Builder()
+                .withMinNodeRatioPerGroup(params.minNodeRatioPerGroup)
+                .withDistribution(params.cluster.getDistribution())
+                .withNodesSafelySetToMaintenance(safelyMaintained.stream().toList())
+                .build();
+        GroupAvailabilityCalculator.Result result = calculator.calculateForLeafGroups(nodeLevelState, dirtyGroups);
+        for (Group group : dirtyGroups) {
+            for (ConfiguredNode node : group.getNodes()) {
+                implicitlyMaintained.remove(node.index());
+                implicitlyDown.remove(node.index());
+            }
+        }
+        implicitlyMaintained.addAll(result.nodesThatShouldBeMaintained());
+        implicitlyDown.addAll(result.nodesThatShouldBeDown());
+    }
+
+    private void addLeafGroupsOf(Set<Integer> storageNodeIndices, Set<Group> groups) {
+        for (int index : storageNodeIndices) {
+            Group leaf = leafGroupOfStorageNode.get(index);
+            if (leaf != null) {
+                groups.add(leaf);
+            }
+        }
+    }
+
+    private static Set<Integer> symmetricDifference(Set<Integer> a, Set<Integer> b) {
+        Set<Integer> difference = new HashSet<>(a);
+        for (int index : b) {
+            if ( ! difference.remove(index)) {
+                difference.add(index);
+            }
+        }
+        return difference;
+    }
+
+}
@@ -0,0 +1,166 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.clustercontroller.core;
+
+import com.yahoo.vdslib.state.Node;
+import com.yahoo.vdslib.state.NodeState;
+import com.yahoo.vdslib.state.NodeType;
+import com.yahoo.vdslib.state.State;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static com.yahoo.vdslib.state.NodeState.ORCHESTRATOR_RESERVED_DESCRIPTION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IncrementalClusterStateGeneratorTest {
+
+    private static final List<State> storageReportedStates = List.of(State.UP, State.UP, State.UP, State.INITIALIZING, State.STOPPING, State.DOWN);
+    private static final List<State> distributorReportedStates = List.of(State.UP, State.UP, State.STOPPING, State.DOWN);
+    private static final List<State> storageWantedStates = List.of(State.UP, State.UP, State.MAINTENANCE, State.RETIRED, State.DOWN);
+    private static final List<State> distributorWantedStates = List.of(State.UP, State.UP, State.DOWN);
+
+    private static ClusterStateGenerator.Params paramsFor(ClusterFixture fixture) {
+        return fixture.generatorParams()
+                .transitionTimes(2000)
+                .maxInitProgressTime(3000)
+                .maxPrematureCrashes(3)
+                .minNodeRatioPerGroup(0.6)
+                .minStorageNodesUp(2)
+                .minRatioOfDistributorNodesUp(0.3);
+    }
+
+    private static void assertSameState(AnnotatedClusterState expected, AnnotatedClusterState actual, String context) {
+        assertEquals(expected.getClusterState().toString(true), actual.getClusterState().toString(true), context);
+        assertEquals(expected.getClusterState(), actual.getClusterState(), context);
+        assertEquals(expected.getClusterStateReason(), actual.getClusterStateReason(), context);
+        assertEquals(expected.getNodeStateReasons(), actual.getNodeStateReasons(), context);
+    }
+
+    private static void mutateRandomNode(ClusterFixture fixture, Random random, int nodeCount, StringBuilder log) {
+        int index = random.nextInt(nodeCount);
+        boolean storage = random.nextBoolean();
+        NodeType type = storage ? NodeType.STORAGE : NodeType.DISTRIBUTOR;
+        NodeInfo nodeInfo = fixture.cluster.getNodeInfo(new Node(type, index));
+        long now = fixture.timer.getCurrentTimeInMillis();
+        switch (random.nextInt(6)) {
+            case 0, 1 -> {
+                State state = (storage ? storageReportedStates : distributorReportedStates)
+                        .get(random.nextInt(storage ? storageReportedStates.size() : distributorReportedStates.size()));
+                NodeState reported = new NodeState(type, state).setDescription("desc" + random.nextInt(2));
+                if (state == State.INITIALIZING) {
+                    reported.setInitProgress(random.nextFloat());
+                    nodeInfo.setInitProgressTime(now);
+                }
+                reported.setStartTimestamp(random.nextInt(3));
+                nodeInfo.setReportedState(reported, now);
+                nodeInfo.setTransitionTime(now);
+                log.append(' ').append(nodeInfo.getNode()).append(" reported ").append(reported);
+            }
+            case 2 -> {
+                State state = (storage ? storageWantedStates : distributorWantedStates)
+                        .get(random.nextInt(storage ? storageWantedStates.size() : distributorWantedStates.size()));
+                String description = (random.nextInt(3) == 0) ? ORCHESTRATOR_RESERVED_DESCRIPTION : "wanted";
+                nodeInfo.setWantedState(new NodeState(type, state).setDescription(description));
+                log.append(' ').append(nodeInfo.getNode()).append(" wanted ").append(state).append(' ').append(description);
+            }
+            case 3 -> {
+                nodeInfo.setPrematureCrashCount(random.nextInt(5));
+                log.append(' ').append(nodeInfo.getNode()).append(" crashes ").append(nodeInfo.getPrematureCrashCount());
+            }
+            case 4 -> {
+                nodeInfo.setStartTimestamp(random.nextInt(3));
+                log.append(' ').append(nodeInfo.getNode()).append(" start ts ").append(nodeInfo.getStartTimestamp());
+            }
+            default -> {
+                int advanceMs = random.nextInt(2500);
+                fixture.timer.advanceTime(advanceMs);
+                log.append(" advance ").append(advanceMs);
+            }
+        }
+    }
+
+    private static void runDifferentialTest(ClusterFixture fixture, int nodeCount, long seed, int steps) {
+        Random random = new Random(seed);
+        IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+        StringBuilder log = new StringBuilder();
+        for (int step = 0; step < steps; ++step) {
+            int mutations = random.nextInt(4);
+            for (int i = 0; i < mutations; ++i) {
+                mutateRandomNode(fixture, random, nodeCount, log);
+            }
+            ClusterStateGenerator.Params params = paramsFor(fixture).currentTimeInMillis(fixture.timer.getCurrentTimeInMillis());
+            assertSameState(ClusterStateGenerator.generatedStateFrom(params), generator.generatedStateFrom(params),
+                            "seed " + seed + ", step " + step + ":" + log);
+        }
+    }
+
+    @Test
+    void generated_states_are_equal_to_full_generation_for_random_changes_in_hierarchic_cluster() {
+        for (long seed = 0; seed < 20; ++seed) {
+            ClusterFixture fixture = ClusterFixture
+                    .forHierarchicCluster(DistributionBuilder.withGroups(4).eachWithNodeCount(3))
+                    .bringEntireClusterUp();
+            runDifferentialTest(fixture, 12, seed, 200);
+        }
+    }
+
+    @Test
+    void generated_states_are_equal_to_full_generation_for_random_changes_in_flat_cluster() {
+        for (long seed = 0; seed < 10; ++seed) {
+            ClusterFixture fixture = ClusterFixture.forFlatCluster(7).bringEntireClusterUp();
+            runDifferentialTest(fixture, 7, seed, 200);
+        }
+    }
+
+    @Test
+    void only_changed_nodes_and_their_groups_are_rederived() {
+        ClusterFixture fixture = ClusterFixture
+                .forHierarchicCluster(DistributionBuilder.withGroups(5).eachWithNodeCount(4))
+                .bringEntireClusterUp();
+        IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+
+        generator.generatedStateFrom(paramsFor(fixture));
+        assertEquals(40, generator.nodesDerivedInLastGeneration());
+        assertEquals(5, generator.groupsEvaluatedInLastGeneration());
+
+        generator.generatedStateFrom(paramsFor(fixture));
+        assertEquals(0, generator.nodesDerivedInLastGeneration());
+        assertEquals(0, generator.groupsEvaluatedInLastGeneration());
+
+        fixture.proposeStorageNodeWantedState(5, State.MAINTENANCE);
+        AnnotatedClusterState state = generator.generatedStateFrom(paramsFor(fixture));
+        assertEquals(1, generator.nodesDerivedInLastGeneration());
+        assertEquals(1, generator.groupsEvaluatedInLastGeneration());
+        assertSameState(ClusterStateGenerator.generatedStateFrom(paramsFor(fixture)), state, "wanted state change");
+    }
+
+    @Test
+    void nodes_whose_state_depends_on_time_are_always_rederived() {
+        ClusterFixture fixture = ClusterFixture.forFlatCluster(5).bringEntireClusterUp();
+        IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+        generator.generatedStateFrom(paramsFor(fixture));
+
+        fixture.reportStorageNodeState(2, State.DOWN);
+        generator.generatedStateFrom(paramsFor(fixture));
+        assertEquals(1, generator.nodesDerivedInLastGeneration());
+
+        // Node is within its transient maintenance grace period until it has expired
+        fixture.timer.advanceTime(5000);
+        ClusterStateGenerator.Params params = paramsFor(fixture).currentTimeInMillis(fixture.timer.getCurrentTimeInMillis());
+        AnnotatedClusterState state = generator.generatedStateFrom(params);
+        assertEquals(1, generator.nodesDerivedInLastGeneration());
+        assertSameState(ClusterStateGenerator.generatedStateFrom(params), state, "grace period expiry");
+    }
+
+    @Test
+    void changing_global_parameters_rederives_all_nodes() {
+        ClusterFixture fixture = ClusterFixture.forFlatCluster(5).bringEntireClusterUp();
+        IncrementalClusterStateGenerator generator = new IncrementalClusterStateGenerator();
+        generator.generatedStateFrom(paramsFor(fixture));
+
+        generator.generatedStateFrom(paramsFor(fixture).maxPrematureCrashes(1));
+        assertEquals(10, generator.nodesDerivedInLastGeneration());
+    }
+
+}
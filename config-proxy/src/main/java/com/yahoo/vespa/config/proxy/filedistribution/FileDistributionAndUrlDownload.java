@@ -2,7 +2,9 @@
 package com.yahoo.vespa.config.proxy.filedistribution;
 
 import com.yahoo.config.subscription.ConfigSourceSet;
+import com.yahoo.jrt.Spec;
 import com.yahoo.jrt.Supervisor;
+import com.yahoo.net.HostName;
 import com.yahoo.vespa.filedistribution.FileDistributionConnectionPool;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import java.time.Duration;
@@ -18,8 +20,12 @@ public class FileDistributionAndUrlDownload {
     private final UrlDownloadRpcServer urlDownloadRpcServer;
     private final FileReferencesAndDownloadsMaintainer maintainer;
 
-    public FileDistributionAndUrlDownload(Supervisor supervisor, ConfigSourceSet source) {
-        fileDistributionRpcServer = new FileDistributionRpcServer(supervisor, createDownloader(supervisor, source));
+    /**
+     * @param spec the spec of the rpc server of this, used to serve file reference chunks to peers,
+     *             or null if this does not listen to a known port
+     */
+    public FileDistributionAndUrlDownload(Supervisor supervisor, Spec spec, ConfigSourceSet source) {
+        fileDistributionRpcServer = new FileDistributionRpcServer(supervisor, createDownloader(supervisor, spec, source));
         urlDownloadRpcServer = new UrlDownloadRpcServer(supervisor);
         maintainer = new FileReferencesAndDownloadsMaintainer();
     }
@@ -30,10 +36,13 @@ public class FileDistributionAndUrlDownload {
         maintainer.close();
     }
 
-    private FileDownloader createDownloader(Supervisor supervisor, ConfigSourceSet source) {
-        return new FileDownloader(new FileDistributionConnectionPool(source, supervisor),
-                                  supervisor,
-                                  Duration.ofSeconds(55)); // Should be lower than the timeout in FileAcquirer
+    private FileDownloader createDownloader(Supervisor supervisor, Spec spec, ConfigSourceSet source) {
+        var connectionPool = new FileDistributionConnectionPool(source, supervisor);
+        var timeout = Duration.ofSeconds(55); // Should be lower than the timeout in FileAcquirer
+        if (spec == null)
+            return new FileDownloader(connectionPool, supervisor, timeout);
+        else
+            return new FileDownloader(connectionPool, supervisor, timeout, new Spec(HostName.getLocalhost(), spec.port()));
     }
 
 }
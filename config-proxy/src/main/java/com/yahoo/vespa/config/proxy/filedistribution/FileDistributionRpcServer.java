@@ -11,6 +11,7 @@ import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.net.HostName;
 import com.yahoo.security.tls.Capability;
+import com.yahoo.vespa.filedistribution.FileChunkServer;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
 
@@ -34,22 +35,29 @@ class FileDistributionRpcServer {
 
     private final Supervisor supervisor;
     private final FileDownloader downloader;
+    private final FileChunkServer chunkServer;
     private final ExecutorService rpcDownloadExecutor = Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors()),
                                                                                      new DaemonThreadFactory("Rpc executor"));
+    private final ExecutorService rpcChunkExecutor = Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors()),
+                                                                                  new DaemonThreadFactory("Rpc chunk executor"));
 
     FileDistributionRpcServer(Supervisor supervisor, FileDownloader downloader) {
         this.supervisor = supervisor;
         this.downloader = downloader;
+        this.chunkServer = new FileChunkServer(downloader.chunkSource());
         declareMethods();
     }
 
     void close() {
         rpcDownloadExecutor.shutdownNow();
+        rpcChunkExecutor.shutdownNow();
         try {
             rpcDownloadExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            rpcChunkExecutor.awaitTermination(10, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        chunkServer.close();
     }
 
     private void declareMethods() {
@@ -69,6 +77,11 @@ class FileDistributionRpcServer {
                                      .methodDesc("download status for file references")
                                      .returnDesc(0, "file references", "array of file references")
                                      .returnDesc(1, "download status", "percentage downloaded of each file reference in above array"));
+        // Serves chunks of file references held by this to peers downloading the same file references
+        supervisor.addMethod(FileChunkServer.getChunksMethod(this::getFileChunks)
+                                     .requireCapabilities(Capability.CONFIGPROXY__FILEDISTRIBUTION_API));
+        supervisor.addMethod(FileChunkServer.getChunkMethod(this::getFileChunk)
+                                     .requireCapabilities(Capability.CONFIGPROXY__FILEDISTRIBUTION_API));
     }
 
 
@@ -84,6 +97,22 @@ class FileDistributionRpcServer {
         rpcDownloadExecutor.execute(() -> downloadFile(req));
     }
 
+    private void getFileChunks(Request req) {
+        req.detach();
+        rpcChunkExecutor.execute(() -> {
+            chunkServer.getChunks(req);
+            req.returnRequest();
+        });
+    }
+
+    private void getFileChunk(Request req) {
+        req.detach();
+        rpcChunkExecutor.execute(() -> {
+            chunkServer.getChunk(req);
+            req.returnRequest();
+        });
+    }
+
     private void getActiveFileReferencesStatus(Request req) {
         Map<FileReference, Double> downloadStatus = downloader.downloadStatus();
 
@@ -13,6 +13,7 @@ import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Transport;
 import com.yahoo.vespa.config.ConnectionPool;
 import com.yahoo.vespa.filedistribution.FileApiErrorCodes;
+import com.yahoo.vespa.filedistribution.FileChunkServer;
 import com.yahoo.vespa.filedistribution.FileDistributionConnectionPool;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReferenceCompressor;
@@ -68,6 +69,7 @@ public class FileServer {
     private final ThreadPoolExecutor executor;
     private final FileDownloader downloader; // downloads files from other config servers
     private final List<CompressionType> compressionTypes; // compression types to use, in preferred order
+    private final FileChunkServer chunkServer;
 
     public static class ReplayStatus {
         private final int code;
@@ -105,6 +107,7 @@ public class FileServer {
         this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors()),
                                                                           new DaemonThreadFactory("file-server-"));
         this.compressionTypes = compressionTypes;
+        this.chunkServer = new FileChunkServer(new ChunkSource());
     }
 
     boolean hasFile(String fileReference) {
@@ -142,19 +145,25 @@ public class FileServer {
         CompressionType compressionType = chooseCompressionType(acceptedCompressionTypes);
         log.log(Level.FINE, () -> "accepted compression types: " + acceptedCompressionTypes + ", will use " + compressionType);
         if (file.isDirectory()) {
-            Path tempFile = Files.createTempFile(tempFilereferencedataDir, tempFilereferencedataPrefix, reference.value());
-            var start = Instant.now();
-            File compressedFile = new FileReferenceCompressor(compressed, compressionType)
-                    .compress(file.getParentFile(), tempFile.toFile());
-            var duration = Duration.between(start, Instant.now());
-            log.log((duration.compareTo(Duration.ofSeconds(10)) > 0) ? Level.INFO : Level.FINE,
-                    () -> "compressed " + reference + " with " + compressionType + " in " + Duration.between(start, Instant.now()));
+            File compressedFile = compress(reference, file, compressionType);
             return new LazyTemporaryStorageFileReferenceData(reference, file.getName(), compressed, compressedFile, compressionType);
         } else {
             return new LazyFileReferenceData(reference, file.getName(), Type.file, file, compressionType);
         }
     }
 
+    /** Compresses the given directory of the given file reference to a temporary file, and returns that file */
+    private File compress(FileReference reference, File directory, CompressionType compressionType) throws IOException {
+        Path tempFile = Files.createTempFile(tempFilereferencedataDir, tempFilereferencedataPrefix, reference.value());
+        var start = Instant.now();
+        File compressedFile = new FileReferenceCompressor(compressed, compressionType)
+                .compress(directory.getParentFile(), tempFile.toFile());
+        var duration = Duration.between(start, Instant.now());
+        log.log((duration.compareTo(Duration.ofSeconds(10)) > 0) ? Level.INFO : Level.FINE,
+                () -> "compressed " + reference + " with " + compressionType + " in " + Duration.between(start, Instant.now()));
+        return compressedFile;
+    }
+
     public void serveFile(FileReference fileReference,
                           boolean downloadFromOtherSourceIfNotFound,
                           Set<CompressionType> acceptedCompressionTypes,
@@ -193,6 +202,22 @@ public class FileServer {
         return OK;
     }
 
+    /** Serves the chunks of a file reference, see {@link FileChunkServer#getChunks}, and returns the given detached request */
+    public void serveChunks(Request request) {
+        executor.execute(() -> {
+            chunkServer.getChunks(request);
+            request.returnRequest();
+        });
+    }
+
+    /** Serves a chunk of a file reference, see {@link FileChunkServer#getChunk}, and returns the given detached request */
+    public void serveChunk(Request request) {
+        executor.execute(() -> {
+            chunkServer.getChunk(request);
+            request.returnRequest();
+        });
+    }
+
     /* Choose the first compression type (list is in preferred order) that matches an accepted compression type, or fail */
     private CompressionType chooseCompressionType(Set<CompressionType> acceptedCompressionTypes) {
         for (CompressionType compressionType : compressionTypes) {
@@ -231,6 +256,7 @@ public class FileServer {
     public void close() {
         downloader.close();
         executor.shutdown();
+        chunkServer.close();
     }
 
     private static FileDownloader createFileDownloader(List<String> configServers) {
@@ -244,4 +270,29 @@ public class FileServer {
         return new FileDistributionConnectionPool(new ConfigSourceSet(configServers), supervisor);
     }
 
+    /** Serves the file references of this, compressing directories to temporary files */
+    private class ChunkSource implements FileChunkServer.Source {
+
+        @Override
+        public Optional<FileChunkServer.Content> content(FileReferenceDownload download,
+                                                         Set<CompressionType> acceptedCompressionTypes) throws IOException {
+            Optional<File> file = getFileDownloadIfNeeded(download);
+            if (file.isEmpty()) return Optional.empty();
+
+            CompressionType compressionType = chooseCompressionType(acceptedCompressionTypes);
+            if (file.get().isDirectory())
+                return Optional.of(new FileChunkServer.Content(file.get().getName(), compressed, compressionType,
+                                                               compress(download.fileReference(), file.get(), compressionType),
+                                                               true));
+            else
+                return Optional.of(new FileChunkServer.Content(file.get().getName(), Type.file, compressionType, file.get(), false));
+        }
+
+        @Override
+        public List<File> files(FileReference reference) {
+            return fileDirectory.getFile(reference).filter(File::isFile).map(List::of).orElse(List.of());
+        }
+
+    }
+
 }
@@ -4,10 +4,23 @@ package com.yahoo.vespa.config.server.filedistribution;
 import com.yahoo.cloud.config.ConfigserverConfig;
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.ErrorCode;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
 import com.yahoo.jrt.Transport;
 import com.yahoo.net.HostName;
+import com.yahoo.vespa.filedistribution.FileApiErrorCodes;
+import com.yahoo.vespa.filedistribution.FileChunkServer;
 import com.yahoo.vespa.filedistribution.FileDownloader;
+import com.yahoo.vespa.filedistribution.FileReferenceChunks;
 import com.yahoo.vespa.filedistribution.FileReferenceCompressor;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
@@ -18,6 +31,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
@@ -28,6 +42,7 @@ import java.util.concurrent.ExecutionException;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.lz4;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.none;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.zstd;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -162,6 +177,122 @@ public class FileServerTest {
         assertEquals(new String(content.get()), "dummy-data");
     }
 
+    @Test
+    public void requireThatFileIsServedInChunks() throws IOException, ListenFailedException {
+        File dir = getFileServerRootDir();
+        IOUtils.writeFile(dir + "/12y/f1", "dummy-data", true);
+        Supervisor supervisor = new Supervisor(new Transport()).setDropEmptyBuffers(true);
+        try {
+            Target target = chunkServer(supervisor);
+
+            Request chunks = chunksRequest("12y", "zstd");
+            target.invokeSync(chunks, Duration.ofSeconds(10));
+            assertFalse(chunks.errorMessage(), chunks.isError());
+            assertEquals(FileApiErrorCodes.OK.code(), chunks.returnValues().get(0).asInt32());
+            assertEquals("f1", chunks.returnValues().get(1).asString());
+            assertEquals("file", chunks.returnValues().get(2).asString());
+            assertEquals(10, chunks.returnValues().get(4).asInt64());
+            byte[] digest = chunks.returnValues().get(6).asData();
+            assertEquals(FileReferenceChunks.digestLength, digest.length);
+
+            Request chunk = chunkRequest("12y", 0, 10, digest);
+            target.invokeSync(chunk, Duration.ofSeconds(10));
+            assertFalse(chunk.errorMessage(), chunk.isError());
+            assertEquals(FileApiErrorCodes.OK.code(), chunk.returnValues().get(0).asInt32());
+            assertArrayEquals("dummy-data".getBytes(StandardCharsets.UTF_8), chunk.returnValues().get(1).asData());
+        }
+        finally {
+            supervisor.transport().shutdown().join();
+        }
+    }
+
+    @Test
+    public void requireThatDirectoryIsServedInCompressedChunks() throws IOException, ListenFailedException {
+        File dir = getFileServerRootDir();
+        IOUtils.writeFile(dir + "/subdir/12z/f1", "dummy-data-2", true);
+        Supervisor supervisor = new Supervisor(new Transport()).setDropEmptyBuffers(true);
+        try {
+            Request chunks = chunksRequest("subdir", "lz4");
+            chunkServer(supervisor).invokeSync(chunks, Duration.ofSeconds(10));
+            assertFalse(chunks.errorMessage(), chunks.isError());
+            assertEquals(FileApiErrorCodes.OK.code(), chunks.returnValues().get(0).asInt32());
+            assertEquals("compressed", chunks.returnValues().get(2).asString());
+            assertEquals("lz4", chunks.returnValues().get(3).asString());
+        }
+        finally {
+            supervisor.transport().shutdown().join();
+        }
+    }
+
+    @Test
+    public void requireThatChunkErrorsAreReturned() throws IOException, ListenFailedException {
+        File dir = getFileServerRootDir();
+        IOUtils.writeFile(dir + "/12y/f1", "dummy-data", true);
+        Supervisor supervisor = new Supervisor(new Transport()).setDropEmptyBuffers(true);
+        try {
+            Target target = chunkServer(supervisor);
+
+            Request unknown = chunksRequest("12x", "lz4");
+            target.invokeSync(unknown, Duration.ofSeconds(10));
+            assertEquals(FileApiErrorCodes.NOT_FOUND.code(), unknown.returnValues().get(0).asInt32());
+
+            Request unsupportedCompression = chunksRequest("12y", "gzip");
+            target.invokeSync(unsupportedCompression, Duration.ofSeconds(10));
+            assertEquals(FileApiErrorCodes.TRANSFER_FAILED.code(), unsupportedCompression.returnValues().get(0).asInt32());
+
+            byte[] digest = new byte[FileReferenceChunks.digestLength];
+            Request unknownChunk = chunkRequest("12x", 0, 10, digest);
+            target.invokeSync(unknownChunk, Duration.ofSeconds(10));
+            assertEquals(FileApiErrorCodes.NOT_FOUND.code(), unknownChunk.returnValues().get(0).asInt32());
+
+            Request wrongDigest = chunkRequest("12y", 0, 10, digest);
+            target.invokeSync(wrongDigest, Duration.ofSeconds(10));
+            assertEquals(FileApiErrorCodes.NOT_FOUND.code(), wrongDigest.returnValues().get(0).asInt32());
+
+            Request tooLong = chunkRequest("12y", 0, FileReferenceChunks.defaultChunkSize + 1, digest);
+            target.invokeSync(tooLong, Duration.ofSeconds(10));
+            assertEquals(ErrorCode.BAD_REQUEST, tooLong.errorCode());
+
+            Request unaligned = chunkRequest("12y", 1, 9, digest);
+            target.invokeSync(unaligned, Duration.ofSeconds(10));
+            assertEquals(ErrorCode.BAD_REQUEST, unaligned.errorCode());
+        }
+        finally {
+            supervisor.transport().shutdown().join();
+        }
+    }
+
+    /** Serves chunks from the file server of this as the config server RPC server does, and returns a target connected to it */
+    private Target chunkServer(Supervisor supervisor) throws ListenFailedException {
+        supervisor.addMethod(FileChunkServer.getChunksMethod(request -> {
+            request.detach();
+            fileServer.serveChunks(request);
+        }));
+        supervisor.addMethod(FileChunkServer.getChunkMethod(request -> {
+            request.detach();
+            fileServer.serveChunk(request);
+        }));
+        return supervisor.connect(new Spec("localhost", supervisor.listen(new Spec(0)).port()));
+    }
+
+    public static Request chunksRequest(String reference, String... compressionTypes) {
+        Request request = new Request(FileChunkServer.GET_CHUNKS_METHOD);
+        request.parameters().add(new StringValue(reference));
+        request.parameters().add(new Int32Value(1));
+        request.parameters().add(new StringValue(""));
+        request.parameters().add(new StringArray(compressionTypes));
+        return request;
+    }
+
+    public static Request chunkRequest(String reference, long offset, int length, byte[] digest) {
+        Request request = new Request(FileChunkServer.GET_CHUNK_METHOD);
+        request.parameters().add(new StringValue(reference));
+        request.parameters().add(new Int64Value(offset));
+        request.parameters().add(new Int32Value(length));
+        request.parameters().add(new DataValue(digest));
+        return request;
+    }
+
     private void writeFile(String dir) throws IOException {
         File rootDir = getFileServerRootDir();
         IOUtils.createDirectory(rootDir + "/" + dir);
@@ -28,6 +28,8 @@ import com.yahoo.vespa.config.server.application.Application;
 import com.yahoo.vespa.config.server.application.ApplicationVersions;
 import com.yahoo.vespa.config.server.monitoring.MetricUpdater;
 import com.yahoo.vespa.config.server.session.PrepareParams;
+import com.yahoo.vespa.filedistribution.FileApiErrorCodes;
+import com.yahoo.vespa.filedistribution.FileReferenceChunks;
 import com.yahoo.vespa.filedistribution.LazyFileReferenceData;
 import com.yahoo.vespa.model.VespaModel;
 import org.junit.Rule;
@@ -38,6 +40,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Optional;
 
+import static com.yahoo.vespa.config.server.filedistribution.FileServerTest.chunkRequest;
+import static com.yahoo.vespa.config.server.filedistribution.FileServerTest.chunksRequest;
 import static com.yahoo.vespa.config.server.rpc.RpcServer.ChunkedFileReceiver.createMetaRequest;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.lz4;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.compressed;
@@ -101,6 +105,26 @@ public class RpcServerTest {
         }
     }
 
+    @Test
+    public void testFileChunks() throws IOException, InterruptedException {
+        try (RpcTester tester = new RpcTester(applicationId, temporaryFolder)) {
+            Request chunks = chunksRequest("unknown", "lz4");
+            tester.performRequest(chunks);
+            assertFalse(chunks.errorMessage(), chunks.isError());
+            assertEquals(FileApiErrorCodes.NOT_FOUND.code(), chunks.returnValues().get(0).asInt32());
+            assertEquals(0, chunks.returnValues().get(6).asData().length);
+
+            Request chunk = chunkRequest("unknown", 0, 10, new byte[FileReferenceChunks.digestLength]);
+            tester.performRequest(chunk);
+            assertFalse(chunk.errorMessage(), chunk.isError());
+            assertEquals(FileApiErrorCodes.NOT_FOUND.code(), chunk.returnValues().get(0).asInt32());
+
+            Request invalidChunk = chunkRequest("unknown", 0, Integer.MAX_VALUE, new byte[FileReferenceChunks.digestLength]);
+            tester.performRequest(invalidChunk);
+            assertEquals(com.yahoo.jrt.ErrorCode.BAD_REQUEST, invalidChunk.errorCode());
+        }
+    }
+
     @Test
     public void testFileReceiverMetaRequest() throws IOException {
         File file = temporaryFolder.newFile();
@@ -59,10 +59,13 @@ public class HandlersConfigurerDi {
                                 String configId,
                                 ComponentDeconstructor deconstructor,
                                 Injector discInjector,
-                                OsgiFramework osgiFramework) {
+                                OsgiFramework osgiFramework,
+                                int componentConstructionThreads) {
 
-        this(subscriberFactory, vespaContainer, configId, deconstructor, discInjector,
-             new ContainerAndDiOsgi(osgiFramework, vespaContainer.getFileAcquirer()));
+        this(vespaContainer, discInjector,
+             new Container(subscriberFactory, configId, deconstructor,
+                           new ContainerAndDiOsgi(osgiFramework, vespaContainer.getFileAcquirer()),
+                           componentConstructionThreads));
     }
 
     // Only public for testing
@@ -72,9 +75,12 @@ public class HandlersConfigurerDi {
                                 ComponentDeconstructor deconstructor,
                                 Injector discInjector,
                                 OsgiWrapper osgiWrapper) {
+        this(vespaContainer, discInjector, new Container(subscriberFactory, configId, deconstructor, osgiWrapper));
+    }
 
+    private HandlersConfigurerDi(com.yahoo.container.Container vespaContainer, Injector discInjector, Container container) {
         this.vespaContainer = vespaContainer;
-        container = new Container(subscriberFactory, configId, deconstructor, osgiWrapper);
+        this.container = container;
         Runnable cleanupTask = waitForNextGraphGeneration(discInjector, true);
         cleanupTask.run();
     }
@@ -2,6 +2,8 @@
 package com.yahoo.container.di;
 
 import com.google.inject.Injector;
+import com.yahoo.component.ComponentId;
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.ConfigInstance;
 import com.yahoo.config.ConfigurationRuntimeException;
 import com.yahoo.config.subscription.ConfigInterruptedException;
@@ -21,6 +23,7 @@ import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.yolean.UncheckedInterruptedException;
 import org.osgi.framework.Bundle;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -29,8 +32,11 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static java.util.logging.Level.FINE;
 
@@ -43,6 +49,12 @@ public class Container {
 
     private static final Logger log = Logger.getLogger(Container.class.getName());
 
+    /** The default max number of threads used to construct components, as in the container.qr config */
+    private static final int defaultMaxConstructionThreads = 8;
+
+    /** Construction times of the slowest component at which construction times are logged at info level */
+    private static final Duration slowConstructionThreshold = Duration.ofSeconds(1);
+
     private final SubscriberFactory subscriberFactory;
     private final ConfigKey<ApplicationBundlesConfig> applicationBundlesConfigKey;
     private final ConfigKey<PlatformBundlesConfig> platformBundlesConfigKey;
@@ -51,12 +63,26 @@ public class Container {
     private final Osgi osgi;
 
     private final ConfigRetriever retriever;
+    private final int constructionThreads;
     private List<String> platformBundles;  // Used to verify that platform bundles don't change.
     private long previousConfigGeneration = -1L;
     private long leastGeneration = -1L;
 
     public Container(SubscriberFactory subscriberFactory, String configId, ComponentDeconstructor destructor, Osgi osgi) {
+        this(subscriberFactory, configId, destructor, osgi, defaultMaxConstructionThreads);
+    }
+
+    /**
+     * Creates a container which constructs independent components of each graph concurrently, in at most
+     * the given number of threads, and no more than the number of available processors.
+     * Components are constructed sequentially if this is 1.
+     */
+    public Container(SubscriberFactory subscriberFactory, String configId, ComponentDeconstructor destructor, Osgi osgi,
+                     int maxConstructionThreads) {
+        if (maxConstructionThreads < 1)
+            throw new IllegalArgumentException("Construction threads must be positive, but was " + maxConstructionThreads);
         this.subscriberFactory = subscriberFactory;
+        this.constructionThreads = Math.max(1, Math.min(maxConstructionThreads, Runtime.getRuntime().availableProcessors()));
         this.destructor = destructor;
         this.osgi = osgi;
 
@@ -102,11 +128,40 @@ public class Container {
     }
 
     private void constructComponents(ComponentGraph graph) {
-        graph.nodes().forEach(n -> {
-            if (Thread.interrupted())
-                throw new UncheckedInterruptedException("Interrupted while constructing component graph", true);
-            n.constructInstance();
-        });
+        if (Thread.interrupted())
+            throw new UncheckedInterruptedException("Interrupted while constructing component graph", true);
+        if (constructionThreads == 1) {
+            try {
+                graph.constructInstances(Runnable::run); // Sequentially, in this thread
+            }
+            finally {
+                logConstructionTimes(graph);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(constructionThreads, new DaemonThreadFactory("component-construction-"));
+        try {
+            graph.constructInstances(executor);
+        }
+        finally {
+            executor.shutdown();
+            logConstructionTimes(graph);
+        }
+    }
+
+    private static void logConstructionTimes(ComponentGraph graph) {
+        List<Map.Entry<ComponentId, Duration>> times = new ArrayList<>(graph.constructionTimes().entrySet());
+        if (times.isEmpty()) return;
+
+        times.sort(Map.Entry.<ComponentId, Duration>comparingByValue().reversed());
+        if (log.isLoggable(FINE))
+            times.forEach(time -> log.log(FINE, "Constructed " + time.getKey() + " in " + time.getValue().toMillis() + " ms"));
+        if (times.get(0).getValue().compareTo(slowConstructionThreshold) >= 0)
+            log.info("Constructed " + times.size() + " components for generation " + graph.generation() + ", slowest: " +
+                     times.stream().limit(5)
+                          .map(time -> time.getKey() + " (" + time.getValue().toMillis() + " ms)")
+                          .collect(Collectors.joining(", ")));
     }
 
     private ComponentGraph waitForNewConfigGenAndCreateGraph(
@@ -16,21 +16,31 @@ import com.yahoo.container.di.componentgraph.Provider;
 import com.yahoo.container.di.componentgraph.cycle.CycleFinder;
 import com.yahoo.container.di.componentgraph.cycle.Graph;
 import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.yolean.UncheckedInterruptedException;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -42,7 +52,7 @@ import static com.yahoo.container.di.componentgraph.core.Exceptions.removeStackT
  * @author gjoranv
  * @author ollivir
  *
- * Not thread safe.
+ * Not thread safe, except that {@link #constructInstances} constructs nodes concurrently.
  */
 public class ComponentGraph {
 
@@ -50,6 +60,7 @@ public class ComponentGraph {
 
     private final long generation;
     private final Map<ComponentId, Node> nodesById = new HashMap<>();
+    private final Map<ComponentId, Duration> constructionTimes = new ConcurrentHashMap<>();
 
     public ComponentGraph(long generation) {
         this.generation = generation;
@@ -163,6 +174,107 @@ public class ComponentGraph {
         }
     }
 
+    /**
+     * Constructs the instances of all nodes in this which are not already constructed, in the given executor.
+     * Each node is constructed as soon as all the nodes it uses are constructed, such that independent nodes
+     * are constructed concurrently. If constructing a node fails, no further nodes are constructed, and the
+     * first failure is thrown when the constructions in progress have completed.
+     *
+     * @throws UncheckedInterruptedException if interrupted while waiting for constructions to complete,
+     *                                       which are completed before this returns
+     */
+    public void constructInstances(Executor executor) {
+        List<Node> sorted = topologicalSort(nodes());
+        Map<Node, Integer> unconstructedUsed = new IdentityHashMap<>();
+        Map<Node, List<Node>> users = new IdentityHashMap<>();
+        for (Node node : sorted)
+            unconstructedUsed.put(node, 0);
+        for (Node node : sorted) {
+            Set<Node> used = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Node usedNode : node.usedComponents())
+                if (unconstructedUsed.containsKey(usedNode) && used.add(usedNode))
+                    users.computeIfAbsent(usedNode, __ -> new ArrayList<>()).add(node);
+            unconstructedUsed.put(node, used.size());
+        }
+
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node node : sorted)
+            if (unconstructedUsed.get(node) == 0) ready.add(node);
+
+        BlockingQueue<Construction> completed = new LinkedBlockingQueue<>();
+        int inProgress = 0;
+        Throwable failure = null;
+        boolean interrupted = false;
+        while (true) {
+            while (failure == null && ! ready.isEmpty()) {
+                Node node = ready.poll();
+                if (node.constructedInstance().isPresent()) { // Reused from the previous graph
+                    constructed(node, unconstructedUsed, users, ready);
+                    continue;
+                }
+                try {
+                    executor.execute(() -> completed.add(construct(node)));
+                    inProgress++;
+                }
+                catch (RejectedExecutionException e) {
+                    failure = e;
+                }
+            }
+            if (inProgress == 0) break;
+
+            Construction construction;
+            try {
+                construction = completed.take();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+                if (failure == null)
+                    failure = new UncheckedInterruptedException("Interrupted while constructing component graph", e, false);
+                continue;
+            }
+            inProgress--;
+            if (construction.failure() != null) {
+                if (failure == null)
+                    failure = construction.failure();
+            }
+            else {
+                constructed(construction.node(), unconstructedUsed, users, ready);
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure instanceof Error error)
+            throw error;
+        if (failure != null)
+            throw (RuntimeException) failure;
+    }
+
+    private Construction construct(Node node) {
+        try {
+            long startNanos = System.nanoTime();
+            node.constructInstance();
+            if (node instanceof ComponentNode)
+                constructionTimes.put(node.componentId(), Duration.ofNanos(System.nanoTime() - startNanos));
+            return new Construction(node, null);
+        }
+        catch (RuntimeException | Error e) {
+            return new Construction(node, e);
+        }
+    }
+
+    private static void constructed(Node node, Map<Node, Integer> unconstructedUsed, Map<Node, List<Node>> users, Deque<Node> ready) {
+        for (Node user : users.getOrDefault(node, List.of()))
+            if (unconstructedUsed.merge(user, -1, Integer::sum) == 0)
+                ready.add(user);
+    }
+
+    /** Returns the time spent constructing each component constructed by {@link #constructInstances}, by component id */
+    public Map<ComponentId, Duration> constructionTimes() {
+        return Collections.unmodifiableMap(constructionTimes);
+    }
+
+    private record Construction(Node node, Throwable failure) { }
+
     /** All constructed components and providers of this, in reverse creation order, i.e., suited for ordered deconstruction. */
     public List<Object> allConstructedComponentsAndProviders() {
         List<Node> orderedNodes = topologicalSort(nodes());
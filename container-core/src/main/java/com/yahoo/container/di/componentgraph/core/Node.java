@@ -52,7 +52,9 @@ public abstract class Node {
         constructInstance();
         if (instance.get() instanceof Provider) {
             Provider<?> provider = (Provider<?>) instance.get();
-            return provider.get();
+            synchronized (provider) { // Providers may be used by components constructed concurrently
+                return provider.get();
+            }
         } else {
             return instance.get();
         }
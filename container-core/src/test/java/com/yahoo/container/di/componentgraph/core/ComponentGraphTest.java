@@ -21,12 +21,18 @@ import com.yahoo.vespa.config.ConfigKey;
 import org.junit.jupiter.api.Test;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
 
 import static com.yahoo.container.di.componentgraph.core.ComponentGraph.isBindingAnnotation;
@@ -530,6 +536,78 @@ public class ComponentGraphTest {
     }
 
 
+    @Test
+    void independent_components_are_constructed_concurrently() {
+        Node first = mockComponentNode(ComponentAwaitingBarrier.class);
+        Node second = mockComponentNode(ComponentAwaitingBarrier2.class);
+        Node user = mockComponentNode(ComponentTakingComponentsAwaitingBarrier.class);
+
+        ComponentGraph componentGraph = new ComponentGraph();
+        componentGraph.add(first);
+        componentGraph.add(second);
+        componentGraph.add(user);
+        componentGraph.complete();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            componentGraph.constructInstances(executor);
+        }
+        finally {
+            executor.shutdown();
+        }
+        ComponentTakingComponentsAwaitingBarrier instance = componentGraph.getInstance(ComponentTakingComponentsAwaitingBarrier.class);
+        assertSame(first.constructedInstance().get(), instance.first);
+        assertSame(second.constructedInstance().get(), instance.second);
+        assertEquals(Set.of(first.componentId(), second.componentId(), user.componentId()), componentGraph.constructionTimes().keySet());
+        List<Object> deconstructionOrder = componentGraph.allConstructedComponentsAndProviders();
+        assertEquals(3, deconstructionOrder.size());
+        assertSame(instance, deconstructionOrder.get(0));
+    }
+
+    @Test
+    void construction_failure_is_thrown_and_stops_construction_of_users() {
+        Node failing = mockComponentNode(ComponentThrowingInConstructor.class);
+        Node user = mockComponentNode(ComponentTakingComponentThrowingInConstructor.class);
+
+        ComponentGraph componentGraph = new ComponentGraph();
+        componentGraph.add(failing);
+        componentGraph.add(user);
+        componentGraph.complete();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ComponentNode.ComponentConstructorException e =
+                    assertThrows(ComponentNode.ComponentConstructorException.class, () -> componentGraph.constructInstances(executor));
+            assertTrue(e.getMessage().startsWith("Error constructing '" + failing.componentId() + "'"), e.getMessage());
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertTrue(failing.constructedInstance().isEmpty());
+        assertTrue(user.constructedInstance().isEmpty());
+        assertTrue(componentGraph.constructionTimes().isEmpty());
+    }
+
+    @Test
+    void components_are_constructed_sequentially_in_the_calling_thread() {
+        Node used = mockComponentNode(SimpleComponent.class);
+        Node user = mockComponentNode(ComponentTakingComponent.class);
+
+        ComponentGraph componentGraph = new ComponentGraph();
+        componentGraph.add(used);
+        componentGraph.add(user);
+        componentGraph.complete();
+
+        List<Thread> threads = new ArrayList<>();
+        componentGraph.constructInstances(command -> {
+            threads.add(Thread.currentThread());
+            command.run();
+        });
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), threads);
+        ComponentTakingComponent instance = componentGraph.getInstance(ComponentTakingComponent.class);
+        assertSame(used.constructedInstance().get(), instance.injectedComponent);
+    }
+
     //Note that all Components must be defined in a static context,
     //otherwise their constructor will take the outer class as the first parameter.
     private static int counter = 0;
@@ -544,6 +622,42 @@ public class ComponentGraphTest {
     public static class SimpleComponent2 extends AbstractComponent {
     }
 
+    private static final CyclicBarrier constructionBarrier = new CyclicBarrier(2);
+
+    private static void awaitConstructionBarrier() {
+        try {
+            constructionBarrier.await(1, TimeUnit.MINUTES);
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException("Components were not constructed concurrently", e);
+        }
+    }
+
+    public static class ComponentAwaitingBarrier extends AbstractComponent {
+        public ComponentAwaitingBarrier() { awaitConstructionBarrier(); }
+    }
+
+    public static class ComponentAwaitingBarrier2 extends AbstractComponent {
+        public ComponentAwaitingBarrier2() { awaitConstructionBarrier(); }
+    }
+
+    public static class ComponentTakingComponentsAwaitingBarrier extends AbstractComponent {
+        private final ComponentAwaitingBarrier first;
+        private final ComponentAwaitingBarrier2 second;
+
+        public ComponentTakingComponentsAwaitingBarrier(ComponentAwaitingBarrier first, ComponentAwaitingBarrier2 second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    public static class ComponentThrowingInConstructor extends AbstractComponent {
+        public ComponentThrowingInConstructor() { throw new IllegalStateException("Failing on purpose"); }
+    }
+
+    public static class ComponentTakingComponentThrowingInConstructor extends AbstractComponent {
+        public ComponentTakingComponentThrowingInConstructor(ComponentThrowingInConstructor component) { }
+    }
+
     public static class SimpleDerivedComponent extends SimpleComponent {
     }
 
@@ -444,7 +444,8 @@ public final class ConfiguredApplication implements Application {
                                         configId,
                                         new Deconstructor(),
                                         discInjector,
-                                        osgiFramework);
+                                        osgiFramework,
+                                        qrConfig.componentConstructionThreads());
     }
 
     private void setupGuiceBindings(GuiceRepository modules) {
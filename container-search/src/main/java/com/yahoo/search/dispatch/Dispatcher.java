@@ -250,6 +250,9 @@ public class Dispatcher extends AbstractComponent {
         new Compressor().warmup(seconds);
     }
 
+    /** Returns the content generation of the cluster this dispatches to, see {@link SearchCluster#contentGeneration()} */
+    public long contentGeneration() { return searchCluster.contentGeneration(); }
+
     public boolean allGroupsHaveSize1() {
         return searchCluster.groupList().groups().stream().allMatch(g -> g.nodes().size() == 1);
     }
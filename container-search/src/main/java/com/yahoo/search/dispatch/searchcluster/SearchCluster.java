@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import static java.util.stream.Collectors.groupingBy;
@@ -34,6 +35,8 @@ public class SearchCluster implements NodeManager<Node> {
     private volatile SearchGroupsImpl groups;           // Groups in this cluster
     private volatile SearchGroupsImpl monitoredGroups;  // Same as groups, except during reconfiguration.
     private volatile long nextLogTime = 0;
+    private final AtomicLong contentGeneration = new AtomicLong();
+    private long contentSignature = 0;
 
     /**
      * A search node on this local machine having the entire corpus, which we therefore
@@ -258,6 +261,28 @@ public class SearchCluster implements NodeManager<Node> {
         } else {
             pingIterationCompletedMultipleGroups(groups);
         }
+        updateContentGeneration(groups);
+    }
+
+    /**
+     * Returns a number which changes when the set of nodes of this cluster, their working status, or their number
+     * of active documents changes, as observed by pinging them. This does not change on writes which leave the
+     * document counts unchanged, such as updates, so results cached by this must also expire by time.
+     */
+    public long contentGeneration() { return contentGeneration.get(); }
+
+    private synchronized void updateContentGeneration(SearchGroupsImpl groups) {
+        long signature = 0;
+        for (Node node : groups.nodes()) { // Order independent, as nodes are a set
+            long nodeSignature = node.hashCode();
+            nodeSignature = 31 * nodeSignature + Boolean.hashCode(node.isWorking() == Boolean.TRUE);
+            nodeSignature = 31 * nodeSignature + node.getActiveDocuments();
+            signature += nodeSignature * 0x9E3779B97F4A7C15L;
+        }
+        if (signature != contentSignature) {
+            contentSignature = signature;
+            contentGeneration.incrementAndGet();
+        }
     }
 
     /**
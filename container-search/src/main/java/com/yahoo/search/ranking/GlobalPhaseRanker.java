@@ -1,9 +1,12 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.ranking;
 
+import com.yahoo.component.AbstractComponent;
 import com.yahoo.component.annotation.Inject;
+import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.config.GlobalPhaseConfig;
 import com.yahoo.search.query.Sorting;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.FeatureData;
@@ -17,17 +20,25 @@ import java.util.*;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
-public class GlobalPhaseRanker {
+public class GlobalPhaseRanker extends AbstractComponent {
 
     private static final Logger logger = Logger.getLogger(GlobalPhaseRanker.class.getName());
     private final RankProfilesEvaluatorFactory factory;
 
+    /** The executor used to rescore hits in parallel, or null if hits are always rescored in the query thread */
+    private final ParallelRescoring parallelRescoring;
+
     @Inject
-    public GlobalPhaseRanker(RankProfilesEvaluatorFactory factory) {
+    public GlobalPhaseRanker(RankProfilesEvaluatorFactory factory, GlobalPhaseConfig config, MetricReceiver metric) {
         this.factory = factory;
+        this.parallelRescoring = config.threads() > 1 ? new ParallelRescoring(config, metric) : null;
         logger.fine(() -> "Using factory: " + factory);
     }
 
+    public GlobalPhaseRanker(RankProfilesEvaluatorFactory factory) {
+        this(factory, new GlobalPhaseConfig.Builder().build(), MetricReceiver.nullImplementation);
+    }
+
     public int getRerankCount(Query query, String schema) {
         var setup = globalPhaseSetupFor(query, schema).orElse(null);
         return resolveRerankCount(setup, query);
@@ -51,6 +62,10 @@ public class GlobalPhaseRanker {
     }
 
     static void rerankHitsImpl(GlobalPhaseSetup setup, Query query, Result result) {
+        rerankHitsImpl(setup, query, result, null);
+    }
+
+    static void rerankHitsImpl(GlobalPhaseSetup setup, Query query, Result result, ParallelRescoring parallelRescoring) {
         var mainSpec = setup.globalPhaseEvalSpec;
         var mainSrc = withQueryPrep(mainSpec.evalSource(), mainSpec.fromQuery(), setup.defaultValues, query);
         int rerankCount = resolveRerankCount(setup, query);
@@ -61,9 +76,12 @@ public class GlobalPhaseRanker {
             var normEvalSrc = withQueryPrep(normSpec.evalSource(), normSpec.fromQuery(), setup.defaultValues, query);
             normalizers.add(new NormalizerContext(nSetup.name(), nSetup.supplier().get(), normEvalSrc, normSpec.fromMF()));
         }
-        var rescorer = new HitRescorer(mainSrc, mainSpec.fromMF(), normalizers);
+        int hitCount = Math.max(0, Math.min(rerankCount, result.getConcreteHitCount()));
+        var tasks = parallelRescoring != null ? parallelRescoring.tasksFor(setup, hitCount) : RescoringTasks.sequential();
+        var rescorer = new HitRescorer(mainSrc, mainSpec.fromMF(), normalizers, tasks);
         var reranker = new ResultReranker(rescorer, rerankCount);
         reranker.rerankHits(result);
+        tasks.completed(hitCount);
         removeBelowRankScoreDropLimit(result, rankScoreDropLimit);
         hideImplicitMatchFeatures(result, setup.matchFeaturesToHide);
     }
@@ -89,7 +107,7 @@ public class GlobalPhaseRanker {
     public void rerankHits(Query query, Result result, String schema) {
         var setup = globalPhaseSetupFor(query, schema);
         if (setup.isPresent()) {
-            rerankHitsImpl(setup.get(), query, result);
+            rerankHitsImpl(setup.get(), query, result, parallelRescoring);
         }
     }
 
@@ -126,6 +144,12 @@ public class GlobalPhaseRanker {
         }
     }
 
+    @Override
+    public void deconstruct() {
+        if (parallelRescoring != null)
+            parallelRescoring.shutdown();
+    }
+
     private Optional<GlobalPhaseSetup> globalPhaseSetupFor(Query query, String schema) {
         return factory.evaluatorForSchema(schema)
                 .flatMap(evaluator -> evaluator.getGlobalPhaseSetup(query.getRanking().getProfile()));
@@ -25,6 +25,9 @@ class GlobalPhaseSetup {
     final List<NormalizerSetup> normalizers;
     final Map<String, Tensor> defaultValues;
 
+    /** The estimated time in nanoseconds to rescore a single hit, or 0 if not known yet */
+    private volatile double nanosPerHit = 0;
+
     GlobalPhaseSetup(FunEvalSpec globalPhaseEvalSpec,
                      final int rerankCount,
                      final double rankScoreDropLimit,
@@ -40,6 +43,13 @@ class GlobalPhaseSetup {
         this.defaultValues = defaultValues;
     }
 
+    double nanosPerHit() { return nanosPerHit; }
+
+    /** Updates the estimated time to rescore a single hit with an observed time */
+    void sampleNanosPerHit(double nanos) {
+        nanosPerHit = nanosPerHit == 0 ? nanos : 0.9 * nanosPerHit + 0.1 * nanos;
+    }
+
     static class DefaultQueryFeatureExtractor {
         final String baseName;
         final String qfName;
@@ -3,6 +3,7 @@ package com.yahoo.search.ranking;
 
 import com.yahoo.tensor.Tensor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
@@ -14,20 +15,29 @@ class HitRescorer {
     private final Supplier<Evaluator> mainEvalSrc;
     private final List<MatchFeatureInput> mainFromMF;
     private final List<NormalizerContext> normalizers;
+    private final RescoringTasks tasks;
 
     public HitRescorer(Supplier<Evaluator> mainEvalSrc,
                        List<MatchFeatureInput> mainFromMF,
-                       List<NormalizerContext> normalizers) {
+                       List<NormalizerContext> normalizers,
+                       RescoringTasks tasks) {
         this.mainEvalSrc = mainEvalSrc;
         this.mainFromMF = mainFromMF;
         this.normalizers = normalizers;
+        this.tasks = tasks;
     }
 
-    void preprocess(WrappedHit wrapped) {
+    /** Evaluates the inputs to all normalizers for the given hits */
+    void preprocess(List<WrappedHit> hits) {
         for (var n : normalizers) {
-            var scorer = n.evalSource().get();
-            double val = evalScorer(wrapped, scorer, n.fromMF());
-            wrapped.setIdx(n.normalizer().addInput(val));
+            double[] values = tasks.run(hits, range -> {
+                List<Evaluator> scorers = new ArrayList<>(range.size());
+                for (WrappedHit wrapped : range)
+                    scorers.add(bindMatchFeatures(wrapped, n.evalSource().get(), n.fromMF()));
+                return evaluateAll(scorers);
+            });
+            for (int i = 0; i < hits.size(); i++)
+                hits.get(i).setIdx(n.normalizer().addInput(values[i]));
         }
     }
 
@@ -37,27 +47,49 @@ class HitRescorer {
         }
     }
 
-    double rescoreHit(WrappedHit wrapped) {
-        var scorer = mainEvalSrc.get();
-        for (var n : normalizers) {
-            double normalizedValue = n.normalizer().getOutput(wrapped.getIdx());
-            scorer.bind(n.name(), Tensor.from(normalizedValue));
+    /** Computes and sets the new score of the given hits, and returns the new scores in the same order */
+    double[] rescoreHits(List<WrappedHit> hits) {
+        return tasks.run(hits, this::rescore);
+    }
+
+    private double[] rescore(List<WrappedHit> hits) {
+        List<Evaluator> scorers = new ArrayList<>(hits.size());
+        for (WrappedHit wrapped : hits) {
+            var scorer = mainEvalSrc.get();
+            for (var n : normalizers) {
+                double normalizedValue = n.normalizer().getOutput(wrapped.getIdx());
+                scorer.bind(n.name(), Tensor.from(normalizedValue));
+            }
+            scorers.add(bindMatchFeatures(wrapped, scorer, mainFromMF));
         }
-        double newScore = evalScorer(wrapped, scorer, mainFromMF);
-        wrapped.setScore(newScore);
-        return newScore;
+        double[] newScores = evaluateAll(scorers);
+        for (int i = 0; i < hits.size(); i++)
+            hits.get(i).setScore(newScores[i]);
+        return newScores;
     }
 
-    private static double evalScorer(WrappedHit wrapped, Evaluator scorer, List<MatchFeatureInput> fromMF) {
+    /** Binds the match features of the given hit in the given scorer and returns it, or null if a match feature is missing */
+    private static Evaluator bindMatchFeatures(WrappedHit wrapped, Evaluator scorer, List<MatchFeatureInput> fromMF) {
         for (var argSpec : fromMF) {
             var asTensor = wrapped.getTensor(argSpec.matchFeatureName());
             if (asTensor != null) {
                 scorer.bind(argSpec.inputName(), asTensor);
             } else {
                 logger.warning("Missing match-feature for Evaluator argument: " + argSpec.inputName());
-                return 0.0;
+                return null;
             }
         }
-        return scorer.evaluateScore();
+        return scorer;
+    }
+
+    /** Evaluates the given scorers, with any ONNX models evaluated in a batch, and 0 for scorers which are null */
+    private static double[] evaluateAll(List<Evaluator> scorers) {
+        SimpleEvaluator.evaluateOnnxModels(scorers);
+        double[] values = new double[scorers.size()];
+        for (int i = 0; i < scorers.size(); i++) {
+            var scorer = scorers.get(i);
+            values[i] = scorer == null ? 0.0 : scorer.evaluateScore();
+        }
+        return values;
     }
 }
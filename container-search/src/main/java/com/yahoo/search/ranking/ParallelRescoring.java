@@ -0,0 +1,74 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.ranking;
+
+import ai.vespa.metrics.ContainerMetrics;
+import com.yahoo.concurrent.DaemonThreadFactory;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.config.GlobalPhaseConfig;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The executor shared by all queries for rescoring hits in parallel, which decides how many tasks
+ * the rescoring of each query should be split into.
+ *
+ * Rescoring is split into tasks only when the estimated time to rescore all the hits in one thread
+ * exceeds the configured minimum, and each task rescores at least the configured minimum number of hits.
+ * Tasks which cannot be queued in the executor are run by the query thread.
+ */
+class ParallelRescoring {
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int minHitsPerTask;
+    private final double minParallelNanos;
+
+    private final Counter parallelQueries;
+    private final Gauge parallelTasks;
+    private final Gauge parallelEfficiency;
+
+    ParallelRescoring(GlobalPhaseConfig config, MetricReceiver metric) {
+        this.threads = config.threads();
+        this.minHitsPerTask = Math.max(1, config.minHitsPerTask());
+        this.minParallelNanos = config.minParallelMillis() * 1_000_000;
+        this.executor = new ThreadPoolExecutor(threads - 1, threads - 1, 0, TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(4 * threads),
+                                               new DaemonThreadFactory("global-phase-rescoring-"),
+                                               new ThreadPoolExecutor.CallerRunsPolicy());
+        this.parallelQueries = metric.declareCounter(ContainerMetrics.GLOBAL_PHASE_PARALLEL_QUERIES.baseName());
+        this.parallelTasks = metric.declareGauge(ContainerMetrics.GLOBAL_PHASE_PARALLEL_TASKS.baseName());
+        this.parallelEfficiency = metric.declareGauge(ContainerMetrics.GLOBAL_PHASE_PARALLEL_EFFICIENCY.baseName());
+    }
+
+    /** Returns the tasks to use for rescoring the given number of hits using the given setup */
+    RescoringTasks tasksFor(GlobalPhaseSetup setup, int hitCount) {
+        int taskCount = 1;
+        if (hitCount * setup.nanosPerHit() >= minParallelNanos)
+            taskCount = Math.max(1, Math.min(threads, hitCount / minHitsPerTask));
+        return new RescoringTasks(taskCount, executor, setup, this);
+    }
+
+    /** Records metrics from rescoring which was split into the given number of tasks */
+    void sample(int taskCount, long busyNanos, long wallNanos) {
+        parallelQueries.add();
+        parallelTasks.sample(taskCount);
+        if (wallNanos > 0)
+            parallelEfficiency.sample((double)busyNanos / (wallNanos * taskCount));
+    }
+
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if ( ! executor.awaitTermination(5, TimeUnit.SECONDS))
+                executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.ranking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Runs evaluations over the hits of a single query, either in the query thread, or split into
+ * a number of tasks over contiguous ranges of the hits, where all but the first run in an executor.
+ * Each task creates its own evaluators, so evaluators are never shared between threads.
+ */
+class RescoringTasks {
+
+    private static final RescoringTasks sequential = new RescoringTasks(1, null, null, null);
+
+    private final int taskCount;
+    private final Executor executor;
+    private final GlobalPhaseSetup setup;
+    private final ParallelRescoring parallel;
+
+    private long busyNanos = 0;
+    private long wallNanos = 0;
+
+    RescoringTasks(int taskCount, Executor executor, GlobalPhaseSetup setup, ParallelRescoring parallel) {
+        this.taskCount = taskCount;
+        this.executor = executor;
+        this.setup = setup;
+        this.parallel = parallel;
+    }
+
+    /** Returns tasks which run all evaluation in the calling thread, without measuring it */
+    static RescoringTasks sequential() { return sequential; }
+
+    /**
+     * Applies the given evaluation to ranges of the given hits, and returns the values it produces
+     * for all the hits, in the order of the hits.
+     */
+    double[] run(List<WrappedHit> hits, Function<List<WrappedHit>, double[]> evaluation) {
+        if (setup == null) return evaluation.apply(hits);
+
+        long start = System.nanoTime();
+        int tasks = Math.min(taskCount, hits.size());
+        if (tasks <= 1) {
+            double[] values = evaluation.apply(hits);
+            busyNanos += System.nanoTime() - start;
+            return values;
+        }
+
+        List<CompletableFuture<TaskResult>> futures = new ArrayList<>(tasks - 1);
+        for (int i = 1; i < tasks; i++) {
+            List<WrappedHit> range = rangeOf(hits, i, tasks);
+            futures.add(CompletableFuture.supplyAsync(() -> evaluate(range, evaluation), executor));
+        }
+        TaskResult first = evaluate(rangeOf(hits, 0, tasks), evaluation);
+        double[] values = new double[hits.size()];
+        System.arraycopy(first.values(), 0, values, 0, first.values().length);
+        busyNanos += first.nanos();
+        int offset = first.values().length;
+        for (var future : futures) {
+            TaskResult result = join(future);
+            System.arraycopy(result.values(), 0, values, offset, result.values().length);
+            offset += result.values().length;
+            busyNanos += result.nanos();
+        }
+        wallNanos += System.nanoTime() - start;
+        return values;
+    }
+
+    /** Updates the estimated cost of the setup of these, and samples metrics, after all evaluation of the given hits */
+    void completed(int hitCount) {
+        if (setup == null || hitCount == 0) return;
+        setup.sampleNanosPerHit((double)busyNanos / hitCount);
+        if (taskCount > 1 && wallNanos > 0)
+            parallel.sample(taskCount, busyNanos, wallNanos);
+    }
+
+    private static TaskResult evaluate(List<WrappedHit> hits, Function<List<WrappedHit>, double[]> evaluation) {
+        long start = System.nanoTime();
+        double[] values = evaluation.apply(hits);
+        return new TaskResult(values, System.nanoTime() - start);
+    }
+
+    private static List<WrappedHit> rangeOf(List<WrappedHit> hits, int task, int tasks) {
+        return hits.subList(hits.size() * task / tasks, hits.size() * (task + 1) / tasks);
+    }
+
+    private static TaskResult join(CompletableFuture<TaskResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    private record TaskResult(double[] values, long nanos) { }
+
+}
@@ -49,25 +49,25 @@ class ResultReranker {
     private void runPreProcessing() {
         // we can't be 100% certain that hits were sorted according to relevance:
         hitsToRescore.sort(Comparator.naturalOrder());
-        int count = 0;
-        for (WrappedHit hit : hitsToRescore) {
-            if (count == rerankCount) break;
-            hitRescorer.preprocess(hit);
-            ++count;
-        }
+        hitRescorer.preprocess(hitsToRerank());
     }
 
     private void runProcessing() {
-        int count = 0;
-        for (var iterator = hitsToRescore.iterator(); count < rerankCount && iterator.hasNext(); ) {
-            WrappedHit wrapped = iterator.next();
-            double oldScore = wrapped.getScore();
-            double newScore = hitRescorer.rescoreHit(wrapped);
-            ranges.withInitialScore(oldScore);
-            ranges.withFinalScore(newScore);
-            ++count;
-            iterator.remove();
+        List<WrappedHit> hits = hitsToRerank();
+        double[] oldScores = new double[hits.size()];
+        for (int i = 0; i < hits.size(); i++)
+            oldScores[i] = hits.get(i).getScore();
+        double[] newScores = hitRescorer.rescoreHits(hits);
+        for (int i = 0; i < hits.size(); i++) {
+            ranges.withInitialScore(oldScores[i]);
+            ranges.withFinalScore(newScores[i]);
         }
+        hits.clear(); // removes the reranked hits from hitsToRescore
+    }
+
+    /** Returns a view of the first hits to rescore, which are those that should be reranked */
+    private List<WrappedHit> hitsToRerank() {
+        return hitsToRescore.subList(0, Math.max(0, Math.min(rerankCount, hitsToRescore.size())));
     }
 
     private void runPostProcessing() {
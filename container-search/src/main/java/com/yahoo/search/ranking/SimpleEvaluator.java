@@ -6,6 +6,7 @@ import com.yahoo.search.result.FeatureData;
 import com.yahoo.search.result.Hit;
 import com.yahoo.tensor.Tensor;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -35,6 +36,21 @@ class SimpleEvaluator implements Evaluator {
         return evaluator.evaluate().asDouble();
     }
 
+    /**
+     * Evaluates the ONNX models of those of the given evaluators which are simple evaluators in batches,
+     * such that they are not evaluated one by one when each evaluator is evaluated.
+     * Evaluators may be null, and are then ignored.
+     */
+    static void evaluateOnnxModels(List<Evaluator> evaluators) {
+        List<FunctionEvaluator> functionEvaluators = new ArrayList<>(evaluators.size());
+        for (Evaluator evaluator : evaluators) {
+            if (evaluator instanceof SimpleEvaluator simple)
+                functionEvaluators.add(simple.evaluator);
+        }
+        if (functionEvaluators.size() > 1)
+            FunctionEvaluator.evaluateOnnxModels(functionEvaluators);
+    }
+
     @Override
     public String toString() {
         var buf = new StringBuilder();
@@ -255,7 +255,7 @@ public class FeatureData implements Inspectable, JsonProducer {
     }
 
     private static Tensor tensorFromData(byte[] value) {
-        return TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(value));
+        return TypedBinaryFormat.decodeView(Optional.empty(), GrowableByteBuffer.wrap(value));
     }
 
 }
@@ -0,0 +1,260 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchers;
+
+import ai.vespa.metrics.ContainerMetrics;
+import com.yahoo.component.annotation.Inject;
+import com.yahoo.component.provider.ComponentRegistry;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.prelude.query.textualrepresentation.TextualQueryRepresentation;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.dispatch.Dispatcher;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.PhaseNames;
+import com.yahoo.yolean.chain.After;
+import com.yahoo.yolean.chain.Before;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches complete, filled results of queries, such that repeated queries are answered without dispatching
+ * them to the content nodes again.
+ * <p>
+ * Results are cached by a canonical form of the query: the query tree after transformation, the sources and
+ * restricts searched, the paging, ranking, grouping and presentation of the query, and the remaining request
+ * parameters, except those which do not change the result, like timeout and tracing. Query profile values are
+ * not listed, as they are given by the request parameters for the lifetime of this searcher.
+ * A query is not cached, and not answered from the cache, if it sets noCache or is traced.
+ * Results having errors or degraded coverage are not cached.
+ * <p>
+ * The cache is bounded by the number of results and their total estimated size, evicting the least recently
+ * used results first. Results expire after a configured time, and all results are discarded whenever
+ * {@link Dispatcher#contentGeneration()} changes for any of the content clusters of this container. That only
+ * happens when nodes, their working state or their number of active documents change, so writes which leave
+ * the document count unchanged, like updates and replacing puts, are only reflected once results expire:
+ * The configured time to live is the bound on how stale results may be.
+ * <p>
+ * Results from the cache are cloned, such that each query gets its own hit and group structure, while
+ * the field values of hits are shared. Hits returned from the cache are marked as cached.
+ * <p>
+ * Metrics: This emits the counts of queries answered from the cache and not, the hit ratio, and the number of
+ * results in the cache and their total estimated size.
+ * <p>
+ * This searcher is not included in any search chain by default.
+ */
+@After(PhaseNames.TRANSFORMED_QUERY)
+@Before(PhaseNames.BLENDED_RESULT)
+public class ResultCacheSearcher extends Searcher {
+
+    /** Request parameters which do not influence the result, and are therefore not part of the cache key */
+    private static final Set<String> ignoredProperties = Set.of("timeout", "nocache", "tracelevel", "explainlevel",
+                                                                "yql", "query", "model.querystring");
+    private static final String ignoredPropertyPrefix = "trace.";
+
+    private final LongSupplier contentGeneration;
+    private final Clock clock;
+    private final Duration ttl;
+    private final Cache cache;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Gauge hitRatioGauge;
+    private final Gauge entriesGauge;
+    private final Gauge sizeGauge;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, ComponentRegistry<Dispatcher> dispatchers, MetricReceiver metric) {
+        this(config, () -> contentGenerationOf(dispatchers), metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of the content generation and a clock */
+    public ResultCacheSearcher(ResultCacheConfig config, LongSupplier contentGeneration, MetricReceiver metric, Clock clock) {
+        this.contentGeneration = contentGeneration;
+        this.clock = clock;
+        this.ttl = Duration.ofMillis((long)(config.ttlSeconds() * 1000));
+        this.cache = new Cache(config.maxEntries(), config.maxSizeBytes());
+        this.hitCounter = metric.declareCounter(ContainerMetrics.QUERY_RESULT_CACHE_HITS.baseName());
+        this.missCounter = metric.declareCounter(ContainerMetrics.QUERY_RESULT_CACHE_MISSES.baseName());
+        this.hitRatioGauge = metric.declareGauge(ContainerMetrics.QUERY_RESULT_CACHE_HIT_RATIO.baseName());
+        this.entriesGauge = metric.declareGauge(ContainerMetrics.QUERY_RESULT_CACHE_ENTRIES.baseName());
+        this.sizeGauge = metric.declareGauge(ContainerMetrics.QUERY_RESULT_CACHE_SIZE.baseName());
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache() || query.getTrace().isTraceable(1))
+            return execution.search(query);
+
+        String key = keyOf(query);
+        long generation = contentGeneration.getAsLong();
+        Instant now = clock.instant();
+        Result cached = cache.get(key, generation, now);
+        if (cached != null) {
+            hitCounter.add();
+            hitRatioGauge.sample(1);
+            Result result = cached.clone();
+            result.setQuery(query);
+            return result;
+        }
+
+        missCounter.add();
+        hitRatioGauge.sample(0);
+        Result result = execution.search(query);
+        execution.fill(result, query.getPresentation().getSummary());
+        if (isCacheable(result)) {
+            Result stored = result.clone();
+            markCached(stored.hits());
+            cache.put(key, stored, estimateSizeOf(stored.hits()), generation, now.plus(ttl));
+        }
+        entriesGauge.sample(cache.entries());
+        sizeGauge.sample(cache.sizeBytes());
+        return result;
+    }
+
+    /** Returns the canonical form of the given query, which is equal for all queries which will produce the same result */
+    static String keyOf(Query query) {
+        StringBuilder key = new StringBuilder();
+        key.append("tree: ").append(new TextualQueryRepresentation(query.getModel().getQueryTree().getRoot())).append('\n');
+        key.append("sources: ").append(new TreeSet<>(query.getModel().getSources())).append('\n');
+        key.append("restrict: ").append(new TreeSet<>(query.getModel().getRestrict())).append('\n');
+        key.append("hits: ").append(query.getHits()).append(", offset: ").append(query.getOffset()).append('\n');
+        key.append("profile: ").append(query.getRanking().getProfile()).append('\n');
+        key.append("sorting: ").append(query.getRanking().getSorting()).append('\n');
+        key.append("features: ").append(query.getRanking().getFeatures()).append('\n');
+        key.append("rank properties: ").append(query.getRanking().getProperties()).append('\n');
+        for (GroupingRequest request : query.getSelect().getGrouping())
+            key.append("grouping: ").append(request).append('\n');
+        key.append("summary: ").append(query.getPresentation().getSummary()).append('\n');
+        key.append("summary fields: ").append(query.getPresentation().getSummaryFields()).append('\n');
+        Map<String, String> parameters = new TreeMap<>();
+        query.getHttpRequest().propertyMap().forEach((name, value) -> {
+            String normalized = name.toLowerCase();
+            if (value != null && ! ignoredProperties.contains(normalized) && ! normalized.startsWith(ignoredPropertyPrefix))
+                parameters.put(name, value);
+        });
+        parameters.forEach((name, value) -> key.append(name).append('=').append(value).append('\n'));
+        return key.toString();
+    }
+
+    private static boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        return coverage == null || ! coverage.isDegraded();
+    }
+
+    private static void markCached(HitGroup hits) {
+        for (Hit hit : hits) {
+            if (hit instanceof HitGroup group)
+                markCached(group);
+            else
+                hit.setCached(true);
+        }
+    }
+
+    /** Returns a rough estimate of the heap size of the given hits, including the field values of each hit */
+    private static long estimateSizeOf(HitGroup hits) {
+        long size = 128;
+        for (Hit hit : hits) {
+            if (hit instanceof HitGroup group) {
+                size += estimateSizeOf(group);
+            }
+            else {
+                size += 256;
+                for (Map.Entry<String, Object> field : hit.fields().entrySet())
+                    size += 48 + 2L * field.getKey().length() + estimateSizeOf(field.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSizeOf(Object value) {
+        if (value instanceof CharSequence text) return 40 + 2L * text.length();
+        if (value instanceof byte[] bytes) return 16 + bytes.length;
+        return 64;
+    }
+
+    private static long contentGenerationOf(ComponentRegistry<Dispatcher> dispatchers) {
+        // Each generation only increases, so their sum changes whenever any of them does
+        long generation = 0;
+        for (Dispatcher dispatcher : dispatchers.allComponents())
+            generation += dispatcher.contentGeneration();
+        return generation;
+    }
+
+    /** A cache of results bounded by count and total size, which evicts the least recently used results first. */
+    private static class Cache {
+
+        private record Entry(Result result, long sizeBytes, Instant expiry) { }
+
+        private final int maxEntries;
+        private final long maxSizeBytes;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long sizeBytes = 0;
+        private long generation = Long.MIN_VALUE;
+
+        Cache(int maxEntries, long maxSizeBytes) {
+            this.maxEntries = maxEntries;
+            this.maxSizeBytes = maxSizeBytes;
+        }
+
+        /** Returns the cached result for the given key, or null if none is cached for this generation at this time */
+        synchronized Result get(String key, long generation, Instant now) {
+            invalidateIfChanged(generation);
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if ( ! now.isBefore(entry.expiry())) {
+                remove(key);
+                return null;
+            }
+            return entry.result();
+        }
+
+        synchronized void put(String key, Result result, long sizeBytes, long generation, Instant expiry) {
+            if (sizeBytes > maxSizeBytes || maxEntries < 1) return;
+            invalidateIfChanged(generation);
+            remove(key);
+            entries.put(key, new Entry(result, sizeBytes, expiry));
+            this.sizeBytes += sizeBytes;
+            for (Iterator<Entry> lru = entries.values().iterator(); entries.size() > maxEntries || this.sizeBytes > maxSizeBytes; ) {
+                this.sizeBytes -= lru.next().sizeBytes();
+                lru.remove();
+            }
+        }
+
+        synchronized int entries() { return entries.size(); }
+
+        synchronized long sizeBytes() { return sizeBytes; }
+
+        private void remove(String key) {
+            Entry removed = entries.remove(key);
+            if (removed != null)
+                sizeBytes -= removed.sizeBytes();
+        }
+
+        private void invalidateIfChanged(long generation) {
+            if (generation == this.generation) return;
+            entries.clear();
+            sizeBytes = 0;
+            this.generation = generation;
+        }
+
+    }
+
+}
@@ -0,0 +1,360 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import ai.vespa.metrics.ContainerMetrics;
+import com.google.common.collect.ImmutableMap;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of parsed YQL programs, which avoids parsing programs which differ from an earlier one
+ * only in the values of their literals.
+ * <p>
+ * Programs are cached by their sequence of tokens, where each literal is replaced by its type. When a program is
+ * found in the cache, it is produced from the cached program by replacing the values of its literals.
+ * Before a parsed program is used as a template in this way, it is verified by parsing the program again
+ * with a distinct value for each literal, and checking that this gives the template with those values substituted.
+ * Programs which do not pass this are always parsed in full.
+ * <p>
+ * To avoid parsing twice the first time programs which are never repeated are seen, a template is only
+ * created the second time a program of some form is seen.
+ * <p>
+ * This is thread safe.
+ */
+final class ProgramCache {
+
+    private static final String programName = "query";
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Gauge entriesGauge;
+
+    ProgramCache(int maxEntries, MetricReceiver metric) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) { return size() > maxEntries; }
+        };
+        this.hitCounter = metric.declareCounter(ContainerMetrics.YQL_TEMPLATE_CACHE_HITS.baseName());
+        this.missCounter = metric.declareCounter(ContainerMetrics.YQL_TEMPLATE_CACHE_MISSES.baseName());
+        this.entriesGauge = metric.declareGauge(ContainerMetrics.YQL_TEMPLATE_CACHE_ENTRIES.baseName());
+    }
+
+    /** Returns the result of parsing the given YQL program, which is the same as ProgramParser would return */
+    OperatorNode<StatementOperator> parse(String program) throws IOException, RecognitionException {
+        Form form = Form.of(program);
+        if (form == null) return parseFully(program); // Invalid: Leave it to the parser to explain why
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(form.key());
+        }
+        if (entry != null && entry.template() != null) {
+            if ( ! entry.template().accepts(form.literals())) { // Keep the template, which fits this form in general
+                missCounter.add();
+                return parseFully(program);
+            }
+            hitCounter.add();
+            return entry.template().instantiate(form.literals());
+        }
+
+        missCounter.add();
+        OperatorNode<StatementOperator> parsed = parseFully(program);
+        if (entry == null)
+            put(form.key(), new Entry(null, false));
+        else if ( ! entry.rejected())
+            put(form.key(), Template.create(parsed, form));
+        return parsed;
+    }
+
+    /** Returns the number of program forms in this */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        int size;
+        synchronized (entries) {
+            entries.put(key, entry);
+            size = entries.size();
+        }
+        entriesGauge.sample(size);
+    }
+
+    private static OperatorNode<StatementOperator> parseFully(String program) throws IOException, RecognitionException {
+        return new ProgramParser().parse(programName, program);
+    }
+
+    /**
+     * A program form: Its tokens with literals replaced by their types, and the values of those literals.
+     *
+     * @param key a string representation of the tokens of the program, with literals replaced by their types
+     * @param literals the values of the literals of the program, in order
+     * @param tokens all the tokens of the program, including whitespace and comments
+     * @param literalTokens the indexes in tokens of the literals of the program
+     */
+    private record Form(String key, List<Object> literals, List<Token> tokens, int[] literalTokens) {
+
+        /** Returns the form of the given program, or null if it cannot be tokenized */
+        static Form of(String program) {
+            try {
+                return tokenize(program);
+            }
+            catch (RuntimeException e) { // E.g. an integer literal which is too large
+                return null;
+            }
+        }
+
+        private static Form tokenize(String program) {
+            yqlplusLexer lexer = new yqlplusLexer(new CaseInsensitiveCharStream(CharStreams.fromString(program)));
+            ErrorListener errors = new ErrorListener();
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(errors);
+
+            StringBuilder key = new StringBuilder(program.length() + 16);
+            List<Object> literals = new ArrayList<>();
+            List<Token> tokens = new ArrayList<>();
+            int[] literalTokens = new int[8];
+            for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+                tokens.add(token);
+                if (token.getChannel() != Token.DEFAULT_CHANNEL) continue;
+                key.append(token.getType());
+                if (isLiteral(token.getType())) {
+                    if (literals.size() == literalTokens.length)
+                        literalTokens = Arrays.copyOf(literalTokens, literalTokens.length * 2);
+                    literalTokens[literals.size()] = tokens.size() - 1;
+                    literals.add(ProgramParser.literalValue(token.getType(), token.getText()));
+                    key.append('?');
+                }
+                else {
+                    key.append(':').append(token.getText().length()).append(':').append(token.getText());
+                }
+            }
+            if (errors.failed) return null;
+            return new Form(key.toString(), literals, tokens, Arrays.copyOf(literalTokens, literals.size()));
+        }
+
+        /** Returns the text of this program with the literal values replaced by the given token texts */
+        String withLiterals(List<String> literalTexts) {
+            StringBuilder b = new StringBuilder();
+            int nextLiteral = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                if (nextLiteral < literalTokens.length && literalTokens[nextLiteral] == i)
+                    b.append(literalTexts.get(nextLiteral++));
+                else
+                    b.append(tokens.get(i).getText());
+            }
+            return b.toString();
+        }
+
+        int literalType(int literal) { return tokens.get(literalTokens[literal]).getType(); }
+
+        private static boolean isLiteral(int tokenType) {
+            return tokenType == yqlplusParser.INT || tokenType == yqlplusParser.LONG_INT ||
+                   tokenType == yqlplusParser.FLOAT || tokenType == yqlplusParser.STRING;
+        }
+
+    }
+
+    /**
+     * A cache entry.
+     *
+     * @param template the template of this program form, or null if none
+     * @param rejected whether no template can be created for this form
+     */
+    private record Entry(Template template, boolean rejected) { }
+
+    /**
+     * A parsed program, and the positions of its literal values.
+     * A position is the index of the value in the order values are visited in the program tree.
+     */
+    private static final class Template {
+
+        private final OperatorNode<StatementOperator> program;
+
+        /** The literal number at each value position, or -1 if the value at that position is not a literal */
+        private final int[] literalAt;
+
+        /** The class of the value of each literal in the program */
+        private final List<Class<?>> literalClasses;
+
+        private Template(OperatorNode<StatementOperator> program, int[] literalAt, List<Class<?>> literalClasses) {
+            this.program = program;
+            this.literalAt = literalAt;
+            this.literalClasses = literalClasses;
+        }
+
+        /**
+         * Returns whether this can be instantiated with the given literal values, which is when each has the same class
+         * as the value this was created with. The parser may treat values differently by class, e.g. reject integer
+         * literals which are too large for an int where an int is expected, so other values need a full parse.
+         */
+        boolean accepts(List<Object> literals) {
+            for (int i = 0; i < literals.size(); i++)
+                if (literals.get(i).getClass() != literalClasses.get(i)) return false;
+            return true;
+        }
+
+        /** Returns this program with the given literal values */
+        OperatorNode<StatementOperator> instantiate(List<Object> literals) {
+            return new Substitution(literalAt, literals).apply(program);
+        }
+
+        /** Returns an entry with a template created from the given parsed program, or a rejected entry if it fails verification */
+        static Entry create(OperatorNode<StatementOperator> program, Form form) {
+            try {
+                List<String> probeTexts = new ArrayList<>(form.literals().size());
+                List<Object> probeValues = new ArrayList<>(form.literals().size());
+                for (int i = 0; i < form.literals().size(); i++) {
+                    String probeText = probeText(form.literalType(i), form.literals().get(i), i);
+                    probeTexts.add(probeText);
+                    probeValues.add(ProgramParser.literalValue(form.literalType(i), probeText));
+                }
+                OperatorNode<StatementOperator> probe = parseFully(form.withLiterals(probeTexts));
+
+                List<Object> values = new ArrayList<>();
+                collectValues(probe, values);
+                int[] literalAt = new int[values.size()];
+                Arrays.fill(literalAt, -1);
+                for (int i = 0; i < probeValues.size(); i++) {
+                    int position = uniquePositionOf(probeValues.get(i), values);
+                    if (position < 0) return new Entry(null, true);
+                    literalAt[position] = i;
+                }
+
+                Template template = new Template(probe, literalAt, probeValues.stream().<Class<?>>map(Object::getClass).toList());
+                if ( ! template.instantiate(form.literals()).equals(program)) return new Entry(null, true);
+                return new Entry(template, false);
+            }
+            catch (Exception e) { // The probe program may be invalid
+                return new Entry(null, true);
+            }
+        }
+
+        /** Returns the text of a literal of the given type which has a different value than the given one */
+        private static String probeText(int tokenType, Object value, int literal) {
+            return switch (tokenType) {
+                case yqlplusParser.INT -> value instanceof Integer ? String.valueOf(1000003 + literal * 2)
+                                                                   : String.valueOf(100000000003L + literal * 2);
+                case yqlplusParser.LONG_INT -> (100000000003L + literal * 2) + "L";
+                case yqlplusParser.FLOAT -> (1000003 + literal * 2) + ".5";
+                case yqlplusParser.STRING -> "\"yql-template-probe-" + literal + "\"";
+                default -> throw new IllegalArgumentException("Unexpected literal type " + tokenType);
+            };
+        }
+
+        private static int uniquePositionOf(Object value, List<Object> values) {
+            int position = -1;
+            for (int i = 0; i < values.size(); i++) {
+                if ( ! value.equals(values.get(i))) continue;
+                if (position >= 0) return -1;
+                position = i;
+            }
+            return position;
+        }
+
+        /** Adds the values in the given program tree to the given list, in the order visited by Substitution */
+        private static void collectValues(Object node, List<Object> values) {
+            if (node instanceof OperatorNode<?> operatorNode) {
+                for (Object annotation : operatorNode.getAnnotations().values())
+                    collectValues(annotation, values);
+                for (Object argument : operatorNode.getArguments())
+                    collectValues(argument, values);
+            }
+            else if (node instanceof List<?> list) {
+                for (Object element : list)
+                    collectValues(element, values);
+            }
+            else if (node instanceof Map<?, ?> map) {
+                for (Object value : map.values())
+                    collectValues(value, values);
+            }
+            else {
+                values.add(node);
+            }
+        }
+
+    }
+
+    /** Creates a copy of a program tree where values at given positions are replaced by literals */
+    private static final class Substitution {
+
+        private final int[] literalAt;
+        private final List<Object> literals;
+        private int position = 0;
+
+        Substitution(int[] literalAt, List<Object> literals) {
+            this.literalAt = literalAt;
+            this.literals = literals;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T extends Operator> OperatorNode<T> apply(OperatorNode<T> node) {
+            Map<String, Object> annotations = node.getAnnotations();
+            if ( ! annotations.isEmpty()) {
+                ImmutableMap.Builder<String, Object> substituted = ImmutableMap.builder();
+                for (Map.Entry<String, Object> annotation : annotations.entrySet())
+                    substituted.put(annotation.getKey(), substitute(annotation.getValue()));
+                annotations = substituted.build();
+            }
+            Object[] arguments = node.getArguments();
+            for (int i = 0; i < arguments.length; i++)
+                arguments[i] = substitute(arguments[i]);
+            return OperatorNode.create(node.getLocation(), annotations, node.getOperator(), arguments);
+        }
+
+        private Object substitute(Object node) {
+            if (node instanceof OperatorNode<?> operatorNode) {
+                return apply(operatorNode);
+            }
+            else if (node instanceof List<?> list) {
+                List<Object> substituted = new ArrayList<>(list.size());
+                for (Object element : list)
+                    substituted.add(substitute(element));
+                return substituted;
+            }
+            else if (node instanceof Map<?, ?> map) {
+                ImmutableMap.Builder<Object, Object> substituted = ImmutableMap.builder();
+                for (Map.Entry<?, ?> entry : map.entrySet())
+                    substituted.put(entry.getKey(), substitute(entry.getValue()));
+                return substituted.build();
+            }
+            else {
+                int literal = literalAt[position++];
+                return literal < 0 ? node : literals.get(literal);
+            }
+        }
+
+    }
+
+    private static class ErrorListener extends BaseErrorListener {
+
+        boolean failed = false;
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+                                String message, RecognitionException e) {
+            failed = true;
+        }
+
+    }
+
+}
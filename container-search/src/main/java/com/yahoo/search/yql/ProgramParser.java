@@ -886,9 +886,12 @@ final class ProgramParser {
 	}
 
     public Object convertLiteral(Scalar_literalContext literal) {
-        int parseTreeIndex = getParseTreeIndex(literal.getChild(0));
-        String text = literal.getChild(0).getText();
-        switch(parseTreeIndex) {
+        return literalValue(getParseTreeIndex(literal.getChild(0)), literal.getChild(0).getText());
+    }
+
+    /** Returns the value of a literal token of the given type, or throws if the type is not a literal type */
+    static Object literalValue(int tokenType, String text) {
+        switch(tokenType) {
             case yqlplusParser.INT:
                 long as_long = Long.parseLong(text);
                 int as_int = (int)as_long;
@@ -229,6 +229,7 @@ public class YqlParser implements Parser {
     private Sorting sorting;
     private boolean queryParser = true;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
+    private ProgramCache programCache = null;
     private final ParserEnvironment environment;
 
     private static final QueryVisitor noEmptyTerms = new QueryVisitor() {
@@ -906,7 +907,8 @@ public class YqlParser implements Parser {
     private OperatorNode<?> parseYqlProgram() {
         OperatorNode<?> ast;
         try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
+            ast = programCache != null ? programCache.parse(currentlyParsing.getQuery())
+                                       : new ProgramParser().parse("query", currentlyParsing.getQuery());
         } catch (Exception e) {
             throw new IllegalInputException(e);
         }
@@ -1712,6 +1714,9 @@ public class YqlParser implements Parser {
     @Beta
     public void setUserQuery(Query userQuery) { this.userQuery = userQuery; }
 
+    /** Sets the cache to use when parsing programs, or null to parse all programs in full (the default) */
+    void setProgramCache(ProgramCache programCache) { this.programCache = programCache; }
+
     @Beta
     public Set<String> getYqlSummaryFields() { return yqlSummaryFields; }
 
@@ -22,6 +22,7 @@ import com.yahoo.search.grouping.vespa.GroupingExecutor;
 import com.yahoo.search.query.Model;
 import com.yahoo.search.query.Ranking;
 import com.yahoo.searchlib.aggregation.Grouping;
+import com.yahoo.searchlib.aggregation.GroupingReducer;
 import com.yahoo.vdslib.DocumentSummary;
 import com.yahoo.vdslib.SearchResult;
 import com.yahoo.vdslib.VisitorStatistics;
@@ -30,12 +31,10 @@ import com.yahoo.vespa.objects.BufferSerializer;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -63,13 +62,12 @@ class StreamingVisitor extends VisitorDataHandler implements Visitor {
 
     private static final Logger log = Logger.getLogger(StreamingVisitor.class.getName());
     private final VisitorParameters params = new VisitorParameters("");
-    private List<SearchResult.Hit> hits = new ArrayList<>();
     private final Set<String> errors = new TreeSet<>();
     private int totalHitCount = 0;
 
-    private final Map<String, DocumentSummary.Summary> summaryMap = new HashMap<>();
-    private final Map<Integer, Grouping> groupingMap = new ConcurrentHashMap<>();
+    private final Map<Integer, GroupingReducer> groupingMap = new ConcurrentHashMap<>();
     private Query query = null;
+    private final TopHits topHits;
     private final VisitorSessionFactory visitorSessionFactory;
     private final int traceLevelOverride;
     private Trace sessionTrace;
@@ -83,6 +81,7 @@ class StreamingVisitor extends VisitorDataHandler implements Visitor {
                             Visitor.Context context)
     {
         this.query = query;
+        this.topHits = new TopHits(query.getOffset() + query.getHits());
         this.visitorSessionFactory = visitorSessionFactory;
         this.traceLevelOverride = context.traceLevelOverride();
         setVisitorParameters(route, context);
@@ -321,22 +320,19 @@ class StreamingVisitor extends VisitorDataHandler implements Visitor {
     }
 
     public void onQueryResult(SearchResult sr, DocumentSummary summary) {
-        handleSearchResult(sr);
-        handleSummary(summary);
+        handleSearchResult(sr, summary);
     }
 
-    private void handleSearchResult(SearchResult result) {
+    private void handleSearchResult(SearchResult result, DocumentSummary summary) {
         log.log(Level.FINE, () -> "Got SearchResult with " + result.getTotalHitCount() +
                                   " in total and " + result.getHitCount() +
                                   " hits in real for query with selection " + params.getDocumentSelection());
+        log.log(Level.FINE, () -> "Got DocumentSummary with " + summary.getSummaryCount() +
+                                  " summaries for query with selection " + params.getDocumentSelection());
 
-        List<SearchResult.Hit> newHits = new ArrayList<>(result.getHitCount());
-        for (int i = 0; i < result.getHitCount(); i++)
-            newHits.add(result.getHit(i));
-
+        topHits.add(result, summary);
         synchronized (this) {
             totalHitCount += result.getTotalHitCount();
-            hits = ListMerger.mergeIntoArrayList(hits, newHits, query.getOffset() + query.getHits());
             var newErrors = result.getErrors();
             for (var error : newErrors) {
                 errors.add(error);
@@ -359,50 +355,33 @@ class StreamingVisitor extends VisitorDataHandler implements Visitor {
                 throw new IllegalArgumentException("Failed deserializing grouping. There is still data left. " +
                                                    "Position = " + buf.position() + ", limit = " + buf.getBuf().limit());
             }
-
-            synchronized (groupingMap) {
-                if (groupingMap.containsKey(key)) {
-                    Grouping grouping = groupingMap.get(key);
-                    grouping.merge(newGrouping);
-                } else {
-                    groupingMap.put(key, newGrouping);
-                }
-            }
-        }
-    }
-
-    private void handleSummary(DocumentSummary ds) {
-        int summaryCount = ds.getSummaryCount();
-        log.log(Level.FINE, () -> "Got DocumentSummary with " + summaryCount + " summaries for query with selection " +
-                                  params.getDocumentSelection());
-        synchronized (summaryMap) {
-            for (int i = 0; i < summaryCount; i++) {
-                DocumentSummary.Summary summary = ds.getSummary(i);
-                summaryMap.put(summary.getDocId(), summary);
-            }
+            groupingMap.computeIfAbsent(key, __ -> new GroupingReducer()).add(newGrouping);
         }
     }
 
     @Override
     final public List<SearchResult.Hit> getHits() {
+        List<SearchResult.Hit> hits = topHits.hits();
         int fromIndex = Math.min(hits.size(), query.getOffset());
         int toIndex = Math.min(hits.size(), query.getOffset() + query.getHits());
         return hits.subList(fromIndex, toIndex);
     }
 
     @Override
-    final public Map<String, DocumentSummary.Summary> getSummaryMap() { return summaryMap; }
+    final public Map<String, DocumentSummary.Summary> getSummaryMap() { return topHits.summaries(); }
 
     @Override
     final public int getTotalHitCount() { return totalHitCount; }
 
     @Override
     final public List<Grouping> getGroupings() {
-        Collection<Grouping> groupings = groupingMap.values();
-        for (Grouping g : groupings) {
+        List<Grouping> groupings = new ArrayList<>(groupingMap.size());
+        for (GroupingReducer reducer : groupingMap.values()) {
+            Grouping g = reducer.result();
             g.postMerge();
+            groupings.add(g);
         }
-        return new ArrayList<>(groupings);
+        return groupings;
     }
 
     @Override
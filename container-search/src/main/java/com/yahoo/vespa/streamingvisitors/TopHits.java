@@ -0,0 +1,113 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.streamingvisitors;
+
+import com.yahoo.vdslib.DocumentSummary;
+import com.yahoo.vdslib.SearchResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The best hits of the search results received by a streaming visitor, and the summaries of those hits.
+ * <p>
+ * At most a given number of hits is kept, in a heap with the worst hit on top. As the hits of each
+ * search result are sorted, adding a result stops at the first hit which is not better than the worst hit kept.
+ * Summaries are only kept for hits which are kept, and are dropped when their hit is pushed out by better ones.
+ * <p>
+ * This is thread safe. Hits which are not better than the worst hit kept when last seen are rejected
+ * without taking the lock, such that results with no competitive hits do not contend for it.
+ */
+final class TopHits {
+
+    /** Orders entries worst first, where the later of equal hits is worse */
+    private static final Comparator<Entry> worstFirst = (a, b) -> {
+        int comparison = b.hit().compareTo(a.hit());
+        return comparison != 0 ? comparison : Long.compare(b.sequence(), a.sequence());
+    };
+
+    private final int maxHits;
+    private final PriorityQueue<Entry> heap;
+    private final Map<String, DocumentSummary.Summary> summaries = new HashMap<>();
+
+    /** The number of kept hits having each document id */
+    private final Map<String, Integer> keptDocuments = new HashMap<>();
+
+    /** The worst hit kept if there are maxHits hits, or null if there are fewer */
+    private volatile SearchResult.Hit cutoff = null;
+    private long sequence = 0;
+
+    TopHits(int maxHits) {
+        this.maxHits = maxHits;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(maxHits, 1024)), worstFirst);
+    }
+
+    /** Adds the hits of the given result, sorted best first, and the given summaries of those hits */
+    void add(SearchResult result, DocumentSummary summary) {
+        int candidates = countCandidates(result);
+        if (candidates == 0) return;
+
+        synchronized (this) {
+            for (int i = 0; i < candidates; i++) {
+                if ( ! offer(result.getHit(i))) break;
+            }
+            for (int i = 0; i < summary.getSummaryCount(); i++) {
+                DocumentSummary.Summary documentSummary = summary.getSummary(i);
+                if (keptDocuments.containsKey(documentSummary.getDocId()))
+                    summaries.put(documentSummary.getDocId(), documentSummary);
+            }
+        }
+    }
+
+    /** Returns the number of leading hits in the given result which are better than the current cutoff */
+    private int countCandidates(SearchResult result) {
+        SearchResult.Hit cutoff = this.cutoff;
+        int candidates = 0;
+        while (candidates < result.getHitCount() && candidates < maxHits &&
+               (cutoff == null || result.getHit(candidates).compareTo(cutoff) < 0))
+            candidates++;
+        return candidates;
+    }
+
+    /** Adds the given hit if it is better than the worst hit kept. Returns whether it was added. */
+    private boolean offer(SearchResult.Hit hit) {
+        if (heap.size() == maxHits) {
+            Entry worst = heap.peek();
+            if (worst == null || hit.compareTo(worst.hit()) >= 0) return false;
+            heap.poll();
+            release(worst.hit().getDocId());
+        }
+        heap.add(new Entry(hit, sequence++));
+        keptDocuments.merge(hit.getDocId(), 1, Integer::sum);
+        cutoff = heap.size() == maxHits ? heap.peek().hit() : null;
+        return true;
+    }
+
+    private void release(String docId) {
+        if (keptDocuments.merge(docId, -1, Integer::sum) == 0) {
+            keptDocuments.remove(docId);
+            summaries.remove(docId);
+        }
+    }
+
+    /** Returns the hits kept, best first */
+    synchronized List<SearchResult.Hit> hits() {
+        List<Entry> entries = new ArrayList<>(heap);
+        entries.sort(worstFirst.reversed());
+        List<SearchResult.Hit> hits = new ArrayList<>(entries.size());
+        for (Entry entry : entries)
+            hits.add(entry.hit());
+        return hits;
+    }
+
+    /** Returns the summaries of the hits kept, by document id */
+    synchronized Map<String, DocumentSummary.Summary> summaries() {
+        return new HashMap<>(summaries);
+    }
+
+    private record Entry(SearchResult.Hit hit, long sequence) { }
+
+}
@@ -2,8 +2,10 @@
 package com.yahoo.search.ranking;
 
 import com.yahoo.data.access.helpers.MatchFeatureData;
+import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.config.GlobalPhaseConfig;
 import com.yahoo.search.result.FeatureData;
 import com.yahoo.search.result.Hit;
 import com.yahoo.tensor.Tensor;
@@ -349,4 +351,33 @@ public class GlobalPhaseRerankHitsImplTest {
         expect.verifyScores(result);
     }
 
+    @Test
+    void rescoringInParallelGivesTheSameScores() {
+        var metric = new MetricReceiver.MockReceiver();
+        var config = new GlobalPhaseConfig.Builder().threads(4).minHitsPerTask(10).minParallelMillis(0).build();
+        var parallel = new ParallelRescoring(config, metric);
+        try {
+            var setup = setup().eval(makeSumSpec(List.of(), List.of("bar"))).rerank(95).build();
+            var query = makeQuery(List.of());
+            var factory = new HitFactory(List.of("bar"));
+            List<Hit> hits = new ArrayList<>();
+            List<Hit> expected = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                hits.add(factory.create("hit" + i, i, List.of(value("bar", 1000 - i))));
+                expected.add(hit("hit" + i, i < 5 ? i : 1000 - i));
+            }
+            var result = makeResult(query, hits);
+            GlobalPhaseRanker.rerankHitsImpl(setup, query, result, parallel);
+            Expect.make(expected).verifyScores(result);
+            assertTrue(setup.nanosPerHit() > 0);
+
+            var snapshot = metric.getSnapshot();
+            assertEquals(1, snapshot.getMapForMetric("global_phase.parallel_queries").values().iterator().next().getCount());
+            assertEquals(4, snapshot.getMapForMetric("global_phase.parallel_tasks").values().iterator().next().getMax());
+        }
+        finally {
+            parallel.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,200 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchers.test;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.Bucket;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.UntypedMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.grouping.GroupingQueryParser;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchers.ResultCacheSearcher;
+import com.yahoo.test.ManualClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the result cache searcher.
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final AtomicLong generation = new AtomicLong();
+    private final MetricReceiver.MockReceiver metric = new MetricReceiver.MockReceiver();
+    private final BackendSearcher backend = new BackendSearcher();
+
+    @Test
+    void testRepeatedQueriesAreAnsweredFromCache() {
+        Chain<Searcher> chain = createChain(100, 100000000L);
+        Result first = search(chain, query("/search/?query=foo&timeout=1s"));
+        assertEquals(1, backend.searches);
+        assertFalse(first.hits().get(0).isCached());
+
+        Query query = query("/search/?query=foo&timeout=2s&tracelevel=0");
+        Result second = search(chain, query);
+        assertEquals(1, backend.searches, "Timeout does not change the result");
+        assertSame(query, second.getQuery());
+        assertEquals(first.hits().size(), second.hits().size());
+        assertEquals(first.getTotalHitCount(), second.getTotalHitCount());
+        assertTrue(second.hits().get(0).isCached());
+        assertEquals("foo", second.hits().get(0).getField("text"));
+
+        // Modifying a result from the cache does not change the cached result
+        second.hits().get(0).setField("text", "modified");
+        second.hits().remove(1);
+        Result third = search(chain, query("/search/?query=foo"));
+        assertEquals(1, backend.searches);
+        assertNotSame(second.hits().get(0), third.hits().get(0));
+        assertEquals("foo", third.hits().get(0).getField("text"));
+        assertEquals(first.hits().size(), third.hits().size());
+
+        Bucket snapshot = metric.getSnapshot();
+        assertEquals(2, count(snapshot, "query_result_cache.hits"));
+        assertEquals(1, count(snapshot, "query_result_cache.misses"));
+        assertEquals(2.0 / 3, snapshot.getMapForMetric("query_result_cache.hit_ratio").values().iterator().next().getSum() / 3, 1e-9);
+    }
+
+    @Test
+    void testQueriesWhichMayProduceDifferentResultsAreNotAnsweredFromCache() {
+        Chain<Searcher> chain = createChain(100, 100000000L);
+        search(chain, query("/search/?query=foo"));
+        search(chain, query("/search/?query=bar"));
+        search(chain, query("/search/?query=foo&hits=5"));
+        search(chain, query("/search/?query=foo&offset=5"));
+        search(chain, query("/search/?query=foo&ranking=other"));
+        search(chain, query("/search/?query=foo&ranking.features.query(x)=1"));
+        search(chain, query("/search/?query=foo&ranking.properties.p=1"));
+        search(chain, query("/search/?query=foo&sorting=-year"));
+        search(chain, query("/search/?query=foo&sources=music"));
+        search(chain, query("/search/?query=foo&summary=short"));
+        search(chain, query("/search/?query=foo&select=all(group(a)%20each(output(count())))"));
+        search(chain, query("/search/?query=foo&myParameter=1"));
+        assertEquals(12, backend.searches);
+
+        search(chain, query("/search/?query=foo&myParameter=1"));
+        assertEquals(12, backend.searches);
+    }
+
+    @Test
+    void testNoCacheAndTracedQueriesBypassTheCache() {
+        Chain<Searcher> chain = createChain(100, 100000000L);
+        search(chain, query("/search/?query=foo"));
+        search(chain, query("/search/?query=foo&noCache"));
+        search(chain, query("/search/?query=foo&tracelevel=3"));
+        assertEquals(3, backend.searches);
+        search(chain, query("/search/?query=foo"));
+        assertEquals(3, backend.searches);
+    }
+
+    @Test
+    void testResultsExpire() {
+        Chain<Searcher> chain = createChain(100, 100000000L);
+        search(chain, query("/search/?query=foo"));
+        clock.advance(Duration.ofSeconds(9));
+        search(chain, query("/search/?query=foo"));
+        assertEquals(1, backend.searches);
+        clock.advance(Duration.ofSeconds(1));
+        search(chain, query("/search/?query=foo"));
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    void testResultsAreDiscardedWhenContentChanges() {
+        Chain<Searcher> chain = createChain(100, 100000000L);
+        search(chain, query("/search/?query=foo"));
+        search(chain, query("/search/?query=foo"));
+        assertEquals(1, backend.searches);
+        generation.incrementAndGet();
+        search(chain, query("/search/?query=foo"));
+        assertEquals(2, backend.searches);
+        search(chain, query("/search/?query=foo"));
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    void testLeastRecentlyUsedResultsAreEvicted() {
+        Chain<Searcher> chain = createChain(2, 100000000L);
+        search(chain, query("/search/?query=a"));
+        search(chain, query("/search/?query=b"));
+        search(chain, query("/search/?query=a"));
+        search(chain, query("/search/?query=c")); // evicts b
+        assertEquals(3, backend.searches);
+        search(chain, query("/search/?query=a"));
+        search(chain, query("/search/?query=c"));
+        assertEquals(3, backend.searches);
+        search(chain, query("/search/?query=b"));
+        assertEquals(4, backend.searches);
+    }
+
+    @Test
+    void testResultsLargerThanTheCacheAreNotCached() {
+        Chain<Searcher> chain = createChain(100, 1000);
+        search(chain, query("/search/?query=foo"));
+        search(chain, query("/search/?query=foo"));
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    void testResultsWithErrorsAreNotCached() {
+        Chain<Searcher> chain = createChain(100, 100000000L);
+        backend.fail = true;
+        search(chain, query("/search/?query=foo"));
+        search(chain, query("/search/?query=foo"));
+        assertEquals(2, backend.searches);
+    }
+
+    private Chain<Searcher> createChain(int maxEntries, long maxSizeBytes) {
+        ResultCacheConfig config = new ResultCacheConfig.Builder().maxEntries(maxEntries)
+                                                                  .maxSizeBytes(maxSizeBytes)
+                                                                  .ttlSeconds(10)
+                                                                  .build();
+        return new Chain<>(new GroupingQueryParser(), new ResultCacheSearcher(config, generation::get, metric, clock), backend);
+    }
+
+    private static Query query(String request) {
+        return new Query(request);
+    }
+
+    private static Result search(Chain<Searcher> chain, Query query) {
+        return new Execution(chain, Execution.Context.createContextStub()).search(query);
+    }
+
+    private static long count(Bucket snapshot, String metricName) {
+        return snapshot.getMapForMetric(metricName).values().stream().mapToLong(UntypedMetric::getCount).sum();
+    }
+
+    private static class BackendSearcher extends Searcher {
+
+        int searches = 0;
+        boolean fail = false;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searches++;
+            if (fail) return new Result(query, ErrorMessage.createBackendCommunicationError("failed"));
+            Result result = new Result(query);
+            for (int i = 0; i < 3; i++) {
+                Hit hit = new Hit("hit:" + i, 1.0 / (i + 1));
+                hit.setField("text", query.getModel().getQueryString());
+                result.hits().add(hit);
+            }
+            result.setTotalHitCount(30);
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.Bucket;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.UntypedMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.query.QueryTree;
+import com.yahoo.search.query.parser.Parsable;
+import com.yahoo.search.query.parser.ParserEnvironment;
+import com.yahoo.search.searchchain.Execution;
+import org.apache.http.client.utils.URIBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that programs from the program cache are the same as those parsed in full.
+ */
+public class ProgramCacheTestCase {
+
+    /** Programs of the same form, differing only in literal values */
+    private static final List<List<String>> programs = List.of(
+            List.of("select * from sources * where title contains \"foo\"",
+                    "select * from sources * where title contains 'bar'",
+                    "select * from sources * where title contains \"b\\\"az\""),
+            List.of("select foo, bar from music where title contains \"a\" and year > 1990 limit 10 offset 5 timeout 100",
+                    "select foo, bar from music where title contains \"b\" and year > -1 limit 20 offset 0 timeout 5000",
+                    "select foo, bar from music where title contains \"c\" and year > 3000000000 limit 3 offset 1 timeout 1"),
+            List.of("select * from sources * where title contains \"x\" or body contains \"x\"",
+                    "select * from sources * where title contains \"y\" or body contains \"z\"",
+                    "select * from sources * where title contains \"title\" or body contains \"body\""),
+            List.of("select title from sources title where title contains \"title\"",
+                    "select title from sources title where title contains \"other\"",
+                    "select title from sources title where title contains \"title\""),
+            List.of("select * from sources * where ({targetHits: 10, approximate: false}nearestNeighbor(embedding, q)) and weight > 0.5",
+                    "select * from sources * where ({targetHits: 100, approximate: false}nearestNeighbor(embedding, q)) and weight > 1.5e3",
+                    "select * from sources * where ({targetHits: 7, approximate: false}nearestNeighbor(embedding, q)) and weight > -0.25"),
+            List.of("select * from sources * where {defaultIndex: \"text\", grammar: \"all\"}userInput(@query) and range(year, 2000, 2010)",
+                    "select * from sources * where {defaultIndex: \"body\", grammar: \"any\"}userInput(@query) and range(year, 1, 2)",
+                    "select * from sources * where {defaultIndex: \"text\", grammar: \"all\"}userInput(@query) and range(year, 2000, 2010)"),
+            List.of("select * from sources * where weightedSet(tags, {\"a\": 1, \"b\": 2}) and id > 3L order by year desc",
+                    "select * from sources * where weightedSet(tags, {\"c\": 3, \"d\": 4}) and id > 6L order by year desc",
+                    "select * from sources * where weightedSet(tags, {\"a\": 1, \"a2\": 1}) and id > 1L order by year desc"),
+            List.of("select * from sources * where {label: \"a\", weight: 10}text contains phrase(\"a\", \"b\") | all(group(a) each(output(count())))",
+                    "select * from sources * where {label: \"b\", weight: 20}text contains phrase(\"c\", \"d\") | all(group(a) each(output(count())))",
+                    "select * from sources * where {label: \"c\", weight: 30}text contains phrase(\"e\", \"f\") | all(group(a) each(output(count())))"));
+
+    @Test
+    void testProgramsAreTheSameAsWhenParsedInFull() throws Exception {
+        MetricReceiver.MockReceiver metric = new MetricReceiver.MockReceiver();
+        ProgramCache cache = new ProgramCache(100, metric);
+        for (List<String> form : programs) {
+            for (int i = 0; i < 3; i++) { // Parse the form repeatedly, such that its template is used
+                for (String program : form)
+                    assertEquals(new ProgramParser().parse("query", program), cache.parse(program), program);
+            }
+        }
+        assertEquals(programs.size(), cache.size());
+        Bucket snapshot = metric.getSnapshot();
+        // Each form is missed twice before its template is used, and one program, having a literal which is
+        // too large for an int where the template has an int, is always parsed in full
+        assertEquals(programs.size() * 7 - 3, count(snapshot, "yql_template_cache.hits"));
+        assertEquals(programs.size() * 2 + 3, count(snapshot, "yql_template_cache.misses"));
+        assertEquals(programs.size(), snapshot.getMapForMetric("yql_template_cache.entries").values().iterator().next().getLast(), 0);
+    }
+
+    @Test
+    void testQueryTreesAreTheSameAsWhenParsedInFull() throws Exception {
+        Chain<Searcher> cachingChain = new Chain<>(new MinimalQueryInserter());
+        for (List<String> form : programs) {
+            for (int i = 0; i < 3; i++) {
+                for (String program : form) {
+                    Query cached = query(program);
+                    new Execution(cachingChain, Execution.Context.createContextStub()).search(cached);
+                    Query parsed = query(program);
+                    YqlParser parser = new YqlParser(new ParserEnvironment());
+                    parser.setUserQuery(parsed);
+                    parser.setQueryParser(false);
+                    QueryTree tree = parser.parse(Parsable.fromQueryModel(parsed.getModel()).setQuery(program));
+                    assertEquals(tree.toString(), cached.getModel().getQueryTree().toString(), program);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testLiteralsOfAnotherClassThanInTheTemplateAreParsedInFull() throws Exception {
+        Chain<Searcher> cachingChain = new Chain<>(new MinimalQueryInserter());
+        for (int i = 0; i < 3; i++) { // Create and use a template with an int limit
+            Result result = new Execution(cachingChain, Execution.Context.createContextStub())
+                                    .search(query("select * from sources * where title contains \"a\" limit " + (10 + i)));
+            assertNull(result.hits().getError());
+        }
+        Result result = new Execution(cachingChain, Execution.Context.createContextStub())
+                                .search(query("select * from sources * where title contains \"a\" limit 3000000000"));
+        Result uncached = new Execution(new Chain<>(new MinimalQueryInserter()), Execution.Context.createContextStub())
+                                  .search(query("select * from sources * where title contains \"a\" limit 3000000000"));
+        assertNotNull(uncached.hits().getError());
+        assertEquals(uncached.hits().getError().getCode(), result.hits().getError().getCode());
+        assertEquals(uncached.hits().getError().getDetailedMessage(), result.hits().getError().getDetailedMessage());
+    }
+
+    @Test
+    void testCacheIsBounded() throws Exception {
+        ProgramCache cache = new ProgramCache(2, MetricReceiver.nullImplementation);
+        cache.parse("select * from sources * where a contains \"1\"");
+        cache.parse("select * from sources * where b contains \"1\"");
+        cache.parse("select * from sources * where c contains \"1\"");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testInvalidProgramsAreRejected() {
+        ProgramCache cache = new ProgramCache(100, MetricReceiver.nullImplementation);
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ProgramCompileException.class, () -> cache.parse("select * from sources * where title contains"));
+            assertThrows(ProgramCompileException.class, () -> cache.parse("select * from sources * where title contains $ \"foo\""));
+        }
+    }
+
+    private static Query query(String yql) throws Exception {
+        URIBuilder builder = new URIBuilder();
+        builder.setPath("search/");
+        builder.setParameter("yql", yql);
+        builder.setParameter("query", "foo bar");
+        builder.setParameter("q", "[1, 2]");
+        return new Query(builder.toString());
+    }
+
+    private static long count(Bucket snapshot, String metricName) {
+        return snapshot.getMapForMetric(metricName).values().stream().mapToLong(UntypedMetric::getCount).sum();
+    }
+
+}
@@ -349,7 +349,7 @@ public class StreamingVisitorTest {
     private void verifyResults(QueryArguments qa, StreamingVisitor visitor) {
         assertEquals(6, visitor.getTotalHitCount());
         assertEquals(Math.min(3 - qa.offset, qa.hits), visitor.getHits().size());
-        assertEquals(3, visitor.getSummaryMap().size());
+        assertEquals(Math.min(3, qa.offset + qa.hits), visitor.getSummaryMap().size()); // Only summaries of kept hits
         assertEquals(0, visitor.getGroupings().size());
         assertNull(visitor.getStatistics());
 
@@ -0,0 +1,131 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.streamingvisitors;
+
+import com.yahoo.vdslib.DocumentSummary;
+import com.yahoo.vdslib.SearchResult;
+import com.yahoo.vespa.objects.BufferSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests keeping the best hits of streaming search results.
+ */
+public class TopHitsTestCase {
+
+    @Test
+    void testKeepsTheBestHitsAndTheirSummaries() {
+        TopHits topHits = new TopHits(3);
+        topHits.add(result(hit("a", 0.9), hit("b", 0.5), hit("c", 0.1)), summaries("a", "b", "c"));
+        topHits.add(result(hit("d", 0.7), hit("e", 0.6), hit("f", 0.05)), summaries("d", "e", "f"));
+        assertEquals(List.of("a", "d", "e"), docIds(topHits.hits()));
+        assertEquals(List.of("a", "d", "e"), topHits.summaries().keySet().stream().sorted().toList());
+
+        topHits.add(result(hit("g", 0.6), hit("h", 0.01)), summaries("g", "h"));
+        assertEquals(List.of("a", "d", "e"), docIds(topHits.hits()), "Equal hits are kept in arrival order");
+        assertEquals(3, topHits.summaries().size());
+
+        topHits.add(result(hit("i", 2.0)), summaries("i"));
+        assertEquals(List.of("i", "a", "d"), docIds(topHits.hits()));
+        assertEquals(List.of("a", "d", "i"), topHits.summaries().keySet().stream().sorted().toList());
+    }
+
+    @Test
+    void testNoHits() {
+        TopHits topHits = new TopHits(0);
+        topHits.add(result(hit("a", 0.9)), summaries("a"));
+        assertTrue(topHits.hits().isEmpty());
+        assertTrue(topHits.summaries().isEmpty());
+    }
+
+    @Test
+    void testConcurrentAddsGiveTheSameHitsAsMergingAll() throws Exception {
+        Random random = new Random(42);
+        List<SearchResult> results = new ArrayList<>();
+        List<SearchResult.Hit> all = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            List<SearchResult.Hit> hits = new ArrayList<>();
+            for (int j = 0; j < 50; j++)
+                hits.add(hit(i + "-" + j, random.nextDouble()));
+            hits.sort(Comparator.naturalOrder());
+            all.addAll(hits);
+            results.add(result(hits.toArray(SearchResult.Hit[]::new)));
+        }
+        all.sort(Comparator.naturalOrder());
+
+        TopHits topHits = new TopHits(100);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SearchResult result : results)
+                futures.add(executor.submit(() -> topHits.add(result, summaries())));
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(docIds(all.subList(0, 100)), docIds(topHits.hits()));
+    }
+
+    private static SearchResult.Hit hit(String docId, double rank) {
+        return new SearchResult.Hit(docId, rank);
+    }
+
+    private static SearchResult result(SearchResult.Hit ... hits) {
+        BufferSerializer serializer = new BufferSerializer();
+        serializer.putInt(null, hits.length); // total hits
+        serializer.putInt(null, hits.length); // hit count
+        serializer.putInt(null, 0); // doc id buffer length, unused
+        for (SearchResult.Hit hit : hits) {
+            serializer.put(null, hit.getDocId().getBytes(StandardCharsets.UTF_8));
+            serializer.putByte(null, (byte)0);
+        }
+        for (SearchResult.Hit hit : hits)
+            serializer.putDouble(null, hit.getRank());
+        serializer.putInt(null, 0); // sort blob count
+        serializer.putInt(null, 0); // aggregator count
+        serializer.putInt(null, 0); // grouping count
+        serializer.getBuf().flip();
+        return new SearchResult(serializer);
+    }
+
+    private static DocumentSummary summaries(String ... docIds) {
+        BufferSerializer serializer = new BufferSerializer();
+        serializer.putInt(null, 0); // old seq id
+        serializer.putInt(null, docIds.length); // summary count
+        if (docIds.length > 0) {
+            byte[][] utf8 = new byte[docIds.length][];
+            int bufferSize = 0;
+            for (int i = 0; i < docIds.length; i++) {
+                utf8[i] = docIds[i].getBytes(StandardCharsets.UTF_8);
+                bufferSize += utf8[i].length + 2;
+            }
+            serializer.putInt(null, bufferSize);
+            for (byte[] docId : utf8) {
+                serializer.put(null, docId);
+                serializer.putByte(null, (byte)0);
+                serializer.putByte(null, (byte)7); // summary
+            }
+            for (int i = 0; i < docIds.length; i++)
+                serializer.putInt(null, 1); // summary size
+        }
+        serializer.getBuf().flip();
+        return new DocumentSummary(serializer);
+    }
+
+    private static List<String> docIds(List<SearchResult.Hit> hits) {
+        return hits.stream().map(SearchResult.Hit::getDocId).toList();
+    }
+
+}
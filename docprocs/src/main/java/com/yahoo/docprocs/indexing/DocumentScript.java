@@ -18,6 +18,7 @@ import com.yahoo.document.update.FieldUpdate;
 import com.yahoo.document.update.MapValueUpdate;
 import com.yahoo.document.update.ValueUpdate;
 import com.yahoo.vespa.indexinglanguage.FieldValuesFactory;
+import com.yahoo.vespa.indexinglanguage.expressions.CompiledScript;
 import com.yahoo.vespa.indexinglanguage.expressions.Expression;
 import com.yahoo.vespa.indexinglanguage.expressions.ScriptExpression;
 
@@ -35,12 +36,14 @@ public class DocumentScript {
     private final DocumentType documentType;
     private final Set<String> inputFields;
     private final ScriptExpression expression;
+    private final CompiledScript compiled;
 
     public DocumentScript(DocumentType documentType, Collection<String> inputFields, ScriptExpression expression) {
         this.documentType = documentType;
         this.inputFields = new HashSet<>(inputFields);
         this.expression = expression;
         expression.resolve(documentType);
+        this.compiled = CompiledScript.compile(expression, documentType);
     }
 
     public ScriptExpression getExpression() { return expression; }
@@ -51,7 +54,7 @@ public class DocumentScript {
             requireThatFieldIsDeclaredInDocument(entry.getKey());
             removeAnyLinguisticsSpanTree(entry.getValue());
         }
-        return expression.execute(fieldValuesFactory, document);
+        return compiled.execute(fieldValuesFactory, document);
     }
 
     public DocumentUpdate execute(FieldValuesFactory fieldValuesFactory, DocumentUpdate update) {
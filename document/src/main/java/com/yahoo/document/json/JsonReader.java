@@ -156,6 +156,34 @@ public class JsonReader {
         }
     }
 
+    /**
+     * Reads a JSON which is expected to contain a single document operation in the feed format, like a line
+     * of a JSONL feed, where the operation type and document ID are given by its "put", "update" or "remove" field.
+     *
+     * @return the parsed document operation
+     */
+    public ParsedDocumentOperation readSingleOperation() {
+        Optional<DocumentParseInfo> documentParseInfo;
+        try {
+            documentParseInfo = parseDocument();
+            if (documentParseInfo.isPresent() && null != parser.nextToken())
+                throw new IllegalArgumentException("expected end of input, got " + parser.currentToken());
+        }
+        catch (IOException e) {
+            state = END_OF_FEED;
+            throw new IllegalArgumentException("failed parsing document operation", e);
+        }
+        if (documentParseInfo.isEmpty())
+            throw new IllegalArgumentException("Missing a document operation ('put', 'update' or 'remove')");
+
+        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader(typeManager.getIgnoreUndefinedFields());
+        ParsedDocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
+                getDocumentTypeFromString(documentParseInfo.get().documentId.getDocType(), typeManager),
+                documentParseInfo.get());
+        operation.operation().setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.get().condition));
+        return operation;
+    }
+
     /** Returns the next document operation, or null if we have reached the end */
     public DocumentOperation next() {
         switch (state) {
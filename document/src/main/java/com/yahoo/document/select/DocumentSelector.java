@@ -2,19 +2,25 @@
 package com.yahoo.document.select;
 
 import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentType;
 import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.document.select.parser.SelectInput;
 import com.yahoo.document.select.parser.SelectParser;
 import com.yahoo.document.select.parser.TokenMgrException;
+import com.yahoo.document.select.rule.CompiledExpression;
 import com.yahoo.document.select.rule.ExpressionNode;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * A document selector is a filter which accepts or rejects documents
  * based on their type and content. A document selector has a textual
  * representation which is called the
  * <a href="https://docs.vespa.ai/en/reference/document-select-language.html">document selection language</a>.
  *
- * Document selectors are multithread safe.
+ * Document selectors are multithread safe. Operations are evaluated by the selection compiled
+ * for the document type they are for, which is compiled on first use.
  *
  * @author bratseth
  */
@@ -22,6 +28,12 @@ public class DocumentSelector {
 
     private final ExpressionNode expression;
 
+    /** The expression compiled for each document type it has been evaluated for, by type name, or "" for none. */
+    private final Map<String, CompiledExpression> compiled = new ConcurrentHashMap<>();
+
+    /** The last used compiled expression, as operations usually come in runs of a single document type. */
+    private volatile CompiledExpression last = null;
+
     /**
      * Creates a document selector from a Document Selection Language string
      *
@@ -51,7 +63,20 @@ public class DocumentSelector {
      * @throws RuntimeException if the evaluation enters an illegal state
      */
     public Result accepts(DocumentOperation op) {
-        return accepts(new Context(op));
+        return compiledFor(CompiledExpression.documentTypeOf(op)).evaluate(op);
+    }
+
+    private CompiledExpression compiledFor(DocumentType type) {
+        CompiledExpression last = this.last;
+        if (last != null && last.documentType() == type) return last;
+
+        String name = type == null ? "" : type.getName();
+        CompiledExpression expression = compiled.get(name);
+        if (expression == null || expression.documentType() != type) { // Types may come from different managers.
+            expression = CompiledExpression.compile(this.expression, type);
+            compiled.put(name, expression);
+        }
+        return this.last = expression;
     }
 
     /**
@@ -96,6 +121,8 @@ public class DocumentSelector {
     /** Visits the expression tree */
     public void visit(Visitor visitor) {
         expression.accept(visitor);
+        compiled.clear(); // The visitor may modify the expression.
+        last = null;
     }
 
 }
@@ -12,6 +12,7 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.function.IntFunction;
 
 /**
  * @author Simon Thoresen Hult
@@ -47,11 +48,16 @@ public class ArithmeticNode implements ExpressionNode {
 
     @Override
     public Object evaluate(Context context) {
+        return evaluate(i -> items.get(i).node.evaluate(context));
+    }
+
+    /** Evaluates this with the given values of the items of this, which are evaluated in order. */
+    Object evaluate(IntFunction<Object> values) {
         StringBuilder ret = null;        
         Deque<ValueItem> buf = new ArrayDeque<>();
         for (int i = 0; i < items.size(); ++i) {
             NodeItem item = items.get(i);
-            Object val = item.node.evaluate(context);
+            Object val = values.apply(i);
 
             if (val == null) {
                 throw new IllegalArgumentException("Can not perform arithmetic on null value (referencing missing field?)");
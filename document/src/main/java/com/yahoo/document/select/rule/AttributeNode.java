@@ -102,7 +102,7 @@ public class AttributeNode implements ExpressionNode {
 
     }
 
-    private static Object applyFunction(String function, Object value) {
+    static Object applyFunction(String function, Object value) {
         if (function.equalsIgnoreCase("abs")) {
             if (value instanceof Number) {
                 Number nValue = (Number)value;
@@ -127,7 +127,7 @@ public class AttributeNode implements ExpressionNode {
         throw new IllegalStateException("Function '" + function + "' is not supported.");
     }
 
-    private static boolean looksLikeComplexFieldPath(String path) {
+    static boolean looksLikeComplexFieldPath(String path) {
         for (int i = 0; i < path.length(); ++i) {
             switch (path.charAt(i)) {
                 case '.':
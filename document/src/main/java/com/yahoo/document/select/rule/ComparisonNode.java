@@ -30,6 +30,9 @@ public class ComparisonNode implements ExpressionNode {
     // The operator string for this.
     private String operator;
 
+    // The last pattern used by a string comparison, which is kept as compiling it is costly.
+    private volatile CompiledPattern pattern = null;
+
     /**
      * Constructs a new comparison node.
      *
@@ -154,6 +157,17 @@ public class ComparisonNode implements ExpressionNode {
         return new ResultList(evaluateBool(oLeft, oRight));
     }
 
+    /** Compares two evaluated operands as {@link #evaluate} does, given that neither is a list of field values. */
+    Result compare(Object lhs, Object rhs) {
+        if (lhs == null || rhs == null) {
+            return evaluateWithAtLeastOneNullSide(lhs, rhs).toResult();
+        }
+        if (lhs == Result.INVALID || rhs == Result.INVALID) {
+            return Result.INVALID;
+        }
+        return evaluateBool(lhs, rhs);
+    }
+
     /**
      * Evaluates a binary comparison where one or both operands are null.
      * Boolean outcomes are only defined for (in)equality relations, all others
@@ -336,11 +350,17 @@ public class ComparisonNode implements ExpressionNode {
     private Result evaluateString(Object lhs, Object rhs) {
         String left = "" + lhs; // Allows null objects to evaluate to string.
         String right = "" + rhs;
-        if (operator.equals("=~")) {
-            return Result.toResult(Pattern.compile(right).matcher(left).find());
-        } else {
-            return Result.toResult(Pattern.compile(globToRegex(right)).matcher(left).find());
+        return Result.toResult(pattern(right, ! operator.equals("=~")).matcher(left).find());
+    }
+
+    /** Returns the pattern of the given regex or glob, which is the same for most evaluations of this. */
+    private Pattern pattern(String source, boolean glob) {
+        CompiledPattern compiled = pattern;
+        if (compiled == null || compiled.glob() != glob || ! compiled.source().equals(source)) {
+            compiled = new CompiledPattern(source, glob, Pattern.compile(glob ? globToRegex(source) : source));
+            pattern = compiled;
         }
+        return compiled.pattern();
     }
 
     /**
@@ -399,4 +419,7 @@ public class ComparisonNode implements ExpressionNode {
     public String toString() {
         return lhs + " " + operator + " " + rhs;
     }
+
+    private record CompiledPattern(String source, boolean glob, Pattern pattern) { }
+
 }
@@ -0,0 +1,349 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select.rule;
+
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentUpdate;
+import com.yahoo.document.Field;
+import com.yahoo.document.PrimitiveDataType;
+import com.yahoo.document.select.Context;
+import com.yahoo.document.select.Result;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A selection expression compiled for evaluation over operations on documents of a single document type,
+ * or over operations without document data, i.e., removes and gets, when the type is null.
+ * Field accessors are resolved against the document type, document type checks and constant subexpressions
+ * are folded, and chains of logical operators are flattened, so evaluation only does work which depends on
+ * the operation. Parts which may yield multiple values, such as field paths into collections, or which depend
+ * on variables, are evaluated by the expression nodes themselves, which also defines the semantics of the rest.
+ */
+public final class CompiledExpression {
+
+    private final DocumentType type;
+    private final Condition condition;
+
+    private CompiledExpression(DocumentType type, Condition condition) {
+        this.type = type;
+        this.condition = condition;
+    }
+
+    /** Returns the document type this is compiled for, or null if it is for operations without document data. */
+    public DocumentType documentType() { return type; }
+
+    /** Evaluates this over the given operation, which must be on a document of the type this is compiled for. */
+    public Result evaluate(DocumentOperation operation) {
+        return condition.evaluate(operation);
+    }
+
+    /** Returns whether this evaluates to the same result for all operations it is compiled for. */
+    public boolean isConstant() {
+        return condition instanceof ConstantCondition;
+    }
+
+    /**
+     * Compiles the given expression for operations on documents of the given type,
+     * or for operations without document data if the type is null.
+     */
+    public static CompiledExpression compile(ExpressionNode expression, DocumentType type) {
+        return new CompiledExpression(type, new Compiler(type).condition(expression));
+    }
+
+    /** Returns the document type of the given operation, as used to select a compiled expression for it. */
+    public static DocumentType documentTypeOf(DocumentOperation operation) {
+        if (operation instanceof DocumentPut put) return put.getDocument().getDataType();
+        if (operation instanceof DocumentUpdate update) return update.getDocumentType();
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        Result evaluate(DocumentOperation operation);
+    }
+
+    @FunctionalInterface
+    private interface Value {
+        Object evaluate(DocumentOperation operation);
+    }
+
+    private record ConstantCondition(Result result) implements Condition {
+        @Override public Result evaluate(DocumentOperation operation) { return result; }
+    }
+
+    private record ConstantValue(Object value) implements Value {
+        @Override public Object evaluate(DocumentOperation operation) { return value; }
+    }
+
+    /**
+     * The kinds of values, by what the interpreted node evaluates to: A single value, a single document field value,
+     * which the node returns as a list with one element, or anything else, which only the node itself can handle.
+     */
+    private enum Kind { SINGLE, FIELD, OTHER }
+
+    private record Compiled(Value value, Kind kind) {
+        boolean isConstant() { return value instanceof ConstantValue; }
+    }
+
+    private static class Compiler {
+
+        private final DocumentType type;
+
+        Compiler(DocumentType type) { this.type = type; }
+
+        /** Compiles a node whose truth value is wanted, as by {@link Result#toResult}. */
+        Condition condition(ExpressionNode node) {
+            if (node instanceof EmbracedNode embraced)
+                return condition(embraced.getNode());
+
+            if (node instanceof NegationNode negation) {
+                Condition inner = condition(negation.getNode());
+                if (inner instanceof ConstantCondition constant)
+                    return new ConstantCondition(Result.invert(constant.result()));
+                return operation -> Result.invert(inner.evaluate(operation));
+            }
+
+            Condition logic = logic(node);
+            if (logic != null) return logic;
+
+            Condition comparison = comparison(node);
+            if (comparison != null) return comparison;
+
+            Compiled compiled = value(node);
+            if (compiled.isConstant())
+                return new ConstantCondition(Result.toResult(((ConstantValue) compiled.value()).value()));
+            return operation -> Result.toResult(compiled.value().evaluate(operation));
+        }
+
+        /**
+         * Returns a compiled logic node, if all its operands have a single result, or null. The operands are
+         * grouped by precedence, and evaluated left to right until the result is known, as by the node itself.
+         */
+        private Condition logic(ExpressionNode node) {
+            if ( ! (node instanceof LogicNode logic)) return null;
+
+            List<List<Condition>> disjunction = new ArrayList<>();
+            for (LogicNode.NodeItem item : logic.getItems()) {
+                Condition operand = singleCondition(item.getNode());
+                if (operand == null) return null;
+
+                if (item.getOperator() != LogicNode.AND) disjunction.add(new ArrayList<>());
+                disjunction.get(disjunction.size() - 1).add(operand);
+            }
+            List<Condition> terms = new ArrayList<>();
+            for (List<Condition> conjunction : disjunction)
+                terms.add(fold(conjunction, Result.FALSE, CompiledExpression::and));
+            return fold(terms, Result.TRUE, CompiledExpression::or);
+        }
+
+        /**
+         * Returns the given operands combined with the given operator, with the given short-circuiting result.
+         * Operands after a constant short-circuiting operand are never evaluated, and are dropped, and constant
+         * operands which do not change the result are also dropped. Other constants are kept in place, so all
+         * non-constant operands are still evaluated in the same order, and throw the same exceptions.
+         */
+        private static Condition fold(List<Condition> operands, Result shortCircuit, Operator operator) {
+            Result identity = Result.invert(shortCircuit);
+            List<Condition> kept = new ArrayList<>();
+            for (Condition operand : operands) {
+                if (operand instanceof ConstantCondition constant && constant.result() == identity) continue;
+                kept.add(operand);
+                if (operand instanceof ConstantCondition constant && constant.result() == shortCircuit) break;
+            }
+            if (kept.isEmpty()) return new ConstantCondition(identity);
+            if (kept.size() == 1) return kept.get(0);
+            if (kept.stream().allMatch(operand -> operand instanceof ConstantCondition)) {
+                Result result = identity;
+                for (Condition operand : kept) result = operator.combine(result, ((ConstantCondition) operand).result());
+                return new ConstantCondition(result);
+            }
+            Condition[] array = kept.toArray(Condition[]::new);
+            return operation -> {
+                Result result = identity;
+                for (Condition operand : array) {
+                    result = operator.combine(result, operand.evaluate(operation));
+                    if (result == shortCircuit) break;
+                }
+                return result;
+            };
+        }
+
+        /** Returns a compiled node which has a single result when used as an operand of a logic node, or null. */
+        private Condition singleCondition(ExpressionNode node) {
+            if (node instanceof EmbracedNode embraced)
+                return singleCondition(embraced.getNode());
+
+            if (node instanceof NegationNode) return condition(node);
+            if (node instanceof LogicNode) return logic(node);
+            if (node instanceof ComparisonNode) return comparison(node);
+            return value(node).kind() == Kind.OTHER ? null : condition(node);
+        }
+
+        /** Returns a compiled comparison, if it has a single result, or null. */
+        private Condition comparison(ExpressionNode node) {
+            if ( ! (node instanceof ComparisonNode comparison)) return null;
+
+            Compiled lhs = value(comparison.getLHS());
+            Compiled rhs = value(comparison.getRHS());
+            if (lhs.kind() == Kind.OTHER || rhs.kind() == Kind.OTHER) return null;
+
+            if (lhs.kind() == Kind.FIELD && rhs.kind() == Kind.FIELD) // Compared as lists by the node itself.
+                return operation -> Result.toResult(comparison.evaluate(new Context(operation)));
+
+            if (lhs.isConstant() && rhs.isConstant()) {
+                try {
+                    return new ConstantCondition(comparison.compare(lhs.value().evaluate(null), rhs.value().evaluate(null)));
+                }
+                catch (RuntimeException e) {
+                    // Leave it to evaluation to throw this.
+                }
+            }
+            Value left = lhs.value(), right = rhs.value();
+            return operation -> comparison.compare(left.evaluate(operation), right.evaluate(operation));
+        }
+
+        private Compiled value(ExpressionNode node) {
+            if (node instanceof EmbracedNode embraced)
+                return value(embraced.getNode());
+
+            if (node instanceof LiteralNode literal)
+                return new Compiled(new ConstantValue(literal.getValue()), Kind.SINGLE);
+
+            if (node instanceof IdNode id)
+                return new Compiled(operation -> id.evaluate(operation.getId()), Kind.SINGLE);
+
+            if (node instanceof DocumentNode document)
+                return new Compiled(document(document.getType()), Kind.SINGLE);
+
+            if (node instanceof DocumentTypeNode documentType) {
+                String name = documentType.getType();
+                return new Compiled(operation -> operation.getId().getDocType().equals(name) ? operation : false, Kind.SINGLE);
+            }
+
+            if (node instanceof ArithmeticNode arithmetic)
+                return arithmetic(arithmetic);
+
+            if (node instanceof AttributeNode attribute) {
+                Compiled compiled = attribute(attribute);
+                if (compiled != null) return compiled;
+            }
+
+            if (node instanceof NowNode)
+                return new Compiled(operation -> node.evaluate(new Context(operation)), Kind.SINGLE);
+
+            // Logic, comparison and negation nodes evaluate to result lists, which are used as values as they are.
+            return new Compiled(operation -> node.evaluate(new Context(operation)), Kind.OTHER);
+        }
+
+        /** Returns the value of a document node, which is the operation if it is for a document of the named type. */
+        private Value document(String name) {
+            if (type == null)
+                return operation -> operation.getId().getDocType().equals(name) ? operation : false;
+
+            return type.isA(name) ? operation -> operation : new ConstantValue(false);
+        }
+
+        private Compiled arithmetic(ArithmeticNode arithmetic) {
+            List<ArithmeticNode.NodeItem> items = arithmetic.getItems();
+            Value[] values = new Value[items.size()];
+            boolean constant = true;
+            for (int i = 0; i < values.length; i++) {
+                Compiled item = value(items.get(i).getNode());
+                if (item.kind() == Kind.OTHER)
+                    return new Compiled(operation -> arithmetic.evaluate(new Context(operation)), Kind.SINGLE);
+                values[i] = item.value();
+                constant &= item.isConstant();
+            }
+            if (constant) {
+                try {
+                    return new Compiled(new ConstantValue(arithmetic.evaluate(i -> values[i].evaluate(null))), Kind.SINGLE);
+                }
+                catch (RuntimeException e) {
+                    // Leave it to evaluation to throw this.
+                }
+            }
+            return new Compiled(operation -> arithmetic.evaluate(i -> values[i].evaluate(operation)), Kind.SINGLE);
+        }
+
+        /**
+         * Returns a compiled attribute node, if it is a primitive field of a document, or a single value,
+         * followed by any number of functions, or null.
+         */
+        private Compiled attribute(AttributeNode attribute) {
+            List<AttributeNode.Item> items = attribute.getItems();
+            Compiled compiled;
+            int first;
+            if (attribute.getValue() instanceof DocumentNode document && ! items.isEmpty()
+                && items.get(0).getType() == AttributeNode.Item.ATTRIBUTE) {
+                compiled = field(document.getType(), items.get(0).getName());
+                if (compiled == null) return null;
+                first = 1;
+            }
+            else {
+                compiled = value(attribute.getValue());
+                if (compiled.kind() != Kind.SINGLE) return null;
+                first = 0;
+            }
+
+            StringBuilder position = new StringBuilder(attribute.getValue().toString());
+            for (int i = 0; i < first; i++) position.append(".").append(items.get(i));
+            for (AttributeNode.Item item : items.subList(first, items.size())) {
+                if (item.getType() != AttributeNode.Item.FUNCTION) return null;
+
+                Value argument = compiled.value();
+                String function = item.getName();
+                String message = "Can not invoke '" + item + "' on '" + position + "' because that term evaluated to null.";
+                compiled = new Compiled(operation -> {
+                    Object value = argument.evaluate(operation);
+                    if (value == null) throw new IllegalStateException(message);
+                    return AttributeNode.applyFunction(function, value);
+                }, compiled.kind());
+                position.append(".").append(item);
+            }
+            return compiled;
+        }
+
+        /** Returns the value of the named primitive field of documents of the given type, or null if not such a field. */
+        private Compiled field(String documentType, String name) {
+            Value document = document(documentType);
+            if (document instanceof ConstantValue) // Not this document type, and evaluated as a field path of false.
+                return new Compiled(new ConstantValue(Result.FALSE), Kind.SINGLE);
+
+            if (type == null) // Only puts have document data.
+                return new Compiled(operation -> document.evaluate(operation) == Boolean.FALSE ? Result.FALSE : Result.INVALID, Kind.SINGLE);
+
+            if (AttributeNode.looksLikeComplexFieldPath(name)) return null;
+
+            if (type.hasImportedField(name)) // These can only be evaluated in the backend, and are treated as missing.
+                return new Compiled(operation -> operation instanceof DocumentPut ? null : Result.INVALID, Kind.FIELD);
+
+            Field field = type.getField(name);
+            if (field == null || ! (field.getDataType() instanceof PrimitiveDataType)) return null;
+
+            return new Compiled(operation -> operation instanceof DocumentPut put ? put.getDocument().getFieldValue(field)
+                                                                                  : Result.INVALID,
+                                Kind.FIELD);
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface Operator {
+        Result combine(Result lhs, Result rhs);
+    }
+
+    private static Result and(Result lhs, Result rhs) {
+        if (lhs == Result.FALSE || rhs == Result.FALSE) return Result.FALSE;
+        if (lhs == Result.TRUE && rhs == Result.TRUE) return Result.TRUE;
+        return Result.INVALID;
+    }
+
+    private static Result or(Result lhs, Result rhs) {
+        if (lhs == Result.TRUE || rhs == Result.TRUE) return Result.TRUE;
+        if (lhs == Result.FALSE && rhs == Result.FALSE) return Result.FALSE;
+        return Result.INVALID;
+    }
+
+}
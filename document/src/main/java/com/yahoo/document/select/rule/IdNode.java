@@ -46,7 +46,10 @@ public class IdNode implements ExpressionNode {
 
     @Override
     public Object evaluate(Context context) {
-        DocumentId id = context.getDocumentOperation().getId();
+        return evaluate(context.getDocumentOperation().getId());
+    }
+
+    Object evaluate(DocumentId id) {
         if (id == null) {
             throw new IllegalStateException("Document has no identifier.");
         }
@@ -279,6 +279,32 @@ public class JsonReaderTestCase {
         assertEquals("false", update.getCondition().getSelection());
     }
 
+    @Test
+    public void readSingleOperations() throws IOException {
+        ParsedDocumentOperation operation = createReader("""
+                                                         { "put": "id:unittest:smoke::doc1", "create": true, "condition": "true",
+                                                           "fields": { "something": "smoketest", "flag": true, "nalle": "bamse" } }
+                                                         """).readSingleOperation();
+        DocumentPut put = (DocumentPut) operation.operation();
+        assertTrue(put.getCreateIfNonExistent());
+        assertEquals("true", put.getCondition().getSelection());
+        smokeTestDoc(put.getDocument());
+
+        operation = createReader("""
+                                 { "update": "id:unittest:smoke::doc1", "fields": { "nalle": { "assign": "bamse" } } }
+                                 """).readSingleOperation();
+        assertEquals(new DocumentId("id:unittest:smoke::doc1"), ((DocumentUpdate) operation.operation()).getId());
+
+        operation = createReader("{ \"remove\": \"id:unittest:smoke::doc1\", \"condition\": \"false\" }").readSingleOperation();
+        assertEquals("false", ((DocumentRemove) operation.operation()).getCondition().getSelection());
+
+        assertEquals("Missing a document operation ('put', 'update' or 'remove')",
+                     assertThrows(IllegalArgumentException.class, () -> createReader("{ }").readSingleOperation()).getMessage());
+        assertEquals("expected end of input, got START_OBJECT",
+                     assertThrows(IllegalArgumentException.class,
+                                  () -> createReader("{ \"remove\": \"id:unittest:smoke::doc1\" } { }").readSingleOperation()).getMessage());
+    }
+
     @Test
     public void readSingleDocumentPut() throws IOException {
         Document doc = docFromJson("""
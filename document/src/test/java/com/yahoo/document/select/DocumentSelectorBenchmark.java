@@ -0,0 +1,95 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.LongFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.select.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares interpreted and compiled evaluation of selections as used for routing and visiting.
+ * Not a unit test; run the main method.
+ */
+public class DocumentSelectorBenchmark {
+
+    private static final String[] selections = {
+            "music",
+            "music.year > 2000",
+            "music.year > 2000 and id.user == 1234",
+            "music and music.artist == \"Metallica\" and music.year >= 1983 and music.year < 1992",
+            "music.title = \"*ride*\" or music.artist.lowercase() =~ \"^the \"",
+            "(music.year > 1990 and music.year < 2000) or (music.year > 2010 and music.plays * 2 > 1000) or video",
+            "not (music.year < 1950 or music.year > 2050) and music.timestamp > 1700000000 - 3600 * 24 * 365",
+    };
+
+    public void run() throws ParseException {
+        List<DocumentOperation> operations = operations(1000);
+        for (String selection : selections) {
+            DocumentSelector selector = new DocumentSelector(selection);
+            System.out.println(selection);
+            System.out.println("  interpreted: " + time(operations, op -> selector.accepts(new Context(op))) + " ns/op");
+            System.out.println("  compiled:    " + time(operations, selector::accepts) + " ns/op");
+        }
+    }
+
+    private static double time(List<DocumentOperation> operations, Selection selection) {
+        int dummy = 0;
+        for (int i = 0; i < 200; i++) // Warmup
+            for (DocumentOperation operation : operations)
+                dummy += selection.evaluate(operation).ordinal();
+
+        int iterations = 1000;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            for (DocumentOperation operation : operations)
+                dummy += selection.evaluate(operation).ordinal();
+        long elapsed = System.nanoTime() - startTime;
+        if (dummy == 42) System.out.println("Don't optimize me away");
+        return (double) elapsed / iterations / operations.size();
+    }
+
+    private static List<DocumentOperation> operations(int count) {
+        DocumentType music = new DocumentType("music");
+        music.addField("artist", DataType.STRING);
+        music.addField("title", DataType.STRING);
+        music.addField("year", DataType.INT);
+        music.addField("plays", DataType.INT);
+        music.addField("timestamp", DataType.LONG);
+
+        List<DocumentOperation> operations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DocumentId id = new DocumentId("id:test:music:n=" + (i % 2000) + ":" + i);
+            if (i % 10 == 9) {
+                operations.add(new DocumentRemove(id));
+                continue;
+            }
+            Document document = new Document(music, id);
+            document.setFieldValue("artist", new StringFieldValue(i % 3 == 0 ? "Metallica" : "The Beatles"));
+            document.setFieldValue("title", new StringFieldValue("Ride the lightning " + i));
+            document.setFieldValue("year", new IntegerFieldValue(1950 + i % 75));
+            document.setFieldValue("plays", new IntegerFieldValue(i * 7 % 1500));
+            document.setFieldValue("timestamp", new LongFieldValue(1690000000L + i * 1000L));
+            operations.add(new DocumentPut(document));
+        }
+        return operations;
+    }
+
+    private interface Selection {
+        Result evaluate(DocumentOperation operation);
+    }
+
+    public static void main(String[] args) throws ParseException {
+        new DocumentSelectorBenchmark().run();
+    }
+
+}
@@ -28,7 +28,10 @@ import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.datatypes.WeightedSet;
 import com.yahoo.document.select.convert.SelectionExpressionConverter;
 import com.yahoo.document.select.parser.ParseException;
+import com.yahoo.document.select.parser.SelectInput;
+import com.yahoo.document.select.parser.SelectParser;
 import com.yahoo.document.select.parser.TokenMgrException;
+import com.yahoo.document.select.rule.CompiledExpression;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.yolean.Exceptions;
@@ -894,6 +897,35 @@ public class DocumentSelectorTestCase {
         assertVisitWithInvalidNowFails("now() > music.field", "Left hand side of comparison must be a document field");
     }
 
+    @Test
+    public void testCompilation() throws ParseException {
+        DocumentType test = manager.getDocumentType("test");
+        DocumentType parent = manager.getDocumentType("parent");
+        DocumentPut put = createDocument("id:ns:test::1", 24, 2.0f, "foobar", "content");
+
+        CompiledExpression constant = compile("(1 + 2 == 3 or test.hint > 10) and not (\"a\" =~ \"b\")", test);
+        assertTrue(constant.isConstant());
+        assertEquals(Result.TRUE, constant.evaluate(put));
+        assertTrue(compile("test.hint > 10", parent).isConstant());
+        assertFalse(compile("test.hint > 10 and 1 == 1", test).isConstant());
+        assertFalse(compile("test", null).isConstant());
+
+        CompiledExpression fields = compile("test.hint > 10 and test.hstring.lowercase() = \"foo*\" and test.parentField == \"parentValue\"", test);
+        assertEquals(Result.TRUE, fields.evaluate(put));
+        assertEquals(Result.FALSE, fields.evaluate(createDocument("id:ns:test::1", 24, 2.0f, "barfoo", "content")));
+        assertEquals(Result.INVALID, compile("test.hint > 10", test).evaluate(new DocumentUpdate(test, new DocumentId("id:ns:test::1"))));
+        assertEquals(Result.INVALID, compile("test.hint > 10", null).evaluate(new DocumentRemove(new DocumentId("id:ns:test::1"))));
+        assertEquals(Result.FALSE, compile("test.hint == 10", null).evaluate(new DocumentRemove(new DocumentId("id:ns:parent::1"))));
+
+        // Selectors keep an expression compiled for each document type
+        DocumentSelector selector = new DocumentSelector("test.hint > 10 or parent.parentField == \"parentValue\"");
+        assertEquals(Result.TRUE, selector.accepts(put));
+        Document parentDocument = new Document(parent, new DocumentId("id:ns:parent::1"));
+        parentDocument.setFieldValue("parentField", new StringFieldValue("parentValue"));
+        assertEquals(Result.TRUE, selector.accepts(new DocumentPut(parentDocument)));
+        assertEquals(Result.INVALID, selector.accepts(new DocumentRemove(new DocumentId("id:ns:test::1"))));
+    }
+
     public void assertThatQueriesAreCreated(String selection, List<String> expectedDoctypes, List<String> expectedQueries) throws ParseException {
         DocumentSelector selector = new DocumentSelector(selection);
         NowCheckVisitor visitor = new NowCheckVisitor();
@@ -980,8 +1012,31 @@ public class DocumentSelectorTestCase {
         }
     }
 
+    /** Evaluates the given selection, and verifies that compiled and interpreted evaluation agrees. */
     private static Result evaluate(String expressionString, DocumentOperation op) throws ParseException {
-        return new DocumentSelector(expressionString).accepts(op);
+        DocumentSelector selector = new DocumentSelector(expressionString);
+        Result interpreted;
+        try {
+            interpreted = selector.accepts(new Context(op));
+        }
+        catch (RuntimeException e) {
+            try {
+                selector.accepts(op);
+                fail("Compiled evaluation of '" + expressionString + "' should throw like interpreted evaluation: " + e);
+            }
+            catch (RuntimeException compiled) {
+                assertEquals(e.getClass(), compiled.getClass());
+                assertEquals(e.getMessage(), compiled.getMessage());
+            }
+            throw e;
+        }
+        Result compiled = selector.accepts(op);
+        assertEquals("Compiled evaluation of '" + expressionString + "'", interpreted, compiled);
+        return compiled;
+    }
+
+    private static CompiledExpression compile(String expressionString, DocumentType type) throws ParseException {
+        return CompiledExpression.compile(new SelectParser(new SelectInput(expressionString)).expression(), type);
     }
 
     private static void assertError(String expressionString, DocumentOperation op, String expectedError) {
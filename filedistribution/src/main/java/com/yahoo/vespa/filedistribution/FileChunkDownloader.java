@@ -0,0 +1,350 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.concurrent.DaemonThreadFactory;
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.ErrorCode;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
+import com.yahoo.vespa.config.Connection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads file references as content-addressed chunks served by {@link FileChunkServer}.
+ *
+ * Chunks are fetched in parallel, from the peers returned by the source as well as the source itself,
+ * and written to a partial file in the download directory. Chunks already in the partial file are
+ * verified and kept, so a failed download is resumed by the next attempt, from any source.
+ * Every chunk is verified against the SHA-256 digest listed by the source before it is written, so peers
+ * cannot make this install other content than the source serves.
+ */
+class FileChunkDownloader {
+
+    private static final Logger log = Logger.getLogger(FileChunkDownloader.class.getName());
+
+    /** The suffix of the file holding the content of a file reference while it is being downloaded */
+    static final String partialSuffix = ".partial";
+
+    private static final Duration chunkTimeout = Duration.ofSeconds(60);
+    static final int chunksInFlightPerDownload = 8;
+
+    enum Result {
+        downloaded,
+        notFound,
+        failed,
+        /** The source does not serve chunks, and the file reference must be downloaded in some other way */
+        unsupported
+    }
+
+    private final Supervisor supervisor;
+    private final Downloads downloads;
+    private final File downloadDirectory;
+    private final Optional<Spec> peerSpec;
+    private final ExecutorService chunkExecutor =
+            Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors()),
+                                         new DaemonThreadFactory("filereference chunk downloader"));
+    private final Set<FileReference> active = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean shutDown = new AtomicBoolean(false);
+
+    /**
+     * @param peerSpec the spec where this serves chunks to peers, if it does,
+     *                 which is passed to sources so they can suggest it to others
+     */
+    FileChunkDownloader(Supervisor supervisor, Downloads downloads, File downloadDirectory, Optional<Spec> peerSpec) {
+        this.supervisor = supervisor;
+        this.downloads = downloads;
+        this.downloadDirectory = downloadDirectory;
+        this.peerSpec = peerSpec;
+    }
+
+    /** Downloads the given file reference from the given source, and returns when it is done or has failed */
+    Result download(FileReferenceDownload download, Connection connection, Duration timeout,
+                    Set<CompressionType> acceptedCompressionTypes) {
+        FileReference reference = download.fileReference();
+        Request request = createChunksRequest(download, acceptedCompressionTypes);
+        connection.invokeSync(request, timeout);
+        if (request.isError()) {
+            if (request.errorCode() == ErrorCode.NO_SUCH_METHOD) return Result.unsupported;
+
+            log.log(Level.FINE, () -> "Getting chunks of " + reference + " from " + connection.getAddress() +
+                                      " failed: error code " + request.errorCode() + " (" + request.errorMessage() + ")");
+            return Result.failed;
+        }
+        if ( ! request.checkReturnTypes("issslixS")) return Result.unsupported;
+
+        int errorCode = request.returnValues().get(0).asInt32();
+        if (errorCode != 0) {
+            log.log(Level.FINE, () -> "Getting chunks of " + reference + " from " + connection.getAddress() +
+                                      " failed (" + FileApiErrorCodes.get(errorCode) + ")");
+            return Result.notFound;
+        }
+
+        FileReferenceChunks chunks;
+        try {
+            chunks = chunksFrom(reference, request);
+        } catch (IllegalArgumentException e) {
+            log.log(Level.WARNING, "Invalid chunks of " + reference + " from " + connection.getAddress() + ": " + e.getMessage());
+            return Result.failed;
+        }
+        List<String> peers = List.of(request.returnValues().get(7).asStringArray());
+        if ( ! active.add(reference)) {
+            log.log(Level.FINE, () -> reference + " is already being downloaded in chunks");
+            return Result.failed;
+        }
+        try {
+            return download(chunks, new Sources(connection, peers)) ? Result.downloaded : Result.failed;
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Failed downloading " + chunks + " from " + connection.getAddress() + ": " + e.getMessage());
+            return Result.failed;
+        } finally {
+            active.remove(reference);
+        }
+    }
+
+    private boolean download(FileReferenceChunks chunks, Sources sources) throws IOException {
+        FileReference reference = chunks.fileReference();
+        File partial = new File(downloadDirectory, reference.value() + partialSuffix);
+        try (FileChannel channel = FileChannel.open(partial.toPath(), CREATE, READ, WRITE)) {
+            List<Integer> missing = missingChunks(chunks, channel);
+            log.log(Level.FINE, () -> "Downloading " + missing.size() + " of " + chunks + " from " + sources);
+            Collections.shuffle(missing); // Spread requests over the chunks peers are still downloading
+            Queue<Integer> remaining = new ConcurrentLinkedQueue<>(missing);
+            AtomicInteger received = new AtomicInteger(chunks.chunkCount() - missing.size());
+            AtomicBoolean failed = new AtomicBoolean(false);
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(chunksInFlightPerDownload, missing.size()); i++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    Integer chunk;
+                    while ( ! failed.get() && ! shutDown.get() && (chunk = remaining.poll()) != null) {
+                        Optional<byte[]> data = sources.fetch(chunks, chunk);
+                        if (data.isEmpty() || ! write(channel, data.get(), chunks.chunkOffset(chunk))) {
+                            failed.set(true);
+                            return;
+                        }
+                        downloads.setDownloadStatus(reference, (double) received.incrementAndGet() / chunks.chunkCount());
+                    }
+                }, chunkExecutor));
+            }
+            CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).join();
+            if (failed.get() || shutDown.get() || ! remaining.isEmpty()) {
+                log.log(Level.INFO, "Downloading " + chunks + " failed after receiving " + received.get() +
+                                    " chunks, will resume from these");
+                return false;
+            }
+            channel.truncate(chunks.size());
+        }
+        finally {
+            sources.close();
+        }
+
+        File inProgressDir = Files.createTempDirectory(downloadDirectory.toPath(), "inprogress").toFile();
+        File file = new File(inProgressDir, chunks.filename());
+        Files.move(partial.toPath(), file.toPath());
+        File installed = FileReceiver.install(inProgressDir, file, downloadDirectory, reference, chunks.type(), chunks.compressionType());
+        downloads.completedDownloading(reference, installed);
+        return true;
+    }
+
+    /** Deletes what was downloaded of the given file reference, unless it is still being downloaded */
+    void abandon(FileReference reference) {
+        if ( ! active.add(reference)) return;
+        try {
+            Files.deleteIfExists(new File(downloadDirectory, reference.value() + partialSuffix).toPath());
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed deleting partial download of " + reference + ": " + e.getMessage());
+        } finally {
+            active.remove(reference);
+        }
+    }
+
+    /** Returns the chunks which are not already present in the given partial file */
+    private static List<Integer> missingChunks(FileReferenceChunks chunks, FileChannel channel) throws IOException {
+        List<Integer> missing = new ArrayList<>();
+        long partialSize = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(chunks.chunkSize());
+        for (int chunk = 0; chunk < chunks.chunkCount(); chunk++) {
+            long offset = chunks.chunkOffset(chunk);
+            int length = chunks.chunkLength(chunk);
+            if (partialSize < offset + length) {
+                missing.add(chunk);
+                continue;
+            }
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) { }
+            if ( ! chunks.verify(chunk, buffer.array(), length))
+                missing.add(chunk);
+        }
+        return missing;
+    }
+
+    private static boolean write(FileChannel channel, byte[] data, long offset) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining())
+                channel.write(buffer, offset + buffer.position());
+            return true;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed writing chunk at offset " + offset + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Request createChunksRequest(FileReferenceDownload download, Set<CompressionType> acceptedCompressionTypes) {
+        Request request = new Request(FileChunkServer.GET_CHUNKS_METHOD);
+        request.parameters().add(new StringValue(download.fileReference().value()));
+        request.parameters().add(new Int32Value(download.downloadFromOtherSourceIfNotFound() ? 0 : 1));
+        request.parameters().add(new StringValue(peerSpec.map(Spec::toString).orElse("")));
+        request.parameters().add(new StringArray(acceptedCompressionTypes.stream().map(Enum::name).toArray(String[]::new)));
+        return request;
+    }
+
+    private static FileReferenceChunks chunksFrom(FileReference reference, Request request) {
+        var values = request.returnValues();
+        return new FileReferenceChunks(reference,
+                                       values.get(1).asString(),
+                                       Type.valueOf(values.get(2).asString()),
+                                       CompressionType.valueOf(values.get(3).asString()),
+                                       values.get(4).asInt64(),
+                                       values.get(5).asInt32(),
+                                       values.get(6).asData());
+    }
+
+    void close() {
+        shutDown.set(true);
+        chunkExecutor.shutdown();
+        try {
+            if ( ! chunkExecutor.awaitTermination(30, TimeUnit.SECONDS))
+                log.log(Level.WARNING, "FileChunkDownloader failed to shutdown within 30 seconds");
+        } catch (InterruptedException e) {
+            Thread.interrupted(); // Ignore and continue shutdown.
+        }
+    }
+
+    /** The sources of the chunks of a download: Peers first, and the source returning the chunks last */
+    private class Sources {
+
+        private final Connection connection;
+        private final List<Peer> peers = new ArrayList<>();
+
+        Sources(Connection connection, List<String> peers) {
+            this.connection = connection;
+            for (String peer : peers)
+                this.peers.add(new Peer(peer));
+        }
+
+        /** Returns the given chunk from the first source which has it, or empty if none has */
+        Optional<byte[]> fetch(FileReferenceChunks chunks, int chunk) {
+            List<Peer> candidates = new ArrayList<>(peers);
+            Collections.shuffle(candidates);
+            for (Peer peer : candidates) {
+                if (peer.failed.get()) continue;
+                Optional<byte[]> data = fetch(chunks, chunk, peer.address, peer.failed, peer::invoke);
+                if (data.isPresent()) return data;
+            }
+            return fetch(chunks, chunk, connection.getAddress(), new AtomicBoolean(), connection::invokeSync);
+        }
+
+        private Optional<byte[]> fetch(FileReferenceChunks chunks, int chunk, String address, AtomicBoolean failed, Invoker invoker) {
+            Request request = new Request(FileChunkServer.GET_CHUNK_METHOD);
+            request.parameters().add(new StringValue(chunks.fileReference().value()));
+            request.parameters().add(new Int64Value(chunks.chunkOffset(chunk)));
+            request.parameters().add(new Int32Value(chunks.chunkLength(chunk)));
+            request.parameters().add(new DataValue(chunks.chunkDigest(chunk)));
+            invoker.invoke(request, chunkTimeout);
+            if (request.isError() || ! request.checkReturnTypes("ix")) {
+                log.log(Level.FINE, () -> "Getting chunk " + chunk + " of " + chunks.fileReference() + " from " + address +
+                                          " failed: error code " + request.errorCode() + " (" + request.errorMessage() + ")");
+                failed.set(true);
+                return Optional.empty();
+            }
+            if (request.returnValues().get(0).asInt32() != 0) return Optional.empty();
+
+            byte[] data = request.returnValues().get(1).asData();
+            if (chunks.verify(chunk, data)) return Optional.of(data);
+
+            log.log(Level.WARNING, "Chunk " + chunk + " of " + chunks.fileReference() + " from " + address + " is corrupt");
+            failed.set(true);
+            return Optional.empty();
+        }
+
+        void close() {
+            peers.forEach(Peer::close);
+        }
+
+        @Override
+        public String toString() {
+            return connection.getAddress() + (peers.isEmpty() ? "" : " and peers " + peers);
+        }
+
+    }
+
+    private class Peer {
+
+        private final String address;
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+        private Target target;
+
+        Peer(String address) {
+            this.address = address;
+        }
+
+        void invoke(Request request, Duration timeout) {
+            target().invokeSync(request, timeout);
+        }
+
+        private synchronized Target target() {
+            if (target == null)
+                target = supervisor.connect(new Spec(address));
+            return target;
+        }
+
+        synchronized void close() {
+            if (target != null)
+                target.close();
+        }
+
+        @Override
+        public String toString() { return address; }
+
+    }
+
+    private interface Invoker {
+        void invoke(Request request, Duration timeout);
+    }
+
+}
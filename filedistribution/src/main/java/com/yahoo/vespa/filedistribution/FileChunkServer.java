@@ -0,0 +1,329 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.ErrorCode;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.StringValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static com.yahoo.vespa.filedistribution.FileApiErrorCodes.NOT_FOUND;
+import static com.yahoo.vespa.filedistribution.FileApiErrorCodes.OK;
+import static com.yahoo.vespa.filedistribution.FileApiErrorCodes.TRANSFER_FAILED;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type;
+
+/**
+ * Serves file references as content-addressed chunks, which clients fetch in parallel, from several sources,
+ * and resume after failures, see {@link FileReferenceChunks}.
+ *
+ * Clients first ask for the chunks of a file reference, and get back a list of peers which recently asked for
+ * the same file reference, and then fetch each chunk by its offset, length and SHA-256 digest from any of these
+ * peers, or from this. Since a chunk is only served when the data held for it has the requested digest, peers can
+ * serve chunks of file references they are still downloading, so distribution of a file reference to many
+ * nodes fans out from the config servers rather than all nodes downloading everything from them.
+ * Clients verify each chunk against the digests listed by the source they asked for the chunks, so a peer
+ * cannot make them accept other content.
+ *
+ * Only whole chunks of the chunk size of this are served, so a request cannot make this read more than one chunk.
+ *
+ * The methods of this are blocking, and should be called from a request which is detached and handled
+ * in another thread than the transport thread.
+ */
+public class FileChunkServer {
+
+    private static final Logger log = Logger.getLogger(FileChunkServer.class.getName());
+
+    public static final String GET_CHUNKS_METHOD = "filedistribution.getFileChunks";
+    public static final String GET_CHUNK_METHOD = "filedistribution.getFileChunk";
+
+    /** The max number of peers to return to a client */
+    static final int maxPeers = 4;
+    /** The max number of peers to remember per file reference */
+    private static final int maxPeersPerFileReference = 16;
+    private static final int maxFileReferencesWithPeers = 100;
+    private static final int maxCachedContent = 10;
+
+    /** A source of the file references served by this */
+    public interface Source {
+
+        /**
+         * Returns the content to serve for the given download, which is downloaded from another source first
+         * if it is not found here and that is requested.
+         *
+         * @return the content to serve, or empty if this does not have this file reference
+         */
+        Optional<Content> content(FileReferenceDownload download, Set<CompressionType> acceptedCompressionTypes) throws IOException;
+
+        /** Returns files which may hold all or parts of the content served for the given file reference */
+        default List<File> files(FileReference reference) { return List.of(); }
+
+    }
+
+    /**
+     * Content served for a file reference.
+     *
+     * @param file the file holding the content
+     * @param temporary whether the file was created for serving, and should be deleted when no longer served
+     */
+    public record Content(String filename, Type type, CompressionType compressionType, File file, boolean temporary) { }
+
+    private record Served(Content content, FileReferenceChunks chunks) { }
+
+    private final Source source;
+    private final int chunkSize;
+    private final Map<FileReference, Served> served = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<FileReference, CompletableFuture<Optional<Served>>> preparing = new ConcurrentHashMap<>();
+    private final Map<FileReference, Deque<String>> peers = new LinkedHashMap<>(16, 0.75f, true);
+
+    public FileChunkServer(Source source) {
+        this(source, FileReferenceChunks.defaultChunkSize);
+    }
+
+    FileChunkServer(Source source, int chunkSize) {
+        this.source = source;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Returns the method returning the chunks of a file reference, to be added to a supervisor with the given handler */
+    public static Method getChunksMethod(MethodHandler handler) {
+        return new Method(GET_CHUNKS_METHOD, "sisS", "issslixS", handler)
+                .methodDesc("get the chunks of a file reference, and peers which may serve them")
+                .paramDesc(0, "filereference", "file reference to download")
+                .paramDesc(1, "downloadFromOtherSourceIfNotFound", "0 to download from another source if not found")
+                .paramDesc(2, "peer", "jrt spec where the client serves chunks to peers, or empty if it does not")
+                .paramDesc(3, "compressionTypes", "accepted compression types: gzip, lz4, zstd, none")
+                .returnDesc(0, "error-code", "0 if success")
+                .returnDesc(1, "filename", "filename")
+                .returnDesc(2, "type", "'file' or 'compressed'")
+                .returnDesc(3, "compressionType", "compression type of the content")
+                .returnDesc(4, "filelength", "length in bytes of the content")
+                .returnDesc(5, "chunksize", "length in bytes of each chunk, except the last")
+                .returnDesc(6, "chunkdigests", "SHA-256 digest of each chunk, concatenated")
+                .returnDesc(7, "peers", "jrt specs of peers which may serve chunks of this file reference");
+    }
+
+    /** Returns the method returning a chunk of a file reference, to be added to a supervisor with the given handler */
+    public static Method getChunkMethod(MethodHandler handler) {
+        return new Method(GET_CHUNK_METHOD, "slix", "ix", handler)
+                .methodDesc("get a chunk of a file reference, if its content has the given digest")
+                .paramDesc(0, "filereference", "file reference to download")
+                .paramDesc(1, "offset", "offset in bytes of the chunk in the content, a multiple of the chunk size")
+                .paramDesc(2, "length", "length in bytes of the chunk, at most the chunk size")
+                .paramDesc(3, "digest", "SHA-256 digest of the chunk")
+                .returnDesc(0, "error-code", "0 if success")
+                .returnDesc(1, "data", "the content of the chunk");
+    }
+
+    /** Handles a request to the method returned by {@link #getChunksMethod}, but does not return it */
+    public void getChunks(Request request) {
+        FileReference reference = new FileReference(request.parameters().get(0).asString());
+        boolean downloadFromOtherSourceIfNotFound = request.parameters().get(1).asInt32() == 0;
+        String peer = request.parameters().get(2).asString();
+        Set<CompressionType> acceptedCompressionTypes = Arrays.stream(request.parameters().get(3).asStringArray())
+                                                              .map(CompressionType::valueOf)
+                                                              .collect(Collectors.toSet());
+        String client = request.target().toString();
+        try {
+            var download = new FileReferenceDownload(reference, client, downloadFromOtherSourceIfNotFound);
+            Optional<FileReferenceChunks> chunks = chunks(download, acceptedCompressionTypes);
+            if (chunks.isEmpty()) {
+                returnChunks(request, NOT_FOUND, null, List.of());
+            } else {
+                log.log(Level.FINE, () -> "Serving " + chunks.get() + " to " + client);
+                returnChunks(request, OK, chunks.get(), peers(reference, peer));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Failed serving chunks of " + reference + " to " + client + ": " + e.getMessage());
+            returnChunks(request, TRANSFER_FAILED, null, List.of());
+        }
+    }
+
+    /** Handles a request to the method returned by {@link #getChunkMethod}, but does not return it */
+    public void getChunk(Request request) {
+        FileReference reference = new FileReference(request.parameters().get(0).asString());
+        long offset = request.parameters().get(1).asInt64();
+        int length = request.parameters().get(2).asInt32();
+        byte[] digest = request.parameters().get(3).asData();
+        if ( ! FileReferenceChunks.isChunk(offset, length, chunkSize) || digest.length != FileReferenceChunks.digestLength) {
+            request.setError(ErrorCode.BAD_REQUEST, "Offset " + offset + ", length " + length + " and digest of " +
+                                                    digest.length + " bytes is not a chunk of " + chunkSize + " bytes");
+            return;
+        }
+
+        for (File file : files(reference)) {
+            try {
+                Optional<byte[]> data = FileReferenceChunks.readChunk(file, chunkSize, offset, length, digest);
+                if (data.isPresent()) {
+                    request.returnValues().add(new Int32Value(OK.code())).add(new DataValue(data.get()));
+                    return;
+                }
+            } catch (IOException e) { // file removed or being replaced, try the next
+                log.log(Level.FINE, () -> "Failed reading chunk of " + reference + " from " + file + ": " + e.getMessage());
+            }
+        }
+        request.returnValues().add(new Int32Value(NOT_FOUND.code())).add(new DataValue(new byte[0]));
+    }
+
+    /** Deletes all temporary content held by this */
+    public void close() {
+        synchronized (served) {
+            served.values().forEach(s -> delete(s.content()));
+            served.clear();
+        }
+    }
+
+    Optional<FileReferenceChunks> chunks(FileReferenceDownload download, Set<CompressionType> acceptedCompressionTypes) throws IOException {
+        FileReference reference = download.fileReference();
+        Optional<Served> current = served(reference, acceptedCompressionTypes);
+        if (current.isPresent()) return current.map(Served::chunks);
+
+        // Let concurrent requests for the same file reference wait for a single preparation of its content
+        CompletableFuture<Optional<Served>> preparation = new CompletableFuture<>();
+        CompletableFuture<Optional<Served>> inFlight = preparing.putIfAbsent(reference, preparation);
+        if (inFlight == null) {
+            try {
+                Optional<Served> prepared = served(reference, acceptedCompressionTypes); // May have completed meanwhile
+                if (prepared.isEmpty())
+                    prepared = prepare(download, acceptedCompressionTypes);
+                preparation.complete(prepared);
+                return prepared.map(Served::chunks);
+            } catch (IOException | RuntimeException e) {
+                preparation.completeExceptionally(e);
+                throw e;
+            } finally {
+                preparing.remove(reference, preparation);
+            }
+        }
+
+        Optional<Served> prepared = await(inFlight);
+        if (prepared.isPresent() && acceptedCompressionTypes.contains(prepared.get().content().compressionType()))
+            return prepared.map(Served::chunks);
+
+        // Prepared for a request accepting other compression types, or not allowing download from other sources
+        return prepare(download, acceptedCompressionTypes).map(Served::chunks);
+    }
+
+    private Optional<Served> served(FileReference reference, Set<CompressionType> acceptedCompressionTypes) {
+        synchronized (served) {
+            Served current = served.get(reference);
+            if (current != null && acceptedCompressionTypes.contains(current.content().compressionType()))
+                return Optional.of(current);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Served> prepare(FileReferenceDownload download, Set<CompressionType> acceptedCompressionTypes) throws IOException {
+        FileReference reference = download.fileReference();
+        Optional<Content> content = source.content(download, acceptedCompressionTypes);
+        if (content.isEmpty()) return Optional.empty();
+
+        Content c = content.get();
+        FileReferenceChunks chunks = FileReferenceChunks.compute(reference, c.filename(), c.type(), c.compressionType(), c.file(), chunkSize);
+        synchronized (served) {
+            Served current = served.get(reference);
+            if (current != null && acceptedCompressionTypes.contains(current.content().compressionType())) {
+                delete(c); // Prepared concurrently; keep serving what others may already be fetching
+                return Optional.of(current);
+            }
+            if (current != null)
+                delete(current.content());
+            Served prepared = new Served(c, chunks);
+            served.put(reference, prepared);
+            if (served.size() > maxCachedContent) {
+                var eldest = served.entrySet().iterator().next();
+                served.remove(eldest.getKey());
+                delete(eldest.getValue().content());
+            }
+            return Optional.of(prepared);
+        }
+    }
+
+    private static Optional<Served> await(CompletableFuture<Optional<Served>> preparation) throws IOException {
+        try {
+            return preparation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) throw new IOException(cause.getMessage(), cause);
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /** Returns the peers to suggest to the given peer for the given file reference, and remembers that peer */
+    List<String> peers(FileReference reference, String peer) {
+        if (peer.isEmpty()) return List.of(); // The client does not participate in serving chunks to others
+
+        synchronized (peers) {
+            Deque<String> known = peers.computeIfAbsent(reference, __ -> new ArrayDeque<>());
+            List<String> candidates = new ArrayList<>(known);
+            candidates.remove(peer);
+            Collections.shuffle(candidates);
+
+            known.remove(peer);
+            known.addLast(peer);
+            if (known.size() > maxPeersPerFileReference)
+                known.removeFirst();
+            if (peers.size() > maxFileReferencesWithPeers)
+                peers.remove(peers.keySet().iterator().next());
+            return List.copyOf(candidates.subList(0, Math.min(maxPeers, candidates.size())));
+        }
+    }
+
+    private List<File> files(FileReference reference) {
+        List<File> files = new ArrayList<>();
+        synchronized (served) {
+            Served current = served.get(reference);
+            if (current != null)
+                files.add(current.content().file());
+        }
+        files.addAll(source.files(reference));
+        return files;
+    }
+
+    private static void returnChunks(Request request, FileApiErrorCodes code, FileReferenceChunks chunks, List<String> peers) {
+        request.returnValues()
+               .add(new Int32Value(code.code()))
+               .add(new StringValue(chunks == null ? "" : chunks.filename()))
+               .add(new StringValue(chunks == null ? Type.file.name() : chunks.type().name()))
+               .add(new StringValue(chunks == null ? CompressionType.none.name() : chunks.compressionType().name()))
+               .add(new Int64Value(chunks == null ? 0 : chunks.size()))
+               .add(new Int32Value(chunks == null ? FileReferenceChunks.defaultChunkSize : chunks.chunkSize()))
+               .add(new DataValue(chunks == null ? new byte[0] : chunks.chunkDigests()))
+               .add(new StringArray(peers.toArray(new String[0])));
+    }
+
+    private static void delete(Content content) {
+        if ( ! content.temporary()) return;
+        try {
+            Files.deleteIfExists(content.file().toPath());
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed deleting " + content.file() + ": " + e.getMessage());
+        }
+    }
+
+}
@@ -9,9 +9,11 @@ import com.yahoo.vespa.config.ConnectionPool;
 import com.yahoo.vespa.defaults.Defaults;
 import java.io.File;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -20,6 +22,8 @@ import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
+
 /**
  * Handles downloads of files (file references only for now)
  *
@@ -51,11 +55,28 @@ public class FileDownloader implements AutoCloseable {
         this(connectionPool, supervisor, defaultDownloadDirectory, timeout, backoffInitialTime);
     }
 
+    /**
+     * Creates a file downloader which also serves chunks of the file references it holds to peers,
+     * see {@link #chunkSource()}, at the given spec.
+     */
+    public FileDownloader(ConnectionPool connectionPool, Supervisor supervisor, Duration timeout, Spec peerSpec) {
+        this(connectionPool, supervisor, defaultDownloadDirectory, timeout, backoffInitialTime, Optional.of(peerSpec));
+    }
+
     public FileDownloader(ConnectionPool connectionPool,
                           Supervisor supervisor,
                           File downloadDirectory,
                           Duration timeout,
                           Duration backoffInitialTime) {
+        this(connectionPool, supervisor, downloadDirectory, timeout, backoffInitialTime, Optional.empty());
+    }
+
+    FileDownloader(ConnectionPool connectionPool,
+                   Supervisor supervisor,
+                   File downloadDirectory,
+                   Duration timeout,
+                   Duration backoffInitialTime,
+                   Optional<Spec> peerSpec) {
         this.connectionPool = connectionPool;
         this.supervisor = supervisor;
         this.downloadDirectory = downloadDirectory;
@@ -63,10 +84,12 @@ public class FileDownloader implements AutoCloseable {
         // Needed to receive RPC receiveFile* calls from server after starting download of file reference
         new FileReceiver(supervisor, downloads, downloadDirectory);
         this.fileReferenceDownloader = new FileReferenceDownloader(connectionPool,
+                                                                   supervisor,
                                                                    downloads,
                                                                    timeout,
                                                                    backoffInitialTime,
-                                                                   downloadDirectory);
+                                                                   downloadDirectory,
+                                                                   peerSpec);
         if (forceDownload)
             log.log(Level.INFO, "Force download of file references (download even if file reference exists on disk)");
     }
@@ -112,6 +135,33 @@ public class FileDownloader implements AutoCloseable {
         return downloadDirectory;
     }
 
+    /**
+     * Returns a source of the chunks held by this, for serving to peers with a {@link FileChunkServer}:
+     * File references which are single files, and file references which are being downloaded in chunks.
+     */
+    public FileChunkServer.Source chunkSource() {
+        return new FileChunkServer.Source() {
+
+            @Override
+            public Optional<FileChunkServer.Content> content(FileReferenceDownload download, Set<CompressionType> acceptedCompressionTypes) {
+                return Optional.empty(); // Peers get the chunks of a file reference from config servers
+            }
+
+            @Override
+            public List<File> files(FileReference reference) {
+                List<File> files = new ArrayList<>();
+                File[] downloaded = new File(downloadDirectory, reference.value()).listFiles();
+                if (downloaded != null && downloaded.length == 1 && downloaded[0].isFile())
+                    files.add(downloaded[0]);
+                File partial = new File(downloadDirectory, reference.value() + FileChunkDownloader.partialSuffix);
+                if (partial.isFile())
+                    files.add(partial);
+                return files;
+            }
+
+        };
+    }
+
     private Optional<File> getFileFromFileSystem(FileReference fileReference) {
         return getFileFromFileSystem(fileReference, downloadDirectory);
     }
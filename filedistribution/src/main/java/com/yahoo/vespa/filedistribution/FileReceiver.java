@@ -59,7 +59,6 @@ public class FileReceiver {
         private long currentFileSize;
         private long currentPartId;
         private final long currentHash;
-        private final File fileReferenceDir;
         private final File tmpDir;
         private final File inProgressDir;
         private final File file;
@@ -81,7 +80,6 @@ public class FileReceiver {
             currentFileSize = 0;
             currentPartId = 0;
             currentHash = 0;
-            fileReferenceDir = new File(downloadDirectory, reference.value());
             this.tmpDir = downloadDirectory;
 
             try {
@@ -119,27 +117,7 @@ public class FileReceiver {
 
         File close(long hash) {
             verifyHash(hash);
-
-            File decompressedDir = null;
-            try {
-                if (fileType == Type.file) {
-                    log.log(Level.FINE, () -> "Uncompressed file, moving to " + file.getAbsolutePath());
-                    moveFileToDestination(inProgressDir, fileReferenceDir);
-                } else {
-                    decompressedDir = Files.createTempDirectory(tmpDir.toPath(), "archive").toFile();
-                    log.log(Level.FINEST, () -> "compression type to use=" + compressionType);
-                    new FileReferenceCompressor(fileType, compressionType).decompress(file, decompressedDir);
-                    log.log(Level.FINE, "Compressed file, moving to " + decompressedDir.getAbsolutePath());
-                    moveFileToDestination(decompressedDir, fileReferenceDir);
-                }
-            } catch (IOException e) {
-                log.log(Level.SEVERE, "Failed writing file: " + e.getMessage(), e);
-                throw new RuntimeException("Failed writing file: ", e);
-            } finally {
-                deletePath(inProgressDir);
-                deletePath(decompressedDir);
-            }
-            return new File(fileReferenceDir, fileName);
+            return install(inProgressDir, file, tmpDir, reference, fileType, compressionType);
         }
 
         double percentageReceived() {
@@ -195,6 +173,38 @@ public class FileReceiver {
         return methods;
     }
 
+    /**
+     * Moves a received file, which is the only file in the given in-progress directory, to the directory of its
+     * file reference in the given download directory, decompressing it first if it is compressed.
+     * The in-progress directory is deleted.
+     *
+     * @return the file reference file in the download directory
+     */
+    static File install(File inProgressDir, File file, File downloadDirectory, FileReference reference,
+                        Type fileType, CompressionType compressionType) {
+        File fileReferenceDir = new File(downloadDirectory, reference.value());
+        File decompressedDir = null;
+        try {
+            if (fileType == Type.file) {
+                log.log(Level.FINE, () -> "Uncompressed file, moving to " + file.getAbsolutePath());
+                moveFileToDestination(inProgressDir, fileReferenceDir);
+            } else {
+                decompressedDir = Files.createTempDirectory(downloadDirectory.toPath(), "archive").toFile();
+                log.log(Level.FINEST, () -> "compression type to use=" + compressionType);
+                new FileReferenceCompressor(fileType, compressionType).decompress(file, decompressedDir);
+                log.log(Level.FINE, "Compressed file, moving to " + decompressedDir.getAbsolutePath());
+                moveFileToDestination(decompressedDir, fileReferenceDir);
+            }
+        } catch (IOException e) {
+            log.log(Level.SEVERE, "Failed writing file: " + e.getMessage(), e);
+            throw new RuntimeException("Failed writing file: ", e);
+        } finally {
+            deletePath(inProgressDir);
+            deletePath(decompressedDir);
+        }
+        return new File(fileReferenceDir, file.getName());
+    }
+
     private static void moveFileToDestination(File tempFile, File destination) {
         try {
             Files.move(tempFile.toPath(), destination.toPath());
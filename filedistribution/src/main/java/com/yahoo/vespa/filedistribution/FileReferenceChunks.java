@@ -0,0 +1,192 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The content of a file reference, as served, split into fixed size chunks identified by their SHA-256 digest.
+ * Since chunks are addressed by their content, they can be fetched in any order, from any source
+ * holding the same content, and chunks already present from an earlier attempt can be verified and kept.
+ * The digests are cryptographic, so chunks from untrusted peers can be verified against the digests
+ * listed by a trusted source.
+ */
+public class FileReferenceChunks {
+
+    public static final int defaultChunkSize = 1 << 20;
+
+    /** The length in bytes of the digest of a chunk */
+    public static final int digestLength = 32;
+
+    private final FileReference fileReference;
+    private final String filename;
+    private final Type type;
+    private final CompressionType compressionType;
+    private final long size;
+    private final int chunkSize;
+    private final byte[] chunkDigests;
+
+    /**
+     * @param chunkDigests the SHA-256 digests of all chunks, in order, concatenated
+     */
+    public FileReferenceChunks(FileReference fileReference, String filename, Type type, CompressionType compressionType,
+                               long size, int chunkSize, byte[] chunkDigests) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive, but was " + chunkSize);
+        if (size < 0)
+            throw new IllegalArgumentException("Size must be non-negative, but was " + size);
+        if (chunkDigests.length != (long) chunkCount(size, chunkSize) * digestLength)
+            throw new IllegalArgumentException("Expected " + chunkCount(size, chunkSize) + " chunk digests for " + size +
+                                               " bytes in chunks of " + chunkSize + " bytes, but got " +
+                                               chunkDigests.length + " bytes of digests");
+        this.fileReference = Objects.requireNonNull(fileReference);
+        this.filename = Objects.requireNonNull(filename);
+        this.type = Objects.requireNonNull(type);
+        this.compressionType = Objects.requireNonNull(compressionType);
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkDigests = chunkDigests;
+    }
+
+    public FileReference fileReference() { return fileReference; }
+
+    public String filename() { return filename; }
+
+    public Type type() { return type; }
+
+    public CompressionType compressionType() { return compressionType; }
+
+    /** Returns the size of the content in bytes */
+    public long size() { return size; }
+
+    public int chunkSize() { return chunkSize; }
+
+    public int chunkCount() { return chunkDigests.length / digestLength; }
+
+    public long chunkOffset(int chunk) { return (long) chunk * chunkSize; }
+
+    public int chunkLength(int chunk) { return (int) Math.min(chunkSize, size - chunkOffset(chunk)); }
+
+    public byte[] chunkDigest(int chunk) {
+        return Arrays.copyOfRange(chunkDigests, chunk * digestLength, (chunk + 1) * digestLength);
+    }
+
+    /** Returns a copy of the digests of all chunks, in order, concatenated */
+    public byte[] chunkDigests() { return chunkDigests.clone(); }
+
+    /** Returns whether the given data is the given chunk of this content */
+    public boolean verify(int chunk, byte[] data) {
+        return verify(chunk, data, data.length);
+    }
+
+    /** Returns whether the first length bytes of the given data is the given chunk of this content */
+    boolean verify(int chunk, byte[] data, int length) {
+        return length == chunkLength(chunk) && MessageDigest.isEqual(digest(data, length), chunkDigest(chunk));
+    }
+
+    /** Computes the chunks of the given content file */
+    public static FileReferenceChunks compute(FileReference fileReference, String filename, Type type,
+                                              CompressionType compressionType, File content, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(content.toPath(), READ)) {
+            long size = channel.size();
+            int chunkCount = chunkCount(size, chunkSize);
+            byte[] chunkDigests = new byte[chunkCount * digestLength];
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                buffer.clear().limit((int) Math.min(chunkSize, size - (long) chunk * chunkSize));
+                readFully(channel, buffer, (long) chunk * chunkSize);
+                System.arraycopy(digest(buffer.array(), buffer.limit()), 0, chunkDigests, chunk * digestLength, digestLength);
+            }
+            return new FileReferenceChunks(fileReference, filename, type, compressionType, size, chunkSize, chunkDigests);
+        }
+    }
+
+    /** Returns whether the given range is a valid chunk of some content split into chunks of the given size */
+    public static boolean isChunk(long offset, int length, int chunkSize) {
+        return offset >= 0 && offset % chunkSize == 0 && length > 0 && length <= chunkSize;
+    }
+
+    /**
+     * Reads the given chunk of the given file, if the file holds data with the given digest there.
+     *
+     * @return the data of the chunk, or empty if the file does not hold the expected data in that range
+     * @throws IllegalArgumentException if the range is not a chunk of content split into chunks of the given size
+     */
+    public static Optional<byte[]> readChunk(File file, int chunkSize, long offset, int length, byte[] digest) throws IOException {
+        if ( ! isChunk(offset, length, chunkSize))
+            throw new IllegalArgumentException("Offset " + offset + " and length " + length +
+                                               " is not a chunk of content in chunks of " + chunkSize + " bytes");
+        if (digest.length != digestLength)
+            throw new IllegalArgumentException("Expected a digest of " + digestLength + " bytes, but got " + digest.length);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            if (channel.size() < offset + length) return Optional.empty();
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            readFully(channel, buffer, offset);
+            byte[] data = buffer.array();
+            return MessageDigest.isEqual(digest(data, length), digest) ? Optional.of(data) : Optional.empty();
+        }
+    }
+
+    static byte[] digest(byte[] data, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, 0, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of file at " + position);
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static int chunkCount(long size, int chunkSize) {
+        return Math.toIntExact((size + chunkSize - 1) / chunkSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if ( ! (o instanceof FileReferenceChunks other)) return false;
+        return size == other.size &&
+               chunkSize == other.chunkSize &&
+               fileReference.equals(other.fileReference) &&
+               filename.equals(other.filename) &&
+               type == other.type &&
+               compressionType == other.compressionType &&
+               Arrays.equals(chunkDigests, other.chunkDigests);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fileReference, filename, type, compressionType, size, chunkSize, Arrays.hashCode(chunkDigests));
+    }
+
+    @Override
+    public String toString() {
+        return fileReference.value() + " (" + filename + "), " + type.name() + ", " + size + " bytes in " +
+               chunkCount() + " chunks";
+    }
+
+}
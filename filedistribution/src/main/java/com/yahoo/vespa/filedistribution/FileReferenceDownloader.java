@@ -8,6 +8,7 @@ import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Spec;
 import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
 import com.yahoo.vespa.config.Connection;
 import com.yahoo.vespa.config.ConnectionPool;
 
@@ -30,7 +31,9 @@ import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.zstd;
 
 /**
- * Downloads file reference from config server and keeps track of files being downloaded
+ * Downloads file reference from config server and keeps track of files being downloaded.
+ * File references are downloaded in chunks, see {@link FileChunkDownloader}, from sources serving them,
+ * and otherwise by asking the source to send the file reference to {@link FileReceiver}.
  *
  * @author hmusum
  */
@@ -48,18 +51,22 @@ public class FileReferenceDownloader {
     private final Duration backoffInitialTime;
     private final Optional<Duration> rpcTimeout; // Only used when overridden with env variable
     private final File downloadDirectory;
+    private final FileChunkDownloader chunkDownloader;
     private final AtomicBoolean shutDown = new AtomicBoolean(false);
 
     FileReferenceDownloader(ConnectionPool connectionPool,
+                            Supervisor supervisor,
                             Downloads downloads,
                             Duration timeout,
                             Duration backoffInitialTime,
-                            File downloadDirectory) {
+                            File downloadDirectory,
+                            Optional<Spec> peerSpec) {
         this.connectionPool = connectionPool;
         this.downloads = downloads;
         this.downloadTimeout = timeout;
         this.backoffInitialTime = backoffInitialTime;
         this.downloadDirectory = downloadDirectory;
+        this.chunkDownloader = new FileChunkDownloader(supervisor, downloads, downloadDirectory, peerSpec);
         // Undocumented on purpose, might change or be removed at any time
         var timeoutString = Optional.ofNullable(System.getenv("VESPA_FILE_DOWNLOAD_RPC_TIMEOUT"));
         this.rpcTimeout = timeoutString.map(t -> Duration.ofSeconds(Integer.parseInt(t)));
@@ -91,6 +98,7 @@ public class FileReferenceDownloader {
             connection = connectionPool.switchConnection(connection);
         } while (Instant.now().isBefore(end));
 
+        chunkDownloader.abandon(fileReference);
         fileReferenceDownload.future().completeExceptionally(new RuntimeException("Failed getting " + fileReference));
         downloads.remove(fileReference);
     }
@@ -145,12 +153,24 @@ public class FileReferenceDownloader {
     }
 
     private boolean startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount, Connection connection, Duration timeout) {
-        Request request = createRequest(fileReferenceDownload);
-        connection.invokeSync(request, timeout);
-
         Level logLevel = (retryCount > 3 ? Level.INFO : Level.FINE);
         FileReference fileReference = fileReferenceDownload.fileReference();
         String address = connection.getAddress();
+        switch (chunkDownloader.download(fileReferenceDownload, connection, timeout, defaultAcceptedCompressionTypes)) {
+            case downloaded:
+                return true;
+            case notFound:
+            case failed:
+                log.log(logLevel, "Downloading " + fileReference + " in chunks from " + address + " failed" +
+                                  " (retry " + retryCount + ", rpc timeout " + timeout + ")");
+                return false;
+            case unsupported:
+                break; // Fall back to having the source send the file reference to FileReceiver
+        }
+
+        Request request = createRequest(fileReferenceDownload);
+        connection.invokeSync(request, timeout);
+
         if (validateResponse(request)) {
             log.log(Level.FINE, () -> "Request callback, OK. Req: " + request + "\nSpec: " + connection);
             int errorCode = request.returnValues().get(0).asInt32();
@@ -196,6 +216,7 @@ public class FileReferenceDownloader {
 
     public void close() {
         shutDown.set(true);
+        chunkDownloader.close();
         downloadExecutor.shutdown();
         try {
             if (!downloadExecutor.awaitTermination(30, TimeUnit.SECONDS))
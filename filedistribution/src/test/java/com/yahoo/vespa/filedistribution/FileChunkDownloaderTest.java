@@ -0,0 +1,392 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.config.subscription.ConfigSourceSet;
+import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Acceptor;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.ErrorCode;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
+import com.yahoo.jrt.Transport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.zstd;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.compressed;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.file;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FileChunkDownloaderTest {
+
+    private static final int chunkSize = 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<Supervisor> supervisors = new ArrayList<>();
+    private final List<FileDownloader> downloaders = new ArrayList<>();
+    private File serverDirectory;
+    private FileChunkServer server;
+    private Spec serverSpec;
+    private final AtomicInteger chunksServed = new AtomicInteger();
+
+    @Before
+    public void setup() throws IOException, ListenFailedException {
+        serverDirectory = temporaryFolder.newFolder("server");
+        Supervisor supervisor = supervisor();
+        Acceptor acceptor = supervisor.listen(new Spec(0));
+        server = new FileChunkServer(new DirectorySource(serverDirectory), chunkSize);
+        addMethods(supervisor, server, chunksServed);
+        serverSpec = new Spec("localhost", acceptor.port());
+    }
+
+    @After
+    public void teardown() {
+        downloaders.forEach(FileDownloader::close);
+        supervisors.forEach(supervisor -> supervisor.transport().shutdown().join());
+    }
+
+    @Test
+    public void fileIsDownloadedInChunks() throws IOException {
+        byte[] content = writeFile("ref", "model.onnx", 10_500);
+        Client client = client("a", false);
+
+        Optional<File> downloaded = client.getFile("ref");
+        assertTrue(downloaded.isPresent());
+        assertEquals("model.onnx", downloaded.get().getName());
+        assertArrayEquals(content, Files.readAllBytes(downloaded.get().toPath()));
+        assertEquals(11, chunksServed.get());
+        assertEquals(1.0, client.downloader.downloadStatus().get(new FileReference("ref")), 0.0001);
+        assertFalse(new File(client.directory, "ref" + FileChunkDownloader.partialSuffix).exists());
+    }
+
+    @Test
+    public void compressedDirectoryIsDownloadedInChunks() throws IOException {
+        File directory = new File(new File(serverDirectory, "dir-ref"), "app");
+        IOUtils.writeFile(new File(directory, "services.xml"), "<services/>", false);
+        IOUtils.writeFile(new File(directory, "components/bundle.jar"), "jar", false);
+
+        Optional<File> downloaded = client("a", false).getFile("dir-ref");
+        assertTrue(downloaded.isPresent());
+        assertEquals("<services/>", IOUtils.readFile(new File(downloaded.get(), "services.xml")));
+        assertEquals("jar", IOUtils.readFile(new File(downloaded.get(), "components/bundle.jar")));
+    }
+
+    @Test
+    public void partialDownloadIsResumed() throws IOException {
+        byte[] content = writeFile("ref", "model.onnx", 10_500);
+        Client client = client("a", false);
+
+        // Chunks 0-3 from an earlier attempt, chunk 4 corrupt, the rest missing
+        byte[] partial = new byte[4 * chunkSize + 500];
+        System.arraycopy(content, 0, partial, 0, partial.length);
+        partial[4 * chunkSize + 17]++;
+        Files.write(new File(client.directory, "ref" + FileChunkDownloader.partialSuffix).toPath(), partial);
+
+        Optional<File> downloaded = client.getFile("ref");
+        assertTrue(downloaded.isPresent());
+        assertArrayEquals(content, Files.readAllBytes(downloaded.get().toPath()));
+        assertEquals(7, chunksServed.get());
+    }
+
+    @Test
+    public void chunksAreDownloadedFromPeers() throws IOException {
+        byte[] content = writeFile("ref", "model.onnx", 10_500);
+        Client first = client("first", true);
+        Client second = client("second", true);
+
+        assertTrue(first.getFile("ref").isPresent());
+        assertEquals(11, chunksServed.get());
+        assertEquals(0, first.chunksServed.get());
+
+        Optional<File> downloaded = second.getFile("ref");
+        assertTrue(downloaded.isPresent());
+        assertArrayEquals(content, Files.readAllBytes(downloaded.get().toPath()));
+        assertEquals("All chunks are served by the first client", 11, first.chunksServed.get());
+        assertEquals(11, chunksServed.get());
+    }
+
+    @Test
+    public void peersServeChunksOfPartialDownloads() throws IOException {
+        byte[] content = writeFile("ref", "model.onnx", 10_500);
+        Client peer = client("peer", true);
+        FileChunkServer.Source source = peer.downloader.chunkSource();
+        assertTrue(source.files(new FileReference("ref")).isEmpty());
+
+        byte[] partial = new byte[3 * chunkSize];
+        System.arraycopy(content, 0, partial, 0, partial.length);
+        File partialFile = new File(peer.directory, "ref" + FileChunkDownloader.partialSuffix);
+        Files.write(partialFile.toPath(), partial);
+        assertEquals(List.of(partialFile), source.files(new FileReference("ref")));
+
+        FileReferenceChunks chunks = FileReferenceChunks.compute(new FileReference("ref"), "model.onnx", file, zstd,
+                                                                 new File(serverDirectory, "ref/model.onnx"), chunkSize);
+        assertTrue(FileReferenceChunks.readChunk(partialFile, chunkSize, chunks.chunkOffset(2), chunkSize, chunks.chunkDigest(2)).isPresent());
+        assertFalse(FileReferenceChunks.readChunk(partialFile, chunkSize, chunks.chunkOffset(2), chunkSize, chunks.chunkDigest(1)).isPresent());
+        assertFalse(FileReferenceChunks.readChunk(partialFile, chunkSize, chunks.chunkOffset(3), chunkSize, chunks.chunkDigest(3)).isPresent());
+    }
+
+    @Test
+    public void onlyWholeChunksAreRead() throws IOException {
+        writeFile("ref", "model.onnx", 10_500);
+        File content = new File(serverDirectory, "ref/model.onnx");
+        FileReferenceChunks chunks = FileReferenceChunks.compute(new FileReference("ref"), "model.onnx", file, zstd, content, chunkSize);
+        assertTrue(FileReferenceChunks.readChunk(content, chunkSize, chunks.chunkOffset(10), 500, chunks.chunkDigest(10)).isPresent());
+        assertThrows(IllegalArgumentException.class,
+                     () -> FileReferenceChunks.readChunk(content, chunkSize, 0, chunkSize + 1, chunks.chunkDigest(0)));
+        assertThrows(IllegalArgumentException.class,
+                     () -> FileReferenceChunks.readChunk(content, chunkSize, 1, chunkSize, chunks.chunkDigest(0)));
+        assertThrows(IllegalArgumentException.class,
+                     () -> FileReferenceChunks.readChunk(content, chunkSize, 0, 0, chunks.chunkDigest(0)));
+        assertThrows(IllegalArgumentException.class,
+                     () -> FileReferenceChunks.readChunk(content, chunkSize, 0, chunkSize, new byte[8]));
+    }
+
+    @Test
+    public void requestsForOtherThanWholeChunksAreRejected() throws IOException {
+        writeFile("ref", "model.onnx", 10_500);
+        Client client = client("a", false);
+        assertTrue(client.getFile("ref").isPresent());
+        byte[] digest = FileReferenceChunks.compute(new FileReference("ref"), "model.onnx", file, zstd,
+                                                    new File(serverDirectory, "ref/model.onnx"), chunkSize).chunkDigest(0);
+
+        Request tooLong = chunkRequest("ref", 0, Integer.MAX_VALUE, digest);
+        client.server().invokeSync(tooLong, Duration.ofSeconds(10));
+        assertEquals(ErrorCode.BAD_REQUEST, tooLong.errorCode());
+
+        Request unaligned = chunkRequest("ref", 1, chunkSize, digest);
+        client.server().invokeSync(unaligned, Duration.ofSeconds(10));
+        assertEquals(ErrorCode.BAD_REQUEST, unaligned.errorCode());
+
+        Request valid = chunkRequest("ref", 0, chunkSize, digest);
+        client.server().invokeSync(valid, Duration.ofSeconds(10));
+        assertFalse(valid.isError());
+        assertEquals(chunkSize, valid.returnValues().get(1).asData().length);
+    }
+
+    @Test
+    public void corruptChunksFromPeersAreRejected() throws IOException, ListenFailedException {
+        byte[] content = writeFile("ref", "model.onnx", 10_500);
+        AtomicInteger corruptChunksServed = new AtomicInteger();
+        Supervisor corruptPeer = supervisor();
+        Spec corruptPeerSpec = new Spec("localhost", corruptPeer.listen(new Spec(0)).port());
+        corruptPeer.addMethod(FileChunkServer.getChunkMethod(request -> {
+            byte[] data = new byte[request.parameters().get(2).asInt32()];
+            new Random().nextBytes(data);
+            request.returnValues().add(new Int32Value(0)).add(new DataValue(data));
+            corruptChunksServed.incrementAndGet();
+        }));
+        server.peers(new FileReference("ref"), corruptPeerSpec.toString());
+
+        Optional<File> downloaded = client("a", true).getFile("ref");
+        assertTrue(downloaded.isPresent());
+        assertArrayEquals(content, Files.readAllBytes(downloaded.get().toPath()));
+        assertTrue("The corrupt peer is not asked again after its chunks are rejected",
+                   corruptChunksServed.get() <= FileChunkDownloader.chunksInFlightPerDownload);
+        assertEquals(11, chunksServed.get());
+    }
+
+    @Test
+    public void partialDownloadIsDeletedWhenAbandoned() throws IOException, InterruptedException {
+        Client client = client("a", false, Duration.ofSeconds(1));
+        File partialFile = new File(client.directory, "ref" + FileChunkDownloader.partialSuffix);
+        Files.write(partialFile.toPath(), new byte[chunkSize]);
+
+        assertTrue(client.getFile("ref").isEmpty());
+        Instant end = Instant.now().plusSeconds(10);
+        while (partialFile.exists() && Instant.now().isBefore(end))
+            Thread.sleep(10);
+        assertFalse(partialFile.exists());
+    }
+
+    @Test
+    public void serverSuggestsRecentPeers() {
+        FileChunkServer server = new FileChunkServer(new DirectorySource(serverDirectory));
+        FileReference reference = new FileReference("ref");
+        assertEquals(List.of(), server.peers(reference, "tcp/a:1"));
+        assertEquals(List.of("tcp/a:1"), server.peers(reference, "tcp/b:1"));
+        assertEquals(List.of(), server.peers(reference, ""));
+        assertEquals(Set.of("tcp/a:1", "tcp/b:1"), Set.copyOf(server.peers(reference, "tcp/c:1")));
+        assertEquals(Set.of("tcp/b:1", "tcp/c:1"), Set.copyOf(server.peers(reference, "tcp/a:1")));
+        for (int i = 0; i < 10; i++)
+            server.peers(reference, "tcp/host" + i + ":1");
+        assertEquals(FileChunkServer.maxPeers, server.peers(reference, "tcp/d:1").size());
+        assertEquals(List.of(), server.peers(new FileReference("other"), "tcp/d:1"));
+    }
+
+    @Test
+    public void concurrentRequestsForUncachedContentPrepareItOnce() throws Exception {
+        byte[] content = writeFile("ref", "foo.txt", 2500);
+        var entered = new CountDownLatch(1);
+        var proceed = new CountDownLatch(1);
+        var prepared = new AtomicInteger();
+        DirectorySource directorySource = new DirectorySource(serverDirectory);
+        FileChunkServer server = new FileChunkServer((download, acceptedCompressionTypes) -> {
+            prepared.incrementAndGet();
+            entered.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return directorySource.content(download, acceptedCompressionTypes);
+        }, chunkSize);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Thread> threads = new CopyOnWriteArrayList<>();
+            List<Future<Optional<FileReferenceChunks>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                results.add(executor.submit(() -> {
+                    threads.add(Thread.currentThread());
+                    return server.chunks(new FileReferenceDownload(new FileReference("ref"), "test"), Set.of(zstd));
+                }));
+            entered.await();
+            // Let all other requests reach the preparation in flight before it completes
+            while (threads.size() < 8 || threads.stream().filter(thread -> thread.getState() == Thread.State.WAITING).count() < 7)
+                Thread.sleep(1);
+            proceed.countDown();
+
+            for (var result : results)
+                assertEquals(content.length, result.get().get().size());
+            assertEquals(1, prepared.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private byte[] writeFile(String reference, String filename, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = new File(new File(serverDirectory, reference), filename);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+        return content;
+    }
+
+    private Client client(String name, boolean servePeers) throws IOException {
+        return client(name, servePeers, Duration.ofSeconds(30));
+    }
+
+    private Client client(String name, boolean servePeers, Duration timeout) throws IOException {
+        try {
+            return new Client(temporaryFolder.newFolder(name), servePeers, timeout);
+        } catch (ListenFailedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Request chunkRequest(String reference, long offset, int length, byte[] digest) {
+        Request request = new Request(FileChunkServer.GET_CHUNK_METHOD);
+        request.parameters().add(new StringValue(reference));
+        request.parameters().add(new Int64Value(offset));
+        request.parameters().add(new Int32Value(length));
+        request.parameters().add(new DataValue(digest));
+        return request;
+    }
+
+    private static void addMethods(Supervisor supervisor, FileChunkServer server, AtomicInteger chunksServed) {
+        supervisor.addMethod(FileChunkServer.getChunksMethod(server::getChunks));
+        supervisor.addMethod(FileChunkServer.getChunkMethod(request -> {
+            server.getChunk(request);
+            if ( ! request.isError() && request.returnValues().get(0).asInt32() == 0)
+                chunksServed.incrementAndGet();
+        }));
+    }
+
+    private Supervisor supervisor() {
+        Supervisor supervisor = new Supervisor(new Transport()).setDropEmptyBuffers(true);
+        supervisors.add(supervisor);
+        return supervisor;
+    }
+
+    /** A node downloading file references, and optionally serving their chunks to peers */
+    private class Client {
+
+        final File directory;
+        final FileDownloader downloader;
+        final AtomicInteger chunksServed = new AtomicInteger();
+        private final Supervisor supervisor;
+
+        Client(File directory, boolean servePeers, Duration timeout) throws ListenFailedException {
+            this.directory = directory;
+            this.supervisor = supervisor();
+            Optional<Spec> peerSpec = Optional.empty();
+            if (servePeers)
+                peerSpec = Optional.of(new Spec("localhost", supervisor.listen(new Spec(0)).port()));
+            var connectionPool = new FileDistributionConnectionPool(new ConfigSourceSet(serverSpec.toString()), supervisor);
+            this.downloader = new FileDownloader(connectionPool, supervisor, directory, timeout,
+                                                 Duration.ofMillis(10), peerSpec);
+            downloaders.add(downloader);
+            if (servePeers)
+                addMethods(supervisor, new FileChunkServer(downloader.chunkSource(), chunkSize), chunksServed);
+        }
+
+        Optional<File> getFile(String reference) {
+            return downloader.getFile(new FileReferenceDownload(new FileReference(reference), "test"));
+        }
+
+        /** Returns a connection to the server this downloads from */
+        Target server() {
+            return supervisor.connect(serverSpec);
+        }
+
+    }
+
+    /** Serves the file references in a directory as a config server does */
+    private static class DirectorySource implements FileChunkServer.Source {
+
+        private final File directory;
+
+        DirectorySource(File directory) { this.directory = directory; }
+
+        @Override
+        public Optional<FileChunkServer.Content> content(FileReferenceDownload download, Set<CompressionType> acceptedCompressionTypes) throws IOException {
+            File[] files = new File(directory, download.fileReference().value()).listFiles();
+            if (files == null || files.length != 1) return Optional.empty();
+
+            File file = files[0];
+            if (file.isFile())
+                return Optional.of(new FileChunkServer.Content(file.getName(), FileReferenceData.Type.file, zstd, file, false));
+
+            File compressedFile = Files.createTempFile(directory.toPath().getParent(), "compressed", ".zst").toFile();
+            new FileReferenceCompressor(compressed, zstd).compress(file.getParentFile(), compressedFile);
+            return Optional.of(new FileChunkServer.Content(file.getName(), compressed, zstd, compressedFile, true));
+        }
+
+    }
+
+}
@@ -64,6 +64,17 @@ public class SimpleDocumentFieldValues implements DocumentFieldValues {
         }
     }
 
+    @Override
+    public FieldValue getInputValue(Field field) {
+        return input.getFieldValue(field);
+    }
+
+    @Override
+    public SimpleDocumentFieldValues setOutputValue(Field field, FieldValue fieldValue, Expression exp) {
+        output.setFieldValue(field, fieldValue);
+        return this;
+    }
+
     @Override
     public SimpleDocumentFieldValues setOutputValue(String fieldName, FieldValue fieldValue, Expression exp) {
         Field field = output.getField(fieldName);
@@ -0,0 +1,187 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage.expressions;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.vespa.indexinglanguage.DocumentFieldValues;
+import com.yahoo.vespa.indexinglanguage.FieldValuesFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A script compiled to an execution plan for complete documents of a single document type.
+ *
+ * Statements which read a top-level field and pipe it through expressions into outputs, such as
+ * "input title | lowercase | tokenize | index title | summary title", are fused into a single step which reads
+ * and writes the fields resolved from the document type when compiling, and which stops as soon as
+ * there is no value to pass on. Other statements are executed as they are by the script.
+ * Documents of other types, and partial executions such as for updates, are executed by the script itself.
+ */
+public final class CompiledScript {
+
+    private final ScriptExpression script;
+    private final DocumentType documentType;
+    private final List<Step> steps;
+
+    private CompiledScript(ScriptExpression script, DocumentType documentType, List<Step> steps) {
+        this.script = script;
+        this.documentType = documentType;
+        this.steps = steps;
+    }
+
+    public ScriptExpression script() { return script; }
+
+    public DocumentType documentType() { return documentType; }
+
+    /** Returns the number of statements in the script which are fused by this. */
+    public int fusedStatementCount() {
+        return (int) steps.stream().filter(step -> step instanceof FusedStatement).count();
+    }
+
+    /** Executes this on the given document, and returns the output document, as the script would. */
+    public Document execute(FieldValuesFactory factory, Document document) {
+        if (document.getDataType() != documentType)
+            return script.execute(factory, document);
+
+        DocumentFieldValues fieldValues = factory.asFieldValues(document);
+        if ( ! fieldValues.isComplete())
+            return script.execute(fieldValues);
+
+        ExecutionContext context = new ExecutionContext(fieldValues);
+        for (Step step : steps)
+            step.execute(context);
+        return fieldValues.getFullOutput();
+    }
+
+    /** Compiles the given script, which must be resolved, for documents of the given type. */
+    public static CompiledScript compile(ScriptExpression script, DocumentType documentType) {
+        List<Step> steps = new ArrayList<>();
+        if ( ! script.requiresInput()) { // otherwise, the script is never executed on documents, which provide no input
+            for (StatementExpression statement : script)
+                steps.add(compile(statement, documentType));
+        }
+        return new CompiledScript(script, documentType, List.copyOf(steps));
+    }
+
+    private static Step compile(StatementExpression statement, DocumentType documentType) {
+        List<Expression> expressions = statement.asList();
+        if (expressions.isEmpty() || ! (expressions.get(0) instanceof InputExpression input))
+            return new InterpretedStatement(statement);
+
+        Field inputField = topLevelField(input.getFieldName(), documentType);
+        if (inputField == null)
+            return new InterpretedStatement(statement);
+
+        List<Operation> operations = new ArrayList<>();
+        for (Expression expression : expressions.subList(1, expressions.size())) {
+            if (expression instanceof OutputExpression output && output.getFieldName() != null) {
+                Field outputField = topLevelField(output.getFieldName(), documentType);
+                if (outputField == null)
+                    return new InterpretedStatement(statement);
+                operations.add(new Output(output, outputField));
+            }
+            else {
+                operations.add(new Transform(expression));
+            }
+        }
+        return new FusedStatement(inputField, operations);
+    }
+
+    /** Returns the field with the given name in the given type, or null if the name is a path into a field. */
+    private static Field topLevelField(String name, DocumentType documentType) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '.' || c == '{' || c == '[') return null;
+        }
+        return documentType.getField(name);
+    }
+
+    @Override
+    public String toString() {
+        return "compiled script for " + documentType + ": " + script;
+    }
+
+    private interface Step {
+        void execute(ExecutionContext context);
+    }
+
+    /** A statement executed as in a script, which starts every statement from no value. */
+    private record InterpretedStatement(StatementExpression statement) implements Step {
+
+        @Override
+        public void execute(ExecutionContext context) {
+            context.setCurrentValue(null);
+            statement.execute(context);
+        }
+
+    }
+
+    /** A statement starting by input of a top-level field, whose expressions are executed in sequence. */
+    private static final class FusedStatement implements Step {
+
+        private final Field input;
+        private final Operation[] operations;
+
+        /** The index from which all operations require input, so that no value ends the statement. */
+        private final int requiringInputFrom;
+
+        FusedStatement(Field input, List<Operation> operations) {
+            this.input = input;
+            this.operations = operations.toArray(Operation[]::new);
+            int requiringInputFrom = this.operations.length;
+            while (requiringInputFrom > 0 && this.operations[requiringInputFrom - 1].requiresInput())
+                requiringInputFrom--;
+            this.requiringInputFrom = requiringInputFrom;
+        }
+
+        @Override
+        public void execute(ExecutionContext context) {
+            FieldValue value = context.getFieldValue(input);
+            context.setCurrentValue(value);
+            for (int i = 0; i < operations.length; i++) {
+                if (value == null && i >= requiringInputFrom) return;
+                value = operations[i].execute(value, context);
+            }
+        }
+
+    }
+
+    private interface Operation {
+
+        boolean requiresInput();
+
+        /** Executes this on the given value, which is also the current value of the context, and returns the new value. */
+        FieldValue execute(FieldValue value, ExecutionContext context);
+
+    }
+
+    private record Transform(Expression expression) implements Operation {
+
+        @Override
+        public boolean requiresInput() { return expression.requiresInput(); }
+
+        @Override
+        public FieldValue execute(FieldValue value, ExecutionContext context) {
+            return expression.execute(context);
+        }
+
+    }
+
+    private record Output(OutputExpression expression, Field field) implements Operation {
+
+        @Override
+        public boolean requiresInput() { return true; }
+
+        @Override
+        public FieldValue execute(FieldValue value, ExecutionContext context) {
+            if (value != null)
+                context.setFieldValue(field, value, expression);
+            return value;
+        }
+
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.yahoo.vespa.indexinglanguage.expressions;
 
 import com.yahoo.collections.LazyMap;
+import com.yahoo.document.Field;
 import com.yahoo.document.FieldPath;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.language.Language;
@@ -54,11 +55,20 @@ public class ExecutionContext {
         return fieldValues.getInputValue(fieldPath);
     }
 
+    public FieldValue getFieldValue(Field field) {
+        return fieldValues.getInputValue(field);
+    }
+
     public ExecutionContext setFieldValue(String fieldName, FieldValue fieldValue, Expression expression) {
         this.fieldValues.setOutputValue(fieldName, fieldValue, expression);
         return this;
     }
 
+    public ExecutionContext setFieldValue(Field field, FieldValue fieldValue, Expression expression) {
+        this.fieldValues.setOutputValue(field, fieldValue, expression);
+        return this;
+    }
+
     public FieldValues getFieldValues() { return fieldValues; }
 
     public FieldValue getVariable(String name) {
@@ -1,6 +1,7 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.indexinglanguage.expressions;
 
+import com.yahoo.document.Field;
 import com.yahoo.document.FieldPath;
 import com.yahoo.document.datatypes.FieldValue;
 
@@ -12,8 +13,18 @@ public interface FieldValues extends FieldTypes {
     FieldValue getInputValue(String fieldName);
     FieldValue getInputValue(FieldPath fieldPath);
 
+    /** Returns the input value of the given top-level field of the document type of this. */
+    default FieldValue getInputValue(Field field) {
+        return getInputValue(field.getName());
+    }
+
     FieldValues setOutputValue(String fieldName, FieldValue fieldValue, Expression expression);
 
+    /** Sets the output value of the given top-level field of the document type of this. */
+    default FieldValues setOutputValue(Field field, FieldValue fieldValue, Expression expression) {
+        return setOutputValue(field.getName(), fieldValue, expression);
+    }
+
     /** Returns true if this has values for all possibly existing inputs, false if it represents a partial set of values. */
     boolean isComplete();
 
@@ -0,0 +1,88 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.vespa.indexinglanguage.expressions.CompiledScript;
+import com.yahoo.vespa.indexinglanguage.expressions.InputExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.ScriptExpression;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares interpreted and compiled execution of an indexing script with many statements, as used when feeding.
+ * Not a unit test; run the main method.
+ */
+public class ScriptBenchmark {
+
+    private static final int textFields = 20;
+    private static final int attributeFields = 20;
+
+    public void run() throws ParseException {
+        DocumentType type = new DocumentType("benchmark");
+        StringBuilder script = new StringBuilder("{ ");
+        for (int i = 0; i < textFields; i++) {
+            type.addField("text" + i, DataType.STRING);
+            type.addField("text" + i + "_lower", DataType.STRING);
+            script.append("input text").append(i).append(" | summary text").append(i).append("; ");
+            script.append("input text").append(i).append(" | lowercase | attribute text").append(i).append("_lower; ");
+        }
+        for (int i = 0; i < attributeFields; i++) {
+            type.addField("number" + i, DataType.INT);
+            script.append("input number").append(i).append(" | attribute number").append(i).append(" | summary number").append(i).append("; ");
+        }
+        script.append("}");
+
+        ScriptExpression expression = ScriptExpression.fromString(script.toString());
+        expression.resolve(type);
+        var fieldPathOptimizer = new InputExpression.FieldPathOptimizer(type); // As done by the indexing processor
+        expression.select(fieldPathOptimizer, fieldPathOptimizer);
+        CompiledScript compiled = CompiledScript.compile(expression, type);
+        FieldValuesFactory factory = new FieldValuesFactory();
+
+        System.out.println("Script with " + expression.size() + " statements, " + compiled.fusedStatementCount() + " fused");
+        System.out.println("  interpreted: " + time(type, document -> expression.execute(factory, document)) + " ns/document");
+        System.out.println("  compiled:    " + time(type, document -> compiled.execute(factory, document)) + " ns/document");
+    }
+
+    private static double time(DocumentType type, Function<Document, Document> execution) {
+        List<Document> documents = documents(type, 1000);
+        int dummy = 0;
+        for (int i = 0; i < 20; i++) // Warmup
+            for (Document document : documents)
+                dummy += execution.apply(document).getFieldCount();
+
+        int iterations = 100;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            for (Document document : documents)
+                dummy += execution.apply(document).getFieldCount();
+        long elapsed = System.nanoTime() - startTime;
+        if (dummy == 42) System.out.println("Don't optimize me away");
+        return (double) elapsed / iterations / documents.size();
+    }
+
+    private static List<Document> documents(DocumentType type, int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            Document document = new Document(type, "id:test:benchmark::" + n);
+            for (int i = 0; i < textFields; i++)
+                document.setFieldValue("text" + i, new StringFieldValue("Some Text In Field " + i + " Of Document " + n));
+            for (int i = 0; i < attributeFields; i++)
+                document.setFieldValue("number" + i, new IntegerFieldValue(n * i));
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    public static void main(String[] args) throws ParseException {
+        new ScriptBenchmark().run();
+    }
+
+}
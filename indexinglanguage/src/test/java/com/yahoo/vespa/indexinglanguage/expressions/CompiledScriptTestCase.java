@@ -0,0 +1,101 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage.expressions;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.vespa.indexinglanguage.FieldValuesFactory;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompiledScriptTestCase {
+
+    private final DocumentType type;
+
+    public CompiledScriptTestCase() {
+        type = new DocumentType("mytype");
+        type.addField("title", DataType.STRING);
+        type.addField("title_lower", DataType.STRING);
+        type.addField("body", DataType.STRING);
+        type.addField("year", DataType.INT);
+        type.addField("decade", DataType.INT);
+        type.addField("combined", DataType.STRING);
+    }
+
+    @Test
+    public void requireThatCompiledScriptsProduceTheSameDocumentsAsScripts() throws ParseException {
+        String script = "{ input title | tokenize normalize | summary title | index title; " +
+                        "input title | lowercase | attribute title_lower; " +
+                        "input body | tokenize | index body; " +
+                        "input year | attribute year; " +
+                        "input year | if (input year < 2000) { 1990 | attribute decade; } else { 2000 | attribute decade; }; " +
+                        "input title . \" \" . input body | summary combined; }";
+
+        Document document = document("Hello World", "Some body text", 2005);
+        CompiledScript compiled = assertCompiledExecution(script, document);
+        assertEquals(5, compiled.fusedStatementCount());
+        assertEquals(new StringFieldValue("hello world"), document.getFieldValue("title_lower"));
+        assertEquals(new IntegerFieldValue(2000), document.getFieldValue("decade"));
+        assertEquals(new StringFieldValue("Hello World Some body text"), document.getFieldValue("combined"));
+
+        Document partial = document(null, "Only a body", null);
+        assertCompiledExecution(script, partial);
+        assertNull(partial.getFieldValue("title_lower"));
+        assertNull(partial.getFieldValue("decade"));
+    }
+
+    @Test
+    public void requireThatVariablesAndLanguagePassBetweenStatements() throws ParseException {
+        String script = "{ input year | set_var y; " +
+                        "get_var y | attribute decade; " +
+                        "\"de\" | set_language; " +
+                        "input title | tokenize | index title; }";
+        Document document = document("Hallo Welt", null, 1999);
+        CompiledScript compiled = assertCompiledExecution(script, document);
+        assertEquals(2, compiled.fusedStatementCount());
+        assertEquals(new IntegerFieldValue(1999), document.getFieldValue("decade"));
+    }
+
+    @Test
+    public void requireThatDocumentsOfOtherTypesAreExecutedByTheScript() throws ParseException {
+        ScriptExpression script = ScriptExpression.fromString("{ input title | lowercase | attribute title_lower; }");
+        script.resolve(type);
+        CompiledScript compiled = CompiledScript.compile(script, type);
+
+        DocumentType other = new DocumentType("mytype");
+        other.addField("title", DataType.STRING);
+        other.addField("title_lower", DataType.STRING);
+        Document document = new Document(other, "id:ns:mytype::1");
+        document.setFieldValue("title", new StringFieldValue("Hello"));
+        Document output = compiled.execute(new FieldValuesFactory(), document);
+        assertEquals(new StringFieldValue("hello"), output.getFieldValue("title_lower"));
+    }
+
+    private CompiledScript assertCompiledExecution(String scriptString, Document document) throws ParseException {
+        ScriptExpression script = ScriptExpression.fromString(scriptString);
+        script.resolve(type);
+        CompiledScript compiled = CompiledScript.compile(script, type);
+
+        Document expected = script.execute(new FieldValuesFactory(), document.clone());
+        Document actual = compiled.execute(new FieldValuesFactory(), document);
+        assertEquals(expected, actual);
+        return compiled;
+    }
+
+    private Document document(String title, String body, Integer year) {
+        Document document = new Document(type, "id:ns:mytype::1");
+        if (title != null)
+            document.setFieldValue("title", new StringFieldValue(title));
+        if (body != null)
+            document.setFieldValue("body", new StringFieldValue(body));
+        if (year != null)
+            document.setFieldValue("year", new IntegerFieldValue(year));
+        return document;
+    }
+
+}
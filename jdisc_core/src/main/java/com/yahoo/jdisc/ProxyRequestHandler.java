@@ -160,6 +160,11 @@ class ProxyRequestHandler implements DelegatedRequestHandler {
             }
         }
 
+        @Override
+        public void onError(Throwable error) {
+            delegate.onError(error);
+        }
+
         @Override
         public String toString() {
             return delegate.toString();
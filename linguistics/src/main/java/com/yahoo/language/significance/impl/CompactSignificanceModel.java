@@ -0,0 +1,108 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.significance.impl;
+
+import com.yahoo.language.significance.DocumentFrequency;
+import com.yahoo.language.significance.SignificanceModel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A significance model backed by a section of a {@link CompactSignificanceModelFile}, which is
+ * typically memory mapped.
+ * <p>
+ * Terms are stored as UTF-8 in unsigned byte order, which is the same as code point order,
+ * with their frequencies in a primitive array in the same order. Lookups are binary searches comparing the
+ * code points of the word directly against the stored bytes, so they do not allocate except for
+ * the returned {@link DocumentFrequency}.
+ * <p>
+ * This is thread safe.
+ */
+public final class CompactSignificanceModel implements SignificanceModel {
+
+    private final String id;
+    private final long corpusSize;
+    private final int termCount;
+
+    /** The start offset of each term in terms, followed by the end offset of the last term */
+    private final ByteBuffer termOffsets;
+    private final ByteBuffer frequencies;
+    private final ByteBuffer terms;
+
+    CompactSignificanceModel(String id, long corpusSize, int termCount,
+                             ByteBuffer termOffsets, ByteBuffer frequencies, ByteBuffer terms) {
+        this.id = id;
+        this.corpusSize = corpusSize;
+        this.termCount = termCount;
+        this.termOffsets = termOffsets;
+        this.frequencies = frequencies;
+        this.terms = terms;
+    }
+
+    @Override
+    public DocumentFrequency documentFrequency(String word) {
+        int index = indexOf(word);
+        return new DocumentFrequency(index < 0 ? 1 : frequencies.getLong(index * Long.BYTES), corpusSize);
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    /** Returns the number of terms in this model */
+    public int termCount() { return termCount; }
+
+    /** Returns the number of documents in the corpus of this model */
+    public long corpusSize() { return corpusSize; }
+
+    private int indexOf(String word) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(word, middle);
+            if (comparison > 0)
+                low = middle + 1;
+            else if (comparison < 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    /** Compares the given word to the term at the given index, in code point order */
+    private int compare(String word, int term) {
+        int position = termOffsets.getInt(term * Integer.BYTES);
+        int end = termOffsets.getInt((term + 1) * Integer.BYTES);
+        int i = 0;
+        while (i < word.length() && position < end) {
+            int wordCodePoint = word.codePointAt(i);
+            i += Character.charCount(wordCodePoint);
+
+            int first = terms.get(position++) & 0xff;
+            int termCodePoint;
+            if (first < 0x80) {
+                termCodePoint = first;
+            }
+            else if (first < 0xe0) {
+                termCodePoint = (first & 0x1f) << 6 | continuation(position++);
+            }
+            else if (first < 0xf0) {
+                termCodePoint = (first & 0x0f) << 12 | continuation(position++) << 6 | continuation(position++);
+            }
+            else {
+                termCodePoint = (first & 0x07) << 18 | continuation(position++) << 12 |
+                                continuation(position++) << 6 | continuation(position++);
+            }
+            if (wordCodePoint != termCodePoint)
+                return Integer.compare(wordCodePoint, termCodePoint);
+        }
+        if (i < word.length()) return 1;
+        if (position < end) return -1;
+        return 0;
+    }
+
+    private int continuation(int position) {
+        return terms.get(position) & 0x3f;
+    }
+
+}
@@ -0,0 +1,195 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.significance.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A significance model file in a compact binary format which is memory mapped rather than read into the heap.
+ * This holds the same information as a {@link SignificanceModelFile}, and can be created from one by
+ * {@link #write}, or from the command line by {@link #main}.
+ * <p>
+ * The format is, with all numbers big-endian:
+ * <pre>
+ * int magic, int version, string id, string description, int languageCount, and for each language:
+ *     string languages, long documentCount, int termCount, int termBytes,
+ *     int[termCount + 1] termOffsets, long[termCount] frequencies, byte[termBytes] terms
+ * </pre>
+ * where a string is an int byte length followed by the UTF-8 bytes, and the terms are UTF-8 sorted in
+ * unsigned byte order, with the offset of each term into terms in termOffsets.
+ *
+ * @see CompactSignificanceModel
+ */
+public final class CompactSignificanceModelFile {
+
+    private static final int magic = 0x5653494d; // "VSIM"
+    private static final int version = 1;
+
+    private final String id;
+    private final String description;
+    private final Map<String, CompactSignificanceModel> languages;
+
+    private CompactSignificanceModelFile(String id, String description, Map<String, CompactSignificanceModel> languages) {
+        this.id = id;
+        this.description = description;
+        this.languages = languages;
+    }
+
+    public String id() { return id; }
+
+    public String description() { return description; }
+
+    /** Returns the models of this file by the comma-separated language tags they apply to */
+    public Map<String, CompactSignificanceModel> languages() { return languages; }
+
+    /** Returns whether the file at the given path is in this format */
+    public static boolean isCompact(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] header = in.readNBytes(Integer.BYTES);
+            return header.length == Integer.BYTES && ByteBuffer.wrap(header).getInt() == magic;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to read model from " + path, e);
+        }
+    }
+
+    /** Memory maps the file at the given path, which must be in this format */
+    public static CompactSignificanceModelFile open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Significance model " + path + " is larger than 2Gb, which is not supported");
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to load model from " + path, e);
+        }
+    }
+
+    private static CompactSignificanceModelFile read(ByteBuffer buffer, Path path) {
+        try {
+            if (buffer.getInt() != magic)
+                throw new IllegalArgumentException("Not a compact significance model");
+            int fileVersion = buffer.getInt();
+            if (fileVersion != version)
+                throw new IllegalArgumentException("Unsupported version " + fileVersion);
+            String id = readString(buffer);
+            String description = readString(buffer);
+            int languageCount = buffer.getInt();
+            Map<String, CompactSignificanceModel> languages = new LinkedHashMap<>();
+            for (int i = 0; i < languageCount; i++) {
+                String languageTags = readString(buffer);
+                long documentCount = buffer.getLong();
+                int termCount = buffer.getInt();
+                int termBytes = buffer.getInt();
+                ByteBuffer termOffsets = slice(buffer, (termCount + 1) * Integer.BYTES);
+                ByteBuffer frequencies = slice(buffer, termCount * Long.BYTES);
+                ByteBuffer terms = slice(buffer, termBytes);
+                languages.put(languageTags, new CompactSignificanceModel(id, documentCount, termCount,
+                                                                         termOffsets, frequencies, terms));
+            }
+            return new CompactSignificanceModelFile(id, description, languages);
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid significance model " + path, e);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Writes the given model file in this format to the given path */
+    public static void write(SignificanceModelFile file, Path path) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            write(file, out);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to write model to " + path, e);
+        }
+    }
+
+    /** Writes the given model file in this format to the given stream */
+    public static void write(SignificanceModelFile file, OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(magic);
+        out.writeInt(version);
+        writeString(file.id(), out);
+        writeString(file.description(), out);
+        out.writeInt(file.languages().size());
+        for (var language : file.languages().entrySet())
+            writeLanguage(language.getKey(), language.getValue(), out);
+        out.flush();
+    }
+
+    private static void writeLanguage(String languageTags, DocumentFrequencyFile frequencies, DataOutputStream out) throws IOException {
+        Map<String, Long> termFrequencies = frequencies.frequencies() == null ? Map.of() : frequencies.frequencies();
+        Term[] terms = new Term[termFrequencies.size()];
+        int i = 0;
+        long termBytes = 0;
+        for (var entry : termFrequencies.entrySet()) {
+            terms[i++] = new Term(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+            termBytes += terms[i - 1].utf8().length;
+        }
+        if (termBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The terms of '" + languageTags + "' are larger than 2Gb, which is not supported");
+        Arrays.sort(terms, Comparator.comparing(Term::utf8, Arrays::compareUnsigned));
+
+        writeString(languageTags, out);
+        out.writeLong(frequencies.documentCount());
+        out.writeInt(terms.length);
+        out.writeInt((int)termBytes);
+        int offset = 0;
+        for (Term term : terms) {
+            out.writeInt(offset);
+            offset += term.utf8().length;
+        }
+        out.writeInt(offset);
+        for (Term term : terms)
+            out.writeLong(term.frequency());
+        for (Term term : terms)
+            out.write(term.utf8());
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private record Term(byte[] utf8, long frequency) { }
+
+    /**
+     * Converts a JSON significance model file, which may be zstd compressed, to this format.
+     * Usage: CompactSignificanceModelFile input-json-file output-file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: " + CompactSignificanceModelFile.class.getName() + " input-json-file output-file");
+            System.exit(1);
+        }
+        write(SignificanceModelFile.read(Path.of(args[0])), Path.of(args[1]));
+    }
+
+}
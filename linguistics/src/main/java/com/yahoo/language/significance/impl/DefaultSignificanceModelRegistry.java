@@ -1,18 +1,12 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.language.significance.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yahoo.component.annotation.Inject;
 import com.yahoo.language.Language;
 import com.yahoo.language.significance.SignificanceModel;
 import com.yahoo.language.significance.SignificanceModelRegistry;
 import com.yahoo.search.significance.config.SignificanceConfig;
-import io.airlift.compress.zstd.ZstdInputStream;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.EnumMap;
 import java.util.List;
@@ -25,6 +19,8 @@ import java.util.logging.Logger;
 /**
  * Default implementation of {@link SignificanceModelRegistry}.
  * This implementation loads models lazily and caches them.
+ * Models are either JSON files, which may be zstd compressed, or in the compact binary format
+ * of {@link CompactSignificanceModelFile}, which are memory mapped.
  *
  * @author MariusArhaug
  */
@@ -51,28 +47,37 @@ public final class DefaultSignificanceModelRegistry implements SignificanceModel
 
     public void addModel(Path path) {
         log.fine(() -> "Loading model from " + path);
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            InputStream in = path.toString().endsWith(".zst") ?
-                    new ZstdInputStream(new FileInputStream(path.toFile())) :
-                    new FileInputStream(path.toFile());
+        if (CompactSignificanceModelFile.isCompact(path))
+            addCompactModel(path);
+        else
+            addJsonModel(path);
+    }
 
-            SignificanceModelFile file = objectMapper.readValue(in, SignificanceModelFile.class);
-            for (var pair : file.languages().entrySet()) {
+    private void addJsonModel(Path path) {
+        SignificanceModelFile file = SignificanceModelFile.read(path);
+        for (var pair : file.languages().entrySet()) {
+            for (var language : languagesIn(pair.getKey(), file.id()))
+                this.models.put(language, new DefaultSignificanceModel(pair.getValue(), file.id()));
+        }
+    }
 
-                var languagesStr = pair.getKey();
-                log.fine(() -> "Found model for languages '%s'".formatted(languagesStr));
-                String[] languageTags = languagesStr.split(",");
+    private void addCompactModel(Path path) {
+        CompactSignificanceModelFile file = CompactSignificanceModelFile.open(path);
+        for (var pair : file.languages().entrySet()) {
+            for (var language : languagesIn(pair.getKey(), file.id()))
+                this.models.put(language, pair.getValue());
+        }
+    }
 
-                for (var languageTag : languageTags) {
-                    var language = Language.fromLanguageTag(languageTag);
-                    log.fine(() -> "Adding model for language %s with id %s".formatted(language, file.id()));
-                    this.models.put(language, new DefaultSignificanceModel(pair.getValue(), file.id()));
-                }
-            }
-        } catch (IOException e) {
-            throw new UncheckedIOException("Failed to load model from " + path, e);
+    private static List<Language> languagesIn(String languagesStr, String id) {
+        log.fine(() -> "Found model for languages '%s'".formatted(languagesStr));
+        List<Language> languages = new ArrayList<>();
+        for (var languageTag : languagesStr.split(",")) {
+            var language = Language.fromLanguageTag(languageTag);
+            log.fine(() -> "Adding model for language %s with id %s".formatted(language, id));
+            languages.add(language);
         }
+        return languages;
     }
 
     @Override
@@ -4,7 +4,14 @@ package com.yahoo.language.significance.impl;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.airlift.compress.zstd.ZstdInputStream;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 
 /**
@@ -47,4 +54,15 @@ public class SignificanceModelFile {
     public void addLanguage(String language, DocumentFrequencyFile documentFrequencyFile) {
         languages.put(language, documentFrequencyFile);
     }
+
+    /** Reads a model file in JSON, which is zstd compressed if the path ends by ".zst" */
+    public static SignificanceModelFile read(Path path) {
+        try (InputStream in = path.toString().endsWith(".zst") ?
+                              new ZstdInputStream(new FileInputStream(path.toFile())) :
+                              new FileInputStream(path.toFile())) {
+            return new ObjectMapper().readValue(in, SignificanceModelFile.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load model from " + path, e);
+        }
+    }
 }
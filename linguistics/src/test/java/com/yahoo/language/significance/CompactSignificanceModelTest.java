@@ -0,0 +1,76 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.significance;
+
+import com.yahoo.language.Language;
+import com.yahoo.language.significance.impl.CompactSignificanceModel;
+import com.yahoo.language.significance.impl.CompactSignificanceModelFile;
+import com.yahoo.language.significance.impl.DefaultSignificanceModelRegistry;
+import com.yahoo.language.significance.impl.DocumentFrequencyFile;
+import com.yahoo.language.significance.impl.SignificanceModelFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that compact significance models give the same frequencies as the JSON models they are converted from.
+ */
+public class CompactSignificanceModelTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testConvertedModelsGiveTheSameFrequencies() {
+        for (String model : List.of("docv1.json", "docv2.json", "docv1.json.zst")) {
+            Path json = Path.of("src/test/models/" + model);
+            Path compact = tempDir.resolve(model + ".bin");
+            CompactSignificanceModelFile.write(SignificanceModelFile.read(json), compact);
+            assertFalse(CompactSignificanceModelFile.isCompact(json));
+            assertTrue(CompactSignificanceModelFile.isCompact(compact));
+
+            var jsonRegistry = new DefaultSignificanceModelRegistry(List.of(json));
+            var compactRegistry = new DefaultSignificanceModelRegistry(List.of(compact));
+            for (Language language : Language.values()) {
+                assertEquals(jsonRegistry.getModel(language).isPresent(), compactRegistry.getModel(language).isPresent());
+                if (jsonRegistry.getModel(language).isEmpty()) continue;
+
+                SignificanceModel expected = jsonRegistry.getModel(language).get();
+                SignificanceModel actual = compactRegistry.getModel(language).get();
+                assertTrue(actual instanceof CompactSignificanceModel);
+                assertEquals(expected.getId(), actual.getId());
+                for (String word : List.of("test", "hello", "nei", "bonjour", "usa", "a", "", "non-existent-word", "zzz"))
+                    assertEquals(expected.documentFrequency(word), actual.documentFrequency(word), word);
+            }
+        }
+    }
+
+    @Test
+    public void testNonAsciiTerms() {
+        Map<String, Long> frequencies = new HashMap<>();
+        List<String> terms = List.of("a", "ab", "b", "é", "éa", "z", "ÿ", "ࠀ", "日本", "日本語",
+                                     "￯", "😀", "😀x", "ß");
+        for (int i = 0; i < terms.size(); i++)
+            frequencies.put(terms.get(i), 100L + i);
+        var file = new SignificanceModelFile("1.0", "test::3", "non-ascii", new HashMap<>());
+        file.addLanguage("ja", new DocumentFrequencyFile("japanese", 1000, frequencies));
+        Path compact = tempDir.resolve("non-ascii.bin");
+        CompactSignificanceModelFile.write(file, compact);
+
+        CompactSignificanceModel model = CompactSignificanceModelFile.open(compact).languages().get("ja");
+        assertEquals(terms.size(), model.termCount());
+        assertEquals(1000, model.corpusSize());
+        for (int i = 0; i < terms.size(); i++)
+            assertEquals(new DocumentFrequency(100 + i, 1000), model.documentFrequency(terms.get(i)), terms.get(i));
+        for (String absent : List.of("", "aa", "e", "日", "日本語の", "😁", "\ud83d", "￿", "ss"))
+            assertEquals(new DocumentFrequency(1, 1000), model.documentFrequency(absent), absent);
+    }
+
+}
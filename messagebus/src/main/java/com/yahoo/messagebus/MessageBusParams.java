@@ -18,6 +18,7 @@ public class MessageBusParams {
     private final List<Protocol> protocols = new ArrayList<>();
     private RetryPolicy retryPolicy;
     private int maxPendingCount;
+    private int numMessengerThreads;
     private MessagebusConfig config;
 
     /**
@@ -26,6 +27,7 @@ public class MessageBusParams {
     public MessageBusParams() {
         retryPolicy = new RetryTransientErrorsPolicy();
         maxPendingCount = 4096;
+        numMessengerThreads = 1;
         config = null;
     }
 
@@ -38,6 +40,7 @@ public class MessageBusParams {
         protocols.addAll(params.protocols);
         retryPolicy = params.retryPolicy;
         maxPendingCount = params.maxPendingCount;
+        numMessengerThreads = params.numMessengerThreads;
         config = params.config;
     }
 
@@ -124,6 +127,31 @@ public class MessageBusParams {
         return this;
     }
 
+    /**
+     * Returns the number of threads of the {@link Messenger} of the message bus.
+     *
+     * @return The number of threads.
+     */
+    public int getNumMessengerThreads() {
+        return numMessengerThreads;
+    }
+
+    /**
+     * Sets the number of threads of the {@link Messenger} of the message bus. Sequenced messages which can not be sent
+     * directly are dispatched by these threads, spread by sequence id.
+     *
+     * @param numThreads The number of threads to set, which must be at least 1.
+     * @return This, to allow chaining.
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public MessageBusParams setNumMessengerThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of messenger threads must be positive, but was " + numThreads);
+        }
+        this.numMessengerThreads = numThreads;
+        return this;
+    }
+
     /**
      * Returns the maximum number of bytes allowed for pending messages.
      *
@@ -12,12 +12,17 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
- * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
- * method, and are run in the order they were enqueued.</p>
+ * <p>This class implements a set of threads that are able to process
+ * arbitrary tasks. Tasks are enqueued using the {@link #enqueue(Task)}
+ * method, and are spread over the threads in turn, so they are only run in
+ * the order they were enqueued when there is a single thread.
+ * Tasks enqueued with a key using {@link #enqueue(Task, long)} are run by
+ * the thread selected by that key, in the order they were enqueued for the
+ * same key, which lets unrelated tasks run concurrently.</p>
  *
  * @author Simon Thoresen Hult
  */
@@ -26,20 +31,33 @@ public final class Messenger implements Runnable {
     private static final Logger log = Logger.getLogger(Messenger.class.getName());
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
-    private final Queue<Task> queue = new ArrayDeque<>();
-
-    private final Thread thread;
+    private final Worker[] workers;
+    private final AtomicInteger nextWorker = new AtomicInteger();
 
     public Messenger() {
-        thread = new Thread(this, "Messenger");
-        thread.setDaemon(true);
+        this(1);
+    }
+
+    /**
+     * <p>Creates a messenger with the given number of threads.</p>
+     *
+     * @param numThreads The number of threads to run tasks in.
+     */
+    public Messenger(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of messenger threads must be positive, but was " + numThreads);
+        }
+        workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker(i == 0 ? "Messenger" : "Messenger-" + i, i == 0);
+        }
     }
 
     /**
      * <p>Adds a recurrent task to this that is to be run for every iteration of
-     * the main loop. This task must be very light-weight as to not block the
-     * messenger. Note that this method is NOT thread-safe, so it should NOT be
-     * used after calling {@link #start()}.</p>
+     * the main loop of the first thread. This task must be very light-weight as
+     * to not block the messenger. Note that this method is NOT thread-safe, so
+     * it should NOT be used after calling {@link #start()}.</p>
      *
      * @param task The task to add.
      */
@@ -48,13 +66,15 @@ public final class Messenger implements Runnable {
     }
 
     /**
-     * <p>Starts the internal thread. This must be done AFTER all recurrent
+     * <p>Starts the internal threads. This must be done AFTER all recurrent
      * tasks have been added.</p>
      *
      * @see #addRecurrentTask(Task)
      */
     public void start() {
-        thread.start();
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
     }
 
     /**
@@ -90,36 +110,58 @@ public final class Messenger implements Runnable {
     }
 
     /**
-     * <p>Enqueues the given task in the list of tasks that this worker is to
-     * process. If this thread has been destroyed previously, this method
-     * invokes {@link Messenger.Task#destroy()}.</p>
+     * <p>Enqueues the given task in the list of tasks of the next thread in
+     * turn. If this has been destroyed previously, this method invokes
+     * {@link Messenger.Task#destroy()}.</p>
      *
      * @param task The task to enqueue.
      */
     public void enqueue(Task task) {
+        enqueue(task, workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)]);
+    }
+
+    /**
+     * <p>Enqueues the given task in the list of tasks of the thread selected
+     * by the given key. Tasks with the same key are run in the order they were
+     * enqueued. If this has been destroyed previously, this method invokes
+     * {@link Messenger.Task#destroy()}.</p>
+     *
+     * @param task The task to enqueue.
+     * @param key  The key which selects the thread to run the task.
+     */
+    public void enqueue(Task task, long key) {
+        int hash = Long.hashCode(key);
+        enqueue(task, workers[Math.floorMod(hash ^ (hash >>> 16), workers.length)]);
+    }
+
+    private void enqueue(Task task, Worker worker) {
         if (destroyed.get()) {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
-            }
-        }
+        worker.enqueue(task);
     }
 
     /**
-     * <p>Handshakes with the internal thread. If this method is called using
-     * the messenger thread, this will deadlock.</p>
+     * <p>Handshakes with the internal threads. If this method is called by one
+     * of the messenger threads, it returns immediately, as waiting for the
+     * other threads could then deadlock.</p>
      */
     public void sync() {
-        if (Thread.currentThread() == thread) {
-            return; // no need to wait for self
+        for (Worker worker : workers) {
+            if (Thread.currentThread() == worker.thread) {
+                return; // no need to wait for self
+            }
+        }
+        List<SyncTask> tasks = new ArrayList<>(workers.length);
+        for (Worker worker : workers) {
+            SyncTask task = new SyncTask();
+            enqueue(task, worker);
+            tasks.add(task);
+        }
+        for (SyncTask task : tasks) {
+            task.await();
         }
-        SyncTask task = new SyncTask();
-        enqueue(task);
-        task.await();
     }
 
     /**
@@ -132,15 +174,15 @@ public final class Messenger implements Runnable {
      */
     public boolean destroy() {
         boolean done = false;
-        enqueue(TERMINATE);
+        for (Worker worker : workers) {
+            enqueue(TERMINATE, worker);
+        }
         if (!destroyed.getAndSet(true)) {
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
-                    }
+                for (Worker worker : workers) {
+                    worker.awaitEmpty();
+                    worker.thread.join();
                 }
-                thread.join();
             } catch (InterruptedException e) {
                 // ignore
             }
@@ -149,56 +191,94 @@ public final class Messenger implements Runnable {
         return done;
     }
 
+    /** Runs the main loop of the first thread. */
     @Override
     public void run() {
-        long timeoutMS = SystemTimer.adjustTimeoutByDetectedHz(Duration.ofMillis(100)).toMillis();
-        while (true) {
-            Task task = null;
-            synchronized (this) {
-                if (queue.isEmpty()) {
-                    try {
-                        if (children.isEmpty()) {
-                            wait();
-                        } else {
-                            wait(timeoutMS);
+        workers[0].run();
+    }
+
+    /** A thread with its own queue of tasks. */
+    private final class Worker implements Runnable {
+
+        private final Queue<Task> queue = new ArrayDeque<>();
+        private final boolean runsChildren;
+        private final Thread thread;
+
+        Worker(String name, boolean runsChildren) {
+            this.runsChildren = runsChildren;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        synchronized void enqueue(Task task) {
+            queue.offer(task);
+            if (queue.size() == 1) {
+                notifyAll();
+            }
+        }
+
+        synchronized void awaitEmpty() throws InterruptedException {
+            while (!queue.isEmpty()) {
+                wait();
+            }
+        }
+
+        @Override
+        public void run() {
+            long timeoutMS = SystemTimer.adjustTimeoutByDetectedHz(Duration.ofMillis(100)).toMillis();
+            boolean hasChildren = runsChildren && !children.isEmpty();
+            while (true) {
+                Task task = null;
+                synchronized (this) {
+                    if (queue.isEmpty()) {
+                        try {
+                            if (hasChildren) {
+                                wait(timeoutMS);
+                            } else {
+                                wait();
+                            }
+                        } catch (InterruptedException e) {
+                            continue;
                         }
-                    } catch (InterruptedException e) {
-                        continue;
+                    }
+                    if (!queue.isEmpty()) {
+                        task = queue.poll();
                     }
                 }
-                if (!queue.isEmpty()) {
-                    task = queue.poll();
+                if (task == TERMINATE) {
+                    break;
                 }
-            }
-            if (task == TERMINATE) {
-                break;
-            }
-            if (task != null) {
-                try {
-                    task.run();
-                } catch (Exception e) {
-                    log.log(Level.SEVERE, "An exception was thrown while running " + task.getClass().getName(), e);
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        log.log(Level.SEVERE, "An exception was thrown while running " + task.getClass().getName(), e);
+                    }
+                    try {
+                        task.destroy();
+                    } catch (Exception e) {
+                        log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " + e);
+                        log.warning("Someone, somewhere might have to wait indefinitely for something.");
+                    }
                 }
-                try {
-                    task.destroy();
-                } catch (Exception e) {
-                    log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " + e);
-                    log.warning("Someone, somewhere might have to wait indefinitely for something.");
+                if (hasChildren) {
+                    for (Task child : children) {
+                        child.run();
+                    }
                 }
             }
-            for (Task child : children) {
-                child.run();
+            if (runsChildren) {
+                for (Task child : children) {
+                    child.destroy();
+                }
             }
-        }
-        for (Task child : children) {
-            child.destroy();
-        }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                Task task = queue.poll();
-                task.destroy();
+            synchronized (this) {
+                while (!queue.isEmpty()) {
+                    Task task = queue.poll();
+                    task.destroy();
+                }
+                notifyAll();
             }
-            notify();
         }
     }
 
@@ -1,8 +1,8 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -13,13 +13,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
  *
+ * The sequencing state is split into stripes by sequence id, each guarded by its own lock, so that messages with
+ * different sequence ids can pass through the sequencer concurrently. Messages which must be dispatched
+ * asynchronously are enqueued with the {@link Messenger} by sequence id, so they run in order per sequence id
+ * even when the messenger has several threads.
+ *
  * @author Simon Thoresen Hult
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+    private static final int NUM_STRIPES = 64; // Must be a power of 2
+    private final Stripe[] stripes = new Stripe[NUM_STRIPES];
     private final Messenger msn;
     private final static ThreadLocal<Boolean> isSending = ThreadLocal.withInitial(() -> Boolean.FALSE);
 
@@ -31,6 +37,9 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     public Sequencer(MessageHandler sender, Messenger msn) {
         this.sender = sender;
         this.msn = msn;
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
     }
     public Sequencer(MessageHandler sender) {
         this(sender, null);
@@ -44,15 +53,17 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    for (Queue<Message> queue : stripe.seqMap.values()) {
+                        if (queue != null) {
+                            for (Message msg : queue) {
+                                msg.discard();
+                            }
                         }
                     }
+                    stripe.seqMap.clear();
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -71,9 +82,10 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
-            if (seqMap.containsKey(seqId)) {
-                Queue<Message> queue = seqMap.computeIfAbsent(seqId, k -> new LinkedList<>());
+        Stripe stripe = stripeOf(seqId);
+        synchronized (stripe) {
+            if (stripe.seqMap.containsKey(seqId)) {
+                Queue<Message> queue = stripe.seqMap.computeIfAbsent(seqId, k -> new ArrayDeque<>());
                 if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
                     msg.getTrace().trace(TraceLevel.COMPONENT,
                                          "Sequencer queued message with sequence id '" + seqId + "'.");
@@ -81,7 +93,7 @@ public class Sequencer implements MessageHandler, ReplyHandler {
                 queue.add(msg);
                 return false;
             }
-            seqMap.put(seqId, null);
+            stripe.seqMap.put(seqId, null);
         }
         return true;
     }
@@ -144,6 +156,16 @@ public class Sequencer implements MessageHandler, ReplyHandler {
         handler.handleReply(reply);
     }
 
+    private Stripe stripeOf(long seqId) {
+        int hash = Long.hashCode(seqId);
+        return stripes[(hash ^ (hash >>> 16)) & (NUM_STRIPES - 1)];
+    }
+
+    /** The sequencing state of a subset of the sequence ids, where a null queue means one message is in flight. */
+    private static class Stripe {
+        final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+    }
+
     private class SequencedSendTask implements Messenger.Task {
         private Message msg;
         SequencedSendTask(Message msg) { this.msg = msg; }
@@ -153,10 +175,11 @@ public class Sequencer implements MessageHandler, ReplyHandler {
 
     private void sendNextInSequence(long seqId) {
         Message msg = null;
-        synchronized (this) {
-            Queue<Message> queue = seqMap.get(seqId);
+        Stripe stripe = stripeOf(seqId);
+        synchronized (stripe) {
+            Queue<Message> queue = stripe.seqMap.get(seqId);
             if (queue == null || queue.isEmpty()) {
-                seqMap.remove(seqId);
+                stripe.seqMap.remove(seqId);
             } else {
                 msg = queue.remove();
             }
@@ -165,7 +188,7 @@ public class Sequencer implements MessageHandler, ReplyHandler {
             Boolean alreadySending = isSending.get();
             if (alreadySending && (msn != null)) {
                 // Dispatch in another thread to break possibly very long recursion.
-                msn.enqueue(new SequencedSendTask(msg));
+                msn.enqueue(new SequencedSendTask(msg), seqId);
             } else {
                 isSending.set(Boolean.TRUE);
                 sequencedSend(msg);
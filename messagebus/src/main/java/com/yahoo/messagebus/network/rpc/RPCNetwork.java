@@ -55,7 +55,9 @@ import java.util.stream.Collectors;
 public class RPCNetwork implements Network, MethodHandler {
 
     private static final Logger log = Logger.getLogger(RPCNetwork.class.getName());
-    private static final Version REPORTED_VERSION = new Version(8, 310);
+    private static final Version REPORTED_VERSION = new Version(8, 311);
+    /** The first version which supports receiving batches of messages through {@link RPCSendBatch} */
+    static final Version BATCH_VERSION = new Version(8, 311);
 
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final Identity identity;
@@ -66,9 +68,12 @@ public class RPCNetwork implements Network, MethodHandler {
     private final Mirror mirror;
     private final Register register;
     private final TreeMap<Version, RPCSendAdapter> sendAdapters = new TreeMap<>();
+    private RPCSendBatch batchAdapter;
     private volatile NetworkOwner owner;
     private Version version = REPORTED_VERSION;
     private final SlobrokConfigSubscriber slobroksConfig;
+    private final double batchWindowSecs;
+    private final int maxBatchSize;
     private final LinkedHashMap<String, Route> lruRouteMap = new LinkedHashMap<>(10000, 0.5f, true);
     private final ExecutorService executor =
             new ThreadPoolExecutor(getNumThreads(), getNumThreads(), 0L, TimeUnit.SECONDS,
@@ -99,6 +104,8 @@ public class RPCNetwork implements Network, MethodHandler {
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
         orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
         targetPool = new RPCTargetPool(params.getConnectionExpireSecs(), params.getNumTargetsPerSpec());
+        batchWindowSecs = params.getBatchWindowSecs();
+        maxBatchSize = params.getMaxBatchSize();
         servicePool = new RPCServicePool(4096);
 
         Method method = new Method("mbus.getVersion", "", "s", this);
@@ -203,7 +210,12 @@ public class RPCNetwork implements Network, MethodHandler {
         }
         this.owner = owner;
 
-        sendAdapters.put(new Version(6,149), new RPCSendV2(this));
+        RPCSendV2 single = new RPCSendV2(this);
+        batchAdapter = new RPCSendBatch(this, single, batchWindowSecs, maxBatchSize);
+        sendAdapters.put(new Version(6,149), single);
+        if (batchWindowSecs > 0) {
+            sendAdapters.put(BATCH_VERSION, batchAdapter);
+        }
     }
 
     @Override
@@ -292,6 +304,9 @@ public class RPCNetwork implements Network, MethodHandler {
             }
             register.shutdown();
             mirror.shutdown();
+            if (batchAdapter != null) {
+                batchAdapter.destroy();
+            }
             listener.shutdown().join();
             orb.transport().shutdown().join();
             targetPool.flushTargets(true);
@@ -21,6 +21,8 @@ public class RPCNetworkParams {
     private double connectionExpireSecs = 30;
     private int numTargetsPerSpec = 1;
     private int numNetworkThreads = 2;
+    private double batchWindowSecs = 0;
+    private int maxBatchSize = 64;
 
     private int transportEventsBeforeWakeup = 1;
     public enum Optimization {LATENCY, THROUGHPUT}
@@ -49,6 +51,8 @@ public class RPCNetworkParams {
         numTargetsPerSpec = params.numTargetsPerSpec;
         numNetworkThreads = params.numNetworkThreads;
         optimization = params.optimization;
+        batchWindowSecs = params.batchWindowSecs;
+        maxBatchSize = params.maxBatchSize;
     }
 
     /**
@@ -151,6 +155,50 @@ public class RPCNetworkParams {
         return this;
     }
 
+    /**
+     * Returns the number of seconds messages to the same target may be held to be sent together in one request.
+     *
+     * @return The number of seconds, or 0 if batching is disabled.
+     */
+    public double getBatchWindowSecs() {
+        return batchWindowSecs;
+    }
+
+    /**
+     * Sets the number of seconds messages to the same target may be held to be sent together in one request. Batches
+     * are only sent to targets which support them, and all messages are sent one by one when this is 0, which is the
+     * default.
+     *
+     * @param secs The number of seconds.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setBatchWindowSecs(double secs) {
+        this.batchWindowSecs = secs;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of messages sent together in one request, when batching is enabled.
+     *
+     * @return The number of messages.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of messages sent together in one request, when batching is enabled. A batch is sent as
+     * soon as it is full, without waiting for the batch window to expire.
+     *
+     * @param maxBatchSize The number of messages.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Max batch size must be positive, but was " + maxBatchSize);
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
     public RPCNetworkParams setNumTargetsPerSpec(int numTargetsPerSpec) {
         this.numTargetsPerSpec = numTargetsPerSpec;
         return this;
@@ -119,17 +119,8 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         Reply reply;
         Error error = null;
         if (!req.checkReturnTypes(getReturnSpec())) {
-            // Map all known JRT errors to the appropriate message bus error.
             reply = new EmptyReply();
-            error = switch (req.errorCode()) {
-                case com.yahoo.jrt.ErrorCode.TIMEOUT -> new Error(ErrorCode.TIMEOUT,
-                        "A timeout occurred while waiting for '" + serviceName + "' (" +
-                                ctx.timeout + " seconds expired); " + req.errorMessage());
-                case com.yahoo.jrt.ErrorCode.CONNECTION -> new Error(ErrorCode.CONNECTION_ERROR,
-                        "A connection error occurred for '" + serviceName + "'; " + req.errorMessage());
-                default -> new Error(ErrorCode.NETWORK_ERROR,
-                        "A network error occurred for '" + serviceName + "'; " + req.errorMessage());
-            };
+            error = toError(req, serviceName, ctx.timeout);
         } else {
             reply = createReply(req.returnValues(), serviceName, ctx.trace);
         }
@@ -144,6 +135,19 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         ctx.recipient.handleReply(reply);
     }
 
+    /** Maps all known JRT errors of a failed request to the appropriate message bus error. */
+    static Error toError(Request req, String serviceName, double timeout) {
+        return switch (req.errorCode()) {
+            case com.yahoo.jrt.ErrorCode.TIMEOUT -> new Error(ErrorCode.TIMEOUT,
+                    "A timeout occurred while waiting for '" + serviceName + "' (" +
+                            timeout + " seconds expired); " + req.errorMessage());
+            case com.yahoo.jrt.ErrorCode.CONNECTION -> new Error(ErrorCode.CONNECTION_ERROR,
+                    "A connection error occurred for '" + serviceName + "'; " + req.errorMessage());
+            default -> new Error(ErrorCode.NETWORK_ERROR,
+                    "A network error occurred for '" + serviceName + "'; " + req.errorMessage());
+        };
+    }
+
     protected static final class Params {
         Version version;
         String route;
@@ -167,23 +171,37 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         request.discardParameters(); // allow garbage collection of request parameters
 
+        deliver(p, (reply, version, payload) -> {
+            createResponse(request.returnValues(), reply, version, payload);
+            request.returnRequest();
+        });
+    }
+
+    /**
+     * Decodes the message described by the given parameters and delivers it to the owner of the network. The reply
+     * to the message, or an error reply if the message could not be decoded, is encoded and passed to the given sink.
+     *
+     * @param p    The parameters of the received message.
+     * @param sink The sink to pass the encoded reply to.
+     */
+    final void deliver(Params p, ReplySink sink) {
         // Make sure that the owner understands the protocol.
         Protocol protocol = net.getOwner().getProtocol(p.protocolName);
         if (protocol == null) {
-            replyError(request, p.version, protocol, p.traceLevel,
+            replyError(sink, p.version, protocol, p.traceLevel,
                     new Error(ErrorCode.UNKNOWN_PROTOCOL,
                             "Protocol '" + p.protocolName + "' is not known by " + serverIdent + "."));
             return;
         }
         Routable routable = protocol.decode(p.version, p.payload);
         if (routable == null) {
-            replyError(request, p.version, protocol, p.traceLevel,
+            replyError(sink, p.version, protocol, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Protocol '" + protocol.getName() + "' failed to decode routable."));
             return;
         }
         if (routable instanceof Reply) {
-            replyError(request, p.version, protocol, p.traceLevel,
+            replyError(sink, p.version, protocol, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Payload decoded to a reply when expecting a message."));
             return;
@@ -192,7 +210,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         if (p.route != null && !p.route.isEmpty()) {
             msg.setRoute(net.getRoute(p.route));
         }
-        msg.setContext(new ReplyContext(request, p.version, protocol));
+        msg.setContext(new ReplyContext(sink, p.version, protocol));
         msg.pushHandler(this);
         msg.setRetryEnabled(p.retryEnabled);
         msg.setRetry(p.retry);
@@ -228,22 +246,21 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
                         "An error occurred while encoding the reply."));
             }
         }
-        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
-        ctx.request.returnRequest();
+        ctx.sink.sendReply(reply, ctx.version, payload);
     }
 
     /**
      * Send an error reply for a given request.
      *
-     * @param request    The JRT request to reply to.
+     * @param sink       The sink of the request to reply to.
      * @param version    The version to serialize for.
      * @param traceLevel The trace level to set in the reply.
      * @param protocol   The message protocol to serialize with.
      * @param err        The error to reply with.
      */
-    private void replyError(Request request, Version version, Protocol protocol, int traceLevel, Error err) {
+    private void replyError(ReplySink sink, Version version, Protocol protocol, int traceLevel, Error err) {
         Reply reply = new EmptyReply();
-        reply.setContext(new ReplyContext(request, version, protocol));
+        reply.setContext(new ReplyContext(sink, version, protocol));
         reply.getTrace().setLevel(traceLevel);
         reply.addError(err);
         handleReply(reply);
@@ -262,5 +279,10 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         }
     }
 
-    private record ReplyContext(Request request, Version version, Protocol protocol) { }
+    /** Receives the reply to a message passed to {@link #deliver}, along with its encoded payload. */
+    interface ReplySink {
+        void sendReply(Reply reply, Version version, byte[] payload);
+    }
+
+    private record ReplyContext(ReplySink sink, Version version, Protocol protocol) { }
 }
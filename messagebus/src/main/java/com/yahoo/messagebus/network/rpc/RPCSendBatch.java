@@ -0,0 +1,399 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int8Value;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.RequestWaiter;
+import com.yahoo.jrt.Task;
+import com.yahoo.jrt.Values;
+import com.yahoo.messagebus.EmptyReply;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.Trace;
+import com.yahoo.messagebus.TraceLevel;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.routing.RoutingNode;
+import com.yahoo.security.tls.Capability;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements the request adapter for method "mbus.slime.batch", which carries several messages bound for the same
+ * {@link RPCTarget} in a single RPC request, and returns all their replies in the single response to it.
+ *
+ * Messages passed to {@link #send} are held for at most the configured batch window, or until the configured maximum
+ * number of messages for the target is reached, before the batch is sent. Each message is encoded exactly as by
+ * {@link RPCSendV2}, including its own time remaining, which is reduced by the time it was held. The timeout of the
+ * RPC request is the largest time remaining of the messages in it. The receiver delivers the messages of a batch in
+ * the order they were sent, and the replies are returned to the routing nodes of their messages. As all replies are
+ * returned in a single response, the receiver waits at most the least time remaining of the messages in a batch, and
+ * replies with a timeout error for the messages which are not done by then, so that a slow message does not delay
+ * the replies to the others for longer than the sender would wait for it. Messages held for a batch when the network
+ * is destroyed are replied to with an error. Batches are flushed under a common lock, in the order they are taken from
+ * those pending, so that the batches to a target are sent in the order their messages were passed to {@link #send}.
+ *
+ * The method is always registered, so that any peer may send batches to this network, but batches are only sent to
+ * peers which report a version at least that of {@link RPCNetwork}'s batch version, and only when enabled through
+ * {@link RPCNetworkParams#setBatchWindowSecs(double)}. Messages whose results are ignored are sent unbatched.
+ */
+public class RPCSendBatch implements MethodHandler, RequestWaiter, RPCSendAdapter {
+
+    private final static String METHOD_NAME = "mbus.slime.batch";
+    private final static String METHOD_PARAMS = "bixbix";
+    private final static String METHOD_RETURN = "bixbix";
+    private static final String MESSAGES_F = "messages";
+    private static final String REPLIES_F = "replies";
+
+    private final RPCNetwork net;
+    private final RPCSendV2 single;
+    private final double windowSecs;
+    private final int maxMessages;
+    private final Map<RPCTarget, Batch> pending = new HashMap<>();
+    private boolean destroyed = false;
+
+    RPCSendBatch(RPCNetwork net, RPCSendV2 single, double windowSecs, int maxMessages) {
+        this.net = net;
+        this.single = single;
+        this.windowSecs = windowSecs;
+        this.maxMessages = maxMessages;
+        net.getSupervisor().addMethod(buildMethod());
+    }
+
+    private Method buildMethod() {
+        Method method = new Method(METHOD_NAME, METHOD_PARAMS, METHOD_RETURN, this)
+                .requireCapabilities(Capability.CONTAINER__DOCUMENT_API);
+        method.methodDesc("Send a batch of message bus requests and get all their replies back.");
+        method.paramDesc(0, "header_encoding", "Encoding type of header.")
+                .paramDesc(1, "header_decodedSize", "Number of bytes after header decoding.")
+                .paramDesc(2, "header_payload", "Slime encoded header payload.")
+                .paramDesc(3, "body_encoding", "Encoding type of body.")
+                .paramDesc(4, "body_decoded_size", "Number of bytes after body decoding.")
+                .paramDesc(5, "body_payload", "Slime encoded body payload, with an array of messages.");
+        method.returnDesc(0, "header_encoding", "Encoding type of header.")
+                .returnDesc(1, "header_decoded_size", "Number of bytes after header decoding.")
+                .returnDesc(2, "header_payload", "Slime encoded header payload.")
+                .returnDesc(3, "body_encoding", "Encoding type of body.")
+                .returnDesc(4, "body_encoded_size", "Number of bytes after body decoding.")
+                .returnDesc(5, "body_payload", "Slime encoded body payload, with an array of replies in message order.");
+        return method;
+    }
+
+    @Override
+    public void send(RoutingNode recipient, Version version, byte[] payload, long timeRemaining) {
+        if (new Route(recipient.getRoute()).getHop(0).getIgnoreResult()) {
+            single.send(recipient, version, payload, timeRemaining);
+            return;
+        }
+        RPCTarget target = ((RPCServiceAddress)recipient.getServiceAddress()).getTarget();
+        Entry entry = new Entry(recipient, version, payload, timeRemaining);
+        List<Entry> expired;
+        synchronized (pending) {
+            if (destroyed) {
+                replyError(entry, ErrorCode.NETWORK_SHUTDOWN, "Network layer has performed shutdown.");
+                return;
+            }
+            Batch batch = pending.get(target);
+            if (batch == null) {
+                batch = new Batch(target);
+                pending.put(target, batch);
+                batch.task = net.getSupervisor().transport().selectThread().createTask(new FlushTask(batch));
+                batch.task.schedule(windowSecs);
+            }
+            batch.entries.add(entry);
+            if (batch.entries.size() < maxMessages) return;
+
+            pending.remove(target);
+            batch.task.kill();
+            expired = flush(batch);
+        }
+        replyExpired(expired);
+    }
+
+    /** Replies with an error to all messages held for batches, and to all messages sent after this. */
+    void destroy() {
+        List<Batch> batches;
+        synchronized (pending) {
+            destroyed = true;
+            batches = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        for (Batch batch : batches) {
+            batch.task.kill();
+            for (Entry entry : batch.entries)
+                replyError(entry, ErrorCode.NETWORK_SHUTDOWN, "Network layer has performed shutdown.");
+        }
+    }
+
+    /** Flushes the given batch if it is still pending, i.e., it has not been flushed by a message filling it */
+    private void flushIfPending(Batch batch) {
+        List<Entry> expired;
+        synchronized (pending) {
+            if ( ! pending.remove(batch.target, batch)) return;
+            expired = flush(batch);
+        }
+        replyExpired(expired);
+    }
+
+    /**
+     * Sends the given batch, which must be done while holding the lock of the pending batches, and after removing
+     * the batch from these. Returns the entries which were not sent since no time remained for them, to be replied
+     * to with an error after releasing the lock.
+     */
+    private List<Entry> flush(Batch batch) {
+        long now = System.nanoTime();
+        List<Entry> entries = new ArrayList<>(batch.entries.size());
+        List<Entry> expired = new ArrayList<>();
+        Slime slime = new Slime();
+        Cursor messages = slime.setObject().setArray(MESSAGES_F);
+        long maxTimeRemaining = 0;
+        for (Entry entry : batch.entries) {
+            long timeRemaining = entry.timeRemaining - TimeUnit.NANOSECONDS.toMillis(now - entry.enqueuedNanos);
+            if (timeRemaining <= 0) {
+                expired.add(entry);
+                continue;
+            }
+            RPCServiceAddress address = (RPCServiceAddress)entry.recipient.getServiceAddress();
+            Route route = new Route(entry.recipient.getRoute());
+            route.removeHop(0);
+            single.encodeMessage(messages.addObject(), entry.version, route, address, entry.recipient.getMessage(),
+                                 timeRemaining, entry.payload, entry.trace.getLevel());
+            if (entry.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+                entry.trace.trace(TraceLevel.SEND_RECEIVE,
+                        "Sending message (version " + entry.version + ") to '" + address.getServiceName() +
+                        "' in a batch of " + batch.entries.size() + " with " + timeRemaining * 0.001 +
+                        " seconds timeout.");
+            }
+            maxTimeRemaining = Math.max(maxTimeRemaining, timeRemaining);
+            entries.add(entry);
+        }
+        if (entries.isEmpty()) return expired;
+
+        Request req = new Request(METHOD_NAME);
+        Values v = req.parameters();
+        v.add(new Int8Value(CompressionType.NONE.getCode()));
+        v.add(new Int32Value(0));
+        v.add(new DataValue(new byte[0]));
+        single.addBody(v, slime);
+        req.setContext(new SendContext(entries, maxTimeRemaining * 0.001));
+        batch.target.getJRTTarget().invokeAsync(req, maxTimeRemaining * 0.001, this);
+        req.discardParameters(); // allow garbage collection of request parameters
+        return expired;
+    }
+
+    private static void replyExpired(List<Entry> expired) {
+        for (Entry entry : expired)
+            replyError(entry, ErrorCode.TIMEOUT, "Aborting transmission because zero time remains.");
+    }
+
+    private static void replyError(Entry entry, int code, String message) {
+        Reply reply = new EmptyReply();
+        reply.getTrace().swap(entry.trace);
+        reply.addError(new Error(code, message));
+        entry.recipient.handleReply(reply);
+    }
+
+    @Override
+    public void handleRequestDone(Request req) {
+        net.getExecutor().execute(() -> doRequestDone(req));
+    }
+
+    private void doRequestDone(Request req) {
+        SendContext ctx = (SendContext)req.getContext();
+        Inspector replies = null;
+        if (req.checkReturnTypes(METHOD_RETURN)) {
+            try {
+                replies = single.getBody(req.returnValues()).field(REPLIES_F);
+            } catch (RuntimeException e) {
+                req.setError(com.yahoo.jrt.ErrorCode.BAD_REPLY, "Failed decoding batch response: " + e.getMessage());
+            }
+        }
+        for (int i = 0; i < ctx.entries.size(); i++) {
+            Entry entry = ctx.entries.get(i);
+            String serviceName = ((RPCServiceAddress)entry.recipient.getServiceAddress()).getServiceName();
+            Reply reply;
+            if (replies == null) {
+                reply = new EmptyReply();
+                reply.addError(RPCSend.toError(req, serviceName, ctx.timeout));
+            } else if (i >= replies.entries()) {
+                reply = new EmptyReply();
+                reply.addError(new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occurred for '" + serviceName + "'; no reply in batch response."));
+            } else {
+                reply = single.createReply(replies.entry(i), serviceName, entry.trace);
+            }
+            if (entry.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+                entry.trace.trace(TraceLevel.SEND_RECEIVE,
+                        "Reply (type " + reply.getType() + ") received in batch response.");
+            }
+            reply.getTrace().swap(entry.trace);
+            entry.recipient.handleReply(reply);
+        }
+    }
+
+    @Override
+    public void invoke(Request request) {
+        request.detach();
+        net.getExecutor().execute(() -> doInvoke(request));
+    }
+
+    private void doInvoke(Request request) {
+        List<RPCSend.Params> params = new ArrayList<>();
+        long minTimeRemaining = Long.MAX_VALUE;
+        try {
+            Inspector messages = single.getBody(request.parameters()).field(MESSAGES_F);
+            for (int i = 0; i < messages.entries(); i++) {
+                RPCSend.Params p = single.toParams(messages.entry(i));
+                params.add(p);
+                minTimeRemaining = Math.min(minTimeRemaining, p.timeRemaining);
+            }
+        } catch (RuntimeException e) {
+            request.setError(com.yahoo.jrt.ErrorCode.METHOD_FAILED, "Failed decoding batch request: " + e.getMessage());
+            request.returnRequest();
+            return;
+        }
+        request.discardParameters(); // allow garbage collection of request parameters
+
+        BatchResponse response = new BatchResponse(request, params);
+        if (params.isEmpty()) {
+            response.complete();
+            return;
+        }
+        response.expireAfter(minTimeRemaining);
+        for (int i = 0; i < params.size(); i++) {
+            int index = i;
+            single.deliver(params.get(i), (reply, version, payload) -> response.set(index, reply, version, payload));
+        }
+    }
+
+    /**
+     * Collects the replies to the messages of a received batch, and returns them when all have arrived,
+     * or when it expires, in which case the messages not yet replied to get a timeout error in the response.
+     */
+    private class BatchResponse {
+
+        final Request request;
+        final Reply[] replies;
+        final Version[] versions;
+        final byte[][] payloads;
+        int remaining;
+        boolean completed = false;
+        Task expiry;
+
+        BatchResponse(Request request, List<RPCSend.Params> params) {
+            this.request = request;
+            this.replies = new Reply[params.size()];
+            this.versions = new Version[params.size()];
+            this.payloads = new byte[params.size()][];
+            this.remaining = params.size();
+            for (int i = 0; i < params.size(); i++) {
+                versions[i] = params.get(i).version;
+            }
+        }
+
+        synchronized void expireAfter(long millis) {
+            expiry = net.getSupervisor().transport().selectThread()
+                        .createTask(() -> net.getExecutor().execute(this::expire));
+            expiry.schedule(Math.max(0, millis) * 0.001);
+        }
+
+        synchronized void set(int index, Reply reply, Version version, byte[] payload) {
+            if (completed) return; // Already timed out
+            replies[index] = reply;
+            versions[index] = version;
+            payloads[index] = payload;
+            if (--remaining == 0) {
+                complete();
+            }
+        }
+
+        synchronized void expire() {
+            if (completed) return;
+            for (int i = 0; i < replies.length; i++) {
+                if (replies[i] != null) continue;
+                replies[i] = new EmptyReply();
+                replies[i].addError(new Error(ErrorCode.TIMEOUT, "Timed out waiting for the reply to this message in a batch."));
+                payloads[i] = new byte[0];
+            }
+            complete();
+        }
+
+        synchronized void complete() {
+            completed = true;
+            if (expiry != null) {
+                expiry.kill();
+            }
+            Values ret = request.returnValues();
+            ret.add(new Int8Value(CompressionType.NONE.getCode()));
+            ret.add(new Int32Value(0));
+            ret.add(new DataValue(new byte[0]));
+
+            Slime slime = new Slime();
+            Cursor array = slime.setObject().setArray(REPLIES_F);
+            for (int i = 0; i < replies.length; i++) {
+                single.encodeReply(array.addObject(), replies[i], versions[i], payloads[i]);
+            }
+            single.addBody(ret, slime);
+            request.returnRequest();
+        }
+    }
+
+    private class FlushTask implements Runnable {
+
+        final Batch batch;
+
+        FlushTask(Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            net.getExecutor().execute(() -> flushIfPending(batch));
+        }
+    }
+
+    private static class Batch {
+
+        final RPCTarget target;
+        final List<Entry> entries = new ArrayList<>();
+        Task task;
+
+        Batch(RPCTarget target) {
+            this.target = target;
+        }
+    }
+
+    private static class Entry {
+
+        final RoutingNode recipient;
+        final Version version;
+        final byte[] payload;
+        final long timeRemaining;
+        final long enqueuedNanos = System.nanoTime();
+        final Trace trace;
+
+        Entry(RoutingNode recipient, Version version, byte[] payload, long timeRemaining) {
+            this.recipient = recipient;
+            this.version = version;
+            this.payload = payload;
+            this.timeRemaining = timeRemaining;
+            this.trace = new Trace(recipient.getTrace().getLevel());
+        }
+    }
+
+    private record SendContext(List<Entry> entries, double timeout) { }
+
+}
@@ -90,34 +90,49 @@ public class RPCSendV2 extends RPCSend {
         v.add(new DataValue(new byte[0]));
 
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
+        encodeMessage(slime.setObject(), version, route, address, msg, msg.getTimeRemaining(), payload, traceLevel);
+        addBody(v, slime);
+        return req;
+    }
 
+    /** Encodes the given message into the given slime object. */
+    void encodeMessage(Cursor root, Version version, Route route, RPCServiceAddress address, Message msg,
+                       long timeRemaining, byte[] payload, int traceLevel)
+    {
         root.setString(VERSION_F, version.toUtf8().getBytes());
         root.setString(ROUTE_F, route.toString());
         root.setString(SESSION_F, address.getSessionName());
         root.setString(PROTOCOL_F, msg.getProtocol().toString());
         root.setBool(USERETRY_F, msg.getRetryEnabled());
         root.setLong(RETRY_F, msg.getRetry());
-        root.setLong(TIMEREMAINING_F, msg.getTimeRemaining());
+        root.setLong(TIMEREMAINING_F, timeRemaining);
         root.setLong(TRACELEVEL_F, traceLevel);
         root.setData(BLOB_F, payload);
+    }
 
+    /** Adds the given slime as the compressed body of the given values, after an empty header. */
+    void addBody(Values values, Slime slime) {
         Compressor.Compression compressionResult = BinaryFormat.encode_and_compress(slime, compressor);
 
-        v.add(new Int8Value(compressionResult.type().getCode()));
-        v.add(new Int32Value(compressionResult.uncompressedSize()));
-        v.add(new DataValue(compressionResult.data()));
+        values.add(new Int8Value(compressionResult.type().getCode()));
+        values.add(new Int32Value(compressionResult.uncompressedSize()));
+        values.add(new DataValue(compressionResult.data()));
+    }
 
-        return req;
+    /** Returns the root of the slime body of the given values, as added by {@link #addBody}. */
+    Inspector getBody(Values values) {
+        CompressionType compression = CompressionType.valueOf(values.get(3).asInt8());
+        byte[] slimeBytes = compressor.decompress(values.get(5).asData(), compression, values.get(4).asInt32());
+        return BinaryFormat.decode(slimeBytes).get();
     }
 
     @Override
     protected Reply createReply(Values ret, String serviceName, Trace trace) {
-        CompressionType compression = CompressionType.valueOf(ret.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(ret.get(5).asData(), compression, ret.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return createReply(getBody(ret), serviceName, trace);
+    }
 
+    /** Decodes the reply in the given slime object. */
+    Reply createReply(Inspector root, String serviceName, Trace trace) {
         Version version = new Version(new Utf8Array(root.field(VERSION_F).asUtf8()));
         byte[] payload = root.field(BLOB_F).asData();
 
@@ -154,10 +169,11 @@ public class RPCSendV2 extends RPCSend {
     }
 
     protected Params toParams(Values args) {
-        CompressionType compression = CompressionType.valueOf(args.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(args.get(5).asData(), compression, args.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return toParams(getBody(args));
+    }
+
+    /** Decodes the parameters of the message in the given slime object. */
+    Params toParams(Inspector root) {
         Params p = new Params();
         p.version = new Version(new Utf8Array(root.field(VERSION_F).asUtf8()));
         p.route = root.field(ROUTE_F).asString();
@@ -178,8 +194,12 @@ public class RPCSendV2 extends RPCSend {
         ret.add(new DataValue(new byte[0]));
 
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
+        encodeReply(slime.setObject(), reply, version, payload);
+        addBody(ret, slime);
+    }
 
+    /** Encodes the given reply into the given slime object. */
+    void encodeReply(Cursor root, Reply reply, Version version, byte [] payload) {
         root.setString(VERSION_F, version.toUtf8().getBytes());
         root.setDouble(RETRYDELAY_F, reply.getRetryDelay());
         root.setString(PROTOCOL_F, reply.getProtocol().getBytes());
@@ -200,12 +220,6 @@ public class RPCSendV2 extends RPCSend {
                 }
             }
         }
-
-        Compressor.Compression compressionResult = BinaryFormat.encode_and_compress(slime, compressor);
-
-        ret.add(new Int8Value(compressionResult.type().getCode()));
-        ret.add(new Int32Value(compressionResult.uncompressedSize()));
-        ret.add(new DataValue(compressionResult.data()));
     }
 
 }
@@ -50,6 +50,15 @@ public class MessageBusTestCase {
         slobrok.stop();
     }
 
+    @Test
+    void requireThatNumMessengerThreadsMustBePositive() {
+        MessageBusParams params = new MessageBusParams();
+        assertThrows(IllegalArgumentException.class, () -> params.setNumMessengerThreads(0));
+        assertThrows(IllegalArgumentException.class, () -> params.setNumMessengerThreads(-1));
+        assertEquals(1, params.getNumMessengerThreads());
+        assertEquals(4, params.setNumMessengerThreads(4).getNumMessengerThreads());
+    }
+
     @Test
     void testConnectionSpec() throws ListenFailedException, UnknownHostException {
         // Setup servers and sessions.
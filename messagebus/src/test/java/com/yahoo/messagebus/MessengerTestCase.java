@@ -3,9 +3,18 @@ package com.yahoo.messagebus;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -95,6 +104,69 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    void requireThatTasksWithSameKeyRunInOrderWithSeveralThreads() throws InterruptedException {
+        Messenger msn = new Messenger(4);
+        msn.start();
+        int numKeys = 16, tasksPerKey = 1000;
+        Map<Long, List<Integer>> runs = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(numKeys * tasksPerKey);
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (long key = 0; key < numKeys; key++) {
+                long k = key;
+                int n = i;
+                msn.enqueue(new Messenger.Task() {
+                    @Override public void run() {
+                        runs.computeIfAbsent(k, __ -> Collections.synchronizedList(new ArrayList<>())).add(n);
+                        threads.add(Thread.currentThread().getName());
+                    }
+                    @Override public void destroy() { done.countDown(); }
+                }, key);
+            }
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        for (long key = 0; key < numKeys; key++) {
+            assertEquals(IntStream.range(0, tasksPerKey).boxed().toList(), runs.get(key));
+        }
+        assertTrue(threads.size() > 1, "Tasks ran in " + threads);
+        msn.sync();
+        assertTrue(msn.destroy());
+    }
+
+    @Test
+    void requireThatSyncWaitsForAllThreads() throws InterruptedException {
+        Messenger msn = new Messenger(3);
+        msn.start();
+        AtomicInteger count = new AtomicInteger();
+        for (long key = 0; key < 30; key++) {
+            msn.enqueue(new Messenger.Task() {
+                @Override public void run() { count.incrementAndGet(); }
+                @Override public void destroy() { }
+            }, key);
+        }
+        msn.sync();
+        assertEquals(30, count.get());
+        assertTrue(msn.destroy());
+    }
+
+    @Test
+    void requireThatTasksWithoutKeyAreSpreadOverThreads() throws InterruptedException {
+        Messenger msn = new Messenger(3);
+        msn.start();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            msn.enqueue(new Messenger.Task() {
+                @Override public void run() { threads.add(Thread.currentThread().getName()); }
+                @Override public void destroy() { done.countDown(); }
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(Set.of("Messenger", "Messenger-1", "Messenger-2"), threads);
+        assertTrue(msn.destroy());
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
@@ -4,15 +4,23 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -156,6 +164,68 @@ public class SequencerTestCase {
         messenger.destroy();
     }
 
+    @Test
+    void testConcurrentSendingKeepsSequencesInOrder() throws InterruptedException {
+        int numThreads = 8, numSequences = 100, messagesPerSequence = 200;
+        Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        Map<Long, List<Integer>> sentOrder = new ConcurrentHashMap<>();
+        Set<Long> overlaps = ConcurrentHashMap.newKeySet();
+        ExecutorService replier = Executors.newFixedThreadPool(4);
+        MessageHandler sender = message -> {
+            long seqId = message.getSequenceId();
+            if (inFlight.computeIfAbsent(seqId, __ -> new AtomicInteger()).incrementAndGet() > 1) overlaps.add(seqId);
+            sentOrder.computeIfAbsent(seqId, __ -> Collections.synchronizedList(new ArrayList<>()))
+                     .add(((NumberedMessage)message).number);
+            replier.execute(() -> {
+                inFlight.get(seqId).decrementAndGet();
+                Reply reply = new EmptyReply();
+                reply.swapState(message);
+                reply.setMessage(message);
+                reply.popHandler().handleReply(reply);
+            });
+        };
+        CountDownLatch replies = new CountDownLatch(numSequences * messagesPerSequence);
+        ReplyHandler handler = reply -> replies.countDown();
+        Messenger messenger = new Messenger(4);
+        messenger.start();
+        Sequencer sequencer = new Sequencer(sender, messenger);
+
+        // Each thread sends its own subset of the sequences, in order
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < messagesPerSequence; i++) {
+                    for (long seqId = thread; seqId < numSequences; seqId += numThreads) {
+                        Message message = new NumberedMessage(seqId, i);
+                        message.pushHandler(handler);
+                        sequencer.handleMessage(message);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+
+        assertTrue(replies.await(60, TimeUnit.SECONDS));
+        assertEquals(Set.of(), overlaps);
+        for (long seqId = 0; seqId < numSequences; seqId++) {
+            assertEquals(IntStream.range(0, messagesPerSequence).boxed().toList(), sentOrder.get(seqId));
+        }
+        replier.shutdown();
+        messenger.destroy();
+    }
+
+    private static class NumberedMessage extends MyMessage {
+
+        final int number;
+
+        NumberedMessage(long seqId, int number) {
+            super(true, seqId);
+            this.number = number;
+        }
+    }
+
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
         void checkReply(boolean hasSeqId, long seqId) {
@@ -0,0 +1,212 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int8Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
+import com.yahoo.jrt.Transport;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.EmptyReply;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchSendTestCase {
+
+    private static final int BATCH_SIZE = 8;
+
+    Slobrok slobrok;
+    TestServer srcServer, dstServer;
+    SourceSession srcSession;
+    DestinationSession dstSession;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        slobrok = new Slobrok();
+        dstServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setIdentity(new Identity("dst")).setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+        dstSession = dstServer.mb.createDestinationSession(
+                new DestinationSessionParams().setName("session").setMessageHandler(new Receptor()));
+        srcServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                      .setBatchWindowSecs(60).setMaxBatchSize(BATCH_SIZE));
+        srcSession = srcServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(null).setReplyHandler(new Receptor()));
+        assertTrue(srcServer.waitSlobrok("dst/session", 1));
+        srcServer.net.setVersion(RPCNetwork.BATCH_VERSION);
+        dstServer.net.setVersion(RPCNetwork.BATCH_VERSION);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        slobrok.stop();
+        dstSession.destroy();
+        dstServer.destroy();
+        srcSession.destroy();
+        srcServer.destroy();
+    }
+
+    @Test
+    void requireThatBatchAdapterIsOnlySelectedForSupportingVersionsWhenEnabled() {
+        assertTrue(srcServer.net.getSendAdapter(new Version(8, 310)) instanceof RPCSendV2);
+        assertTrue(srcServer.net.getSendAdapter(RPCNetwork.BATCH_VERSION) instanceof RPCSendBatch);
+        assertTrue(srcServer.net.getSendAdapter(new Version(9, 999)) instanceof RPCSendBatch);
+        assertTrue(dstServer.net.getSendAdapter(new Version(9, 999)) instanceof RPCSendV2);
+    }
+
+    @Test
+    void requireThatBatchedRepliesAreReturnedToTheirSenders() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Message msg = new SimpleMessage("msg" + i);
+            msg.getTrace().setLevel(9);
+            msg.setContext(i);
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+        Map<String, Message> received = new HashMap<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            received.put(((SimpleMessage)msg).getValue(), msg);
+        }
+        // Reply in reverse order, with an error for every third message.
+        for (int i = BATCH_SIZE - 1; i >= 0; i--) {
+            Reply reply = (i % 3 == 0) ? new EmptyReply() : new SimpleReply("reply" + i);
+            if (i % 3 == 0) reply.addError(new Error(ErrorCode.APP_FATAL_ERROR, "error" + i));
+            reply.swapState(received.get("msg" + i));
+            dstSession.reply(reply);
+        }
+        Map<Integer, Reply> replies = new HashMap<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            replies.put((Integer)reply.getContext(), reply);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Reply reply = replies.get(i);
+            assertNotNull(reply);
+            assertTrue(reply.getTrace().toString().contains("in a batch of " + BATCH_SIZE), reply.getTrace().toString());
+            if (i % 3 == 0) {
+                assertEquals(1, reply.getNumErrors());
+                assertEquals(ErrorCode.APP_FATAL_ERROR, reply.getError(0).getCode());
+                assertEquals("error" + i, reply.getError(0).getMessage());
+            } else {
+                assertFalse(reply.hasErrors(), reply.getTrace().toString());
+                assertEquals("reply" + i, ((SimpleReply)reply).getValue());
+            }
+        }
+    }
+
+    @Test
+    void requireThatMessagesNotRepliedToInTimeAreFailedWithoutDelayingTheOthers() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Message msg = new SimpleMessage("msg" + i);
+            msg.setContext(i);
+            if (i == 0) msg.setTimeRemaining(2000);
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            if (((SimpleMessage)msg).getValue().equals("msg1")) continue; // Never replied to
+            Reply reply = new SimpleReply("reply");
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+        Map<Integer, Reply> replies = new HashMap<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            replies.put((Integer)reply.getContext(), reply);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Reply reply = replies.get(i);
+            if (i == 1) {
+                assertEquals(1, reply.getNumErrors());
+                assertEquals(ErrorCode.TIMEOUT, reply.getError(0).getCode());
+            } else {
+                assertFalse(reply.hasErrors(), reply.getTrace().toString());
+            }
+        }
+    }
+
+    @Test
+    void requireThatMessagesHeldForABatchAreFailedWhenTheNetworkIsDestroyed() {
+        Message msg = new SimpleMessage("msg");
+        assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        srcServer.net.destroy();
+        Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+        assertNotNull(reply);
+        assertEquals(1, reply.getNumErrors());
+        assertEquals(ErrorCode.NETWORK_SHUTDOWN, reply.getError(0).getCode());
+    }
+
+    @Test
+    void requireThatMessagesAreSentOneByOneToPeersWithoutBatchSupport() {
+        dstServer.net.setVersion(new Version(8, 310));
+        Message msg = new SimpleMessage("msg");
+        msg.getTrace().setLevel(9);
+        assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+        assertNotNull(msg);
+        Reply reply = new SimpleReply("reply");
+        reply.swapState(msg);
+        dstSession.reply(reply);
+        reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+        assertNotNull(reply);
+        assertFalse(reply.hasErrors());
+        assertFalse(reply.getTrace().toString().contains("in a batch"));
+    }
+
+    @Test
+    void requireThatBatchRequestsWhichCannotBeDecodedAreFailed() {
+        Supervisor supervisor = new Supervisor(new Transport());
+        try {
+            Target target = supervisor.connect(new Spec("localhost", dstServer.net.getPort()));
+            Request request = new Request("mbus.slime.batch");
+            request.parameters().add(new Int8Value((byte) 0));
+            request.parameters().add(new Int32Value(0));
+            request.parameters().add(new DataValue(new byte[0]));
+            request.parameters().add(new Int8Value((byte) 99)); // Unknown body encoding
+            request.parameters().add(new Int32Value(3));
+            request.parameters().add(new DataValue(new byte[3]));
+            target.invokeSync(request, 60);
+            assertTrue(request.isError());
+            assertEquals(com.yahoo.jrt.ErrorCode.METHOD_FAILED, request.errorCode(), request.errorMessage());
+            target.close();
+        } finally {
+            supervisor.transport().shutdown().join();
+        }
+    }
+
+}
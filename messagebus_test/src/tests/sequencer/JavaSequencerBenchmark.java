@@ -0,0 +1,104 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+import com.yahoo.messagebus.*;
+import com.yahoo.messagebus.test.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of sequenced messages through a {@link Sequencer}, with the given number of threads
+ * sending messages on distinct sequence ids, and the given number of {@link Messenger} threads. Replies are
+ * returned from a pool of threads, like the network threads of a real message bus.
+ */
+public class JavaSequencerBenchmark {
+
+    private static final int SEQUENCES_PER_SENDER = 1000;
+    private static final int MAX_PENDING_PER_SENDER = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int numSenders = Integer.parseInt(args[0]);
+        int numMessengerThreads = Integer.parseInt(args[1]);
+
+        AtomicLong replies = new AtomicLong();
+        ExecutorService network = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                                         new ThreadPoolExecutor.DiscardPolicy());
+        MessageHandler sender = msg -> network.execute(() -> {
+            Reply reply = new EmptyReply();
+            reply.swapState(msg);
+            reply.popHandler().handleReply(reply);
+        });
+        Messenger messenger = new Messenger(numMessengerThreads);
+        messenger.start();
+        Sequencer sequencer = new Sequencer(sender, messenger);
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numSenders; ++t) {
+            long firstSeqId = (long) t * SEQUENCES_PER_SENDER;
+            Semaphore pending = new Semaphore(MAX_PENDING_PER_SENDER);
+            ReplyHandler handler = reply -> {
+                replies.incrementAndGet();
+                pending.release();
+            };
+            Thread thread = new Thread(() -> {
+                try {
+                    for (long i = 0; ! stop.get(); ++i) {
+                        pending.acquire();
+                        Message msg = new MyMessage(firstSeqId + i % SEQUENCES_PER_SENDER);
+                        msg.pushHandler(handler);
+                        sequencer.handleMessage(msg);
+                    }
+                } catch (InterruptedException ignored) { }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // let the system 'warm up'
+        Thread.sleep(3000);
+
+        long start = System.nanoTime();
+        long before = replies.get();
+        Thread.sleep(10000); // Benchmark time
+        long after = replies.get();
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        System.out.printf("JAVA-SEQUENCER: %d sender(s), %d messenger thread(s): %g msg/s\n",
+                          numSenders, numMessengerThreads, (after - before) / seconds);
+
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join();
+        }
+        network.shutdown();
+        sequencer.destroy();
+        messenger.destroy();
+    }
+
+    private static class MyMessage extends SimpleMessage {
+
+        final long seqId;
+
+        MyMessage(long seqId) {
+            super("message");
+            this.seqId = seqId;
+        }
+
+        @Override
+        public boolean hasSequenceId() {
+            return true;
+        }
+
+        @Override
+        public long getSequenceId() {
+            return seqId;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+#!/bin/bash
+# Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+set -e
+
+if [ -z "$SOURCE_DIRECTORY" ]; then
+    SOURCE_DIRECTORY="."
+fi
+
+. ../../binref/env.sh
+
+$BINREF/compilejava $SOURCE_DIRECTORY/JavaSequencerBenchmark.java
+$BINREF/runjava JavaSequencerBenchmark 1 1
+$BINREF/runjava JavaSequencerBenchmark 8 1
+$BINREF/runjava JavaSequencerBenchmark 8 4
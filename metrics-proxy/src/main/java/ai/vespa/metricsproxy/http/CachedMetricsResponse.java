@@ -0,0 +1,38 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.metricsproxy.http;
+
+import com.yahoo.container.jdisc.HttpResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A response with metrics that have already been rendered, see {@link RenderedMetricsCache}.
+ */
+public class CachedMetricsResponse extends HttpResponse {
+
+    private final byte[] rendered;
+    private final String contentType;
+
+    public CachedMetricsResponse(int status, byte[] rendered, String contentType) {
+        super(status);
+        this.rendered = rendered;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void render(OutputStream outputStream) throws IOException {
+        outputStream.write(rendered);
+    }
+
+    @Override
+    public long maxPendingBytes() {
+        return 1 << 20;
+    }
+
+}
@@ -0,0 +1,99 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.metricsproxy.http;
+
+import ai.vespa.metricsproxy.metric.model.ConsumerId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches fully rendered metrics per consumer and output format for a short while. The metrics
+ * of the monitored services only change once per snapshot period, so requests for the same
+ * consumer and format within this time, e.g. from several scrapers, can share one fetch and
+ * rendering of the metrics of all services. Concurrent requests for an expired or missing
+ * entry wait for a single rendering instead of each rendering the same output.
+ * Entries are kept per resolved consumer, so unknown consumers share the entry of the consumer
+ * they resolve to, and expired entries are removed on access.
+ */
+public class RenderedMetricsCache {
+
+    /** Renders metrics for one consumer and format to the given output stream. */
+    public interface Renderer {
+        void render(OutputStream output) throws IOException;
+    }
+
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofSeconds(5);
+
+    private record Key(ConsumerId consumer, String format) { }
+
+    private record Entry(CompletableFuture<byte[]> rendered, Instant renderedAt) {
+        boolean isValidAt(Instant now, Duration maxAge) {
+            return now.isBefore(renderedAt.plus(maxAge)) && ! rendered.isCompletedExceptionally();
+        }
+    }
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Duration maxAge;
+    private final Clock clock;
+
+    public RenderedMetricsCache() {
+        this(DEFAULT_MAX_AGE, Clock.systemUTC());
+    }
+
+    public RenderedMetricsCache(Duration maxAge, Clock clock) {
+        this.maxAge = Objects.requireNonNull(maxAge);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Returns the rendered metrics for the given consumer and format, using the given renderer only
+     * if there is no sufficiently recent rendering of the same output.
+     *
+     * @param consumer the consumer the metrics are rendered for, or null if they are rendered for all consumers
+     * @param format an identifier of the output format
+     */
+    public byte[] get(ConsumerId consumer, String format, Renderer renderer) {
+        Key key = new Key(consumer, format);
+        Instant now = clock.instant();
+        entries.values().removeIf(entry -> ! entry.isValidAt(now, maxAge));
+        CompletableFuture<byte[]> ours = new CompletableFuture<>();
+        Entry entry = entries.compute(key, (k, current) -> (current != null && current.isValidAt(now, maxAge))
+                                                           ? current
+                                                           : new Entry(ours, now));
+        if (entry.rendered() == ours) {
+            try {
+                var output = new ByteArrayOutputStream();
+                renderer.render(output);
+                ours.complete(output.toByteArray());
+            } catch (IOException | RuntimeException e) {
+                entries.remove(key, entry);
+                ours.completeExceptionally(e);
+            }
+        }
+        try {
+            return entry.rendered().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof IOException ioException) throw new UncheckedIOException(ioException);
+            throw e;
+        }
+    }
+
+    /** Removes all cached renderings. */
+    public void invalidate() {
+        entries.clear();
+    }
+
+    int size() { return entries.size(); }
+
+}
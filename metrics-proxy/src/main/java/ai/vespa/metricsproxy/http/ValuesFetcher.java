@@ -40,8 +40,10 @@ public class ValuesFetcher {
     }
 
     public List<MetricsPacket> fetch(String requestedConsumer) throws JsonRenderingException {
-        ConsumerId consumer = getConsumerOrDefault(requestedConsumer, metricsConsumers);
+        return fetch(getConsumerOrDefault(requestedConsumer, metricsConsumers));
+    }
 
+    public List<MetricsPacket> fetch(ConsumerId consumer) throws JsonRenderingException {
         return metricsManager.getMetrics(vespaServices.getVespaServices(), Instant.now(), consumer)
                 .stream()
                 .filter(metricsPacket -> metricsPacket.consumers().contains(consumer))
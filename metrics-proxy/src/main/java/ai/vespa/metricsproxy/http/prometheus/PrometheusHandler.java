@@ -3,11 +3,13 @@ package ai.vespa.metricsproxy.http.prometheus;
 
 import ai.vespa.metricsproxy.core.MetricsConsumers;
 import ai.vespa.metricsproxy.core.MetricsManager;
-import ai.vespa.metricsproxy.http.PrometheusResponse;
+import ai.vespa.metricsproxy.http.CachedMetricsResponse;
+import ai.vespa.metricsproxy.http.RenderedMetricsCache;
 import ai.vespa.metricsproxy.http.TextResponse;
 import ai.vespa.metricsproxy.http.ValuesFetcher;
 import ai.vespa.metricsproxy.metric.dimensions.ApplicationDimensions;
 import ai.vespa.metricsproxy.metric.dimensions.NodeDimensions;
+import ai.vespa.metricsproxy.metric.model.ConsumerId;
 import ai.vespa.metricsproxy.metric.model.MetricsPacket;
 import ai.vespa.metricsproxy.node.NodeMetricGatherer;
 import ai.vespa.metricsproxy.service.VespaServices;
@@ -16,13 +18,17 @@ import com.yahoo.container.handler.metrics.HttpHandlerBase;
 import com.yahoo.container.jdisc.HttpResponse;
 import com.yahoo.restapi.Path;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
+import static ai.vespa.metricsproxy.http.ValuesFetcher.getConsumerOrDefault;
 import static ai.vespa.metricsproxy.metric.model.prometheus.PrometheusUtil.toPrometheusModel;
 import static com.yahoo.jdisc.Response.Status.INTERNAL_SERVER_ERROR;
 import static com.yahoo.jdisc.Response.Status.OK;
@@ -36,9 +42,11 @@ public class PrometheusHandler extends HttpHandlerBase {
     static final String VALUES_PATH = V1_PATH + "/values";
 
     private final ValuesFetcher valuesFetcher;
+    private final MetricsConsumers metricsConsumers;
     private final NodeMetricGatherer nodeMetricGatherer;
     private final ApplicationDimensions applicationDimensions;
     private final NodeDimensions nodeDimensions;
+    private final RenderedMetricsCache renderedMetrics;
 
     @Inject
     public PrometheusHandler(Executor executor,
@@ -47,11 +55,24 @@ public class PrometheusHandler extends HttpHandlerBase {
                              MetricsConsumers metricsConsumers,
                              ApplicationDimensions applicationDimensions,
                              NodeDimensions nodeDimensions) {
+        this(executor, metricsManager, vespaServices, metricsConsumers, applicationDimensions, nodeDimensions,
+             new RenderedMetricsCache());
+    }
+
+    PrometheusHandler(Executor executor,
+                      MetricsManager metricsManager,
+                      VespaServices vespaServices,
+                      MetricsConsumers metricsConsumers,
+                      ApplicationDimensions applicationDimensions,
+                      NodeDimensions nodeDimensions,
+                      RenderedMetricsCache renderedMetrics) {
         super(executor);
         valuesFetcher = new ValuesFetcher(metricsManager, vespaServices, metricsConsumers);
+        this.metricsConsumers = metricsConsumers;
         this.nodeMetricGatherer = new NodeMetricGatherer(metricsManager, applicationDimensions, nodeDimensions);
         this.applicationDimensions = applicationDimensions;
         this.nodeDimensions = nodeDimensions;
+        this.renderedMetrics = renderedMetrics;
     }
 
     @Override
@@ -61,11 +82,17 @@ public class PrometheusHandler extends HttpHandlerBase {
         return Optional.empty();
     }
 
-    private HttpResponse valuesResponse(String consumer) {
+    private HttpResponse valuesResponse(String requestedConsumer) {
         try {
-            List<MetricsPacket> metrics =  new ArrayList<>(valuesFetcher.fetch(consumer));
-            metrics.addAll(nodeMetricGatherer.gatherMetrics());
-            return new PrometheusResponse(OK, toPrometheusModel(metrics, applicationDimensions, nodeDimensions));
+            ConsumerId consumer = getConsumerOrDefault(requestedConsumer, metricsConsumers);
+            byte[] rendered = renderedMetrics.get(consumer, "prometheus", output -> {
+                List<MetricsPacket> metrics = new ArrayList<>(valuesFetcher.fetch(consumer));
+                metrics.addAll(nodeMetricGatherer.gatherMetrics());
+                Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                toPrometheusModel(metrics, applicationDimensions, nodeDimensions).serialize(writer);
+                writer.flush();
+            });
+            return new CachedMetricsResponse(OK, rendered, HttpResponse.DEFAULT_MIME_TYPE);
         } catch (Exception e) {
             log.log(Level.WARNING, "Got exception when rendering metrics:", e);
             return new TextResponse(INTERNAL_SERVER_ERROR, e.getMessage());
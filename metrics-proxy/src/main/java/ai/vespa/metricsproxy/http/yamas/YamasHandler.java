@@ -3,11 +3,15 @@ package ai.vespa.metricsproxy.http.yamas;
 
 import ai.vespa.metricsproxy.core.MetricsConsumers;
 import ai.vespa.metricsproxy.core.MetricsManager;
+import ai.vespa.metricsproxy.http.CachedMetricsResponse;
+import ai.vespa.metricsproxy.http.RenderedMetricsCache;
 import ai.vespa.metricsproxy.http.ValuesFetcher;
 import ai.vespa.metricsproxy.metric.dimensions.ApplicationDimensions;
 import ai.vespa.metricsproxy.metric.dimensions.NodeDimensions;
+import ai.vespa.metricsproxy.metric.model.ConsumerId;
 import ai.vespa.metricsproxy.metric.model.MetricsPacket;
 import ai.vespa.metricsproxy.metric.model.json.JsonRenderingException;
+import ai.vespa.metricsproxy.metric.model.json.YamasJsonUtil;
 import ai.vespa.metricsproxy.node.NodeMetricGatherer;
 import ai.vespa.metricsproxy.service.VespaServices;
 import com.yahoo.component.annotation.Inject;
@@ -26,6 +30,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 
+import static ai.vespa.metricsproxy.http.ValuesFetcher.getConsumerOrDefault;
 import static com.yahoo.jdisc.Response.Status.INTERNAL_SERVER_ERROR;
 import static com.yahoo.jdisc.Response.Status.OK;
 
@@ -42,6 +47,7 @@ public class YamasHandler extends HttpHandlerBase {
     private final ValuesFetcher valuesFetcher;
     private final NodeMetricGatherer nodeMetricGatherer;
     private final MetricsConsumers metricsConsumers;
+    private final RenderedMetricsCache renderedMetrics;
 
     @Inject
     public YamasHandler(Executor executor,
@@ -50,10 +56,22 @@ public class YamasHandler extends HttpHandlerBase {
                         MetricsConsumers metricsConsumers,
                         ApplicationDimensions applicationDimensions,
                         NodeDimensions nodeDimensions) {
+        this(executor, metricsManager, vespaServices, metricsConsumers, applicationDimensions, nodeDimensions,
+             new RenderedMetricsCache());
+    }
+
+    YamasHandler(Executor executor,
+                 MetricsManager metricsManager,
+                 VespaServices vespaServices,
+                 MetricsConsumers metricsConsumers,
+                 ApplicationDimensions applicationDimensions,
+                 NodeDimensions nodeDimensions,
+                 RenderedMetricsCache renderedMetrics) {
         super(executor);
         valuesFetcher = new ValuesFetcher(metricsManager, vespaServices, metricsConsumers);
         this.nodeMetricGatherer = new NodeMetricGatherer(metricsManager, applicationDimensions, nodeDimensions);
         this.metricsConsumers = metricsConsumers;
+        this.renderedMetrics = renderedMetrics;
     }
 
     @Override
@@ -64,11 +82,19 @@ public class YamasHandler extends HttpHandlerBase {
         return Optional.empty();
     }
 
-    private HttpResponse valuesResponse(String consumer, String query) {
+    private HttpResponse valuesResponse(String requestedConsumer, String query) {
         try {
-            List<MetricsPacket> metrics = new ArrayList<>(consumer == null ? valuesFetcher.fetchAllMetrics() : valuesFetcher.fetch(consumer));
-            metrics.addAll(nodeMetricGatherer.gatherMetrics());
-            return new YamasResponse(OK, metrics, useJsonl(query));
+            boolean useJsonl = useJsonl(query);
+            ConsumerId consumer = requestedConsumer == null ? null : getConsumerOrDefault(requestedConsumer, metricsConsumers);
+            byte[] rendered = renderedMetrics.get(consumer, useJsonl ? "jsonl" : "json", output -> {
+                List<MetricsPacket> metrics = new ArrayList<>(consumer == null ? valuesFetcher.fetchAllMetrics() : valuesFetcher.fetch(consumer));
+                metrics.addAll(nodeMetricGatherer.gatherMetrics());
+                if (useJsonl)
+                    YamasJsonUtil.toJsonl(metrics, output, false);
+                else
+                    YamasJsonUtil.toJson(metrics, output, false);
+            });
+            return new CachedMetricsResponse(OK, rendered, "application/json");
         } catch (JsonRenderingException e) {
             return new ErrorResponse(INTERNAL_SERVER_ERROR, e.getMessage());
         }
@@ -14,7 +14,9 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,16 +26,32 @@ import java.util.Set;
  * @author gjoranv
  */
 public class PrometheusModel implements Enumeration<MetricFamilySamples> {
-    private final Map<ServiceId, List<MetricsPacket>> packetsByServiceId;
-    private final Iterator<MetricId> metricIterator;
+
+    private record PacketValue(ServiceId serviceId, MetricsPacket packet, Number value) { }
+
+    private record Labels(List<String> names, List<String> values) { }
+
+    private final Iterator<Map.Entry<MetricId, List<PacketValue>>> metricIterator;
     private final Iterator<MetricFamilySamples> statusMetrics;
+    // Label lists are shared by all samples from the same packet
+    private final Map<MetricsPacket, Labels> labelsByPacket = new IdentityHashMap<>();
 
     PrometheusModel(Set<MetricId> metricNames,
                     Map<ServiceId, List<MetricsPacket>> packetsByServiceId,
                     List<MetricFamilySamples> statusMetrics)
     {
-        metricIterator = metricNames.iterator();
-        this.packetsByServiceId = packetsByServiceId;
+        // Group all values by metric in a single pass, instead of looking up each metric in every packet
+        Map<MetricId, List<PacketValue>> valuesByMetric = new LinkedHashMap<>(metricNames.size() * 2);
+        metricNames.forEach(metricId -> valuesByMetric.put(metricId, new ArrayList<>()));
+        packetsByServiceId.forEach((serviceId, packets) -> {
+            for (var packet : packets) {
+                packet.metrics().forEach((metricId, value) -> {
+                    List<PacketValue> values = valuesByMetric.get(metricId);
+                    if (values != null && value != null) values.add(new PacketValue(serviceId, packet, value));
+                });
+            }
+        });
+        metricIterator = valuesByMetric.entrySet().iterator();
         this.statusMetrics = statusMetrics.iterator();
     }
 
@@ -44,9 +62,11 @@ public class PrometheusModel implements Enumeration<MetricFamilySamples> {
 
     @Override
     public MetricFamilySamples nextElement() {
-        return metricIterator.hasNext()
-                ? createMetricFamily(metricIterator.next())
-                : statusMetrics.next();
+        if ( ! metricIterator.hasNext()) return statusMetrics.next();
+
+        var entry = metricIterator.next();
+        metricIterator.remove();  // Allow the values to be garbage collected while rendering
+        return createMetricFamily(entry.getKey(), entry.getValue());
     }
 
     public String serialize() {
@@ -63,24 +83,19 @@ public class PrometheusModel implements Enumeration<MetricFamilySamples> {
         }
     }
 
-    private MetricFamilySamples createMetricFamily(MetricId metricId) {
-        List<MetricFamilySamples.Sample> sampleList = new ArrayList<>();
-        packetsByServiceId.forEach(((serviceId, packets) -> {
-            for (var packet : packets) {
-                Number metric = packet.metrics().get(metricId);
-                if (metric != null) {
-                    sampleList.add(createSample(serviceId, metricId, metric, packet.timestamp().toEpochMilli(), packet.dimensions()));
-                }
-            }
-        }));
+    private MetricFamilySamples createMetricFamily(MetricId metricId, List<PacketValue> values) {
+        List<MetricFamilySamples.Sample> sampleList = new ArrayList<>(values.size());
+        for (var value : values) {
+            Labels labels = labelsByPacket.computeIfAbsent(value.packet(), packet -> createLabels(value.serviceId(), packet.dimensions()));
+            sampleList.add(new Sample(metricId.getIdForPrometheus(), labels.names(), labels.values(),
+                                      value.value().doubleValue(), value.packet().timestamp().toEpochMilli()));
+        }
         return new MetricFamilySamples(metricId.getIdForPrometheus(), Collector.Type.UNKNOWN, "", sampleList);
     }
 
-    private static Sample createSample(ServiceId serviceId, MetricId metricId, Number metric,
-                                       Long timeStamp, Map<DimensionId, String> dimensions)
-    {
-        List<String> labels = new ArrayList<>(dimensions.size());
-        List<String> labelValues = new ArrayList<>(dimensions.size());
+    private static Labels createLabels(ServiceId serviceId, Map<DimensionId, String> dimensions) {
+        List<String> labels = new ArrayList<>(dimensions.size() + 1);
+        List<String> labelValues = new ArrayList<>(dimensions.size() + 1);
         for (var entry : dimensions.entrySet()) {
             var labelName = entry.getKey().getIdForPrometheus();
             labels.add(labelName);
@@ -88,7 +103,7 @@ public class PrometheusModel implements Enumeration<MetricFamilySamples> {
         }
         labels.add("vespa_service");
         labelValues.add(serviceId.getIdForPrometheus());
-        return new Sample(metricId.getIdForPrometheus(), labels, labelValues, metric.doubleValue(), timeStamp);
+        return new Labels(labels, labelValues);
     }
 
 }
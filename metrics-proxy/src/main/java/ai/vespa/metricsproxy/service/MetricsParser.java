@@ -13,11 +13,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static ai.vespa.metricsproxy.metric.model.DimensionId.toDimensionId;
@@ -35,6 +35,13 @@ public class MetricsParser {
 
     private static final ObjectMapper jsonMapper = Jackson.mapper();
 
+    // Dimension sets and metric ids are shared across all polls of all services, as the same
+    // sets and names are returned again and again. Cleared if growing beyond the given limits.
+    static final int MAX_UNIQUE_DIMENSION_SETS = 50_000;
+    static final int MAX_UNIQUE_METRIC_NAMES = 50_000;
+    private static final Map<Set<Dimension>, Map<DimensionId, String>> uniqueDimensions = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, MetricId>> metricIdsByNameAndAggregator = new ConcurrentHashMap<>();
+
     public static void parse(String data, Collector consumer) throws IOException {
         try (JsonParser parser = jsonMapper.createParser(data)) {
             parse(parser, consumer);
@@ -113,15 +120,13 @@ public class MetricsParser {
             throw new IOException("Expected start of 'metrics:values' array, got " + parser.currentToken());
         }
 
-        Map<Set<Dimension>, Map<DimensionId, String>> uniqueDimensions = new HashMap<>();
         while (parser.nextToken() == JsonToken.START_OBJECT) {
-            handleValue(parser, timestamp, consumer, uniqueDimensions);
+            handleValue(parser, timestamp, consumer);
         }
     }
 
     // One item in the 'values' array, where each item has 'name', 'values' and 'dimensions'
-    static private void handleValue(JsonParser parser, Instant timestamp, Collector consumer,
-                                    Map<Set<Dimension>, Map<DimensionId, String>> uniqueDimensions) throws IOException {
+    static private void handleValue(JsonParser parser, Instant timestamp, Collector consumer) throws IOException {
         String name = "";
         String description = "";
         Map<DimensionId, String> dim = Map.of();
@@ -132,7 +137,7 @@ public class MetricsParser {
             switch (fieldName) {
                 case "name" -> name = parser.getText();
                 case "description" -> description = parser.getText();
-                case "dimensions" -> dim = parseDimensions(parser, uniqueDimensions);
+                case "dimensions" -> dim = parseDimensions(parser);
                 case "values" -> values = parseValues(parser);
                 default -> {
                     if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
@@ -144,13 +149,22 @@ public class MetricsParser {
         if (name.isEmpty()) {
             throw new IOException("missing name for entry in 'values' array");
         }
+        String metricName = name;
+        Map<String, MetricId> idsByAggregator = metricIdsFor(metricName);
         for (Map.Entry<String, Number> value : values) {
-            consumer.accept(new Metric(MetricId.toMetricId(name+"."+value.getKey()), value.getValue(), timestamp, dim, description));
+            MetricId id = idsByAggregator.computeIfAbsent(value.getKey(), aggregator -> MetricId.toMetricId(metricName + "." + aggregator));
+            consumer.accept(new Metric(id, value.getValue(), timestamp, dim, description));
         }
     }
 
-    private static Map<DimensionId, String> parseDimensions(JsonParser parser,
-                                                            Map<Set<Dimension>, Map<DimensionId, String>> uniqueDimensions) throws IOException {
+    private static Map<String, MetricId> metricIdsFor(String name) {
+        if (metricIdsByNameAndAggregator.size() >= MAX_UNIQUE_METRIC_NAMES) {
+            metricIdsByNameAndAggregator.clear();
+        }
+        return metricIdsByNameAndAggregator.computeIfAbsent(name, key -> new ConcurrentHashMap<>());
+    }
+
+    private static Map<DimensionId, String> parseDimensions(JsonParser parser) throws IOException {
 
         Set<Dimension> dimensions = new HashSet<>();
 
@@ -167,6 +181,9 @@ public class MetricsParser {
                 throw new IllegalArgumentException("Dimension '" + fieldName + "' must be a string");
             }
         }
+        if (uniqueDimensions.size() >= MAX_UNIQUE_DIMENSION_SETS) {
+            uniqueDimensions.clear();
+        }
         return uniqueDimensions.computeIfAbsent(dimensions,
                                                 key -> dimensions.stream().collect(Collectors.toUnmodifiableMap(
                                                         dim -> toDimensionId(dim.id), dim -> dim.value)));
@@ -0,0 +1,63 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.metricsproxy.http;
+
+import ai.vespa.metricsproxy.metric.model.ConsumerId;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class RenderedMetricsCacheTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final RenderedMetricsCache cache = new RenderedMetricsCache(Duration.ofSeconds(5), clock);
+    private final AtomicInteger renderings = new AtomicInteger();
+
+    private String get(String consumer, String format) {
+        return new String(cache.get(consumer == null ? null : ConsumerId.toConsumerId(consumer), format, output -> output.write(
+                (consumer + ":" + format + ":" + renderings.incrementAndGet()).getBytes(StandardCharsets.UTF_8))),
+                          StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void rendering_is_reused_for_same_consumer_and_format_until_expired() {
+        assertEquals("default:prometheus:1", get("default", "prometheus"));
+        assertEquals("default:prometheus:1", get("default", "prometheus"));
+
+        clock.advance(Duration.ofSeconds(5));
+        assertEquals("default:prometheus:2", get("default", "prometheus"));
+    }
+
+    @Test
+    public void renderings_are_cached_per_consumer_and_format() {
+        assertEquals("default:prometheus:1", get("default", "prometheus"));
+        assertEquals("default:json:2", get("default", "json"));
+        assertEquals("custom:json:3", get("custom", "json"));
+        assertEquals("null:json:4", get(null, "json"));
+        assertEquals("custom:json:3", get("custom", "json"));
+    }
+
+    @Test
+    public void failed_renderings_are_not_cached() {
+        assertThrows(IllegalStateException.class,
+                     () -> cache.get(ConsumerId.toConsumerId("default"), "json", output -> { throw new IllegalStateException("failed"); }));
+        assertEquals("default:json:1", get("default", "json"));
+    }
+
+    @Test
+    public void expired_renderings_are_removed() {
+        for (int i = 0; i < 10; i++)
+            get("consumer" + i, "json");
+        assertEquals(10, cache.size());
+
+        clock.advance(Duration.ofSeconds(5));
+        get("default", "json");
+        assertEquals(1, cache.size());
+    }
+
+}
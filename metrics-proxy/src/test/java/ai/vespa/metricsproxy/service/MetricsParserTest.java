@@ -9,6 +9,7 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author gjoranv
@@ -44,6 +45,19 @@ public class MetricsParserTest {
                 collector.metrics.get(1).getDimensions());
     }
 
+    @Test
+    public void dimensions_and_metric_ids_are_shared_across_parses() throws Exception {
+        var first = new MetricsCollector();
+        var second = new MetricsCollector();
+        MetricsParser.parse(metricsJsonDistinctButDuplicateDimensionDalues(), first);
+        MetricsParser.parse(metricsJsonDistinctButDuplicateDimensionDalues(), second);
+        assertEquals(2, second.metrics.size());
+        for (int i = 0; i < 2; i++) {
+            assertSame(first.metrics.get(i).getDimensions(), second.metrics.get(i).getDimensions());
+            assertSame(first.metrics.get(i).getName(), second.metrics.get(i).getName());
+        }
+    }
+
     // The duplicate dimension values for 'cluster' and 'clusterid' exposed a bug in a previously used hashing algo for dimensions.
     private String metricsJsonDistinctButDuplicateDimensionDalues() {
         return """
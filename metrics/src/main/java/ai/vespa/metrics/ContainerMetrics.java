@@ -144,6 +144,17 @@ public enum ContainerMetrics implements VespaMetrics {
     TOTAL_HITS_PER_QUERY("totalhits_per_query", Unit.HIT_PER_QUERY, "The total number of documents found to match queries"),
     EMPTY_RESULTS("empty_results", Unit.OPERATION, "Number of queries matching no documents"),
     REQUESTS_OVER_QUOTA("requestsOverQuota", Unit.OPERATION, "The number of requests rejected due to exceeding quota"),
+    QUERY_RESULT_CACHE_HITS("query_result_cache.hits", Unit.QUERY, "The number of queries answered from the result cache"),
+    QUERY_RESULT_CACHE_MISSES("query_result_cache.misses", Unit.QUERY, "The number of cacheable queries not found in the result cache"),
+    QUERY_RESULT_CACHE_HIT_RATIO("query_result_cache.hit_ratio", Unit.FRACTION, "The fraction of cacheable queries answered from the result cache"),
+    QUERY_RESULT_CACHE_ENTRIES("query_result_cache.entries", Unit.ITEM, "The number of results in the result cache"),
+    QUERY_RESULT_CACHE_SIZE("query_result_cache.size", Unit.BYTE, "The estimated size of the results in the result cache"),
+    YQL_TEMPLATE_CACHE_HITS("yql_template_cache.hits", Unit.QUERY, "The number of YQL queries created from a cached parse of a query of the same form"),
+    YQL_TEMPLATE_CACHE_MISSES("yql_template_cache.misses", Unit.QUERY, "The number of YQL queries parsed in full"),
+    YQL_TEMPLATE_CACHE_ENTRIES("yql_template_cache.entries", Unit.ITEM, "The number of forms of YQL queries in the template cache"),
+    GLOBAL_PHASE_PARALLEL_QUERIES("global_phase.parallel_queries", Unit.QUERY, "The number of queries where global-phase rescoring was run in parallel"),
+    GLOBAL_PHASE_PARALLEL_TASKS("global_phase.parallel_tasks", Unit.TASK, "The number of tasks global-phase rescoring was split into, per query rescored in parallel"),
+    GLOBAL_PHASE_PARALLEL_EFFICIENCY("global_phase.parallel_efficiency", Unit.FRACTION, "The time spent rescoring hits in parallel, divided by the wall time of the rescoring multiplied by the number of tasks"),
     
     RELEVANCE_AT_1("relevance.at_1", Unit.SCORE, "The relevance of hit number 1"),
     RELEVANCE_AT_3("relevance.at_3", Unit.SCORE, "The relevance of hit number 3"),
@@ -287,6 +287,17 @@ public class Vespa9VespaMetricSet {
         addMetric(metrics, ContainerMetrics.TOTAL_HITS_PER_QUERY, EnumSet.of(sum, count, max, ninety_five_percentile, ninety_nine_percentile));
         addMetric(metrics, ContainerMetrics.EMPTY_RESULTS.rate());
         addMetric(metrics, ContainerMetrics.REQUESTS_OVER_QUOTA, EnumSet.of(rate, count));
+        addMetric(metrics, ContainerMetrics.QUERY_RESULT_CACHE_HITS, EnumSet.of(rate, count));
+        addMetric(metrics, ContainerMetrics.QUERY_RESULT_CACHE_MISSES, EnumSet.of(rate, count));
+        addMetric(metrics, ContainerMetrics.QUERY_RESULT_CACHE_HIT_RATIO, EnumSet.of(average));
+        addMetric(metrics, ContainerMetrics.QUERY_RESULT_CACHE_ENTRIES, EnumSet.of(max, last));
+        addMetric(metrics, ContainerMetrics.QUERY_RESULT_CACHE_SIZE, EnumSet.of(max, last));
+        addMetric(metrics, ContainerMetrics.YQL_TEMPLATE_CACHE_HITS, EnumSet.of(rate, count));
+        addMetric(metrics, ContainerMetrics.YQL_TEMPLATE_CACHE_MISSES, EnumSet.of(rate, count));
+        addMetric(metrics, ContainerMetrics.YQL_TEMPLATE_CACHE_ENTRIES, EnumSet.of(max, last));
+        addMetric(metrics, ContainerMetrics.GLOBAL_PHASE_PARALLEL_QUERIES, EnumSet.of(rate, count));
+        addMetric(metrics, ContainerMetrics.GLOBAL_PHASE_PARALLEL_TASKS, EnumSet.of(max, sum, count));
+        addMetric(metrics, ContainerMetrics.GLOBAL_PHASE_PARALLEL_EFFICIENCY, EnumSet.of(average));
 
         addMetric(metrics, ContainerMetrics.RELEVANCE_AT_1, EnumSet.of(sum, count));
         addMetric(metrics, ContainerMetrics.RELEVANCE_AT_3, EnumSet.of(sum, count));
@@ -0,0 +1,296 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * An evaluator which evaluates a function over many rows of arguments at once.
+ * Arguments are bound as columns, holding one value for each row, or as a single value used for all rows.
+ * <p>
+ * Functions are evaluated for all the rows in a single context which is reused between rows, rather than
+ * creating an evaluator and context for each row. Functions using ONNX models are instead evaluated with
+ * a context per row, where models are evaluated in batches over all the rows whose inputs allow it,
+ * as in {@link FunctionEvaluator#evaluateOnnxModels}.
+ * <p>
+ * Unlike {@link FunctionEvaluator}, this may be evaluated multiple times, with arguments rebound in between.
+ * This is not multithread safe.
+ */
+public class BatchEvaluator {
+
+    private final ExpressionFunction function;
+    private final LazyArrayContext prototype;
+    private final boolean usesOnnx;
+
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    /** The number of rows of the arguments bound to a value for each row, or -1 if there are no such arguments */
+    private int rows = -1;
+    private Tensor missingValue = null;
+
+    /** The context reused for all rows when not using ONNX models, or null if not created yet */
+    private LazyArrayContext context = null;
+
+    BatchEvaluator(ExpressionFunction function, LazyArrayContext prototype) {
+        this.function = function;
+        this.prototype = prototype;
+        this.usesOnnx = OnnxBatch.usesOnnx(function, prototype);
+    }
+
+    /**
+     * Binds the given argument to a value for each row.
+     *
+     * @param name the argument to bind, which must have a scalar type
+     * @param values the value of this argument in each row
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, double[] values) {
+        TensorType requiredType = requireArgumentType(name);
+        if ( ! TensorType.empty.isAssignableTo(requiredType))
+            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not a double");
+        return bind(name, new DoubleColumn(values));
+    }
+
+    /**
+     * Binds the given argument to a value for each row.
+     *
+     * @param name the argument to bind
+     * @param values the value of this argument in each row
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, List<Tensor> values) {
+        TensorType requiredType = requireArgumentType(name);
+        for (Tensor value : values) {
+            if ( ! value.type().isAssignableTo(requiredType))
+                throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not " + value.type());
+        }
+        return bind(name, new TensorColumn(values));
+    }
+
+    /**
+     * Binds the given argument to the same value in all rows.
+     *
+     * @param name the argument to bind
+     * @param value the value of this argument in all rows
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, Tensor value) {
+        TensorType requiredType = requireArgumentType(name);
+        if ( ! value.type().isAssignableTo(requiredType))
+            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not " + value.type());
+        return bind(name, new ConstantColumn(new TensorValue(value).freeze()));
+    }
+
+    /**
+     * Binds the given argument to the same value in all rows.
+     * This is equivalent to <code>bind(name, Tensor.Builder.of(TensorType.empty).cell(value).build())</code>
+     *
+     * @param name the argument to bind
+     * @param value the value of this argument in all rows
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, double value) {
+        return bind(name, Tensor.Builder.of(TensorType.empty).cell(value).build());
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchEvaluator setMissingValue(Tensor value) {
+        missingValue = value;
+        if (context != null)
+            context.setMissingValue(value);
+        return this;
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchEvaluator setMissingValue(double value) {
+        return setMissingValue(Tensor.Builder.of(TensorType.empty).cell(value).build());
+    }
+
+    /**
+     * Returns the number of rows bound in this, which is 0 if arguments are bound to no values,
+     * or 1 if all arguments are bound to a single value
+     */
+    public int rows() { return rows < 0 ? 1 : rows; }
+
+    /** Evaluates the function for each row and returns the results, in row order */
+    public List<Tensor> evaluate() {
+        List<Tensor> results = new ArrayList<>(rows());
+        evaluate((row, value) -> results.add(value.asTensor()));
+        return results;
+    }
+
+    /**
+     * Evaluates the function for each row and returns the results, in row order.
+     *
+     * @throws IllegalStateException if the function does not return a double
+     */
+    public double[] evaluateDoubles() {
+        function.returnType().ifPresent(type -> {
+            if (type.rank() > 0)
+                throw new IllegalStateException(function + " returns " + type + ", not a double");
+        });
+        double[] results = new double[rows()];
+        evaluate((row, value) -> results[row] = value.asDouble());
+        return results;
+    }
+
+    private void evaluate(RowConsumer consumer) {
+        function.argumentTypes().entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(argument -> checkArgument(argument.getKey(), argument.getValue()));
+        if (usesOnnx)
+            evaluateWithOnnx(consumer);
+        else
+            evaluateInContext(consumer);
+    }
+
+    private void evaluateInContext(RowConsumer consumer) {
+        if (context == null) {
+            context = prototype.copy();
+            if (missingValue != null)
+                context.setMissingValue(missingValue);
+        }
+        List<Map.Entry<Integer, Column>> boundColumns = new ArrayList<>(columns.size());
+        for (Map.Entry<String, Column> column : columns.entrySet())
+            boundColumns.add(Map.entry(context.getIndex(column.getKey()), column.getValue()));
+
+        for (int row = 0; row < rows(); row++) {
+            context.reset();
+            for (Map.Entry<Integer, Column> column : boundColumns)
+                context.put(column.getKey(), column.getValue().value(row));
+            consumer.accept(row, function.getBody().evaluate(context));
+        }
+    }
+
+    private void evaluateWithOnnx(RowConsumer consumer) {
+        List<FunctionEvaluator> evaluators = new ArrayList<>(rows());
+        for (int row = 0; row < rows(); row++) {
+            FunctionEvaluator evaluator = new FunctionEvaluator(function, prototype.copy());
+            if (missingValue != null)
+                evaluator.setMissingValue(missingValue);
+            for (Map.Entry<String, Column> column : columns.entrySet())
+                evaluator.context().put(column.getKey(), column.getValue().value(row));
+            evaluators.add(evaluator);
+        }
+        FunctionEvaluator.evaluateOnnxModels(evaluators);
+        for (int row = 0; row < evaluators.size(); row++)
+            consumer.accept(row, new TensorValue(evaluators.get(row).evaluate()));
+    }
+
+    private BatchEvaluator bind(String name, Column column) {
+        for (Map.Entry<String, Column> other : columns.entrySet()) {
+            if (other.getKey().equals(name) || other.getValue().size() < 0 || column.size() < 0) continue;
+            if (other.getValue().size() != column.size())
+                throw new IllegalArgumentException("'" + name + "' has " + column.size() + " rows, but '" +
+                                                   other.getKey() + "' has " + other.getValue().size());
+        }
+        columns.put(name, column);
+        rows = columns.values().stream().mapToInt(Column::size).max().orElse(-1);
+        return this;
+    }
+
+    private TensorType requireArgumentType(String name) {
+        TensorType requiredType = function.getArgumentType(name);
+        if (requiredType == null)
+            throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
+                                               ". Expected arguments: " +
+                    function.argumentTypes().entrySet().stream().sorted(Map.Entry.comparingByKey())
+                            .map(e -> e.getKey() + ": " + e.getValue())
+                            .collect(Collectors.joining(", ")));
+        return requiredType;
+    }
+
+    private void checkArgument(String name, TensorType type) {
+        if (prototype.isMissing(name))
+            throw new IllegalStateException("Missing argument '" + name + "': Must be bound to a value of type " + type);
+        TensorType missingType = missingValue == null ? TensorType.empty : missingValue.type();
+        if ( ! columns.containsKey(name) && ! missingType.isAssignableTo(type))
+            throw new IllegalStateException("Argument '" + name + "' must be bound to a value of type " + type);
+    }
+
+    /** Returns the function evaluated by this */
+    public ExpressionFunction function() { return function; }
+
+    private interface RowConsumer {
+
+        void accept(int row, Value value);
+
+    }
+
+    /** The values of an argument in each row */
+    private static abstract class Column {
+
+        /** Returns the number of rows in this, or -1 if it has the same value in any row */
+        abstract int size();
+
+        abstract Value value(int row);
+
+    }
+
+    private static class DoubleColumn extends Column {
+
+        private final double[] values;
+
+        DoubleColumn(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        Value value(int row) { return DoubleValue.frozen(values[row]); }
+
+    }
+
+    private static class TensorColumn extends Column {
+
+        private final List<Tensor> values;
+
+        TensorColumn(List<Tensor> values) {
+            this.values = List.copyOf(values);
+        }
+
+        @Override
+        int size() { return values.size(); }
+
+        @Override
+        Value value(int row) { return new TensorValue(values.get(row)); }
+
+    }
+
+    private static class ConstantColumn extends Column {
+
+        private final Value value;
+
+        ConstantColumn(Value value) {
+            this.value = value;
+        }
+
+        @Override
+        int size() { return -1; }
+
+        @Override
+        Value value(int row) { return value; }
+
+    }
+
+}
@@ -7,7 +7,10 @@ import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -140,6 +143,23 @@ public class FunctionEvaluator {
         }
     }
 
+    /**
+     * Evaluates the ONNX models used by the given evaluators with as few model inferences as possible,
+     * by evaluating the models for all the evaluators of the same function in a single batch where the model
+     * inputs allow it. This must be called after all arguments are bound. The evaluators are then evaluated as usual,
+     * which will use the results computed here. Models which cannot be batched are evaluated by each evaluator.
+     *
+     * @param evaluators the evaluators to evaluate ONNX models for, in any order
+     */
+    public static void evaluateOnnxModels(List<FunctionEvaluator> evaluators) {
+        Map<ExpressionFunction, List<FunctionEvaluator>> byFunction = new IdentityHashMap<>();
+        for (FunctionEvaluator evaluator : evaluators) {
+            if (evaluator.evaluated) continue;
+            byFunction.computeIfAbsent(evaluator.function, __ -> new ArrayList<>()).add(evaluator);
+        }
+        byFunction.values().forEach(OnnxBatch::evaluate);
+    }
+
     /** Returns the function evaluated by this */
     public ExpressionFunction function() { return function; }
 
@@ -20,6 +20,7 @@ import static com.yahoo.searchlib.rankingexpression.Reference.RANKING_EXPRESSION
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,9 @@ public final class LazyArrayContext extends Context implements ContextIndex {
     private final ExpressionFunction function;
     private final IndexedBindings indexedBindings;
 
+    /** Results of ONNX model evaluations done for this context in a batch with other contexts, or null if none */
+    private Map<OnnxExpressionNode, Tensor> onnxResults = null;
+
     private LazyArrayContext(ExpressionFunction function, IndexedBindings indexedBindings) {
         this.function = function;
         this.indexedBindings = indexedBindings.copy(this);
@@ -138,6 +142,26 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         return index;
     }
 
+    void putOnnxResult(OnnxExpressionNode node, Tensor result) {
+        if (onnxResults == null)
+            onnxResults = new IdentityHashMap<>();
+        onnxResults.put(node, result);
+    }
+
+    /** Returns the result of evaluating the given ONNX node in a batch including this, or null if it has not been */
+    Tensor onnxResult(OnnxExpressionNode node) {
+        return onnxResults == null ? null : onnxResults.get(node);
+    }
+
+    /**
+     * Discards the values computed in this context, such that it can be reused to evaluate
+     * the same function with new argument values.
+     */
+    void reset() {
+        indexedBindings.resetLazyValues();
+        onnxResults = null;
+    }
+
     boolean isMissing(String name) {
         return indexedBindings.indexOf(name) == null;
     }
@@ -241,6 +265,12 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             values[index] = value;
         }
 
+        void resetLazyValues() {
+            for (Value value : values)
+                if (value instanceof LazyValue lazy)
+                    lazy.reset();
+        }
+
         Set<String> names() { return nameToIndex.keySet(); }
         Set<String> arguments() { return arguments; }
         Integer indexOf(String name) { return nameToIndex.get(name); }
@@ -1,6 +1,7 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package ai.vespa.models.evaluation;
 
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.evaluation.Context;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
 import com.yahoo.searchlib.rankingexpression.rule.Function;
@@ -175,6 +176,16 @@ class LazyValue extends Value {
         return computedValue().hashCode();
     }
 
+    /** Returns the function computing the value of this */
+    ExpressionFunction referencedFunction() {
+        return model.requireReferencedFunction(function);
+    }
+
+    /** Discards the value computed by this, such that it is computed again when next requested */
+    void reset() {
+        computedValue = null;
+    }
+
     LazyValue copyFor(Context context) {
         return new LazyValue(this.function, context, model);
     }
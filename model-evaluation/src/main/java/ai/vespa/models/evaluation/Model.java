@@ -3,8 +3,10 @@ package ai.vespa.models.evaluation;
 
 import com.yahoo.api.annotations.Beta;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
-import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionCompiler;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
 import com.yahoo.stream.CustomCollectors;
 import com.yahoo.tensor.TensorType;
 
@@ -50,7 +52,11 @@ public class Model implements AutoCloseable {
     /** Context prototypes, indexed by function name (as all invocations of the same function share the same context prototype) */
     private final Map<String, LazyArrayContext> contextPrototypes;
 
+    /** Whether scalar parts of functions should be compiled to method handles, see {@link ExpressionCompiler} */
+    private static final boolean compileExpressions = Boolean.parseBoolean(System.getenv("VESPA_COMPILE_RANKING_EXPRESSIONS"));
+
     private final ExpressionOptimizer expressionOptimizer = new ExpressionOptimizer();
+    private final ExpressionCompiler expressionCompiler = new ExpressionCompiler();
 
     private final List<Runnable> closeActions;
 
@@ -169,6 +175,7 @@ public class Model implements AutoCloseable {
             }
         }
         this.contextPrototypes = Map.copyOf(contextBuilder);
+        this.referencedFunctions = Map.copyOf(referencedFunctions);
         // Optimize free functions
         this.functions = List.copyOf(functions.entrySet()
                                      .stream()
@@ -179,17 +186,32 @@ public class Model implements AutoCloseable {
         this.publicFunctions = functions.values().stream()
                 .filter(f -> !f.getName().startsWith(INTERMEDIATE_OPERATION_FUNCTION_PREFIX)).toList();
 
-        this.referencedFunctions = Map.copyOf(referencedFunctions);
         this.closeActions = onnxModels.stream().map(o -> (Runnable)o::close).toList();
     }
 
     /** Returns an optimized version of the given function */
-    private ExpressionFunction optimize(ExpressionFunction function, ContextIndex context) {
+    private ExpressionFunction optimize(ExpressionFunction function, LazyArrayContext context) {
         // Note: Optimization is in-place but we do not depend on that outside this method
+        if (compileExpressions) {
+            expressionCompiler.setEnabled(true);
+            expressionCompiler.optimize(function.getBody(), context, name -> isScalar(name, function, context),
+                                        new OptimizationReport());
+        }
         expressionOptimizer.optimize(function.getBody(), context);
         return function;
     }
 
+    /** Returns whether the value of the given name is always a scalar when evaluating the given function */
+    private static boolean isScalar(String name, ExpressionFunction function, LazyArrayContext context) {
+        TensorType argumentType = function.getArgumentType(name);
+        if (argumentType != null) return argumentType.rank() == 0; // bound values are type checked
+        if (context.isMissing(name)) return false;
+        Value value = context.get(name);
+        if (value instanceof LazyValue lazy)
+            return lazy.referencedFunction().returnType().map(type -> type.rank() == 0).orElse(false);
+        return value.type().rank() == 0;
+    }
+
     public String name() { return name; }
 
     /**
@@ -245,21 +267,40 @@ public class Model implements AutoCloseable {
      * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
      */
     public FunctionEvaluator evaluatorOf(String ... names) {  // TODO: Parameter overloading?
+        return evaluatorOf(resolveFunction(names));
+    }
+
+    /**
+     * Returns an evaluator which can be used to evaluate the given function over many rows of arguments at once,
+     * in a single thread.
+     *
+     * Usage:
+     * <code>double[] results = model.batchEvaluatorOf("myFunction").bind("foo", fooValues).bind("bar", barValues).evaluateDoubles()</code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public BatchEvaluator batchEvaluatorOf(String ... names) {
+        ExpressionFunction function = resolveFunction(names);
+        return new BatchEvaluator(function, requireContextPrototype(function.getName()));
+    }
+
+    private ExpressionFunction resolveFunction(String ... names) {
         if (names.length == 0) {
             if (functions.size() > 1)
                 throwUndeterminedFunction("More than one function is available in " + this + ", but no name is given");
-            return evaluatorOf(functions.get(0));
+            return functions.get(0);
         }
         else if (names.length == 1) {
             String name = names[0];
             ExpressionFunction function = function(name);
-            if (function != null) return evaluatorOf(function);
+            if (function != null) return function;
 
             // Check if the name is a signature
             List<ExpressionFunction> functionsStartingByName =
                     functions.stream().filter(f -> f.getName().startsWith(name + ".")).toList();
             if (functionsStartingByName.size() == 1)
-                return evaluatorOf(functionsStartingByName.get(0));
+                return functionsStartingByName.get(0);
             if (functionsStartingByName.size() > 1)
                 throwUndeterminedFunction("Multiple functions start by '" + name + "' in " + this);
 
@@ -267,24 +308,24 @@ public class Model implements AutoCloseable {
             List<ExpressionFunction> functionsEndingByName =
                     functions.stream().filter(f -> f.getName().endsWith("." + name)).toList();
             if (functionsEndingByName.size() == 1)
-                return evaluatorOf(functionsEndingByName.get(0));
+                return functionsEndingByName.get(0);
             if (functionsEndingByName.size() > 1)
                 throwUndeterminedFunction("Multiple functions called '" + name + "' in " + this);
 
             // To handle TensorFlow conversion to ONNX
             if (name.startsWith("serving_default")) {
-                return evaluatorOf("default" + name.substring("serving_default".length()));
+                return resolveFunction("default" + name.substring("serving_default".length()));
             }
 
             // To handle backward compatibility with ONNX conversion to native Vespa ranking expressions
             if (name.startsWith("default.")) {
-                return evaluatorOf(name.substring("default.".length()));
+                return resolveFunction(name.substring("default.".length()));
             }
 
             throwUndeterminedFunction("No function '" + name + "' in " + this);
         }
         else if (names.length == 2) {
-            return evaluatorOf(names[0] + "." + names[1]);
+            return resolveFunction(names[0] + "." + names[1]);
         }
         throw new IllegalArgumentException("No more than 2 names can be given when choosing a function, got " +
                                            Arrays.toString(names));
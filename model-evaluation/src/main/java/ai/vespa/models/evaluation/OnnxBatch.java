@@ -0,0 +1,220 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Evaluates the ONNX models referenced from a function for many evaluators of that function at once,
+ * by concatenating the inputs of all the evaluators along the first (batch) dimension of the model inputs,
+ * running a single inference, and slicing the output back into one tensor per evaluator.
+ * The results are stored in the context of each evaluator, and used when it is evaluated.
+ * <p>
+ * Inputs can only be batched when the first dimension of every model input is unbound, and every input
+ * value is an indexed tensor with size 1 in that dimension. Inputs where other dimensions differ in size
+ * are padded with zeroes to the largest size when the model takes an attention mask and has a bound output
+ * shape, as padding is then known to be masked and not to change the shape of the output.
+ * Otherwise, evaluators are batched together only with others having inputs of exactly the same shape.
+ * Models which cannot be batched are left to be evaluated separately by each evaluator.
+ */
+class OnnxBatch {
+
+    private static final String attentionMaskName = "attention_mask";
+
+    private final OnnxExpressionNode node;
+    private final List<LazyArrayContext> contexts = new ArrayList<>();
+    private final List<Map<String, Tensor>> inputs = new ArrayList<>();
+
+    private OnnxBatch(OnnxExpressionNode node) {
+        this.node = node;
+    }
+
+    /** Evaluates the ONNX models of the given evaluators, which must all evaluate the same function */
+    static void evaluate(List<FunctionEvaluator> evaluators) {
+        if (evaluators.size() < 2) return;
+        FunctionEvaluator first = evaluators.get(0);
+        for (OnnxExpressionNode node : onnxNodesIn(first.function(), first.context())) {
+            if ( ! isBatchable(node.model())) continue;
+            OnnxBatch batch = new OnnxBatch(node);
+            for (FunctionEvaluator evaluator : evaluators)
+                batch.add(evaluator.context());
+            batch.evaluate();
+        }
+    }
+
+    private void add(LazyArrayContext context) {
+        contexts.add(context);
+        inputs.add(node.evaluateInputs(context));
+    }
+
+    private void evaluate() {
+        boolean pad = canPad(node.model(), node.onnxOutputName());
+        Map<List<Long>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            Optional<List<Long>> shape = batchShapeOf(inputs.get(i));
+            if (shape.isEmpty()) continue; // Not batchable: Leave to be evaluated by itself
+            groups.computeIfAbsent(pad ? List.of() : shape.get(), __ -> new ArrayList<>()).add(i);
+        }
+        for (List<Integer> group : groups.values()) {
+            if (group.size() < 2) continue;
+            Map<String, Tensor> batchInputs = new LinkedHashMap<>();
+            for (String name : inputs.get(group.get(0)).keySet())
+                batchInputs.put(name, concatenate(name, group));
+            Tensor output = node.model().unmappedEvaluate(batchInputs, node.onnxOutputName());
+            List<Tensor> rows = split(output, group.size());
+            if (rows == null) continue;
+            for (int i = 0; i < group.size(); i++)
+                contexts.get(group.get(i)).putOnnxResult(node, rows.get(i));
+        }
+    }
+
+    /** Returns the sizes of all the dimensions but the first of all inputs, or empty if these inputs cannot be batched */
+    private static Optional<List<Long>> batchShapeOf(Map<String, Tensor> inputs) {
+        List<Long> shape = new ArrayList<>();
+        for (Tensor input : inputs.values()) {
+            if ( ! (input instanceof IndexedTensor indexed)) return Optional.empty();
+            DimensionSizes sizes = indexed.dimensionSizes();
+            if (sizes.dimensions() == 0 || sizes.size(0) != 1) return Optional.empty();
+            for (int d = 1; d < sizes.dimensions(); d++)
+                shape.add(sizes.size(d));
+        }
+        return Optional.of(shape);
+    }
+
+    /** Returns the values of the given input of the given rows concatenated along the first dimension */
+    private IndexedTensor concatenate(String name, List<Integer> rows) {
+        IndexedTensor first = (IndexedTensor)inputs.get(rows.get(0)).get(name);
+        TensorType rowType = first.type();
+        int rank = rowType.rank();
+        long[] sizes = new long[rank];
+        sizes[0] = rows.size();
+        for (int row : rows) {
+            DimensionSizes rowSizes = ((IndexedTensor)inputs.get(row).get(name)).dimensionSizes();
+            for (int d = 1; d < rank; d++)
+                sizes[d] = Math.max(sizes[d], rowSizes.size(d));
+        }
+        TensorType.Builder typeBuilder = new TensorType.Builder(rowType.valueType());
+        for (int d = 0; d < rank; d++)
+            typeBuilder.indexed(rowType.dimensions().get(d).name(), sizes[d]);
+        TensorType type = typeBuilder.build();
+
+        long rowSize = 1;
+        for (int d = 1; d < rank; d++)
+            rowSize *= sizes[d];
+        double[] values = new double[(int)(rowSize * rows.size())];
+        for (int r = 0; r < rows.size(); r++) {
+            IndexedTensor row = (IndexedTensor)inputs.get(rows.get(r)).get(name);
+            copyPadded(row, sizes, values, r * rowSize);
+        }
+        return IndexedTensor.Builder.of(type, values).build();
+    }
+
+    /** Copies the values of the given tensor into the given array, laid out as a tensor of the given (larger) sizes */
+    private static void copyPadded(IndexedTensor tensor, long[] sizes, double[] values, long offset) {
+        DimensionSizes tensorSizes = tensor.dimensionSizes();
+        long[] index = new long[tensorSizes.dimensions()];
+        for (long i = 0; i < tensor.size(); i++) {
+            long target = 0;
+            for (int d = 0; d < index.length; d++)
+                target = target * sizes[d] + index[d];
+            values[(int)(offset + target)] = tensor.get(i);
+            for (int d = index.length - 1; d >= 0; d--) { // increment the index, last dimension fastest
+                if (++index[d] < tensorSizes.size(d)) break;
+                index[d] = 0;
+            }
+        }
+    }
+
+    /** Splits the given output into the given number of rows along its first dimension, or returns null if it cannot be split */
+    private static List<Tensor> split(Tensor output, int count) {
+        if ( ! (output instanceof IndexedTensor indexed)) return null;
+        if (indexed.dimensionSizes().dimensions() == 0 || indexed.dimensionSizes().size(0) != count) return null;
+        TensorType.Builder typeBuilder = new TensorType.Builder(output.type().valueType());
+        for (int d = 0; d < output.type().rank(); d++)
+            typeBuilder.indexed(output.type().dimensions().get(d).name(), d == 0 ? 1 : indexed.dimensionSizes().size(d));
+        TensorType rowType = typeBuilder.build();
+        int rowSize = (int)(indexed.size() / count);
+        List<Tensor> rows = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            if (rowType.valueType() == TensorType.Value.FLOAT) {
+                float[] values = new float[rowSize];
+                for (int i = 0; i < rowSize; i++)
+                    values[i] = indexed.getFloat((long)r * rowSize + i);
+                rows.add(IndexedTensor.Builder.of(rowType, values).build());
+            }
+            else {
+                double[] values = new double[rowSize];
+                for (int i = 0; i < rowSize; i++)
+                    values[i] = indexed.get((long)r * rowSize + i);
+                rows.add(IndexedTensor.Builder.of(rowType, values).build());
+            }
+        }
+        return rows;
+    }
+
+    /** Returns whether the first dimension of all inputs of the given model are unbound, such that it can take a batch */
+    private static boolean isBatchable(OnnxModel model) {
+        for (OnnxModel.InputSpec input : model.inputSpecs) {
+            if (input.wantedType == null || input.wantedType.rank() == 0) return false;
+            TensorType.Dimension first = input.wantedType.dimensions().get(0);
+            if ( ! first.isIndexed() || first.size().isPresent()) return false;
+        }
+        return ! model.inputSpecs.isEmpty();
+    }
+
+    /** Returns whether inputs of different sizes can be padded to the same size */
+    private static boolean canPad(OnnxModel model, String onnxOutputName) {
+        if (model.inputSpecs.stream().noneMatch(input -> input.onnxName.equals(attentionMaskName))) return false;
+        for (OnnxModel.OutputSpec output : model.outputSpecs) {
+            if ( ! output.onnxName.equals(onnxOutputName)) continue;
+            if (output.expectedType == null) return false;
+            return output.expectedType.dimensions().stream().skip(1).allMatch(d -> d.size().isPresent());
+        }
+        return false;
+    }
+
+    /** Returns whether the given function, or any function it references in the given context, evaluates an ONNX model */
+    static boolean usesOnnx(ExpressionFunction function, LazyArrayContext context) {
+        return ! context.onnxModels().isEmpty() || ! onnxNodesIn(function, context).isEmpty();
+    }
+
+    /**
+     * Returns the ONNX expression nodes of the given function and the functions it references in the given context,
+     * in an order where nodes whose value may be input to another node come before it.
+     */
+    private static List<OnnxExpressionNode> onnxNodesIn(ExpressionFunction function, LazyArrayContext context) {
+        Map<OnnxExpressionNode, Boolean> nodes = new IdentityHashMap<>();
+        List<OnnxExpressionNode> ordered = new ArrayList<>();
+        for (String name : context.names()) {
+            if (context.isMissing(name)) continue;
+            Value value = context.get(name);
+            if (value instanceof LazyValue lazy)
+                collect(lazy.referencedFunction().getBody().getRoot(), nodes, ordered);
+        }
+        collect(function.getBody().getRoot(), nodes, ordered);
+        return ordered;
+    }
+
+    private static void collect(ExpressionNode node, Map<OnnxExpressionNode, Boolean> seen, List<OnnxExpressionNode> ordered) {
+        if (node instanceof CompositeNode composite) {
+            for (ExpressionNode child : composite.children())
+                collect(child, seen, ordered);
+        }
+        if (node instanceof OnnxExpressionNode onnx && seen.put(onnx, true) == null)
+            ordered.add(onnx);
+    }
+
+}
@@ -75,14 +75,27 @@ class OnnxExpressionNode extends CompositeNode {
         return this;
     }
 
-    @Override
-    public Value evaluate(Context context) {
+    OnnxModel model() { return model; }
+
+    String onnxOutputName() { return onnxOutputName; }
+
+    /** Returns the values of the inputs to the model of this in the given context, by ONNX input name */
+    Map<String, Tensor> evaluateInputs(Context context) {
         Map<String, Tensor> inputs = new HashMap<>();
         for (int i = 0; i < modelInputs.size(); i++) {
             Value inputValue = inputRefs.get(i).evaluate(context);
             inputs.put(modelInputs.get(i), inputValue.asTensor());
         }
-        return new TensorValue(model.unmappedEvaluate(inputs, onnxOutputName));
+        return inputs;
+    }
+
+    @Override
+    public Value evaluate(Context context) {
+        if (context instanceof LazyArrayContext lazyContext) {
+            Tensor batchResult = lazyContext.onnxResult(this);
+            if (batchResult != null) return new TensorValue(batchResult);
+        }
+        return new TensorValue(model.unmappedEvaluate(evaluateInputs(context), onnxOutputName));
     }
 
     @Override
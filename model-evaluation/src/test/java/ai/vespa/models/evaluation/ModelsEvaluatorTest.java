@@ -17,8 +17,10 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author bratseth
@@ -132,6 +134,61 @@ public class ModelsEvaluatorTest {
 
     }
 
+    @Test
+    public void testBatchEvaluation() {
+        ModelsEvaluator models = createModels();
+        BatchEvaluator batch = models.batchEvaluatorOf("macros", "secondphase");
+        batch.bind("match", new double[] { 3, 1, 0, -1 });
+        batch.bind("rankBoost", 5);
+        assertEquals(4, batch.rows());
+        assertArrayEquals(new double[] { 32, 24, 20, 16 }, batch.evaluateDoubles(), delta);
+
+        // The evaluator can be reused with new values
+        batch.bind("rankBoost", List.of(Tensor.from(1.0), Tensor.from(2.0), Tensor.from(3.0), Tensor.from(4.0)));
+        List<Tensor> results = batch.evaluate();
+        assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            FunctionEvaluator single = models.evaluatorOf("macros", "secondphase");
+            single.bind("match", new double[] { 3, 1, 0, -1 }[i]);
+            single.bind("rankBoost", i + 1);
+            assertEquals(single.evaluate(), results.get(i));
+        }
+
+        try {
+            batch.bind("match", new double[] { 1, 2 });
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'match' has 2 rows, but 'rankBoost' has 4", Exceptions.toMessageString(e));
+        }
+    }
+
+    @Test
+    public void testBatchEvaluationOfMissingValues() {
+        ModelsEvaluator models = createModels();
+        BatchEvaluator batch = models.batchEvaluatorOf("macros", "secondphase");
+        assertEquals(1, batch.rows());
+        assertTrue(Double.isNaN(batch.evaluateDoubles()[0]));
+
+        batch.setMissingValue(5);
+        batch.bind("match", new double[] { 3, 5 });
+        assertArrayEquals(new double[] { 32, 40 }, batch.evaluateDoubles(), delta);
+    }
+
+    @Test
+    public void testBatchEvaluationOfNoRows() {
+        ModelsEvaluator models = createModels();
+        BatchEvaluator batch = models.batchEvaluatorOf("macros", "secondphase");
+        batch.bind("match", new double[0]);
+        batch.bind("rankBoost", 5);
+        assertEquals(0, batch.rows());
+        assertArrayEquals(new double[0], batch.evaluateDoubles(), delta);
+
+        batch.bind("rankBoost", List.of());
+        assertEquals(0, batch.rows());
+        assertEquals(List.of(), batch.evaluate());
+    }
+
     // TODO: Test argument-less function
     // TODO: Test with nested functions
 
@@ -13,7 +13,9 @@ import com.yahoo.vespa.config.search.core.RankingExpressionsConfig;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -51,6 +53,41 @@ public class OnnxEvaluatorTest {
         assertEquals(function.evaluate(), Tensor.from("tensor<float>(d0[2],d1[1]):[0.63931,0.67574]"));
     }
 
+    @Test
+    public void testBatchedOnnxEvaluation() {
+        assumeTrue(OnnxRuntime.isRuntimeAvailable());
+        ModelsEvaluator models = createModels();
+
+        String[] inputs = { "tensor<float>(d0[1],d1[3]):[[0.1, 0.2, 0.3]]",
+                            "tensor<float>(d0[1],d1[3]):[[0.4, 0.5, 0.6]]",
+                            "tensor<float>(d0[1],d1[3]):[[0.7, 0.8, 0.9]]",
+                            "tensor<float>(d0[2],d1[3]):[[0.1, 0.2, 0.3],[0.4,0.5,0.6]]" }; // not batchable
+        List<FunctionEvaluator> batched = new ArrayList<>();
+        for (String input : inputs)
+            batched.add(models.evaluatorOf("one_layer").bind("input", Tensor.from(input)));
+        FunctionEvaluator.evaluateOnnxModels(batched);
+
+        for (int i = 0; i < inputs.length; i++) {
+            FunctionEvaluator single = models.evaluatorOf("one_layer").bind("input", Tensor.from(inputs[i]));
+            assertEquals(single.evaluate(), batched.get(i).evaluate());
+        }
+        assertEquals(Tensor.from("tensor<float>(d0[1],d1[1]):[0.63931]"), batched.get(0).evaluate());
+    }
+
+    @Test
+    public void testBatchEvaluatorWithOnnx() {
+        assumeTrue(OnnxRuntime.isRuntimeAvailable());
+        ModelsEvaluator models = createModels();
+
+        List<Tensor> inputs = List.of(Tensor.from("tensor<float>(d0[1],d1[3]):[[0.1, 0.2, 0.3]]"),
+                                      Tensor.from("tensor<float>(d0[1],d1[3]):[[0.4, 0.5, 0.6]]"),
+                                      Tensor.from("tensor<float>(d0[1],d1[3]):[[0.7, 0.8, 0.9]]"));
+        List<Tensor> results = models.batchEvaluatorOf("one_layer").bind("input", inputs).evaluate();
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++)
+            assertEquals(models.evaluatorOf("one_layer").bind("input", inputs.get(i)).evaluate(), results.get(i));
+    }
+
     @SuppressWarnings("deprecation")
     private ModelsEvaluator createModels() {
         RankProfilesConfig config = ConfigGetter.getConfig(RankProfilesConfig.class, fileConfigId("rank-profiles.cfg"));
@@ -0,0 +1,97 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.rankingexpression.importer;
+
+import ai.vespa.rankingexpression.importer.lightgbm.LightGBMImporter;
+import ai.vespa.rankingexpression.importer.xgboost.XGBoostImporter;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.AbstractArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionCompiler;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTOptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the speed of evaluating an imported XGBoost or LightGBM model by interpreting it, with the GBDT
+ * optimizers, and compiled to bytecode. Usage:
+ * <pre>
+ * GBDTEvaluationBenchmark xgboost|lightgbm &lt;model file&gt; [&lt;evaluations&gt;]
+ * </pre>
+ * All features known to the model are set to random values in [0, 1>.
+ */
+public class GBDTEvaluationBenchmark {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: GBDTEvaluationBenchmark xgboost|lightgbm <model file> [<evaluations>]");
+            System.exit(1);
+        }
+        int evaluations = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+        double[][] inputs = null;
+        double expected = 0;
+        for (Mode mode : Mode.values()) {
+            RankingExpression expression = importModel(args[0], args[1]);
+            AbstractArrayContext context = mode == Mode.compiled ? new DoubleOnlyArrayContext(expression, true, DoubleValue.NaN)
+                                                                 : new ArrayContext(expression, true, DoubleValue.NaN);
+            List<String> names = new ArrayList<>(context.names());
+            if (inputs == null)
+                inputs = randomInputs(names.size(), 1000);
+
+            ExpressionOptimizer optimizer = new ExpressionOptimizer();
+            optimizer.getOptimizer(GBDTOptimizer.class).setEnabled(mode == Mode.gbdtOptimized);
+            optimizer.getOptimizer(GBDTForestOptimizer.class).setEnabled(mode == Mode.gbdtOptimized);
+            optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(mode == Mode.compiled);
+            long compileStart = System.nanoTime();
+            optimizer.optimize(expression, context);
+            double optimizeMillis = (System.nanoTime() - compileStart) / 1e6;
+
+            double sum = evaluate(expression, context, names, inputs, evaluations); // warmup
+            long start = System.nanoTime();
+            sum = evaluate(expression, context, names, inputs, evaluations);
+            double nanosPerEvaluation = (double)(System.nanoTime() - start) / evaluations;
+            if (mode == Mode.interpreted)
+                expected = sum;
+            System.out.printf("%-14s: %10.1f ns/evaluation (optimized in %.1f ms, sum %.6f%s)%n",
+                              mode, nanosPerEvaluation, optimizeMillis, sum,
+                              Math.abs(sum - expected) > 1e-6 * Math.abs(expected) ? " - DIFFERS" : "");
+        }
+    }
+
+    private static double evaluate(RankingExpression expression, AbstractArrayContext context, List<String> names,
+                                   double[][] inputs, int evaluations) {
+        double sum = 0;
+        for (int i = 0; i < evaluations; i++) {
+            double[] input = inputs[i % inputs.length];
+            for (int j = 0; j < input.length; j++)
+                context.put(names.get(j), input[j]);
+            sum += expression.evaluate(context).asDouble();
+        }
+        return sum;
+    }
+
+    private static double[][] randomInputs(int features, int count) {
+        Random random = new Random(1);
+        double[][] inputs = new double[count][features];
+        for (double[] input : inputs)
+            for (int j = 0; j < features; j++)
+                input[j] = random.nextDouble();
+        return inputs;
+    }
+
+    private static RankingExpression importModel(String type, String path) {
+        return switch (type) {
+            case "xgboost" -> new XGBoostImporter().importModel("model", path).expressions().get("model");
+            case "lightgbm" -> new LightGBMImporter().importModel("model", path).expressions().get("model");
+            default -> throw new IllegalArgumentException("Unknown model type '" + type + "'");
+        };
+    }
+
+    private enum Mode { interpreted, gbdtOptimized, compiled }
+
+}
@@ -5,7 +5,9 @@ import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.ArrayContext;
 import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionCompiler;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
 import org.junit.Test;
 
@@ -39,6 +41,23 @@ public class LightGBMImportEvaluationTestCase extends LightGBMTestBase {
         assertEvaluation(2.3571838,  expression, features(context).add("numerical_1", 0.7).add("numerical_2", 0.8).add("categorical_2", "m"));
     }
 
+    @Test
+    public void testCompiledRegression() {
+        RankingExpression expression = importModel("src/test/models/lightgbm/regression.json");
+        ArrayContext context = new ArrayContext(expression, true, DoubleValue.NaN);
+
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        compiler.setEnabled(true);
+        OptimizationReport report = new OptimizationReport();
+        compiler.optimize(expression, context, name -> ! name.startsWith("categorical"), report);
+        assertTrue(report.getMetric("Compiled expressions") > 0);
+
+        assertEvaluation(1.91300868, expression, features(context));
+        assertEvaluation(2.05469776, expression, features(context).add("numerical_1", 0.1).add("numerical_2", 0.2).add("categorical_1", "a").add("categorical_2", "i"));
+        assertEvaluation(2.0745534,  expression, features(context).add("numerical_2", 0.5).add("categorical_1", "b").add("categorical_2", "j"));
+        assertEvaluation(2.3571838,  expression, features(context).add("numerical_1", 0.7).add("numerical_2", 0.8).add("categorical_2", "m"));
+    }
+
     @Test
     public void testClassification() {
         RankingExpression expression = importModel("src/test/models/lightgbm/classification.json");
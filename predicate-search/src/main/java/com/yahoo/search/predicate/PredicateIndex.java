@@ -13,6 +13,8 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
@@ -28,6 +30,7 @@ import java.util.stream.Stream;
  * To perform a search, create a {@link Searcher} and call its {@link Searcher#search(PredicateQuery)}
  * method, which returns a stream of {@link Hit} objects,
  * each of which contains a document id and a 64-bit bitmap specifying which subqueries the hit is for.
+ * Large indexes may be searched in parallel with {@link Searcher#search(PredicateQuery, ForkJoinPool, int)}.
  * </p><p>
  * Note that the {@link PredicateIndex} is thread-safe, but a {@link Searcher} is not.
  * Each thread <strong>must</strong> use its own searcher.
@@ -40,6 +43,9 @@ public class PredicateIndex {
 
     private static final int SERIALIZATION_FORMAT_VERSION = 3;
 
+    /** The default minimum number of documents in each segment searched in parallel */
+    public static final int DEFAULT_MIN_SEGMENT_SIZE = 1 << 16;
+
     private final PredicateRangeTermExpander expander;
     private final int[] internalToExternalIdMapping;
     private final byte[] minFeatureIndex;
@@ -160,6 +166,73 @@ public class PredicateIndex {
          * @return A stream of hits.
          */
         public Stream<Hit> search(PredicateQuery query) {
+            List<PostingList> postingLists = createPostingLists(query, conjunctionIndexSearcher.search(query));
+            countPostingLists(postingLists);
+            return new PredicateSearch(
+                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
+                    .map(this::toExternalHit);
+        }
+
+        /**
+         * Retrieves the hits for the given query by searching ranges of document ids in parallel,
+         * using segments of at least {@link #DEFAULT_MIN_SEGMENT_SIZE} documents.
+         *
+         * @see #search(PredicateQuery, ForkJoinPool, int)
+         */
+        public Stream<Hit> search(PredicateQuery query, ForkJoinPool pool) {
+            return search(query, pool, DEFAULT_MIN_SEGMENT_SIZE);
+        }
+
+        /**
+         * Retrieves the hits for the given query by partitioning the index into ranges of document ids
+         * which are searched in parallel in the given pool. The index is split into at most as many segments
+         * as the parallelism of the pool, each of at least the given number of documents, and is searched
+         * in the calling thread if that gives a single segment.
+         * <p>
+         * Unlike {@link #search(PredicateQuery)}, this completes the search before returning.
+         * The hits are returned in the same order as by {@link #search(PredicateQuery)}.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @param pool The pool to search segments in.
+         * @param minSegmentSize The minimum number of documents to search in each segment.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query, ForkJoinPool pool, int minSegmentSize) {
+            if (minSegmentSize < 1)
+                throw new IllegalArgumentException("Minimum segment size must be positive, but was " + minSegmentSize);
+            int nDocuments = nPostingListsForDocument.length;
+            int nSegments = (int) Math.min(pool.getParallelism(), ((long) nDocuments + minSegmentSize - 1) / minSegmentSize);
+            if (nSegments <= 1) return search(query);
+
+            // Posting lists are iterators, so each segment needs its own. They are created in this thread,
+            // as the conjunction searcher and this are not thread safe.
+            List<ConjunctionHit> conjunctionHits = conjunctionIndexSearcher.search(query);
+            List<List<PostingList>> segmentPostingLists = new ArrayList<>(nSegments);
+            for (int i = 0; i < nSegments; i++) {
+                segmentPostingLists.add(createPostingLists(query, conjunctionHits));
+            }
+            countPostingLists(segmentPostingLists.get(0));
+
+            List<ForkJoinTask<List<Hit>>> segments = new ArrayList<>(nSegments);
+            for (int i = 0; i < nSegments; i++) {
+                List<PostingList> postingLists = segmentPostingLists.get(i);
+                int begin = (int) ((long) nDocuments * i / nSegments);
+                int end = (int) ((long) nDocuments * (i + 1) / nSegments);
+                segments.add(pool.submit(() -> new PredicateSearch(postingLists, nPostingListsForDocument, minFeatureIndex,
+                                                                   intervalEnds, highestIntervalEnd, begin, end)
+                        .stream()
+                        .map(this::toExternalHit)
+                        .toList()));
+            }
+            // Join all segments before returning, as the posting list counts are reused by the next search
+            List<Hit> hits = new ArrayList<>();
+            for (ForkJoinTask<List<Hit>> segment : segments) {
+                hits.addAll(segment.join());
+            }
+            return hits.stream();
+        }
+
+        private List<PostingList> createPostingLists(PredicateQuery query, List<ConjunctionHit> conjunctionHits) {
             ArrayList<PostingList> postingLists = new ArrayList<>();
             for (PredicateQuery.Feature feature : query.getFeatures()) {
                 addIntervalPostingList(feature.featureHash, feature.subqueryBitmap, postingLists);
@@ -172,16 +245,20 @@ public class PredicateIndex {
                         (featureHash, value) -> addBoundsPostingList(featureHash, value, feature.subqueryBitmap, postingLists));
             }
             addCompressedZStarPostingList(postingLists);
-            addConjunctionPostingLists(query, postingLists);
+            addConjunctionPostingLists(conjunctionHits, postingLists);
             addZeroConstraintPostingList(postingLists);
+            return postingLists;
+        }
 
+        private void countPostingLists(List<PostingList> postingLists) {
             CachedPostingListCounter counter = postingListCounter.get();
             counter.registerUsage(postingLists);
             counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
-            return new PredicateSearch(
-                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
-                    // Map to external id. Note that internal id for first document is 1.
-                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+        }
+
+        // Map to external id. Note that internal id for first document is 1.
+        private Hit toExternalHit(Hit hit) {
+            return new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery());
         }
 
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
@@ -206,8 +283,7 @@ public class PredicateIndex {
             }
         }
 
-        private void addConjunctionPostingLists(PredicateQuery query, List<PostingList> postingLists) {
-            List<ConjunctionHit> hits = conjunctionIndexSearcher.search(query);
+        private void addConjunctionPostingLists(List<ConjunctionHit> hits, List<PostingList> postingLists) {
             for (ConjunctionHit hit : hits) {
                 SimpleIndex.Entry e = conjunctionIntervalIndex.getPostingList(hit.conjunctionId);
                 if (e != null) {
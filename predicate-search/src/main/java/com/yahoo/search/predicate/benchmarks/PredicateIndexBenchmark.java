@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.collect.Iterators;
 import com.yahoo.search.predicate.Config;
+import com.yahoo.search.predicate.Hit;
 import com.yahoo.search.predicate.PredicateIndex;
 import com.yahoo.search.predicate.PredicateIndexBuilder;
 import com.yahoo.search.predicate.PredicateQuery;
@@ -37,9 +38,12 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static com.yahoo.search.predicate.benchmarks.PredicateIndexBenchmark.BenchmarkArguments.Algorithm;
 import static com.yahoo.search.predicate.benchmarks.PredicateIndexBenchmark.BenchmarkArguments.Format;
@@ -135,16 +139,25 @@ public class PredicateIndexBenchmark {
         output.put("Index file", args.indexFile);
         output.put("Query format", args.format);
         output.put("Warmup", args.warmup);
+        output.put("Search parallelism", args.searchParallelism);
+        output.put("Min segment size", args.minSegmentSize);
     }
 
     private static void runQueries(BenchmarkArguments args, PredicateIndex index) throws IOException {
         List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
-        long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        ForkJoinPool pool = args.searchParallelism > 1 ? new ForkJoinPool(args.searchParallelism) : null;
+        Function<PredicateIndex.Searcher, Function<PredicateQuery, Stream<Hit>>> search = pool == null ?
+                searcher -> searcher::search :
+                searcher -> query -> searcher.search(query, pool, args.minSegmentSize);
+        long warmup1 = warmup(queries, index, search, args.nThreads, args.warmup / 2);
         output.put("Time warmup before building posting cache", warmup1);
         rebuildPostingListCache(index);
-        long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup2 = warmup(queries, index, search, args.nThreads, args.warmup / 2);
         output.put("Time warmup after building posting cache", warmup2);
-        searchIndex(queries, index, args.nThreads, args.runtime);
+        searchIndex(queries, index, search, args.nThreads, args.runtime);
+        if (pool != null) {
+            pool.shutdown();
+        }
     }
 
     private static void rebuildPostingListCache(PredicateIndex index) {
@@ -163,27 +176,31 @@ public class PredicateIndexBenchmark {
         return queries;
     }
 
-    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int warmup) {
+    private static long warmup(List<PredicateQuery> queries, PredicateIndex index,
+                               Function<PredicateIndex.Searcher, Function<PredicateQuery, Stream<Hit>>> search,
+                               int nThreads, int warmup) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            executor.submit(new QueryRunner(shuffledQueries, index.searcher()));
+            executor.submit(new QueryRunner(shuffledQueries, search.apply(index.searcher())));
         }
         long start = System.currentTimeMillis();
         waitAndShutdown(warmup, executor);
         return System.currentTimeMillis() - start;
     }
 
-    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int runtime) {
+    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index,
+                                    Function<PredicateIndex.Searcher, Function<PredicateQuery, Stream<Hit>>> search,
+                                    int nThreads, int runtime) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         List<QueryRunner> runners = new ArrayList<>();
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+            runners.add(new QueryRunner(shuffledQueries, search.apply(index.searcher())));
         }
         long start = System.currentTimeMillis();
         List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).toList();
@@ -216,11 +233,11 @@ public class PredicateIndexBenchmark {
 
     private static class QueryRunner implements Callable<ResultMetrics> {
         private final List<PredicateQuery> queries;
-        private final PredicateIndex.Searcher searcher;
+        private final Function<PredicateQuery, Stream<Hit>> searcher;
 
-        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher) {
+        public QueryRunner(List<PredicateQuery> queries, Function<PredicateQuery, Stream<Hit>> searcher) {
             this.queries = queries;
-            this.searcher = seacher;
+            this.searcher = searcher;
         }
 
         @Override
@@ -229,7 +246,7 @@ public class PredicateIndexBenchmark {
             ResultMetrics result = new ResultMetrics();
             while (!Thread.interrupted()) {
                 long start = System.nanoTime();
-                long hits = searcher.search(iterator.next()).count();
+                long hits = searcher.apply(iterator.next()).count();
                 double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
                 result.registerResult(hits, latencyMilliseconds);
             }
@@ -255,6 +272,14 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-t", "--threads"}, description = "Number of search threads")
         public int nThreads = 1;
 
+        @Option(name = {"-sp", "--search-parallelism"},
+                description = "Number of threads searching segments of the index in parallel for each query")
+        public int searchParallelism = 1;
+
+        @Option(name = {"-ms", "--min-segment-size"},
+                description = "The minimum number of documents in each segment searched in parallel")
+        public int minSegmentSize = PredicateIndex.DEFAULT_MIN_SEGMENT_SIZE;
+
         @Option(name = {"-a", "--arity"}, description = "Arity")
         public int arity = 2;
 
@@ -31,6 +31,8 @@ public class PredicateSearch {
     private final long[] subqueryMarkers;
     private final boolean[] visited;
     private final short[] intervalEnds;
+    private final int beginDocId;
+    private final int endDocId;
 
     private short[] sortedIndexes;
     private short[] sortedIndexesMergeBuffer;
@@ -48,7 +50,28 @@ public class PredicateSearch {
     public PredicateSearch(
             List<PostingList> postingLists, byte[] nPostingListsForDocument,
             byte[] minFeatureIndex, short[] intervalEnds, int  highestIntervalEnd) {
+        this(postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd,
+             0, nPostingListsForDocument.length);
+    }
+
+    /**
+     * Creates a search for a set of posting lists, which only returns hits in the given range of docIds.
+     * Searches of disjoint ranges may run concurrently, as long as each has its own posting lists.
+     *
+     * @param postingLists Posting lists for the boolean variables that evaluate to true
+     * @param nPostingListsForDocument The number of posting list for each docId
+     * @param minFeatureIndex Index from docId to min-feature value.
+     * @param intervalEnds The interval end for each document.
+     * @param highestIntervalEnd The highest end value.
+     * @param beginDocId The first docId to search, inclusive.
+     * @param endDocId The last docId to search, exclusive.
+     */
+    public PredicateSearch(
+            List<PostingList> postingLists, byte[] nPostingListsForDocument,
+            byte[] minFeatureIndex, short[] intervalEnds, int highestIntervalEnd, int beginDocId, int endDocId) {
         int size = postingLists.size();
+        this.beginDocId = beginDocId;
+        this.endDocId = Math.min(endDocId, nPostingListsForDocument.length);
         this.nPostingListsForDocument = nPostingListsForDocument;
         this.minFeatureIndex = minFeatureIndex;
         this.nPostingLists = size;
@@ -85,7 +108,7 @@ public class PredicateSearch {
     }
 
     private class PredicateSpliterator implements java.util.Spliterator<Hit> {
-        private int lastHit = -1;
+        private int lastHit = beginDocId - 1;
 
         @Override
         public boolean tryAdvance(Consumer<? super Hit> action) {
@@ -122,6 +145,7 @@ public class PredicateSearch {
         boolean skippedToEnd = skipMinFeature(docId);
         while (nPostingLists > 0 && !skippedToEnd) {
             int docId0 = docIds[sortedIndexes[0]];
+            if (docId0 >= endDocId) break;
             int minFeature = minFeatureIndex[docId0];
             int k = minFeature > 0 ? minFeature - 1 : 0;
             int intervalEnd = Short.toUnsignedInt(intervalEnds[docId0]);
@@ -139,7 +163,7 @@ public class PredicateSearch {
     }
 
     private boolean skipMinFeature(int docId) {
-        int nDocuments = nPostingListsForDocument.length;
+        int nDocuments = endDocId;
         while (docId < nDocuments && minFeatureIndex[docId] > nPostingListsForDocument[docId]) {
             ++docId;
         }
@@ -5,6 +5,9 @@ import com.yahoo.document.predicate.Predicate;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -128,6 +131,38 @@ public class PredicateIndexTest {
         assertEquals("[42]", searcher.search(query).toList().toString());
     }
 
+    @Test
+    void requireThatParallelSearchGivesTheSameHitsAsSequentialSearch() {
+        Random random = new Random(42);
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        for (int id = 1; id <= 5000; id++) {
+            builder.indexDocument(id, Predicate.fromString(switch (random.nextInt(5)) {
+                case 0 -> "country in ['no', 'se'] and gender in ['male']";
+                case 1 -> "country in ['no'] and gender not in ['male']";
+                case 2 -> "gender in ['female'] and age in [20..40]";
+                case 3 -> "true";
+                default -> "country in ['" + random.nextInt(20) + "'] or age in [" + random.nextInt(50) + "..60]";
+            }));
+        }
+        PredicateIndex index = builder.build();
+        PredicateIndex.Searcher searcher = index.searcher();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                PredicateQuery query = new PredicateQuery();
+                query.addFeature("country", random.nextBoolean() ? "no" : String.valueOf(random.nextInt(20)), 0x1);
+                query.addFeature("gender", random.nextBoolean() ? "male" : "female", 0x3);
+                query.addRangeFeature("age", random.nextInt(70), 0x2);
+                List<Hit> expected = searcher.search(query).toList();
+                for (int minSegmentSize : List.of(1, 7, 1000, 5000, PredicateIndex.DEFAULT_MIN_SEGMENT_SIZE))
+                    assertEquals(expected, searcher.search(query, pool, minSegmentSize).toList());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
     @Test
     void require_that_serialization_and_deserialization_retain_data() throws IOException {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -0,0 +1,85 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.aggregation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges partial results of the same grouping, such as those returned from each content node, by pairwise
+ * tree reduction as they are added: Each grouping is merged with another grouping merged from the same number
+ * of partial results, if any, such that each result is merged about log(n) times, rather than merging each
+ * into an ever-growing accumulated grouping.
+ * <p>
+ * This is thread safe. Merging is done by the threads adding groupings, outside any lock,
+ * such that groupings added concurrently are merged in parallel.
+ */
+public final class GroupingReducer {
+
+    /** The grouping merged from 2^i partial results at index i, or null if none */
+    private final List<Grouping> levels = new ArrayList<>();
+
+    /** The number of merges in progress */
+    private int merging = 0;
+
+    /** Adds a partial grouping result to this. The given grouping is merged into, and should not be used afterwards. */
+    public void add(Grouping grouping) {
+        int level = 0;
+        synchronized (this) {
+            merging++;
+        }
+        try {
+            while (true) {
+                Grouping other;
+                synchronized (this) {
+                    while (levels.size() <= level)
+                        levels.add(null);
+                    other = levels.get(level);
+                    if (other == null) {
+                        levels.set(level, grouping);
+                        return;
+                    }
+                    levels.set(level, null);
+                }
+                other.merge(grouping);
+                grouping = other;
+                level++;
+            }
+        }
+        finally {
+            synchronized (this) {
+                merging--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the grouping merged from all the groupings added to this, without post-merging,
+     * or null if none have been added. This waits for merges in progress to complete.
+     */
+    public synchronized Grouping result() {
+        while (merging > 0) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for groupings to be merged", e);
+            }
+        }
+        Grouping result = null;
+        for (int i = 0; i < levels.size(); i++) {
+            Grouping grouping = levels.get(i);
+            if (grouping == null) continue;
+            if (result == null)
+                result = grouping;
+            else
+                result.merge(grouping);
+            levels.set(i, null);
+        }
+        if (result != null)
+            levels.set(0, result);
+        return result;
+    }
+
+}
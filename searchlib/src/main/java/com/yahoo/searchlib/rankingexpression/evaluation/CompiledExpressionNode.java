@@ -0,0 +1,69 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.SerializationContext;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.TypeContext;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * An expression node evaluated by a method handle built by {@link ExpressionCompiler}.
+ * This is serialized as the expression it was compiled from, and falls back to evaluating that
+ * if it has itself been (Java) deserialized.
+ * Like other optimized nodes, this must be evaluated with the context it was compiled for, or a clone of it.
+ */
+final class CompiledExpressionNode extends ExpressionNode {
+
+    private final ExpressionNode original;
+    private final transient MethodHandle evaluator;
+    private final boolean isBoolean;
+
+    /** Creates a node evaluating the given original node by a handle of type {@link ExpressionHandles#type} */
+    CompiledExpressionNode(ExpressionNode original, MethodHandle evaluator) {
+        if ( ! evaluator.type().equals(ExpressionHandles.type))
+            throw new IllegalArgumentException("Expected a handle of type " + ExpressionHandles.type + ", but got " + evaluator.type());
+        this.original = original;
+        this.evaluator = evaluator;
+        this.isBoolean = ExpressionCompiler.isBoolean(original);
+    }
+
+    /** Returns the expression this is compiled from */
+    ExpressionNode original() { return original; }
+
+    @Override
+    public StringBuilder toString(StringBuilder builder, SerializationContext context, Deque<String> path, CompositeNode parent) {
+        return original.toString(builder, context, path, parent);
+    }
+
+    @Override
+    public TensorType type(TypeContext<Reference> context) { return TensorType.empty; }
+
+    @Override
+    public Value evaluate(Context context) {
+        if (evaluator == null) return original.evaluate(context);
+        double value = evaluate(evaluator, context);
+        return isBoolean ? new BooleanValue(value != 0.0) : new DoubleValue(value);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash("compiled", original); }
+
+    private static double evaluate(MethodHandle evaluator, Context context) {
+        try {
+            return (double)evaluator.invokeExact(context);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable e) { // not thrown by the handles built by ExpressionHandles
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.OperationNode;
+import com.yahoo.searchlib.rankingexpression.rule.Operator;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles the parts of ranking expressions which only compute doubles to method handles, such that they are
+ * evaluated by code the JIT compiler generates from these rather than by interpreting the expression nodes.
+ * This speeds up repeated evaluation of scalar expressions, such as GBDT forests.
+ * <p>
+ * Subexpressions consisting of arithmetic, comparisons, logical operators, mathematical functions, conditions and
+ * set membership tests over numeric constants and references to values which are doubles are compiled.
+ * Strings in sets are compared by their hash, as when interpreted. Other parts of the expression are left to be
+ * interpreted as before, and so is any subexpression which for some reason cannot be compiled.
+ * <p>
+ * Compiled expressions <b>must</b> be evaluated using the context they were compiled with, or clones of it,
+ * as values are looked up by their index in it.
+ * <p>
+ * This optimizer is disabled by default. When enabled it should run before the other optimizers,
+ * as compiled subexpressions are not recognized by them.
+ */
+public class ExpressionCompiler extends Optimizer {
+
+    private static final Logger log = Logger.getLogger(ExpressionCompiler.class.getName());
+
+    /** The min number of nodes in a subexpression for it to be compiled */
+    private static final int minNodes = 8;
+
+    public ExpressionCompiler() {
+        setEnabled(false);
+    }
+
+    /** Compiles the given expression if the context is a {@link DoubleOnlyArrayContext}, where all values are doubles */
+    @Override
+    public void optimize(RankingExpression expression, ContextIndex context, OptimizationReport report) {
+        if ( ! isEnabled()) return;
+        if ( ! (context instanceof DoubleOnlyArrayContext)) {
+            report.note("Expression compilation requires a DoubleOnlyArrayContext, or knowing which values are doubles");
+            return;
+        }
+        optimize(expression, context, name -> true, report);
+    }
+
+    /**
+     * Compiles the parts of the given expression which only reference values that are doubles.
+     *
+     * @param expression the expression to destructively optimize
+     * @param context    a fast lookup context created from the given expression
+     * @param isDouble   returns whether the value of the given name is always a double (or a tensor of rank 0)
+     * @param report     the optimization report to which actions of this is logged
+     */
+    public void optimize(RankingExpression expression, ContextIndex context, Predicate<String> isDouble,
+                         OptimizationReport report) {
+        if ( ! isEnabled()) return;
+        expression.setRoot(new Compilation(context, isDouble, report).compile(expression.getRoot()));
+        report.note("Expression compilation done");
+    }
+
+    /** Returns whether the value of this node is a boolean when interpreted */
+    static boolean isBoolean(ExpressionNode node) {
+        while (node instanceof EmbracedNode embraced)
+            node = embraced.children().get(0);
+        if (node instanceof NotNode || node instanceof SetMembershipNode) return true;
+        if (node instanceof OperationNode operation && ExpressionHandles.toBinary(operation) instanceof OperationNode last)
+            return last.operators().get(0).compareTo(Operator.equal) <= 0;
+        return false;
+    }
+
+    private static class Compilation {
+
+        private final ContextIndex context;
+        private final Predicate<String> isDouble;
+        private final OptimizationReport report;
+
+        /** The number of nodes in each compilable node seen, or -1 if it cannot be compiled */
+        private final Map<ExpressionNode, Integer> sizes = new IdentityHashMap<>();
+
+        Compilation(ContextIndex context, Predicate<String> isDouble, OptimizationReport report) {
+            this.context = context;
+            this.isDouble = isDouble;
+            this.report = report;
+        }
+
+        ExpressionNode compile(ExpressionNode node) {
+            if (size(node) >= minNodes) {
+                try {
+                    CompiledExpressionNode compiled = new ExpressionHandles(context::getIndex).compile(node);
+                    report.incMetric("Compiled expressions", 1);
+                    return compiled;
+                }
+                catch (RuntimeException e) { // Fall back to interpreting
+                    log.log(Level.FINE, () -> "Could not compile " + node + ": " + e);
+                    report.incMetric("Failed expression compilations", 1);
+                }
+            }
+            if ( ! isScalarComposite(node)) return node;
+
+            CompositeNode composite = (CompositeNode)node;
+            List<ExpressionNode> children = new ArrayList<>(composite.children().size());
+            boolean changed = false;
+            for (ExpressionNode child : composite.children()) {
+                ExpressionNode compiledChild = compile(child);
+                children.add(compiledChild);
+                changed |= compiledChild != child;
+            }
+            return changed ? composite.setChildren(children) : node;
+        }
+
+        /** Returns the number of nodes in the given node if it can be compiled, and -1 otherwise */
+        private int size(ExpressionNode node) {
+            Integer size = sizes.get(node);
+            if (size == null) {
+                size = computeSize(node);
+                sizes.put(node, size);
+            }
+            return size;
+        }
+
+        private int computeSize(ExpressionNode node) {
+            if (node instanceof ConstantNode constant)
+                return constant.getValue() instanceof DoubleCompatibleValue ? 1 : -1;
+            if (node instanceof ReferenceNode reference)
+                return isDoubleReference(reference.toString()) ? 1 : -1;
+            if (node instanceof SetMembershipNode setMembership) {
+                if (isBoolean(setMembership.getTestValue())) return -1; // compares as booleans
+                for (ExpressionNode setValue : setMembership.getSetValues()) {
+                    // Strings are compared to numbers by their hash, as when interpreted
+                    if ( ! (setValue instanceof ConstantNode constant &&
+                            (constant.getValue() instanceof DoubleCompatibleValue || constant.getValue() instanceof StringValue)))
+                        return -1;
+                }
+                int testValueSize = size(setMembership.getTestValue());
+                return testValueSize < 0 ? -1 : 1 + testValueSize + setMembership.getSetValues().size();
+            }
+            if ( ! isScalarComposite(node)) return -1;
+            if (node instanceof FunctionNode function && function.children().size() > 2) return -1;
+
+            int size = 1;
+            for (ExpressionNode child : ((CompositeNode)node).children()) {
+                int childSize = size(child);
+                if (childSize < 0) return -1;
+                size += childSize;
+            }
+            return size;
+        }
+
+        private boolean isDoubleReference(String name) {
+            if ( ! isDouble.test(name)) return false;
+            try {
+                context.getIndex(name);
+                return true;
+            }
+            catch (RuntimeException e) { // not known to the context
+                return false;
+            }
+        }
+
+        /** Returns whether this is a composite whose children are evaluated in the same context as itself */
+        private static boolean isScalarComposite(ExpressionNode node) {
+            return node instanceof OperationNode || node instanceof IfNode || node instanceof FunctionNode ||
+                   node instanceof NegativeNode || node instanceof NotNode || node instanceof EmbracedNode ||
+                   node instanceof SetMembershipNode;
+        }
+
+    }
+
+}
@@ -0,0 +1,277 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.OperationNode;
+import com.yahoo.searchlib.rankingexpression.rule.Operator;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Builds a method handle evaluating an expression over doubles from method handle combinators, which the JIT
+ * compiler inlines and compiles like ordinary code once the handle is hot.
+ * The expression must only consist of nodes accepted by {@link ExpressionCompiler}.
+ * <p>
+ * The handle of each node takes the context as its only argument, and returns the value of the node as a double.
+ * Long chains of operations, like the sum of the trees of a forest, are split into segments which are applied
+ * in a loop, such that the handles are not nested deeper than the JIT compiler will inline, and the result
+ * is computed in exactly the same order as when interpreted.
+ */
+final class ExpressionHandles {
+
+    /** The type of the handle of each node */
+    static final MethodType type = MethodType.methodType(double.class, Context.class);
+
+    /** The type of a handle applying a segment of a chain to the value computed so far */
+    private static final MethodType segmentType = MethodType.methodType(double.class, Context.class, double.class);
+
+    private static final MethodType binaryType = MethodType.methodType(double.class, double.class, double.class);
+    private static final MethodType comparisonType = MethodType.methodType(boolean.class, double.class, double.class);
+
+    /** The max number of operations of a chain which are nested in a single handle */
+    private static final int maxSegmentLength = 16;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final MethodHandle getDouble = virtual(Context.class, "getDouble", MethodType.methodType(double.class, int.class));
+    private static final MethodHandle evaluateFunction = virtual(Function.class, "evaluate", binaryType);
+    private static final MethodHandle negate = ownStatic("negate", MethodType.methodType(double.class, double.class));
+    private static final MethodHandle not = ownStatic("not", MethodType.methodType(double.class, double.class));
+    private static final MethodHandle isTrue = ownStatic("isTrue", MethodType.methodType(boolean.class, double.class));
+    private static final MethodHandle in = ownStatic("in", MethodType.methodType(double.class, double.class, double[].class));
+    private static final MethodHandle chain = ownStatic("chain", MethodType.methodType(double.class, MethodHandle.class,
+                                                                                      MethodHandle[].class, Context.class));
+
+    private final ToIntFunction<String> indexOf;
+
+    /**
+     * Creates a builder of handles.
+     *
+     * @param indexOf returns the index in the context of the referenced value having the given name
+     */
+    ExpressionHandles(ToIntFunction<String> indexOf) {
+        this.indexOf = indexOf;
+    }
+
+    /** Returns an expression node evaluating the given node using a method handle */
+    CompiledExpressionNode compile(ExpressionNode node) {
+        return new CompiledExpressionNode(node, handleOf(node));
+    }
+
+    private MethodHandle handleOf(ExpressionNode node) {
+        if (node instanceof EmbracedNode embraced)
+            return handleOf(embraced.children().get(0));
+        if (node instanceof ConstantNode constant)
+            return constant(constant.getValue().asDouble());
+        if (node instanceof ReferenceNode reference)
+            return MethodHandles.insertArguments(getDouble, 1, indexOf.applyAsInt(reference.toString()));
+        if (node instanceof NegativeNode negative)
+            return MethodHandles.filterReturnValue(handleOf(negative.children().get(0)), negate);
+        if (node instanceof NotNode notNode)
+            return MethodHandles.filterReturnValue(handleOf(notNode.children().get(0)), not);
+        if (node instanceof FunctionNode function)
+            return handleOfFunction(function);
+        if (node instanceof IfNode ifNode)
+            return handleOfIf(ifNode);
+        if (node instanceof SetMembershipNode setMembership)
+            return handleOfSetMembership(setMembership);
+        if (node instanceof OperationNode operation)
+            return handleOfOperation(operation);
+        throw new IllegalArgumentException("Cannot compile " + node);
+    }
+
+    private MethodHandle handleOfFunction(FunctionNode node) {
+        List<ExpressionNode> arguments = node.children();
+        MethodHandle function = evaluateFunction.bindTo(node.getFunction());
+        MethodHandle first = handleOf(arguments.get(0));
+        MethodHandle second = arguments.size() > 1 ? handleOf(arguments.get(1)) : constant(0.0);
+        return apply(function, first, second);
+    }
+
+    private MethodHandle handleOfIf(IfNode node) {
+        ExpressionNode condition = unembrace(node.getCondition());
+        MethodHandle test;
+        if (condition instanceof OperationNode operation && operation.operators().size() == 1 &&
+            isComparison(operation.operators().get(0))) {
+            MethodHandle comparison = ownStatic(operation.operators().get(0).name() + "Test", comparisonType);
+            test = apply(comparison, handleOf(operation.children().get(0)), handleOf(operation.children().get(1)));
+        }
+        else {
+            test = MethodHandles.filterReturnValue(handleOf(condition), isTrue);
+        }
+        return MethodHandles.guardWithTest(test, handleOf(node.getTrueExpression()), handleOf(node.getFalseExpression()));
+    }
+
+    /** Returns whether the given operator is a comparison which is tested directly, rather than by its value */
+    private static boolean isComparison(Operator operator) {
+        return switch (operator) {
+            case smaller, smallerOrEqual, larger, largerOrEqual, equal, notEqual -> true;
+            default -> false;
+        };
+    }
+
+    private MethodHandle handleOfSetMembership(SetMembershipNode node) {
+        double[] set = node.getSetValues().stream()
+                           .mapToDouble(setValue -> ((ConstantNode)setValue).getValue().asDouble())
+                           .toArray();
+        return MethodHandles.filterReturnValue(handleOf(node.getTestValue()), MethodHandles.insertArguments(in, 1, set));
+    }
+
+    private MethodHandle handleOfOperation(OperationNode node) {
+        // Walk the left side of the operations, which are applied first, to the first operand
+        Deque<OperationNode> operations = new ArrayDeque<>();
+        ExpressionNode first = toBinary(node);
+        while (first instanceof OperationNode operation && operation.operators().size() == 1) {
+            operations.push(operation);
+            first = operation.children().get(0);
+        }
+        MethodHandle head = handleOf(first);
+        if (operations.size() <= maxSegmentLength) {
+            for (OperationNode operation : operations)
+                head = apply(operatorHandle(operation.operators().get(0)), head, handleOf(operation.children().get(1)));
+            return head;
+        }
+
+        List<MethodHandle> segments = new ArrayList<>();
+        MethodHandle segment = null;
+        int length = 0;
+        for (OperationNode operation : operations) {
+            if (segment == null)
+                segment = MethodHandles.dropArguments(MethodHandles.identity(double.class), 0, Context.class);
+            MethodHandle withOperand = MethodHandles.collectArguments(operatorHandle(operation.operators().get(0)),
+                                                                      1, handleOf(operation.children().get(1)));
+            segment = MethodHandles.permuteArguments(MethodHandles.collectArguments(withOperand, 0, segment),
+                                                     segmentType, 0, 1, 0);
+            if (++length == maxSegmentLength) {
+                segments.add(segment);
+                segment = null;
+                length = 0;
+            }
+        }
+        if (segment != null)
+            segments.add(segment);
+        return MethodHandles.insertArguments(chain, 0, head, segments.toArray(new MethodHandle[0]));
+    }
+
+    /** Returns the given operation as nested operations with a single operator each, applied in precedence order */
+    static ExpressionNode toBinary(OperationNode node) {
+        // Mirrors OperationNode.evaluate
+        Deque<Operand> stack = new ArrayDeque<>();
+        Iterator<ExpressionNode> children = node.children().iterator();
+        stack.push(new Operand(null, children.next()));
+        for (Iterator<Operator> operators = node.operators().iterator(); operators.hasNext() && children.hasNext(); ) {
+            Operator op = operators.next();
+            while (stack.size() > 1 && ! op.hasPrecedenceOver(stack.peek().op()))
+                popStack(stack);
+            stack.push(new Operand(op, children.next()));
+        }
+        while (stack.size() > 1)
+            popStack(stack);
+        return stack.getFirst().node();
+    }
+
+    private static void popStack(Deque<Operand> stack) {
+        Operand rhs = stack.pop();
+        Operand lhs = stack.pop();
+        stack.push(new Operand(lhs.op(), new OperationNode(lhs.node(), rhs.op(), rhs.node())));
+    }
+
+    private record Operand(Operator op, ExpressionNode node) { }
+
+    private static ExpressionNode unembrace(ExpressionNode node) {
+        while (node instanceof EmbracedNode embraced)
+            node = embraced.children().get(0);
+        return node;
+    }
+
+    /** Returns a handle applying the given binary function to the values of the given handles of a context */
+    private static MethodHandle apply(MethodHandle function, MethodHandle left, MethodHandle right) {
+        return MethodHandles.permuteArguments(MethodHandles.filterArguments(function, 0, left, right),
+                                              function.type().changeParameterType(0, Context.class)
+                                                             .dropParameterTypes(1, 2),
+                                              0, 0);
+    }
+
+    private static MethodHandle constant(double value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, Context.class);
+    }
+
+    private static MethodHandle operatorHandle(Operator operator) {
+        return ownStatic(operator.name(), binaryType);
+    }
+
+    private static MethodHandle ownStatic(String name, MethodType type) {
+        try {
+            return lookup.findStatic(ExpressionHandles.class, name, type);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> owner, String name, MethodType type) {
+        try {
+            return lookup.findVirtual(owner, name, type);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Operations invoked from the handles
+
+    private static double chain(MethodHandle head, MethodHandle[] segments, Context context) throws Throwable {
+        double value = (double)head.invokeExact(context);
+        for (MethodHandle segment : segments)
+            value = (double)segment.invokeExact(context, value);
+        return value;
+    }
+
+    private static double in(double x, double[] set) {
+        for (double value : set)
+            if (x == value) return 1;
+        return 0;
+    }
+
+    private static boolean isTrue(double x) { return x != 0.0; } // NaN is true, as in Value.asBoolean
+    private static double negate(double x) { return -x; }
+    private static double not(double x) { return x != 0.0 ? 0 : 1; }
+    private static double or(double x, double y) { return x != 0.0 || y != 0.0 ? 1 : 0; }
+    private static double and(double x, double y) { return x != 0.0 && y != 0.0 ? 1 : 0; }
+    private static double largerOrEqual(double x, double y) { return x >= y ? 1 : 0; }
+    private static double larger(double x, double y) { return x > y ? 1 : 0; }
+    private static double smallerOrEqual(double x, double y) { return x <= y ? 1 : 0; }
+    private static double smaller(double x, double y) { return x < y ? 1 : 0; }
+    private static double approxEqual(double x, double y) { return DoubleCompatibleValue.approxEqual(x, y) ? 1 : 0; }
+    private static double notEqual(double x, double y) { return x != y ? 1 : 0; }
+    private static double equal(double x, double y) { return x == y ? 1 : 0; }
+    private static double plus(double x, double y) { return x + y; }
+    private static double minus(double x, double y) { return x - y; }
+    private static double multiply(double x, double y) { return x * y; }
+    private static double divide(double x, double y) { return x / y; }
+    private static double modulo(double x, double y) { return x % y; }
+    private static double power(double x, double y) { return Function.pow.evaluate(x, y); }
+    private static boolean largerOrEqualTest(double x, double y) { return x >= y; }
+    private static boolean largerTest(double x, double y) { return x > y; }
+    private static boolean smallerOrEqualTest(double x, double y) { return x <= y; }
+    private static boolean smallerTest(double x, double y) { return x < y; }
+    private static boolean notEqualTest(double x, double y) { return x != y; }
+    private static boolean equalTest(double x, double y) { return x == y; }
+
+}
@@ -32,12 +32,15 @@ import com.yahoo.searchlib.rankingexpression.evaluation.tensoroptimization.Tenso
  */
 public class ExpressionOptimizer {
 
+    private final ExpressionCompiler expressionCompiler = new ExpressionCompiler();
     private final GBDTOptimizer gbdtOptimizer = new GBDTOptimizer();
     private final GBDTForestOptimizer gbdtForestOptimizer = new GBDTForestOptimizer();
     private final TensorOptimizer tensorOptimizer = new TensorOptimizer();
 
     /** Gets an optimizer instance used by this by class name, or null if the optimizer is not known */
     public Optimizer getOptimizer(Class<?> clazz) {
+        if (clazz == expressionCompiler.getClass())
+            return expressionCompiler;
         if (clazz == gbdtOptimizer.getClass())
             return gbdtOptimizer;
         if (clazz == gbdtForestOptimizer.getClass())
@@ -50,6 +53,7 @@ public class ExpressionOptimizer {
     public OptimizationReport optimize(RankingExpression expression, ContextIndex contextIndex) {
         OptimizationReport report = new OptimizationReport();
         // Note: Order of optimizations matter
+        expressionCompiler.optimize(expression, contextIndex, report);
         gbdtOptimizer.optimize(expression, contextIndex, report);
         gbdtForestOptimizer.optimize(expression, contextIndex, report);
         tensorOptimizer.optimize(expression, contextIndex, report);
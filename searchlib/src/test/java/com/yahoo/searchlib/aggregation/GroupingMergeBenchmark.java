@@ -0,0 +1,86 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.aggregation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmarks merging synthetic multi-level partial groupings from many nodes,
+ * in sequence and by tree reduction in one or more threads, where the nodes mostly return the same groups
+ * (dense) or mostly different groups (sparse).
+ */
+public class GroupingMergeBenchmark {
+
+    private static final int nodes = 128;
+    private static final int levels = 3;
+    private static final int groupsPerLevel = 16;
+    private static final int maxGroups = 10;
+    private static final int iterations = 5;
+    private static final int threads = 4;
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int distinctGroups : List.of(24, 1024)) {
+            for (int i = 0; i < 3; i++) { // warmup
+                runSequential(distinctGroups);
+                runReduced(distinctGroups);
+                runReducedInParallel(distinctGroups, executor);
+            }
+            System.out.printf("Merging %d groupings of %d levels with %d of %d distinct groups per level%n",
+                              nodes, levels, groupsPerLevel, distinctGroups);
+            System.out.printf("Sequential merge: %.2f ms%n", runSequential(distinctGroups));
+            System.out.printf("Tree reduction:   %.2f ms%n", runReduced(distinctGroups));
+            System.out.printf("Tree reduction in %d threads: %.2f ms%n", threads, runReducedInParallel(distinctGroups, executor));
+        }
+        executor.shutdown();
+    }
+
+    private static double runSequential(int distinctGroups) {
+        long totalNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            List<Grouping> groupings = GroupingReducerTestCase.createGroupings(nodes, levels, groupsPerLevel, distinctGroups, maxGroups);
+            long start = System.nanoTime();
+            Grouping merged = groupings.get(0);
+            for (int j = 1; j < groupings.size(); j++)
+                merged.merge(groupings.get(j));
+            merged.postMerge();
+            totalNanos += System.nanoTime() - start;
+        }
+        return totalNanos / iterations / 1_000_000.0;
+    }
+
+    private static double runReduced(int distinctGroups) {
+        long totalNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            List<Grouping> groupings = GroupingReducerTestCase.createGroupings(nodes, levels, groupsPerLevel, distinctGroups, maxGroups);
+            long start = System.nanoTime();
+            GroupingReducer reducer = new GroupingReducer();
+            for (Grouping grouping : groupings)
+                reducer.add(grouping);
+            reducer.result().postMerge();
+            totalNanos += System.nanoTime() - start;
+        }
+        return totalNanos / iterations / 1_000_000.0;
+    }
+
+    private static double runReducedInParallel(int distinctGroups, ExecutorService executor) throws Exception {
+        long totalNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            List<Grouping> groupings = GroupingReducerTestCase.createGroupings(nodes, levels, groupsPerLevel, distinctGroups, maxGroups);
+            long start = System.nanoTime();
+            GroupingReducer reducer = new GroupingReducer();
+            List<Future<?>> futures = new ArrayList<>(groupings.size());
+            for (Grouping grouping : groupings)
+                futures.add(executor.submit(() -> reducer.add(grouping)));
+            for (Future<?> future : futures)
+                future.get();
+            reducer.result().postMerge();
+            totalNanos += System.nanoTime() - start;
+        }
+        return totalNanos / iterations / 1_000_000.0;
+    }
+
+}
@@ -0,0 +1,98 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.aggregation;
+
+import com.yahoo.searchlib.expression.IntegerResultNode;
+import com.yahoo.searchlib.expression.StringResultNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that reducing groupings gives the same result as merging them in sequence.
+ */
+public class GroupingReducerTestCase {
+
+    @Test
+    public void testReductionIsTheSameAsSequentialMerge() {
+        for (int nodes : List.of(1, 2, 3, 7, 8, 33)) {
+            GroupingReducer reducer = new GroupingReducer();
+            for (Grouping grouping : createGroupings(nodes, 3, 20, 30, 5))
+                reducer.add(grouping);
+            Grouping reduced = reducer.result();
+            reduced.postMerge();
+            assertEquals(mergeSequentially(createGroupings(nodes, 3, 20, 30, 5)).getRoot(), reduced.getRoot());
+        }
+    }
+
+    @Test
+    public void testConcurrentReductionIsTheSameAsSequentialMerge() throws Exception {
+        GroupingReducer reducer = new GroupingReducer();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Grouping grouping : createGroupings(40, 3, 20, 30, 5))
+                futures.add(executor.submit(() -> reducer.add(grouping)));
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        Grouping reduced = reducer.result();
+        reduced.postMerge();
+        assertEquals(mergeSequentially(createGroupings(40, 3, 20, 30, 5)).getRoot(), reduced.getRoot());
+    }
+
+    @Test
+    public void testEmptyReduction() {
+        assertNull(new GroupingReducer().result());
+    }
+
+    private static Grouping mergeSequentially(List<Grouping> groupings) {
+        Grouping merged = groupings.get(0);
+        for (int i = 1; i < groupings.size(); i++)
+            merged.merge(groupings.get(i));
+        merged.postMerge();
+        return merged;
+    }
+
+    /**
+     * Returns a partial grouping result from each of the given number of nodes, where each group has
+     * about groupsPerLevel children picked at random from distinctGroups possible ones.
+     */
+    static List<Grouping> createGroupings(int nodes, int levels, int groupsPerLevel, int distinctGroups, int maxGroups) {
+        Random random = new Random(1234);
+        List<Grouping> groupings = new ArrayList<>();
+        for (int node = 0; node < nodes; node++) {
+            Grouping grouping = new Grouping().setFirstLevel(0).setLastLevel(levels);
+            for (int level = 0; level < levels; level++)
+                grouping.addLevel(new GroupingLevel().setMaxGroups(maxGroups));
+            grouping.setRoot(createGroup(new StringResultNode("root"), levels, groupsPerLevel, distinctGroups, random));
+            groupings.add(grouping);
+        }
+        return groupings;
+    }
+
+    private static Group createGroup(StringResultNode id, int levels, int groupsPerLevel, int distinctGroups, Random random) {
+        Group group = new Group().setId(id)
+                                 .setRank(random.nextInt(1000))
+                                 .addAggregationResult(new CountAggregationResult(random.nextInt(100)))
+                                 .addAggregationResult(new SumAggregationResult().setSum(new IntegerResultNode(random.nextInt(1000))));
+        if (levels == 0) return group;
+        for (int i = 0; i < distinctGroups; i++) {
+            if (random.nextInt(distinctGroups) >= groupsPerLevel) continue;
+            group.addChild(createGroup(new StringResultNode(String.format("%s-%06d", id.getValue(), i)),
+                                       levels - 1, groupsPerLevel, distinctGroups, random));
+        }
+        return group;
+    }
+
+}
@@ -0,0 +1,146 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that compiled expressions evaluate to exactly the same values as interpreted ones.
+ */
+public class ExpressionCompilerTestCase {
+
+    private static final List<String> variables = List.of("a", "b", "c", "d", "e");
+    private static final double[][] inputs = {
+            { 1, 2, 3, 4, 5 },
+            { -1.5, 0.25, 0, 1, 7.5 },
+            { 0, 0, 0, 0, 0 },
+            { Double.NaN, 1, Double.NaN, -3, 2 },
+            { 3, 3, -0.0, 1e300, 1e-300 },
+            { 2, 1, 0.5, 1, 1 }
+    };
+
+    @Test
+    public void testScalarExpressions() throws ParseException {
+        assertCompiled("a + b * c - d / e % 3 + a ^ 2 ^ 0.5 - b - c - d * e");
+        assertCompiled("max(a, b) + sqrt(abs(c)) - exp(-d) + log10(e) + pow(a, 2) + atan2(b, c) + fmod(d, 2)");
+        assertCompiled("if (a < b, c + 1, d - 1) + if (a <= b, 1, 2) + if (a > b, 3, 4) + if (a >= b, 5, 6)");
+        assertCompiled("if (a == b, c, d) + if (a != b, c, d) + if (c, 1, 2) + if (a ~= b, 3, 4) + if (!(a >= b), 1, 0)");
+        assertCompiled("a < b || c >= d && !(e == 1) || a + b > c * d");
+        assertCompiled("a ~= b && (c != d || e < 1) && a * b >= 0");
+        assertCompiled("if (a in [1, 2, 3, -1.5], b + c, d * e) + if (c in [0], 1, 2) - (a in [2]) * 3");
+        assertCompiled("if (a in [\"x\", 2, \"y\"], b + c, d * e) + if (b in [\"x\"], 1, 2) * 3");
+        assertCompiled("-(a + b) * -c + (a > b) * 10 + (c < d) + !e + -(-d) - (true + false) * 2");
+        assertCompiled("(a + b) * (c - d) / (e + 1) + ((a * b) + (c * d)) * 2 - (1 + 2 * 3 ^ 2 - 4 / 5)");
+    }
+
+    @Test
+    public void testForest() throws ParseException {
+        Random random = new Random(1234);
+        StringBuilder forest = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) forest.append(" + ");
+            appendTree(4, random, forest);
+        }
+        assertCompiled(forest.toString());
+    }
+
+    @Test
+    public void testOnlyScalarSubexpressionsAreCompiled() throws ParseException {
+        RankingExpression expression = new RankingExpression("reduce(t * (a + b), sum) + (a * b + c * d - e / 2 + 1) + a");
+        ArrayContext context = new ArrayContext(expression);
+        context.put("t", new TensorValue(Tensor.from("tensor(x[2]):[1, 2]")));
+        context.put("a", 1);
+        context.put("b", 2);
+        context.put("c", 3);
+        context.put("d", 4);
+        context.put("e", 5);
+        double expected = expression.evaluate(context).asDouble();
+
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        compiler.setEnabled(true);
+        OptimizationReport report = new OptimizationReport();
+        compiler.optimize(expression, context, report);
+        assertEquals("A context which may hold tensors is not compiled without knowing which are doubles",
+                     0, compiledNodesIn(expression.getRoot()).size());
+
+        compiler.optimize(expression, context, name -> ! name.equals("t"), report);
+        assertEquals(1, report.getMetric("Compiled expressions"));
+        List<CompiledExpressionNode> compiled = compiledNodesIn(expression.getRoot());
+        assertEquals(1, compiled.size());
+        assertEquals("(a * b + c * d - e / 2 + 1)", compiled.get(0).original().toString());
+        assertEquals(expected, expression.evaluate(context).asDouble(), 0);
+        assertEquals("reduce(t * (a + b), sum) + (a * b + c * d - e / 2 + 1) + a", expression.toString());
+    }
+
+    @Test
+    public void testCompilationIsDisabledByDefault() throws ParseException {
+        RankingExpression expression = new RankingExpression("a + b * c - d / e % 3 + a ^ 2 ^ 0.5 - b - c - d * e");
+        new ExpressionOptimizer().optimize(expression, new DoubleOnlyArrayContext(expression));
+        assertTrue(compiledNodesIn(expression.getRoot()).isEmpty());
+    }
+
+    private RankingExpression assertCompiled(String expressionString) throws ParseException {
+        RankingExpression interpreted = new RankingExpression(expressionString);
+        RankingExpression compiled = new RankingExpression(expressionString);
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(compiled, true);
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ExpressionCompiler.class).setEnabled(true);
+        OptimizationReport report = optimizer.optimize(compiled, context);
+        assertEquals(report.toString(), 1, report.getMetric("Compiled expressions"));
+        assertTrue(compiled.getRoot() instanceof CompiledExpressionNode);
+
+        for (double[] input : inputs) {
+            MapContext mapContext = new MapContext();
+            for (int i = 0; i < variables.size(); i++) {
+                mapContext.put(variables.get(i), input[i]);
+                context.put(variables.get(i), input[i]);
+            }
+            Value expected = interpreted.evaluate(mapContext);
+            Value actual = compiled.evaluate(context);
+            assertEquals(expressionString, expected.getClass(), actual.getClass());
+            assertEquals(expressionString, expected.asDouble(), actual.asDouble(), 0);
+        }
+        return compiled;
+    }
+
+    private static void appendTree(int depth, Random random, StringBuilder b) {
+        if (depth == 0) {
+            b.append(random.nextDouble() - 0.5);
+            return;
+        }
+        String variable = variables.get(random.nextInt(variables.size()));
+        if (random.nextInt(8) == 0)
+            b.append("if (").append(variable).append(" in [").append(random.nextInt(4)).append(", ").append(random.nextInt(4)).append("], ");
+        else
+            b.append("if (").append(variable).append(" < ").append(random.nextDouble() * 6 - 1).append(", ");
+        appendTree(depth - 1, random, b);
+        b.append(", ");
+        appendTree(depth - 1, random, b);
+        b.append(")");
+    }
+
+    private static List<CompiledExpressionNode> compiledNodesIn(ExpressionNode node) {
+        List<CompiledExpressionNode> compiled = new ArrayList<>();
+        collectCompiled(node, compiled);
+        return compiled;
+    }
+
+    private static void collectCompiled(ExpressionNode node, List<CompiledExpressionNode> compiled) {
+        if (node instanceof CompiledExpressionNode compiledNode)
+            compiled.add(compiledNode);
+        else if (node instanceof CompositeNode composite)
+            composite.children().forEach(child -> collectCompiled(child, compiled));
+    }
+
+}
@@ -152,6 +152,17 @@ public interface FeedClientBuilder {
 
     enum Compression { auto, none, gzip }
 
+    /**
+     * Sets the maximum number of operations to send in each HTTP request; default 1.
+     *
+     * With a value larger than 1, operations which are ready for dispatch at the same time are sent together,
+     * as JSON lines, to the {@code /document/v1/batch} endpoint of the feed container, which must support this,
+     * and the results of the individual operations are streamed back as they complete. This reduces the per-request
+     * overhead, which dominates for small operations, in both client and container. Operations are still retried,
+     * throttled and completed individually.
+     */
+    FeedClientBuilder setMaxBatchSize(int max);
+
     /** Constructs instance of {@link FeedClient} from builder configuration */
     FeedClient build();
 
@@ -9,17 +9,27 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.StreamReadConstraints;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -28,6 +38,7 @@ import static ai.vespa.feed.client.FeedClient.OperationType.PUT;
 import static ai.vespa.feed.client.FeedClient.OperationType.REMOVE;
 import static ai.vespa.feed.client.FeedClient.OperationType.UPDATE;
 import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
@@ -47,12 +58,18 @@ public class JsonFeeder implements Closeable {
     });
     private final FeedClient client;
     private final OperationParameters protoParameters;
+    private final int parserThreads;
+    private final boolean orderedSubmission;
     private final AtomicInteger globalInflightOperations = new AtomicInteger(0);
+    private final AtomicLong parsedOperations = new AtomicLong();
+    private final AtomicLong parsedBytes = new AtomicLong();
     private volatile boolean closed = false;
 
-    private JsonFeeder(FeedClient client, OperationParameters protoParameters) {
+    private JsonFeeder(FeedClient client, OperationParameters protoParameters, int parserThreads, boolean orderedSubmission) {
         this.client = client;
         this.protoParameters = protoParameters;
+        this.parserThreads = parserThreads;
+        this.orderedSubmission = orderedSubmission;
     }
 
     public interface ResultCallback {
@@ -150,24 +167,28 @@ public class JsonFeeder implements Closeable {
     CompletableFuture<Void> feedMany(InputStream jsonStream, int size, ResultCallback resultCallback) {
         if (closed) throw new IllegalStateException("Already closed");
         CompletableFuture<Void> overallResult = new CompletableFuture<>();
-        CompletableFuture<Result> result;
         AtomicInteger localInflightOperations = new AtomicInteger(1); // The below dispatch loop itself is counted as a single pending operation
         AtomicBoolean finalCallbackInvoked = new AtomicBoolean();
-        try (RingBufferStream buffer = new RingBufferStream(jsonStream, size)) {
-            while ((result = buffer.next()) != null) {
-                localInflightOperations.incrementAndGet();
-                globalInflightOperations.incrementAndGet();
-                result.whenCompleteAsync((r, t) -> {
-                    if (!finalCallbackInvoked.get()) {
-                        invokeCallback(resultCallback, c -> c.onNextResult(r, (FeedException) t));
-                    }
-                    if (localInflightOperations.decrementAndGet() == 0 && finalCallbackInvoked.compareAndSet(false, true)) {
-                        invokeCallback(resultCallback, ResultCallback::onComplete);
-                        overallResult.complete(null);
-                    }
-                    globalInflightOperations.decrementAndGet();
-                }, resultExecutor);
-            }
+        Consumer<CompletableFuture<Result>> dispatched = result -> {
+            localInflightOperations.incrementAndGet();
+            globalInflightOperations.incrementAndGet();
+            result.whenCompleteAsync((r, t) -> {
+                if (!finalCallbackInvoked.get()) {
+                    invokeCallback(resultCallback, c -> c.onNextResult(r, (FeedException) t));
+                }
+                if (localInflightOperations.decrementAndGet() == 0 && finalCallbackInvoked.compareAndSet(false, true)) {
+                    invokeCallback(resultCallback, ResultCallback::onComplete);
+                    overallResult.complete(null);
+                }
+                globalInflightOperations.decrementAndGet();
+            }, resultExecutor);
+        };
+        try {
+            if (parserThreads > 1)
+                feedLines(jsonStream, size, dispatched);
+            else
+                feedStream(jsonStream, size, dispatched);
+
             if (localInflightOperations.decrementAndGet() == 0 && finalCallbackInvoked.compareAndSet(false, true)) {
                 resultExecutor.execute(() -> {
                     invokeCallback(resultCallback, ResultCallback::onComplete);
@@ -186,6 +207,92 @@ public class JsonFeeder implements Closeable {
         return overallResult;
     }
 
+    private void feedStream(InputStream jsonStream, int size, Consumer<CompletableFuture<Result>> dispatched) throws IOException {
+        try (RingBufferStream buffer = new RingBufferStream(jsonStream, size)) {
+            CompletableFuture<Result> result;
+            while ((result = buffer.next()) != null)
+                dispatched.accept(result);
+        }
+    }
+
+    /**
+     * Splits the input into chunks of whole lines, which are parsed by the parser threads, and submitted in input order,
+     * or as soon as they are parsed, if submission needn't be ordered. Input which is a JSON array is fed by a single thread.
+     * When submission isn't ordered, the parser threads stop submitting operations as soon as parsing of any chunk fails.
+     */
+    private void feedLines(InputStream jsonStream, int size, Consumer<CompletableFuture<Result>> dispatched) throws IOException {
+        try (LineChunks chunks = new LineChunks(jsonStream, min(size, 1 << 20))) {
+            LineChunk chunk = chunks.next();
+            if (chunk == null) return;
+            if (chunk.startsWithArray()) {
+                feedStream(new SequenceInputStream(new ByteArrayInputStream(chunk.data, 0, chunk.length), chunks.remaining()), size, dispatched);
+                return;
+            }
+
+            AtomicInteger threadId = new AtomicInteger();
+            ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, r -> {
+                Thread t = new Thread(r, "json-feeder-parser-" + threadId.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            Deque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+            AtomicBoolean failed = new AtomicBoolean();
+            try {
+                for ( ; chunk != null; chunk = chunks.next()) {
+                    LineChunk parsing = chunk;
+                    pending.add(parsers.submit(() -> parse(parsing, orderedSubmission ? null : dispatched, failed)));
+                    // Bound the memory used for read-ahead, and hand over parsed operations in order.
+                    while (pending.size() > 2 * parserThreads || ! pending.isEmpty() && pending.peek().isDone())
+                        submit(pending.poll(), dispatched);
+                }
+                while ( ! pending.isEmpty())
+                    submit(pending.poll(), dispatched);
+            }
+            finally {
+                parsers.shutdownNow();
+            }
+        }
+    }
+
+    private static void submit(Future<ParsedChunk> parsed, Consumer<CompletableFuture<Result>> dispatched) throws IOException {
+        ParsedChunk chunk;
+        try {
+            chunk = parsed.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for parsing: " + e.getMessage());
+        }
+        catch (ExecutionException e) {
+            throw new FeedException(e.getCause());
+        }
+        for (Operation operation : chunk.operations)
+            dispatched.accept(operation.send());
+
+        if (chunk.failure instanceof IOException) throw (IOException) chunk.failure;
+        if (chunk.failure instanceof RuntimeException) throw (RuntimeException) chunk.failure;
+    }
+
+    /**
+     * Parses the given chunk, and either returns the parsed operations, or sends them to the given consumer, if non-null.
+     * Operations are no longer sent to the consumer once parsing of this or any other chunk has failed.
+     */
+    private ParsedChunk parse(LineChunk chunk, Consumer<CompletableFuture<Result>> dispatched, AtomicBoolean failed) {
+        List<Operation> operations = new ArrayList<>();
+        try {
+            ChunkOperationParserAndExecutor parser = new ChunkOperationParserAndExecutor(chunk);
+            for (Operation operation; (dispatched == null || ! failed.get()) && (operation = parser.parse()) != null; ) {
+                if (dispatched == null) operations.add(operation);
+                else dispatched.accept(operation.send());
+            }
+            return new ParsedChunk(operations, null);
+        }
+        catch (IOException | RuntimeException e) {
+            failed.set(true);
+            return new ParsedChunk(operations, e);
+        }
+    }
+
     private static void invokeCallback(ResultCallback callback, Consumer<ResultCallback> invocation) {
         try {
             invocation.accept(callback);
@@ -199,6 +306,12 @@ public class JsonFeeder implements Closeable {
             .streamReadConstraints(StreamReadConstraints.builder().maxStringLength(Integer.MAX_VALUE).build())
             .build();
 
+    /** Returns the number of operations parsed by this so far. */
+    public long parsedOperations() { return parsedOperations.get(); }
+
+    /** Returns the number of bytes of input consumed by parsed operations so far. */
+    public long parsedBytes() { return parsedBytes.get(); }
+
     @Override public void close() throws IOException {
         closed = true;
         awaitInflightOperations();
@@ -407,6 +520,7 @@ public class JsonFeeder implements Closeable {
         private final JsonParser parser;
         private final boolean multipleOperations;
         private boolean arrayPrefixParsed;
+        private long consumed = 0;
 
         protected OperationParserAndExecutor(JsonParser parser, boolean multipleOperations) {
             this.parser = parser;
@@ -422,13 +536,21 @@ public class JsonFeeder implements Closeable {
         }
 
         CompletableFuture<Result> next() throws IOException {
+            Operation operation = parse();
+            return operation == null ? null : operation.send();
+        }
+
+        /** Returns the next operation, or null if there are no more operations. */
+        Operation parse() throws IOException {
             JsonToken token = parser.nextToken();
             if (multipleOperations && ! arrayPrefixParsed && token == JsonToken.START_ARRAY) {
                 arrayPrefixParsed = true;
                 token = parser.nextToken();
             }
-            if (token == JsonToken.END_ARRAY && multipleOperations) return null;
-            else if (token == null && ! arrayPrefixParsed) return null;
+            if (token == JsonToken.END_ARRAY && multipleOperations || token == null && ! arrayPrefixParsed) {
+                countConsumed();
+                return null;
+            }
             else if (token != JsonToken.START_OBJECT) throw parseException("Unexpected token '" + parser.currentToken() + "'");
             long start = 0, end = -1;
             OperationType type = null;
@@ -478,12 +600,15 @@ public class JsonFeeder implements Closeable {
                 throw parseException("No 'fields' object for document");
 
             String payload = getDocumentJson(start, end);
-            switch (type) {
-                case PUT:    return client.put   (id, payload, parameters);
-                case UPDATE: return client.update(id, payload, parameters);
-                case REMOVE: return client.remove(id, parameters);
-                default: throw new OperationParseException("Unexpected operation type '" + type + "'");
-            }
+            countConsumed();
+            parsedOperations.incrementAndGet();
+            return new Operation(type, id, payload, parameters);
+        }
+
+        private void countConsumed() {
+            long offset = parser.currentLocation().getByteOffset();
+            parsedBytes.addAndGet(offset - consumed);
+            consumed = offset;
         }
 
         private void expect(JsonToken token) throws IOException {
@@ -517,10 +642,148 @@ public class JsonFeeder implements Closeable {
 
     }
 
+    private class ChunkOperationParserAndExecutor extends OperationParserAndExecutor {
+
+        private final LineChunk chunk;
+
+        ChunkOperationParserAndExecutor(LineChunk chunk) throws IOException {
+            super(factory.createParser(chunk.data, 0, chunk.length), true);
+            this.chunk = chunk;
+        }
+
+        @Override
+        OperationParseException parseException(String error) {
+            return new OperationParseException(error + " at offset " + (chunk.offset + super.parser.currentLocation().getByteOffset()));
+        }
+
+        @Override
+        String getDocumentJson(long start, long end) {
+            return "{\"fields\":" + new String(chunk.data, (int) start, (int) (end - start), UTF_8) + "}";
+        }
+    }
+
+    private class Operation {
+
+        private final OperationType type;
+        private final DocumentId id;
+        private final String payload;
+        private final OperationParameters parameters;
+
+        Operation(OperationType type, DocumentId id, String payload, OperationParameters parameters) {
+            this.type = type;
+            this.id = id;
+            this.payload = payload;
+            this.parameters = parameters;
+        }
+
+        CompletableFuture<Result> send() {
+            switch (type) {
+                case PUT:    return client.put   (id, payload, parameters);
+                case UPDATE: return client.update(id, payload, parameters);
+                case REMOVE: return client.remove(id, parameters);
+                default: throw new OperationParseException("Unexpected operation type '" + type + "'");
+            }
+        }
+
+    }
+
+    private static class ParsedChunk {
+
+        final List<Operation> operations;
+        final Exception failure;
+
+        ParsedChunk(List<Operation> operations, Exception failure) {
+            this.operations = operations;
+            this.failure = failure;
+        }
+
+    }
+
+    /** A range of whole lines of the input, starting at the given offset. */
+    private static class LineChunk {
+
+        final byte[] data;
+        final int length;
+        final long offset;
+
+        LineChunk(byte[] data, int length, long offset) {
+            this.data = data;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        boolean startsWithArray() {
+            for (int i = 0; i < length; i++)
+                if ( ! Character.isWhitespace(data[i]))
+                    return data[i] == '[';
+
+            return false;
+        }
+
+    }
+
+    /** Reads the input in chunks of at least the given size, ending at line breaks, unless at the end of the input. */
+    private static class LineChunks implements Closeable {
+
+        private final InputStream in;
+        private final int size;
+        private byte[] rest = new byte[0];
+        private long offset = 0;
+        private boolean done = false;
+
+        LineChunks(InputStream in, int size) {
+            this.in = in;
+            this.size = size;
+        }
+
+        /** Returns the next chunk, or null if the input is exhausted. */
+        LineChunk next() throws IOException {
+            byte[] data = Arrays.copyOf(rest, max(size, 2 * rest.length));
+            int length = rest.length;
+            while (true) {
+                for (int read; ! done && length < data.length; length += read)
+                    if ((read = in.read(data, length, data.length - length)) < 0) {
+                        done = true;
+                        read = 0;
+                    }
+
+                int end = length;
+                if ( ! done) {
+                    while (end > 0 && data[end - 1] != '\n') end--;
+                    if (end == 0) { // No line break yet, so we need a larger chunk.
+                        data = Arrays.copyOf(data, 2 * data.length);
+                        continue;
+                    }
+                }
+                if (end == 0) return null;
+
+                rest = Arrays.copyOfRange(data, end, length);
+                LineChunk chunk = new LineChunk(data, end, offset);
+                offset += end;
+                return chunk;
+            }
+        }
+
+        /** Returns the input not yet returned in chunks, including what is already read ahead from the underlying stream. */
+        InputStream remaining() {
+            InputStream remaining = new SequenceInputStream(new ByteArrayInputStream(rest), in);
+            rest = new byte[0];
+            return remaining;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
     public static class Builder {
 
         final FeedClient client;
         OperationParameters parameters = OperationParameters.empty();
+        int parserThreads = 1;
+        boolean orderedSubmission = true;
 
         private Builder(FeedClient client) {
             this.client = requireNonNull(client);
@@ -541,8 +804,28 @@ public class JsonFeeder implements Closeable {
             return this;
         }
 
+        /**
+         * Sets the number of threads to parse JSONL input with. With more than one thread, the input is split into
+         * chunks of whole lines, which are parsed concurrently; each operation must then be on a single line.
+         * Input which is a JSON array is always parsed by a single thread. Default is 1.
+         */
+        public Builder withParserThreads(int threads) {
+            if (threads < 1) throw new IllegalArgumentException("Number of parser threads must be at least 1, but was " + threads);
+            parserThreads = threads;
+            return this;
+        }
+
+        /**
+         * Whether operations parsed by multiple threads are submitted to the client in input order, or as soon as they
+         * are parsed; in the latter case, operations to the same document may be reordered. Default is true.
+         */
+        public Builder withOrderedSubmission(boolean ordered) {
+            orderedSubmission = ordered;
+            return this;
+        }
+
         public JsonFeeder build() {
-            return new JsonFeeder(client, parameters);
+            return new JsonFeeder(client, parameters, parserThreads, orderedSubmission);
         }
 
     }
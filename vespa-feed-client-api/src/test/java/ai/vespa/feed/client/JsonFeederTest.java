@@ -10,6 +10,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
@@ -166,26 +167,138 @@ class JsonFeederTest {
         }
     }
 
+    @Test
+    public void jsonLinesAreParsedInParallel() throws IOException, ExecutionException, InterruptedException {
+        int docs = 1 << 10;
+        String json = IntStream.range(0, docs).mapToObj(i -> i % 3 == 0 ? "{\"remove\": \"id:ns:type::abc" + i + "\"}\n"
+                                                                         : "{\"put\": \"id:ns:type::abc" + i + "\", \"fields\": { \"lul\": \"" + lulVal(i) + "\" }}\n")
+                               .collect(joining());
+        for (boolean ordered : List.of(true, false)) {
+            MockClient client = new MockClient();
+            try (JsonFeeder feeder = JsonFeeder.builder(client).withParserThreads(3).withOrderedSubmission(ordered).build()) {
+                AtomicInteger resultsReceived = new AtomicInteger();
+                feeder.feedMany(new ByteArrayInputStream(json.getBytes(UTF_8)),
+                                1 << 7, // Small chunks, some smaller than a line.
+                                new JsonFeeder.ResultCallback() {
+                                    @Override public void onNextResult(Result result, FeedException error) { resultsReceived.incrementAndGet(); }
+                                })
+                      .get();
+                assertEquals(docs, resultsReceived.get());
+                assertEquals(docs, feeder.parsedOperations());
+                assertEquals(json.length(), feeder.parsedBytes());
+                assertEquals(docs / 3 + 1, client.removeOperations.size());
+                assertEquals(docs - docs / 3 - 1, client.putOperations.size());
+                client.assertPutOperation("abc1000", "{\"fields\":{ \"lul\": \"" + lulVal(1000) + "\" }}");
+                if (ordered)
+                    assertEquals(IntStream.range(0, docs).mapToObj(i -> "id:ns:type::abc" + i).collect(Collectors.toList()),
+                                 client.operations.stream().map(DocumentId::toString).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void jsonArrayIsParsedBySingleThread() throws IOException, ExecutionException, InterruptedException {
+        MockClient client = new MockClient();
+        try (JsonFeeder feeder = JsonFeeder.builder(client).withParserThreads(4).build()) {
+            String json = "  [{\"put\": \"id:ns:type::abc1\",\n" +
+                          "    \"fields\": { \"lul\": \"lal\" }},\n" +
+                          "   {\"put\": \"id:ns:type::abc2\",\n" +
+                          "    \"fields\": { \"lul\": \"lal\" }}]\n";
+            feeder.feedMany(new ByteArrayInputStream(json.getBytes(UTF_8)), 16, new JsonFeeder.ResultCallback() { }).get();
+            client.assertPutDocumentIds("abc1", "abc2");
+            client.assertPutOperation("abc2", "{\"fields\":{ \"lul\": \"lal\" }}");
+        }
+    }
+
+    @Test
+    public void jsonArrayLargerThanAChunkIsParsedBySingleThread() throws IOException, ExecutionException, InterruptedException {
+        int docs = 200;
+        String json = IntStream.range(0, docs)
+                               .mapToObj(i -> "{\"put\":\"id:ns:type::abc" + i + "\",\n\"fields\":{\"lul\":\"lal\"}}")
+                               .collect(joining(",\n", "[\n", "\n]\n"));
+        MockClient client = new MockClient();
+        try (JsonFeeder feeder = JsonFeeder.builder(client).withParserThreads(4).build()) {
+            feeder.feedMany(new ByteArrayInputStream(json.getBytes(UTF_8)), 1 << 8, new JsonFeeder.ResultCallback() { }).get();
+            assertEquals(docs, client.putOperations.size());
+            client.assertPutOperation("abc" + (docs - 1), "{\"fields\":{\"lul\":\"lal\"}}");
+        }
+    }
+
+    @Test
+    public void parseErrorInJsonLinesStopsFeeding() throws IOException, InterruptedException {
+        MockClient client = new MockClient();
+        try (JsonFeeder feeder = JsonFeeder.builder(client).withParserThreads(2).build()) {
+            String json = "{\"remove\": \"id:ns:type::abc1\"}\n" +
+                          "{\"remove\": \"id:ns:type::abc2\"}\n" +
+                          "{\"remove\": \"id:ns:type::abc3\", \"foo\": 0}\n" +
+                          "{\"remove\": \"id:ns:type::abc4\"}\n";
+            AtomicReference<FeedException> error = new AtomicReference<>();
+            ExecutionException thrown = assertThrows(ExecutionException.class,
+                                                     () -> feeder.feedMany(new ByteArrayInputStream(json.getBytes(UTF_8)), 40,
+                                                                           new JsonFeeder.ResultCallback() {
+                                                                               @Override public void onError(FeedException e) { error.set(e); }
+                                                                           })
+                                                                 .get());
+            assertEquals(error.get(), thrown.getCause());
+            assertEquals("Unexpected field name 'foo' at offset 101", error.get().getMessage());
+            client.assertRemoveDocumentIds("abc1", "abc2");
+        }
+    }
+
+    @Test
+    public void parseErrorInJsonLinesStopsUnorderedFeedingOnAllThreads() throws IOException {
+        int lineLength = "{\"remove\": \"id:ns:type::abc0000\"}\n".length();
+        String json = IntStream.range(0, 256).mapToObj(i -> i == 64 ? "{\"remove\": \"id:ns:type::abc0064\", \"foo\": 0}\n"
+                                                                   : String.format("{\"remove\": \"id:ns:type::abc%04d\"}\n", i))
+                               .collect(joining());
+        MockClient client = new MockClient() {
+            @Override
+            public CompletableFuture<Result> remove(DocumentId documentId, OperationParameters params) {
+                try {
+                    if (documentId.toString().endsWith("abc0000")) Thread.sleep(500); // Let the second chunk fail meanwhile
+                }
+                catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                return super.remove(documentId, params);
+            }
+        };
+        try (JsonFeeder feeder = JsonFeeder.builder(client).withParserThreads(2).withOrderedSubmission(false).build()) {
+            ExecutionException thrown = assertThrows(ExecutionException.class,
+                                                     () -> feeder.feedMany(new ByteArrayInputStream(json.getBytes(UTF_8)),
+                                                                           64 * lineLength, // Chunks of 64 lines
+                                                                           new JsonFeeder.ResultCallback() { })
+                                                                 .get());
+            assertEquals("Unexpected field name 'foo' at offset " + (64 * lineLength + 42), thrown.getCause().getMessage());
+            // The first chunk may or may not have sent its first operation before the second chunk failed, but no more.
+            assertTrue(client.removeOperations.size() <= 1, client.removeOperations.keySet().toString());
+        }
+    }
+
     private static class MockClient implements FeedClient {
         final Map<DocumentId, String> putOperations = new LinkedHashMap<>();
         final Map<DocumentId, String> updateOperations = new LinkedHashMap<>();
         final Map<DocumentId, String> removeOperations = new LinkedHashMap<>();
+        final List<DocumentId> operations = new ArrayList<>();
 
         @Override
-        public CompletableFuture<Result> put(DocumentId documentId, String documentJson, OperationParameters params) {
+        public synchronized CompletableFuture<Result> put(DocumentId documentId, String documentJson, OperationParameters params) {
             putOperations.put(documentId, documentJson);
+            operations.add(documentId);
             return createSuccessResult(documentId);
         }
 
         @Override
-        public CompletableFuture<Result> update(DocumentId documentId, String updateJson, OperationParameters params) {
+        public synchronized CompletableFuture<Result> update(DocumentId documentId, String updateJson, OperationParameters params) {
             updateOperations.put(documentId, updateJson);
+            operations.add(documentId);
             return createSuccessResult(documentId);
         }
 
         @Override
-        public CompletableFuture<Result> remove(DocumentId documentId, OperationParameters params) {
+        public synchronized CompletableFuture<Result> remove(DocumentId documentId, OperationParameters params) {
             removeOperations.put(documentId, null);
+            operations.add(documentId);
             return createSuccessResult(documentId);
         }
 
@@ -62,6 +62,8 @@ class CliArguments {
     private static final String PROXY_OPTION = "proxy";
     private static final String COMPRESSION = "compression";
     private static final String LOG_CONFIG_OPTION = "log-config";
+    private static final String PARSER_THREADS_OPTION = "parser-threads";
+    private static final String UNORDERED_OPTION = "unordered";
 
     private final CommandLine arguments;
 
@@ -196,6 +198,10 @@ class CliArguments {
 
     OptionalInt testPayloadSize() throws CliArgumentsException { return intValue(TEST_PAYLOAD_SIZE_OPTION); }
 
+    OptionalInt parserThreads() throws CliArgumentsException { return intValue(PARSER_THREADS_OPTION); }
+
+    boolean unorderedSubmission() { return has(UNORDERED_OPTION); }
+
     Optional<URI> proxy() throws CliArgumentsException {
         try {
             URL url = (URL) arguments.getParsedOptionValue(PROXY_OPTION);
@@ -384,6 +390,16 @@ class CliArguments {
                                       "VESPA_HOME/conf/vespa-feed-client/logging.properties")
                         .hasArg()
                         .type(File.class)
+                        .build())
+                .addOption(Option.builder()
+                        .longOpt(PARSER_THREADS_OPTION)
+                        .desc("Number of threads parsing JSONL input; with more than one, each operation must be on a single line. Default is 1")
+                        .hasArg()
+                        .type(Number.class)
+                        .build())
+                .addOption(Option.builder()
+                        .longOpt(UNORDERED_OPTION)
+                        .desc("With --parser-threads, submit operations as soon as they are parsed, rather than in input order")
                         .build());
     }
 
@@ -102,7 +102,7 @@ public class CliClient {
                         try {
                             while (!latch.await(10, TimeUnit.SECONDS)) {
                                 synchronized (printMonitor) {
-                                    printBenchmarkResult(System.nanoTime() - startNanos, successes.get(), failures.get(), feedClient.stats(), systemError);
+                                    printBenchmarkResult(System.nanoTime() - startNanos, successes.get(), failures.get(), feeder, feedClient.stats(), systemError);
                                 }
                             }
                         }
@@ -127,7 +127,7 @@ public class CliClient {
                 });
                 latch.await();
 
-                printBenchmarkResult(System.nanoTime() - startNanos, successes.get(), failures.get(), feedClient.stats(), cliArgs.benchmarkModeEnabled() ? systemOut : systemError);
+                printBenchmarkResult(System.nanoTime() - startNanos, successes.get(), failures.get(), feeder, feedClient.stats(), cliArgs.benchmarkModeEnabled() ? systemOut : systemError);
                 if (fatal.get() != null) throw fatal.get();
             }
             return 0;
@@ -184,6 +184,8 @@ public class CliClient {
         cliArgs.timeout().ifPresent(builder::withTimeout);
         cliArgs.route().ifPresent(builder::withRoute);
         cliArgs.traceLevel().ifPresent(builder::withTracelevel);
+        cliArgs.parserThreads().ifPresent(builder::withParserThreads);
+        builder.withOrderedSubmission( ! cliArgs.unorderedSubmission());
         return builder.build();
     }
 
@@ -212,7 +214,7 @@ public class CliClient {
 
     }
 
-    static void printBenchmarkResult(long durationNanos, long successes, long failures,
+    static void printBenchmarkResult(long durationNanos, long successes, long failures, JsonFeeder feeder,
                                      OperationStats stats, OutputStream systemOut) throws IOException {
         try (JsonGenerator generator = factory.createGenerator(systemOut).useDefaultPrettyPrinter()) {
             generator.writeStartObject();
@@ -222,6 +224,9 @@ public class CliClient {
             writeFloatField(generator, "feeder.ok.rate", successes * 1e9 / Math.max(1, durationNanos), 3);
             generator.writeNumberField("feeder.error.count", failures);
             generator.writeNumberField("feeder.inflight.count", stats.inflight());
+            generator.writeNumberField("feeder.parse.count", feeder.parsedOperations());
+            generator.writeNumberField("feeder.parse.bytes", feeder.parsedBytes());
+            writeFloatField(generator, "feeder.parse.MBps", feeder.parsedBytes() * 1e3 / Math.max(1, durationNanos), 3);
 
             generator.writeNumberField("http.request.count", stats.requests());
             generator.writeNumberField("http.request.bytes", stats.bytesSent());
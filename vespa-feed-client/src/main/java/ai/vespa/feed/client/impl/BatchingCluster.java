@@ -0,0 +1,160 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.feed.client.impl;
+
+import ai.vespa.feed.client.FeedException;
+import ai.vespa.feed.client.HttpResponse;
+import ai.vespa.feed.client.OperationStats;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Sends operations in batches to the {@code /document/v1/batch} endpoint, as JSON lines, and completes the
+ * vessel of each operation with its own result, as a JSON line with its index and status, from the batch response.
+ *
+ * Operations are held back until a batch is full, or until {@link #flush()} is called, which should be done whenever
+ * no more operations are ready for dispatch. Operations which can not be batched are dispatched as they are, and so are
+ * batches of a single operation. If the batch request fails, or has a non-OK status, all its operations get that result,
+ * and are retried individually, as appropriate. Dispatch and flush must be done by a single thread.
+ */
+class BatchingCluster implements Cluster {
+
+    private final Cluster delegate;
+    private final int maxBatchSize;
+    private final List<Operation> batch = new ArrayList<>();
+
+    BatchingCluster(Cluster delegate, int maxBatchSize) {
+        this.delegate = requireNonNull(delegate);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void dispatch(HttpRequest request, CompletableFuture<HttpResponse> vessel) {
+        if (request.batchLine() == null) {
+            delegate.dispatch(request, vessel);
+            return;
+        }
+        if ( ! batch.isEmpty() && ! batch.get(0).request.batchQuery().equals(request.batchQuery()))
+            flush();
+
+        batch.add(new Operation(request, vessel));
+        if (batch.size() >= maxBatchSize)
+            flush();
+    }
+
+    /** Dispatches the operations held back, if any. */
+    void flush() {
+        if (batch.isEmpty()) return;
+        List<Operation> operations = List.copyOf(batch);
+        batch.clear();
+        if (operations.size() == 1) {
+            delegate.dispatch(operations.get(0).request, operations.get(0).vessel);
+            return;
+        }
+
+        CompletableFuture<HttpResponse> vessel = new CompletableFuture<>();
+        try {
+            delegate.dispatch(HttpRequest.batch(operations.stream().map(operation -> operation.request).collect(toList())), vessel);
+        }
+        catch (Throwable t) {
+            vessel.completeExceptionally(t);
+        }
+        vessel.whenComplete((response, thrown) -> complete(operations, response, thrown));
+    }
+
+    static void complete(List<Operation> operations, HttpResponse response, Throwable thrown) {
+        if (thrown != null) {
+            for (Operation operation : operations)
+                operation.vessel.completeExceptionally(thrown);
+            return;
+        }
+        if (response.code() != 200) {
+            for (Operation operation : operations)
+                operation.vessel.complete(response);
+            return;
+        }
+        try {
+            byte[] body = response.body() == null ? new byte[0] : response.body();
+            for (int start = 0, end; start < body.length; start = end + 1) {
+                end = start;
+                while (end < body.length && body[end] != '\n') end++;
+                byte[] line = Arrays.copyOfRange(body, start, end);
+                if ( ! new String(line, UTF_8).isBlank())
+                    complete(operations, line);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            for (Operation operation : operations)
+                operation.vessel.completeExceptionally(e);
+        }
+        // The server should return a result for every operation, but may fail to do so, e.g., if it shuts down.
+        for (Operation operation : operations)
+            operation.vessel.completeExceptionally(new IOException("No result for operation in batch response"));
+    }
+
+    private static void complete(List<Operation> operations, byte[] line) throws IOException {
+        int index = -1, status = -1;
+        try (JsonParser parser = HttpFeedClient.jsonParserFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new FeedException("Expected '" + JsonToken.START_OBJECT + "', but found '" + parser.currentToken() +
+                                        "' in: " + new String(line, UTF_8));
+
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                switch (name) {
+                    case "index":
+                        index = parser.nextIntValue(-1);
+                        break;
+                    case "status":
+                        status = parser.nextIntValue(-1);
+                        break;
+                    default:
+                        parser.nextToken();
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        if (index < 0 || index >= operations.size() || status < 0)
+            throw new FeedException("Missing or invalid operation index or status in: " + new String(line, UTF_8));
+
+        operations.get(index).vessel.complete(HttpResponse.of(status, line));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public OperationStats stats() {
+        return delegate.stats();
+    }
+
+    @Override
+    public void resetStats() {
+        delegate.resetStats();
+    }
+
+    private static class Operation {
+
+        final HttpRequest request;
+        final CompletableFuture<HttpResponse> vessel;
+
+        Operation(HttpRequest request, CompletableFuture<HttpResponse> vessel) {
+            this.request = request;
+            this.vessel = vessel;
+        }
+
+    }
+
+}
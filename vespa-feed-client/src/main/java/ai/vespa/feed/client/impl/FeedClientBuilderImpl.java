@@ -56,6 +56,7 @@ public class FeedClientBuilderImpl implements FeedClientBuilder {
     boolean dryrun = false;
     boolean speedTest = false;
     Compression compression = auto;
+    int maxBatchSize = 1;
     URI proxy;
     Duration connectionTtl = Duration.ZERO;
     LongSupplier nanoClock = System::nanoTime;
@@ -252,6 +253,13 @@ public class FeedClientBuilderImpl implements FeedClientBuilder {
         return this;
     }
 
+    @Override
+    public FeedClientBuilderImpl setMaxBatchSize(int max) {
+        if (max < 1) throw new IllegalArgumentException("Max batch size must be at least 1, but was " + max);
+        this.maxBatchSize = max;
+        return this;
+    }
+
     FeedClientBuilderImpl setNanoClock(LongSupplier nanoClock) {
         this.nanoClock = requireNonNull(nanoClock);
         return this;
@@ -15,7 +15,9 @@ import com.fasterxml.jackson.core.JsonFactoryBuilder;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
@@ -47,7 +49,7 @@ import static java.util.Objects.requireNonNull;
 class HttpFeedClient implements FeedClient {
 
     private static final Duration maxTimeout = Duration.ofMinutes(15);
-    private static final JsonFactory jsonParserFactory = new JsonFactoryBuilder()
+    static final JsonFactory jsonParserFactory = new JsonFactoryBuilder()
             .streamReadConstraints(StreamReadConstraints.builder().maxStringLength(Integer.MAX_VALUE).build())
             .build();
 
@@ -55,6 +57,7 @@ class HttpFeedClient implements FeedClient {
     private final RequestStrategy requestStrategy;
     private final AtomicBoolean closed = new AtomicBoolean();
     private final boolean speedTest;
+    private final boolean batching;
     private final LongSupplier nanoClock;
 
     HttpFeedClient(FeedClientBuilderImpl builder) throws IOException {
@@ -70,6 +73,7 @@ class HttpFeedClient implements FeedClient {
         this.requestHeaders = new HashMap<>(builder.requestHeaders);
         this.requestStrategy = requestStrategy;
         this.speedTest = builder.speedTest;
+        this.batching = builder.maxBatchSize > 1;
         this.nanoClock = builder.nanoClock;
         verifyConnection(builder, clusterFactory);
     }
@@ -117,13 +121,16 @@ class HttpFeedClient implements FeedClient {
         if (closed.get())
             throw new IllegalStateException("Client is closed");
 
+        byte[] body = operationJson == null ? null : operationJson.getBytes(UTF_8); // TODO: make it bytes all the way?
         HttpRequest request = new HttpRequest(method,
                                               getPath(documentId),
                                               getQuery(params, speedTest),
                                               requestHeaders,
-                                              operationJson == null ? null : operationJson.getBytes(UTF_8), // TODO: make it bytes all the way?
+                                              body,
                                               params.timeout().orElse(maxTimeout),
-                                              nanoClock);
+                                              nanoClock,
+                                              batching ? getBatchLine(method, documentId, body, params) : null,
+                                              batching ? getBatchQuery(params, speedTest) : null);
 
         CompletableFuture<Result> promise = new CompletableFuture<>();
         requestStrategy.enqueue(documentId, request)
@@ -327,6 +334,53 @@ class HttpFeedClient implements FeedClient {
         return query.toString();
     }
 
+    /**
+     * Returns the given operation as a JSON line in the feed format, with its condition and create flag, or null
+     * if the operation body is not a JSON object. As JSON strings may not contain raw line breaks, any line breaks
+     * in the body are whitespace, and are replaced by spaces.
+     */
+    static byte[] getBatchLine(String method, DocumentId documentId, byte[] body, OperationParameters params) {
+        int start = 0;
+        if (body != null) {
+            while (start < body.length && Character.isWhitespace(body[start])) start++;
+            if (start == body.length || body[start++] != '{') return null;
+        }
+
+        StringBuilder head = new StringBuilder("{");
+        switch (method) {
+            case "POST": head.append("\"put\":\""); break;
+            case "PUT": head.append("\"update\":\""); break;
+            case "DELETE": head.append("\"remove\":\""); break;
+            default: throw new IllegalArgumentException("Unexpected HTTP method: " + method);
+        }
+        head.append(JsonStringEncoder.getInstance().quoteAsString(documentId.toString())).append('"');
+        params.testAndSetCondition().ifPresent(condition -> head.append(",\"condition\":\"")
+                                                                .append(JsonStringEncoder.getInstance().quoteAsString(condition))
+                                                                .append('"'));
+        if (params.createIfNonExistent()) head.append(",\"create\":true");
+        if (body == null) head.append('}');
+        else {
+            int next = start;
+            while (next < body.length && Character.isWhitespace(body[next])) next++;
+            if (next < body.length && body[next] != '}') head.append(',');
+        }
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream(head.length() + (body == null ? 0 : body.length));
+        line.writeBytes(head.toString().getBytes(UTF_8));
+        for (int i = start; body != null && i < body.length; i++)
+            line.write(body[i] == '\n' || body[i] == '\r' ? ' ' : body[i]);
+        return line.toByteArray();
+    }
+
+    /** Returns the query for batch requests the operation with the given parameters may be sent in. */
+    static String getBatchQuery(OperationParameters params, boolean speedTest) {
+        StringJoiner query = new StringJoiner("&", "?", "").setEmptyValue("");
+        params.route().ifPresent(route -> query.add("route=" + encode(route)));
+        params.tracelevel().ifPresent(tracelevel -> query.add("tracelevel=" + tracelevel));
+        if (speedTest) query.add("dryRun=true");
+        return query.toString();
+    }
+
     /** Factory for creating a new {@link Cluster} to dispatch operations to. Used for resetting the active cluster. */
     interface ClusterFactory {
 
@@ -1,7 +1,9 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package ai.vespa.feed.client.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
@@ -19,8 +21,19 @@ class HttpRequest {
     private final long deadlineNanos;
     private final LongSupplier nanoClock;
     private final AtomicLong firstDispatchNanos = new AtomicLong(-1);
+    private final byte[] batchLine;
+    private final String batchQuery;
 
     public HttpRequest(String method, String path, String query, Map<String, Supplier<String>> headers, byte[] body, Duration timeout, LongSupplier nanoClock) {
+        this(method, path, query, headers, body, timeout, nanoClock, null, null);
+    }
+
+    /**
+     * Creates a request for an operation which may also be sent as the given JSON line, in a batch request
+     * with the given query, together with other operations for the same batch query.
+     */
+    HttpRequest(String method, String path, String query, Map<String, Supplier<String>> headers, byte[] body, Duration timeout, LongSupplier nanoClock,
+                byte[] batchLine, String batchQuery) {
         this.method = method;
         this.path = path;
         this.query = query;
@@ -29,6 +42,24 @@ class HttpRequest {
         this.deadlineNanos = nanoClock.getAsLong() + timeout.toNanos();
         this.timeout = timeout;
         this.nanoClock = nanoClock;
+        this.batchLine = batchLine;
+        this.batchQuery = batchQuery;
+    }
+
+    /** Returns a request which sends the given operations as a batch, which requires they all have the same batch query. */
+    static HttpRequest batch(List<HttpRequest> operations) {
+        HttpRequest first = operations.get(0);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Duration timeout = Duration.ZERO;
+        for (HttpRequest operation : operations) {
+            if ( ! first.batchQuery.equals(operation.batchQuery))
+                throw new IllegalArgumentException("All operations in a batch must have the same batch query");
+
+            body.writeBytes(operation.batchLine);
+            body.write('\n');
+            if (operation.timeLeft().compareTo(timeout) > 0) timeout = operation.timeLeft();
+        }
+        return new HttpRequest("POST", "/document/v1/batch", first.batchQuery, first.headers, body.toByteArray(), timeout, first.nanoClock);
     }
 
     public String method() {
@@ -55,6 +86,16 @@ class HttpRequest {
         return timeout;
     }
 
+    /** Returns this operation as a JSON line for a batch request, or null if it can not be sent in a batch. */
+    byte[] batchLine() {
+        return batchLine;
+    }
+
+    /** Returns the query of the batch requests this may be sent in, or null if it can not be sent in a batch. */
+    String batchQuery() {
+        return batchQuery;
+    }
+
     void onDispatch(long timeNs) { firstDispatchNanos.compareAndSet(-1, timeNs); }
 
     Optional<Long> firstDispatchNanos() { return Optional.of(firstDispatchNanos.get()).filter(ns -> ns >= 0); }
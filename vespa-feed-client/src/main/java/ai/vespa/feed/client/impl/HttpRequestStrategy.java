@@ -57,6 +57,9 @@ import static java.util.logging.Level.WARNING;
  * This is done through {@link #destroy()}, which when called also ensures all enqueued operations are
  * promptly completed, in addition to releasing any resources (threads, and in the provided cluster}.
  *
+ * If a max batch size larger than 1 is set, operations are dispatched through a {@link BatchingCluster}, which sends
+ * those dispatched together in batch requests; each operation is still throttled, retried and completed individually.
+ *
  * @author jonmv
  */
 class HttpRequestStrategy implements RequestStrategy {
@@ -80,11 +83,14 @@ class HttpRequestStrategy implements RequestStrategy {
     // TODO jonmv: remove if this has no effect
     private final ResettableCluster resettableCluster;
     private final AtomicBoolean reset = new AtomicBoolean(false);
+    private final BatchingCluster batchingCluster; // Non-null if operations may be sent in batches.
 
     HttpRequestStrategy(FeedClientBuilderImpl builder, ClusterFactory clusterFactory) throws IOException {
         this.throttler = new DynamicThrottler(builder);
         this.resettableCluster = new ResettableCluster(clusterFactory);
-        this.cluster = builder.benchmark ? new BenchmarkingCluster(resettableCluster, throttler, System::nanoTime) : resettableCluster;
+        this.batchingCluster = builder.maxBatchSize > 1 && ! builder.dryrun ? new BatchingCluster(resettableCluster, builder.maxBatchSize) : null;
+        Cluster dispatchCluster = batchingCluster != null ? batchingCluster : resettableCluster;
+        this.cluster = builder.benchmark ? new BenchmarkingCluster(dispatchCluster, throttler, System::nanoTime) : dispatchCluster;
         this.strategy = builder.retryStrategy;
         this.breaker = builder.circuitBreaker;
 
@@ -109,6 +115,8 @@ class HttpRequestStrategy implements RequestStrategy {
         try {
             while (breaker.state() != OPEN && ! destroyed.get()) {
                 while ( ! isInExcess() && poll() && breaker.state() == CLOSED);
+                if (batchingCluster != null)
+                    batchingCluster.flush();
 
                 if (breaker.state() == HALF_OPEN && reset.compareAndSet(false, true))
                     resettableCluster.reset();
@@ -0,0 +1,86 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.feed.client.impl;
+
+import ai.vespa.feed.client.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingClusterTest {
+
+    final List<HttpRequest> requests = new ArrayList<>();
+    final List<CompletableFuture<HttpResponse>> vessels = new ArrayList<>();
+    final BatchingCluster cluster = new BatchingCluster((request, vessel) -> { requests.add(request); vessels.add(vessel); }, 3);
+
+    @Test
+    void testBatching() throws ExecutionException, InterruptedException {
+        List<CompletableFuture<HttpResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            results.add(dispatch(operation(i, "?route=default")));
+
+        // A full batch is dispatched immediately, while the rest wait for flush.
+        assertEquals(1, requests.size());
+        assertEquals("POST", requests.get(0).method());
+        assertEquals("/document/v1/batch?route=default&timeout=180000ms", requests.get(0).pathAndQuery());
+        assertEquals("""
+                     {"remove":"id:ns:type::0"}
+                     {"remove":"id:ns:type::1"}
+                     {"remove":"id:ns:type::2"}
+                     """,
+                     new String(requests.get(0).body(), UTF_8));
+
+        // Results are distributed to their operations by index.
+        vessels.get(0).complete(HttpResponse.of(200, """
+                                                     {"index":2,"status":200,"id":"id:ns:type::2"}
+                                                     {"index":0,"status":412,"id":"id:ns:type::0","message":"no dice"}
+                                                     """.getBytes(UTF_8)));
+        assertEquals(412, results.get(0).get().code());
+        assertEquals("{\"index\":0,\"status\":412,\"id\":\"id:ns:type::0\",\"message\":\"no dice\"}", new String(results.get(0).get().body(), UTF_8));
+        assertEquals(200, results.get(2).get().code());
+        // An operation without a result fails with an exception which is retried.
+        assertInstanceOf(IOException.class, assertThrows(ExecutionException.class, () -> results.get(1).get()).getCause());
+
+        // An operation for a different batch query causes a flush of the current batch.
+        results.add(dispatch(operation(5, "")));
+        assertEquals(2, requests.size());
+        assertEquals("/document/v1/batch?route=default&timeout=180000ms", requests.get(1).pathAndQuery());
+        vessels.get(1).complete(HttpResponse.of(429, null));
+        assertEquals(429, results.get(3).get().code());
+        assertEquals(429, results.get(4).get().code());
+
+        // A single operation is dispatched as it is, on flush.
+        assertFalse(results.get(5).isDone());
+        cluster.flush();
+        assertEquals(3, requests.size());
+        assertEquals("DELETE", requests.get(2).method());
+        assertTrue(vessels.get(2) == results.get(5));
+
+        // Operations which may not be batched are dispatched immediately.
+        dispatch(new HttpRequest("POST", "/document/v1/ns/type/docid/6", "", null, null, Duration.ofSeconds(180), () -> 0));
+        assertEquals(4, requests.size());
+    }
+
+    CompletableFuture<HttpResponse> dispatch(HttpRequest request) {
+        CompletableFuture<HttpResponse> vessel = new CompletableFuture<>();
+        cluster.dispatch(request, vessel);
+        return vessel;
+    }
+
+    static HttpRequest operation(int i, String batchQuery) {
+        return new HttpRequest("DELETE", "/document/v1/ns/type/docid/" + i, batchQuery, null, null, Duration.ofSeconds(180), () -> 0,
+                               ("{\"remove\":\"id:ns:type::" + i + "\"}").getBytes(UTF_8), batchQuery);
+    }
+
+}
@@ -214,6 +214,22 @@ class HttpFeedClientTest {
         assertEquals("(id:ns:type::0) Status 500 executing 'POST /document/v1/ns/type/docid/0': Alla ska i jorden.", expected.getCause().getMessage());
     }
 
+    @Test
+    void testBatchLines() {
+        DocumentId id = DocumentId.of("ns", "type", "0");
+        assertEquals("{\"put\":\"id:ns:type::0\",\"condition\":\"a == \\\"b\\\"\",\"create\":true,  \"fields\": { \"a\": \"b\" }  }",
+                     new String(HttpFeedClient.getBatchLine("POST", id, "{\n \"fields\": { \"a\": \"b\" }\r\n}".getBytes(UTF_8),
+                                                            OperationParameters.empty().createIfNonExistent(true).testAndSetCondition("a == \"b\"")),
+                                UTF_8));
+        assertEquals("{\"update\":\"id:ns:type::0\" }",
+                     new String(HttpFeedClient.getBatchLine("PUT", id, " { }".getBytes(UTF_8), OperationParameters.empty()), UTF_8));
+        assertEquals("{\"remove\":\"id:ns:type::0\"}",
+                     new String(HttpFeedClient.getBatchLine("DELETE", id, null, OperationParameters.empty()), UTF_8));
+        assertNull(HttpFeedClient.getBatchLine("POST", id, "json".getBytes(UTF_8), OperationParameters.empty()));
+        assertEquals("?route=default&tracelevel=3&dryRun=true",
+                     HttpFeedClient.getBatchQuery(OperationParameters.empty().route("default").tracelevel(3).createIfNonExistent(true), true));
+    }
+
     @Test
     void testHandshake() throws IOException {
         // dummy:123 does not exist, and results in a host-not-found exception.
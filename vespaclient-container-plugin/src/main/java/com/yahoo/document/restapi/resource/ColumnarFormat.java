@@ -0,0 +1,265 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.restapi.resource;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.document.datatypes.BoolFieldValue;
+import com.yahoo.document.datatypes.ByteFieldValue;
+import com.yahoo.document.datatypes.DoubleFieldValue;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.FloatFieldValue;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.LongFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.TensorFieldValue;
+import com.yahoo.document.fieldset.AllFields;
+import com.yahoo.document.fieldset.DocumentOnly;
+import com.yahoo.document.fieldset.FieldCollection;
+import com.yahoo.document.fieldset.FieldSet;
+import com.yahoo.document.json.JsonWriter;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.JsonFormat;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The columnar format for documents visited through /document/v1, which is used instead of JSON when a visit
+ * specifies {@code format=columnar}. Documents are written in row groups of up to {@link #ROW_GROUP_SIZE} documents
+ * of a single document type, with the values of each field stored together as a column. The columns of a row group
+ * are the fields of its document type which are included in the field set of the visit, in document type order.
+ * All numbers are big-endian, and all strings are an int32 byte length followed by that many bytes of UTF-8.
+ * <pre>
+ * stream    := magic:int32 ("VCOL") version:int32 frame* trailer
+ * frame     := 'R':byte length:int32 rowGroup
+ * trailer   := 'T':byte length:int32 json      (the JSON object a JSON visit response would have, without "documents")
+ * rowGroup  := documentType:string rows:int32 columns:int32 id:string{rows} removed:bitmap column{columns}
+ * column    := name:string type:byte [tensorType:string, if type is TENSOR] present:bitmap values
+ * bitmap    := ceil(rows / 8) bytes, where row i is the bit (1 &lt;&lt; (i % 8)) of byte i / 8
+ * values    := one value per row present in the column, in row order, as given by the column type:
+ *   INT    (1): int32           LONG   (2): int64          FLOAT  (3): float32       DOUBLE (4): float64
+ *   BOOL   (5): byte, 0 or 1    BYTE   (6): byte
+ *   STRING (7): dictionarySize:int32 string{dictionarySize}, then, for each value, its dictionary index:int32
+ *   TENSOR (8): length:int32, then that many bytes of the tensor in the typed binary tensor format
+ *   JSON   (9): string, the JSON the field value has in the JSON document format; used for all other field types
+ * </pre>
+ * Removed documents, returned when visiting with {@code includeRemoves=true}, have only their id and removed bit set.
+ *
+ * @see com.yahoo.tensor.serialization.TypedBinaryFormat
+ */
+class ColumnarFormat {
+
+    static final String CONTENT_TYPE = "application/x-vespa-columnar";
+    static final int MAGIC = 0x56434f4c; // "VCOL"
+    static final int VERSION = 1;
+    static final int ROW_GROUP_SIZE = 1024;
+
+    static final byte ROW_GROUP = 'R';
+    static final byte TRAILER = 'T';
+
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte FLOAT = 3;
+    static final byte DOUBLE = 4;
+    static final byte BOOL = 5;
+    static final byte BYTE = 6;
+    static final byte STRING = 7;
+    static final byte TENSOR = 8;
+    static final byte JSON = 9;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private ColumnarFormat() { }
+
+    /** Returns the magic number and version which start a stream in this format. */
+    static byte[] header() {
+        return ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).array();
+    }
+
+    /** Returns a frame of the given kind, with the given payload. */
+    static byte[] frame(byte kind, byte[] payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 5);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(kind);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the fields of the given document type which are columns when visiting with the given field set. */
+    static List<Field> columns(DocumentType type, FieldSet fieldSet) {
+        if (fieldSet instanceof AllFields || fieldSet instanceof DocumentOnly)
+            return List.copyOf(type.fieldSet());
+
+        if (fieldSet instanceof FieldCollection collection && collection.getDocumentType().getName().equals(type.getName()))
+            return List.copyOf(collection);
+
+        return List.of();
+    }
+
+    static byte typeOf(DataType type) {
+        if (type == DataType.INT) return INT;
+        if (type == DataType.LONG) return LONG;
+        if (type == DataType.FLOAT) return FLOAT;
+        if (type == DataType.DOUBLE) return DOUBLE;
+        if (type == DataType.BOOL) return BOOL;
+        if (type == DataType.BYTE) return BYTE;
+        if (type == DataType.STRING) return STRING;
+        if (type instanceof TensorDataType) return TENSOR;
+        return JSON;
+    }
+
+    /** Documents of a single document type, which are written as one row group. */
+    static class RowGroup {
+
+        private final String documentType;
+        private final List<Field> columns;
+        private final JsonFormat.EncodeOptions tensorOptions;
+        private final List<DocumentId> ids = new ArrayList<>();
+        private final List<Document> documents = new ArrayList<>();
+
+        RowGroup(String documentType, List<Field> columns, JsonFormat.EncodeOptions tensorOptions) {
+            this.documentType = documentType;
+            this.columns = columns;
+            this.tensorOptions = tensorOptions;
+        }
+
+        String documentType() { return documentType; }
+
+        int size() { return ids.size(); }
+
+        void add(Document document) {
+            ids.add(document.getId());
+            documents.add(document);
+        }
+
+        void addRemoval(DocumentId id) {
+            ids.add(id);
+            documents.add(null);
+        }
+
+        /** Returns this as a row group frame. */
+        byte[] toFrame() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeString(out, documentType);
+                out.writeInt(ids.size());
+                out.writeInt(columns.size());
+                for (DocumentId id : ids)
+                    writeString(out, id.toString());
+
+                byte[] removed = new byte[(ids.size() + 7) / 8];
+                for (int row = 0; row < documents.size(); row++)
+                    if (documents.get(row) == null)
+                        removed[row / 8] |= (byte) (1 << (row % 8));
+                out.write(removed);
+
+                for (Field column : columns)
+                    writeColumn(out, column);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return frame(ROW_GROUP, bytes.toByteArray());
+        }
+
+        private void writeColumn(DataOutputStream out, Field column) throws IOException {
+            byte type = typeOf(column.getDataType());
+            writeString(out, column.getName());
+            out.writeByte(type);
+            if (type == TENSOR)
+                writeString(out, ((TensorDataType) column.getDataType()).getTensorType().toString());
+
+            List<FieldValue> values = new ArrayList<>();
+            byte[] present = new byte[(documents.size() + 7) / 8];
+            for (int row = 0; row < documents.size(); row++) {
+                FieldValue value = documents.get(row) == null ? null : documents.get(row).getFieldValue(column);
+                if (value instanceof TensorFieldValue tensor && tensor.getTensor().isEmpty())
+                    value = null;
+                if (value == null) continue;
+
+                present[row / 8] |= (byte) (1 << (row % 8));
+                values.add(value);
+            }
+            out.write(present);
+
+            switch (type) {
+                case INT -> { for (FieldValue value : values) out.writeInt(((IntegerFieldValue) value).getInteger()); }
+                case LONG -> { for (FieldValue value : values) out.writeLong(((LongFieldValue) value).getLong()); }
+                case FLOAT -> { for (FieldValue value : values) out.writeFloat(((FloatFieldValue) value).getFloat()); }
+                case DOUBLE -> { for (FieldValue value : values) out.writeDouble(((DoubleFieldValue) value).getDouble()); }
+                case BOOL -> { for (FieldValue value : values) out.writeByte(((BoolFieldValue) value).getBoolean() ? 1 : 0); }
+                case BYTE -> { for (FieldValue value : values) out.writeByte(((ByteFieldValue) value).getByte()); }
+                case STRING -> writeDictionary(out, values);
+                case TENSOR -> {
+                    for (FieldValue value : values) {
+                        Tensor tensor = ((TensorFieldValue) value).getTensor().get();
+                        byte[] encoded = TypedBinaryFormat.encode(tensor);
+                        out.writeInt(encoded.length);
+                        out.write(encoded);
+                    }
+                }
+                default -> { for (FieldValue value : values) writeBytes(out, toJson(value)); }
+            }
+        }
+
+        private void writeDictionary(DataOutputStream out, List<FieldValue> values) throws IOException {
+            Map<String, Integer> dictionary = new HashMap<>();
+            List<String> words = new ArrayList<>();
+            int[] indices = new int[values.size()];
+            for (int i = 0; i < values.size(); i++) {
+                String word = ((StringFieldValue) values.get(i)).getString();
+                Integer index = dictionary.get(word);
+                if (index == null) {
+                    dictionary.put(word, index = words.size());
+                    words.add(word);
+                }
+                indices[i] = index;
+            }
+            out.writeInt(words.size());
+            for (String word : words)
+                writeString(out, word);
+            for (int index : indices)
+                out.writeInt(index);
+        }
+
+        private byte[] toJson(FieldValue value) throws IOException {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+                value.serialize(null, new JsonWriter(generator, tensorOptions));
+            }
+            return json.toByteArray();
+        }
+
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+}
@@ -14,8 +14,10 @@ import com.yahoo.container.core.documentapi.VespaDocumentAccess;
 import com.yahoo.container.jdisc.ContentChannelOutputStream;
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentType;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.DocumentUpdate;
 import com.yahoo.document.FixedBucketSpaces;
@@ -23,6 +25,8 @@ import com.yahoo.document.TestAndSetCondition;
 import com.yahoo.document.config.DocumentmanagerConfig;
 import com.yahoo.document.fieldset.DocIdOnly;
 import com.yahoo.document.fieldset.DocumentOnly;
+import com.yahoo.document.fieldset.FieldSet;
+import com.yahoo.document.fieldset.FieldSetRepo;
 import com.yahoo.document.idstring.IdIdString;
 import com.yahoo.document.json.DocumentOperationType;
 import com.yahoo.document.json.JsonReader;
@@ -30,6 +34,8 @@ import com.yahoo.document.json.JsonWriter;
 import com.yahoo.document.json.ParsedDocumentOperation;
 import com.yahoo.document.restapi.DocumentOperationExecutorConfig;
 import com.yahoo.document.select.parser.ParseException;
+import com.yahoo.document.serialization.DocumentDeserializer;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
 import com.yahoo.documentapi.AckToken;
 import com.yahoo.documentapi.AsyncParameters;
 import com.yahoo.documentapi.AsyncSession;
@@ -49,6 +55,7 @@ import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
 import com.yahoo.documentapi.metrics.DocumentApiMetrics;
 import com.yahoo.documentapi.metrics.DocumentOperationStatus;
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.Request;
 import com.yahoo.jdisc.Response;
@@ -78,10 +85,12 @@ import com.yahoo.vespa.http.server.MetricNames;
 import com.yahoo.yolean.Exceptions;
 import com.yahoo.yolean.Exceptions.RunnableThrowingIOException;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Duration;
@@ -103,6 +112,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
@@ -120,6 +130,7 @@ import static com.yahoo.jdisc.http.HttpRequest.Method.GET;
 import static com.yahoo.jdisc.http.HttpRequest.Method.OPTIONS;
 import static com.yahoo.jdisc.http.HttpRequest.Method.POST;
 import static com.yahoo.jdisc.http.HttpRequest.Method.PUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.logging.Level.FINE;
@@ -143,6 +154,11 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     private static final Parser<Long> unsignedLongParser = Long::parseUnsignedLong;
     private static final Parser<Long> timeoutMillisParser = value -> ParameterParser.asMilliSeconds(value, defaultTimeout.toMillis());
     private static final Parser<Boolean> booleanParser = Boolean::parseBoolean;
+    private static final Parser<Boolean> formatParser = value -> switch (value) {
+        case "json" -> false;
+        case "columnar" -> true;
+        default -> throw new IllegalArgumentException("Format must be 'json' or 'columnar'");
+    };
 
     private static final CompletionHandler logException = new CompletionHandler() {
         @Override public void completed() { }
@@ -181,6 +197,14 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     private static final String FROM_TIMESTAMP = "fromTimestamp";
     private static final String TO_TIMESTAMP = "toTimestamp";
     private static final String INCLUDE_REMOVES = "includeRemoves";
+    private static final String FORMAT = "format";
+
+    /**
+     * Content type of puts and updates serialized in the binary document format, rather than as JSON.
+     * This is for clients which have the document types, and serialize with DocumentSerializerFactory.createHead:
+     * The feed client does not, and always sends JSON.
+     */
+    static final String BINARY_DOCUMENT_CONTENT_TYPE = "application/x-vespa-document";
 
     private final Clock clock;
     private final Duration visitTimeout;
@@ -339,6 +363,9 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
                             POST, this::postDocuments,
                             DELETE, this::deleteDocuments));
 
+        handlers.put("/document/v1/batch",
+                     Map.of(POST, this::postBatch));
+
         handlers.put("/document/v1/{namespace}/{documentType}/docid/",
                      Map.of(GET, this::getDocuments,
                             POST, this::postDocuments,
@@ -382,9 +409,11 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         disallow(request, DRY_RUN);
         enqueueAndDispatch(request, handler, () -> {
             boolean streamed = getProperty(request, STREAM, booleanParser).orElse(false);
+            boolean columnar = getProperty(request, FORMAT, formatParser).orElse(false);
             VisitorParameters parameters = parseGetParameters(request, path, streamed);
+            FieldSet fieldSet = columnar ? new FieldSetRepo().parse(access.getDocumentTypeManager(), parameters.getFieldSet()) : null;
             return () -> {
-                visitAndWrite(request, parameters, handler, streamed);
+                visitAndWrite(request, parameters, handler, streamed, fieldSet);
                 return true; // VisitorSession has its own throttle handling.
             };
         });
@@ -473,7 +502,8 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
 
         return new ForwardingContentChannel(in -> {
             enqueueAndDispatch(request, handler, () -> {
-                ParsedDocumentOperation parsed = parser.parsePut(in, path.id().toString());
+                ParsedDocumentOperation parsed = isBinary(request) ? parser.deserializePut(in, path.id())
+                                                                   : parser.parsePut(in, path.id().toString());
                 DocumentPut put = (DocumentPut)parsed.operation();
                 getProperty(request, CONDITION).map(TestAndSetCondition::new).ifPresent(put::setCondition);
                 getProperty(request, CREATE, booleanParser).ifPresent(put::setCreateIfNonExistent);
@@ -498,7 +528,8 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
 
         return new ForwardingContentChannel(in -> {
             enqueueAndDispatch(request, handler, () -> {
-                ParsedDocumentOperation parsed = parser.parseUpdate(in, path.id().toString());
+                ParsedDocumentOperation parsed = isBinary(request) ? parser.deserializeUpdate(in, path.id())
+                                                                   : parser.parseUpdate(in, path.id().toString());
                 DocumentUpdate update = (DocumentUpdate)parsed.operation();
                 getProperty(request, CONDITION).map(TestAndSetCondition::new).ifPresent(update::setCondition);
                 getProperty(request, CREATE, booleanParser).ifPresent(update::setCreateIfNonExistent);
@@ -535,6 +566,60 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         return ignoredContent;
     }
 
+    /**
+     * Feeds a JSONL body of mixed document operations, each as a put, update or remove in the feed format, and streams
+     * a JSON line with the result of each operation, as these complete, with the index of the operation in the body.
+     * Each operation is dispatched as soon as its line is received, and is subject to the same throttling as single
+     * operations, which means some operations in a batch may be rejected with status 429, while others succeed.
+     * If reading the body fails, the response ends with a line with the error, after the results of all operations received.
+     */
+    private ContentChannel postBatch(HttpRequest request, DocumentPath path, ResponseHandler rawHandler) {
+        disallow(request, CONDITION, CREATE);
+        boolean dryRun = getProperty(request, DRY_RUN, booleanParser).orElse(false);
+        BatchResponse batch = new BatchResponse(rawHandler, clock.instant());
+        metrics.reportHttpRequest(clientVersion(request));
+        return new JsonLinesContentChannel((index, line) -> {
+            BatchOperation handler = batch.operation(index);
+            if (dryRun) {
+                handleBatchedOperation(null, true, handler, new com.yahoo.documentapi.Response(-1));
+                return;
+            }
+
+            long startNanos = System.nanoTime();
+            enqueueAndDispatch(request, handler, () -> {
+                ParsedDocumentOperation parsed = parser.parseOperation(new ByteArrayInputStream(line));
+                DocumentOperation operation = parsed.operation();
+                handler.type = typeOf(operation);
+                DocumentOperationParameters parameters = parametersFromRequest(request, ROUTE)
+                        .withResponseHandler(response -> {
+                            outstanding.decrementAndGet();
+                            double latency = (System.nanoTime() - startNanos) / 1e+9d;
+                            if (operation instanceof DocumentPut put) updatePutMetrics(response.outcome(), latency, put.getCreateIfNonExistent());
+                            else if (operation instanceof DocumentUpdate update) updateUpdateMetrics(response.outcome(), latency, update.getCreateIfNonExistent());
+                            else updateRemoveMetrics(response.outcome(), latency);
+                            handleBatchedOperation(operation.getId(), parsed.fullyApplied(), handler, response);
+                        });
+                return () -> dispatchOperation(() -> dispatch(operation, parameters));
+            });
+        },
+        batch::endOfOperations,
+        batch::failedReadingOperations);
+    }
+
+    private Result dispatch(DocumentOperation operation, DocumentOperationParameters parameters) {
+        if (operation instanceof DocumentPut put) return asyncSession.put(put, parameters);
+        if (operation instanceof DocumentUpdate update) return asyncSession.update(update, parameters);
+        if (operation instanceof DocumentRemove remove) return asyncSession.remove(remove, parameters);
+        throw new IllegalArgumentException("Unsupported document operation '" + operation + "'");
+    }
+
+    private static com.yahoo.documentapi.metrics.DocumentOperationType typeOf(DocumentOperation operation) {
+        if (operation instanceof DocumentPut) return com.yahoo.documentapi.metrics.DocumentOperationType.PUT;
+        if (operation instanceof DocumentUpdate) return com.yahoo.documentapi.metrics.DocumentOperationType.UPDATE;
+        if (operation instanceof DocumentRemove) return com.yahoo.documentapi.metrics.DocumentOperationType.REMOVE;
+        return com.yahoo.documentapi.metrics.DocumentOperationType.ERROR;
+    }
+
     private DocumentOperationParameters parametersFromRequest(HttpRequest request, String... names) {
         DocumentOperationParameters parameters = getProperty(request, TRACELEVEL, integerParser).map(parameters()::withTraceLevel)
                                                                                                 .orElse(parameters());
@@ -650,7 +735,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         private static final ByteBuffer emptyBuffer = ByteBuffer.wrap(new byte[0]);
         private static final int FLUSH_SIZE = 128;
 
-        private final BufferedContentChannel buffer = new BufferedContentChannel();
+        final BufferedContentChannel buffer = new BufferedContentChannel();
         private final OutputStream out = new ContentChannelOutputStream(buffer);
         private final JsonGenerator json;
         private final ResponseHandler handler;
@@ -665,9 +750,14 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         private ContentChannel channel;
 
         private JsonResponse(ResponseHandler handler, HttpRequest request) throws IOException {
+            this(handler, request, null);
+        }
+
+        /** Creates a new JsonResponse which writes its JSON to the given output, or to the response content if this is null. */
+        private JsonResponse(ResponseHandler handler, HttpRequest request, OutputStream jsonOut) throws IOException {
             this.handler = handler;
             this.request = request;
-            json = jsonFactory.createGenerator(out);
+            json = jsonFactory.createGenerator(jsonOut != null ? jsonOut : out);
             json.writeStartObject();
         }
 
@@ -700,7 +790,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         /** Commits a response with the given status code and some default headers, and writes whatever content is buffered. */
         synchronized void commit(int status, boolean fullyApplied) throws IOException {
             Response response = new Response(status);
-            response.headers().add("Content-Type", List.of("application/json; charset=UTF-8"));
+            response.headers().add("Content-Type", List.of(contentType()));
             if (! fullyApplied)
                 response.headers().add(Headers.IGNORED_FIELDS, "true");
             try {
@@ -712,6 +802,10 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
             }
         }
 
+        String contentType() {
+            return "application/json; charset=UTF-8";
+        }
+
         /** Commits a response with the given status code and some default headers, writes buffered content, and closes this. */
         synchronized void respond(int status) throws IOException {
             try (this) {
@@ -728,8 +822,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
                     log.log(WARNING, "Close called before response was committed, in " + getClass().getName());
                     commit(Response.Status.INTERNAL_SERVER_ERROR);
                 }
-                json.close(); // Also closes object and array scopes.
-                out.close();  // Simply flushes the output stream.
+                closeContent();
             }
             finally {
                 if (channel != null)
@@ -737,6 +830,11 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
             }
         }
 
+        void closeContent() throws IOException {
+            json.close(); // Also closes object and array scopes.
+            out.close();  // Simply flushes the output stream.
+        }
+
         synchronized void writePathId(String path) throws IOException {
             json.writeStringField("pathId", path);
         }
@@ -773,7 +871,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
             }
         }
 
-        private JsonFormat.EncodeOptions tensorOptions() {
+        JsonFormat.EncodeOptions tensorOptions() {
             // TODO: Flip default on Vespa 9 to "short-value"
             String format = "short";
             if (request != null && request.parameters().containsKey("format.tensors")) {
@@ -919,6 +1017,209 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
 
     }
 
+    /**
+     * Writes visited documents as row groups in the {@link ColumnarFormat}, followed by a trailer with the JSON
+     * a {@link JsonResponse} would have, except for the documents. Documents are acked as they are added to a row group,
+     * except the last document of each row group, which is acked when the row group is written to the network.
+     */
+    private static class ColumnarResponse extends JsonResponse {
+
+        private final ByteArrayOutputStream trailer;
+        private final DocumentTypeManager manager;
+        private final FieldSet fieldSet;
+        private ColumnarFormat.RowGroup rowGroup;
+        private boolean done = false;
+
+        private ColumnarResponse(ResponseHandler handler, HttpRequest request, ByteArrayOutputStream trailer,
+                                 DocumentTypeManager manager, FieldSet fieldSet) throws IOException {
+            super(handler, request, trailer);
+            this.trailer = trailer;
+            this.manager = manager;
+            this.fieldSet = fieldSet;
+        }
+
+        /** Creates a new ColumnarResponse with path field written to its trailer. */
+        static ColumnarResponse create(HttpRequest request, ResponseHandler handler,
+                                       DocumentTypeManager manager, FieldSet fieldSet) throws IOException {
+            ColumnarResponse response = new ColumnarResponse(handler, request, new ByteArrayOutputStream(), manager, fieldSet);
+            response.writePathId(request.getUri().getRawPath());
+            return response;
+        }
+
+        @Override
+        String contentType() {
+            return ColumnarFormat.CONTENT_TYPE;
+        }
+
+        @Override
+        synchronized void writeDocumentsArrayStart() {
+            buffer.write(ByteBuffer.wrap(ColumnarFormat.header()), null);
+        }
+
+        @Override
+        synchronized void writeDocumentValue(Document document, CompletionHandler completionHandler) {
+            if ( ! done) rowGroup(document.getDataType()).add(document);
+            written(completionHandler);
+        }
+
+        @Override
+        synchronized void writeDocumentRemoval(DocumentId id, CompletionHandler completionHandler) {
+            if ( ! done) rowGroup(manager.getDocumentType(id.getDocType())).addRemoval(id);
+            written(completionHandler);
+        }
+
+        private ColumnarFormat.RowGroup rowGroup(DocumentType type) {
+            if (rowGroup != null && ! rowGroup.documentType().equals(type.getName()))
+                flushRowGroup(null);
+            if (rowGroup == null)
+                rowGroup = new ColumnarFormat.RowGroup(type.getName(), ColumnarFormat.columns(type, fieldSet), tensorOptions());
+
+            return rowGroup;
+        }
+
+        private void written(CompletionHandler completionHandler) {
+            if (rowGroup != null && rowGroup.size() >= ColumnarFormat.ROW_GROUP_SIZE)
+                flushRowGroup(completionHandler);
+            else if (completionHandler != null)
+                completionHandler.completed();
+        }
+
+        private void flushRowGroup(CompletionHandler completionHandler) {
+            if (rowGroup != null) {
+                buffer.write(ByteBuffer.wrap(rowGroup.toFrame()), completionHandler);
+                rowGroup = null;
+            }
+            else if (completionHandler != null)
+                completionHandler.completed();
+        }
+
+        @Override
+        synchronized void writeArrayEnd() {
+            flushRowGroup(null);
+            done = true;
+        }
+
+        @Override
+        void closeContent() throws IOException {
+            done = true;
+            super.closeContent();
+            buffer.write(ByteBuffer.wrap(ColumnarFormat.frame(ColumnarFormat.TRAILER, trailer.toByteArray())), null);
+        }
+
+    }
+
+    /**
+     * Streams the results of the operations of a batch request as JSON lines, in the order they complete.
+     * The response is committed immediately, and closed when the request body has ended and all its operations
+     * have a result. Each result line is the JSON response the operation would have had as a single request,
+     * prefixed by the index of the operation in the batch, and the HTTP status code of this response.
+     */
+    private class BatchResponse {
+
+        private static final byte[] newline = { '\n' };
+
+        private final AtomicLong pending = new AtomicLong(1); // One for each operation without a result, and one for the request body.
+        private final Instant start;
+        private final ContentChannel channel;
+        private volatile Throwable readError = null;
+
+        private BatchResponse(ResponseHandler handler, Instant start) {
+            this.start = start;
+            Response response = new Response(Response.Status.OK);
+            response.headers().add("Content-Type", List.of("application/x-ndjson; charset=UTF-8"));
+            this.channel = handler.handleResponse(response);
+        }
+
+        /** Returns a handler for the response to the operation with the given index, which must be completed. */
+        BatchOperation operation(int index) {
+            pending.incrementAndGet();
+            return new BatchOperation(this, index);
+        }
+
+        /** Signals that the request body has ended, so no more operations will be added. */
+        void endOfOperations() {
+            release();
+        }
+
+        /** Signals that reading the request body failed, so no more operations will be added. */
+        void failedReadingOperations(Throwable error) {
+            readError = error;
+            release();
+        }
+
+        private void write(int index, int status, byte[] json) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(json.length + 32);
+            line.writeBytes(Text.format("{\"index\":%d,\"status\":%d", index, status).getBytes(UTF_8));
+            if (json.length > 2) { // Splice in the fields of the non-empty JSON object.
+                line.write(',');
+                line.write(json, 1, json.length - 1);
+            }
+            else line.write('}');
+            line.writeBytes(newline);
+            synchronized (this) {
+                channel.write(ByteBuffer.wrap(line.toByteArray()), logException);
+            }
+            release();
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() == 0)
+                synchronized (this) {
+                    if (readError != null)
+                        channel.write(ByteBuffer.wrap(errorLine(readError)), logException);
+                    channel.close(logException);
+                }
+        }
+
+        private static byte[] errorLine(Throwable error) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            try (JsonGenerator json = jsonFactory.createGenerator(line)) {
+                json.writeStartObject();
+                json.writeNumberField("status", Response.Status.BAD_REQUEST);
+                json.writeStringField("message", "Failed reading request body: " + Exceptions.toMessageString(error));
+                json.writeEndObject();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            line.writeBytes(newline);
+            return line.toByteArray();
+        }
+
+    }
+
+    /** Collects the response to a single operation in a batch, and writes it as a line of the batch response. */
+    private class BatchOperation implements ResponseHandler {
+
+        private final BatchResponse batch;
+        private final int index;
+        private volatile com.yahoo.documentapi.metrics.DocumentOperationType type = com.yahoo.documentapi.metrics.DocumentOperationType.ERROR;
+
+        private BatchOperation(BatchResponse batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
+
+        @Override
+        public ContentChannel handleResponse(Response response) {
+            reportStatus(type, batch.start, response.getStatus());
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            return new ContentChannel() {
+                @Override public void write(ByteBuffer buf, CompletionHandler handler) {
+                    byte[] bytes = new byte[buf.remaining()];
+                    buf.get(bytes);
+                    json.writeBytes(bytes);
+                    handler.completed();
+                }
+                @Override public void close(CompletionHandler handler) {
+                    batch.write(index, response.getStatus(), json.toByteArray());
+                    handler.completed();
+                }
+            };
+        }
+
+    }
+
     private static void options(Collection<Method> methods, ResponseHandler handler) {
         loggingException(() -> {
             Response response = new Response(Response.Status.NO_CONTENT);
@@ -1052,6 +1353,97 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         private DispatchException(Throwable cause) { super(cause); }
     }
 
+    /**
+     * Content channel which passes each non-blank line to a consumer, with its index, as soon as it is received,
+     * and then signals either the end of the content, or an error reading it.
+     */
+    static class JsonLinesContentChannel implements ContentChannel {
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private final LineConsumer consumer;
+        private final Runnable onEnd;
+        private final Consumer<Throwable> onError;
+        private final AtomicBoolean ended = new AtomicBoolean(false);
+        private int index = 0;
+
+        JsonLinesContentChannel(LineConsumer consumer, Runnable onEnd, Consumer<Throwable> onError) {
+            this.consumer = consumer;
+            this.onEnd = onEnd;
+            this.onError = onError;
+        }
+
+        @Override
+        public void write(ByteBuffer buf, CompletionHandler handler) {
+            try {
+                while (buf.hasRemaining()) {
+                    int start = buf.position(), end = start;
+                    while (end < buf.limit() && buf.get(end) != '\n') end++;
+                    byte[] range = new byte[end - start];
+                    buf.get(range);
+                    if ( ! buf.hasRemaining()) { // No line break in the rest of this buffer
+                        line.writeBytes(range);
+                        break;
+                    }
+                    buf.get(); // Skip the line break
+                    if (line.size() == 0) {
+                        acceptLine(range);
+                    }
+                    else {
+                        line.writeBytes(range);
+                        flushLine();
+                    }
+                }
+                handler.completed();
+            }
+            catch (Exception e) {
+                handler.failed(e);
+            }
+        }
+
+        @Override
+        public void close(CompletionHandler handler) {
+            try {
+                if ( ! ended.get()) flushLine();
+                handler.completed();
+            }
+            catch (Exception e) {
+                handler.failed(e);
+            }
+            finally {
+                if ( ! ended.getAndSet(true))
+                    onEnd.run();
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            log.log(FINE, error, () -> "ContentChannel.onError(): " + error.getMessage());
+            line.reset();
+            if ( ! ended.getAndSet(true))
+                onError.accept(error);
+        }
+
+        private void flushLine() {
+            byte[] bytes = line.toByteArray();
+            line.reset();
+            acceptLine(bytes);
+        }
+
+        private void acceptLine(byte[] bytes) {
+            for (byte b : bytes)
+                if ( ! Character.isWhitespace(b)) {
+                    consumer.accept(index++, bytes);
+                    return;
+                }
+        }
+
+        @FunctionalInterface
+        interface LineConsumer {
+            void accept(int index, byte[] line);
+        }
+
+    }
+
     /** Readable content channel which forwards data to a reader when closed. */
     static class ForwardingContentChannel implements ContentChannel {
 
@@ -1114,6 +1506,52 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
             return parse(inputStream, docId, DocumentOperationType.UPDATE);
         }
 
+        ParsedDocumentOperation parseOperation(InputStream inputStream) {
+            try {
+                return new JsonReader(manager, inputStream, jsonFactory).readSingleOperation();
+            } catch (IllegalArgumentException e) {
+                incrementMetricParseError();
+                throw e;
+            }
+        }
+
+        /** Deserializes a document put, from a document serialized in the binary document format. */
+        ParsedDocumentOperation deserializePut(InputStream inputStream, DocumentId docId) {
+            return deserialize(inputStream, docId, deserializer -> new DocumentPut(new Document(deserializer)));
+        }
+
+        /** Deserializes a document update, serialized in the binary document format. */
+        ParsedDocumentOperation deserializeUpdate(InputStream inputStream, DocumentId docId) {
+            return deserialize(inputStream, docId, DocumentUpdate::new);
+        }
+
+        private ParsedDocumentOperation deserialize(InputStream inputStream, DocumentId docId,
+                                                    Function<DocumentDeserializer, DocumentOperation> reader) {
+            try {
+                DocumentOperation operation;
+                try {
+                    GrowableByteBuffer buffer = GrowableByteBuffer.wrap(inputStream.readAllBytes());
+                    operation = reader.apply(DocumentDeserializerFactory.createHead(manager, buffer));
+                    if (buffer.remaining() > 0)
+                        throw new IllegalArgumentException(buffer.remaining() + " trailing bytes after the serialized document");
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                catch (RuntimeException e) {
+                    throw new IllegalArgumentException("failed deserializing document: " + Exceptions.toMessageString(e), e);
+                }
+                if ( ! docId.equals(operation.getId()))
+                    throw new IllegalArgumentException("document ID in the path, '" + docId + "', does not match the " +
+                                                       "one in the serialized document, '" + operation.getId() + "'");
+
+                return new ParsedDocumentOperation(operation, true);
+            } catch (IllegalArgumentException e) {
+                incrementMetricParseError();
+                throw e;
+            }
+        }
+
         private ParsedDocumentOperation parse(InputStream inputStream, String docId, DocumentOperationType operation) {
             try {
                 return new JsonReader(manager, inputStream, jsonFactory).readSingleDocumentStreaming(operation, docId);
@@ -1135,33 +1573,39 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
                                com.yahoo.documentapi.Response response,
                                SuccessCallback callback) {
         try (JsonResponse jsonResponse = JsonResponse.create(path, handler, request)) {
-            jsonResponse.writeTrace(response.getTrace());
-            if (response.isSuccess())
-                callback.onSuccess((response instanceof DocumentResponse) ? ((DocumentResponse) response).getDocument() : null, jsonResponse);
-            else {
-                jsonResponse.writeMessage(response.getTextMessage());
-                switch (response.outcome()) {
-                    case NOT_FOUND -> jsonResponse.commit(Response.Status.NOT_FOUND);
-                    case CONDITION_FAILED -> jsonResponse.commit(Response.Status.PRECONDITION_FAILED);
-                    case INSUFFICIENT_STORAGE -> jsonResponse.commit(Response.Status.INSUFFICIENT_STORAGE);
-                    case TIMEOUT -> jsonResponse.commit(Response.Status.GATEWAY_TIMEOUT);
-                    case REJECTED -> jsonResponse.commit(Response.Status.BAD_REQUEST);
-                    case ERROR -> {
-                        log.log(FINE, () -> "Exception performing document operation: " + response.getTextMessage());
-                        jsonResponse.commit(Status.INTERNAL_SERVER_ERROR);
-                    }
-                    default -> {
-                        log.log(WARNING, "Unexpected document API operation outcome '" + response.outcome() + "' " + response.getTextMessage());
-                        jsonResponse.commit(Status.INTERNAL_SERVER_ERROR);
-                    }
-                }
-            }
+            handle(jsonResponse, response, callback);
         }
         catch (Exception e) {
             log.log(FINE, "Failed writing response", e);
         }
     }
 
+    private static void handle(JsonResponse jsonResponse,
+                               com.yahoo.documentapi.Response response,
+                               SuccessCallback callback) throws IOException {
+        jsonResponse.writeTrace(response.getTrace());
+        if (response.isSuccess())
+            callback.onSuccess((response instanceof DocumentResponse) ? ((DocumentResponse) response).getDocument() : null, jsonResponse);
+        else {
+            jsonResponse.writeMessage(response.getTextMessage());
+            switch (response.outcome()) {
+                case NOT_FOUND -> jsonResponse.commit(Response.Status.NOT_FOUND);
+                case CONDITION_FAILED -> jsonResponse.commit(Response.Status.PRECONDITION_FAILED);
+                case INSUFFICIENT_STORAGE -> jsonResponse.commit(Response.Status.INSUFFICIENT_STORAGE);
+                case TIMEOUT -> jsonResponse.commit(Response.Status.GATEWAY_TIMEOUT);
+                case REJECTED -> jsonResponse.commit(Response.Status.BAD_REQUEST);
+                case ERROR -> {
+                    log.log(FINE, () -> "Exception performing document operation: " + response.getTextMessage());
+                    jsonResponse.commit(Status.INTERNAL_SERVER_ERROR);
+                }
+                default -> {
+                    log.log(WARNING, "Unexpected document API operation outcome '" + response.outcome() + "' " + response.getTextMessage());
+                    jsonResponse.commit(Status.INTERNAL_SERVER_ERROR);
+                }
+            }
+        }
+    }
+
     private static void handleFeedOperation(DocumentPath path,
                                             boolean fullyApplied,
                                             ResponseHandler handler,
@@ -1169,6 +1613,19 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         handle(path, null, handler, response, (document, jsonResponse) -> jsonResponse.commit(Response.Status.OK, fullyApplied));
     }
 
+    private static void handleBatchedOperation(DocumentId id,
+                                               boolean fullyApplied,
+                                               ResponseHandler handler,
+                                               com.yahoo.documentapi.Response response) {
+        try (JsonResponse jsonResponse = new JsonResponse(handler, null)) {
+            if (id != null) jsonResponse.writeDocId(id);
+            handle(jsonResponse, response, (document, result) -> result.commit(Response.Status.OK, fullyApplied));
+        }
+        catch (Exception e) {
+            log.log(FINE, "Failed writing response", e);
+        }
+    }
+
     private static double latencyOf(HttpRequest r) { return (System.nanoTime() - r.relativeCreatedAtNanoTime()) / 1e+9d; }
 
     private void updatePutMetrics(Outcome outcome, double latency, boolean create) {
@@ -1319,6 +1776,11 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     }
 
     private interface VisitCallback {
+        /** Creates the response to write to. */
+        default JsonResponse createResponse(HttpRequest request, ResponseHandler handler) throws IOException {
+            return JsonResponse.create(request, handler);
+        }
+
         /** Called at the start of response rendering. */
         default void onStart(JsonResponse response, boolean fullyApplied) throws IOException { }
 
@@ -1407,8 +1869,13 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         });
     }
 
-    private void visitAndWrite(HttpRequest request, VisitorParameters parameters, ResponseHandler handler, boolean streamed) {
+    private void visitAndWrite(HttpRequest request, VisitorParameters parameters, ResponseHandler handler, boolean streamed,
+                               FieldSet columnarFieldSet) {
         visit(request, parameters, streamed, true, handler, new VisitCallback() {
+            @Override public JsonResponse createResponse(HttpRequest request, ResponseHandler handler) throws IOException {
+                return columnarFieldSet == null ? JsonResponse.create(request, handler)
+                                                : ColumnarResponse.create(request, handler, access.getDocumentTypeManager(), columnarFieldSet);
+            }
             @Override public void onStart(JsonResponse response, boolean fullyApplied) throws IOException {
                 if (streamed)
                     response.commit(Response.Status.OK, fullyApplied);
@@ -1452,7 +1919,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     @SuppressWarnings("fallthrough")
     private void visit(HttpRequest request, VisitorParameters parameters, boolean streaming, boolean fullyApplied, ResponseHandler handler, VisitCallback callback) {
         try {
-            JsonResponse response = JsonResponse.create(request, handler);
+            JsonResponse response = callback.createResponse(request, handler);
             Phaser phaser = new Phaser(2); // Synchronize this thread (dispatch) with the visitor callback thread.
             AtomicReference<String> error = new AtomicReference<>(); // Set if error occurs during processing of visited documents.
             callback.onStart(response, fullyApplied);
@@ -1618,27 +2085,37 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
 
         @Override
         public ContentChannel handleResponse(Response response) {
-            switch (response.getStatus()) {
-                case 200 -> report(DocumentOperationStatus.OK);
-                case 400 -> report(DocumentOperationStatus.REQUEST_ERROR);
-                case 404 -> report(DocumentOperationStatus.NOT_FOUND);
-                case 412 -> report(DocumentOperationStatus.CONDITION_FAILED);
-                case 429 -> report(DocumentOperationStatus.TOO_MANY_REQUESTS);
-                case 500,503,504,507 -> report(DocumentOperationStatus.SERVER_ERROR);
-                default -> throw new IllegalStateException("Unexpected status code '%s'".formatted(response.getStatus()));
-            }
-            metrics.reportHttpRequest(clientVersion());
+            reportStatus(type, start, response.getStatus());
+            metrics.reportHttpRequest(clientVersion(request));
             return delegate.handleResponse(response);
         }
 
-        private void report(DocumentOperationStatus... status) { metrics.report(type, start, status); }
+    }
 
-        private String clientVersion() {
-            return Optional.ofNullable(request.headers().get(Headers.CLIENT_VERSION))
-                    .filter(l -> !l.isEmpty()).map(l -> l.get(0))
-                    .orElse("unknown");
+    private void reportStatus(com.yahoo.documentapi.metrics.DocumentOperationType type, Instant start, int status) {
+        switch (status) {
+            case 200 -> metrics.report(type, start, DocumentOperationStatus.OK);
+            case 400 -> metrics.report(type, start, DocumentOperationStatus.REQUEST_ERROR);
+            case 404 -> metrics.report(type, start, DocumentOperationStatus.NOT_FOUND);
+            case 412 -> metrics.report(type, start, DocumentOperationStatus.CONDITION_FAILED);
+            case 429 -> metrics.report(type, start, DocumentOperationStatus.TOO_MANY_REQUESTS);
+            case 500,503,504,507 -> metrics.report(type, start, DocumentOperationStatus.SERVER_ERROR);
+            default -> throw new IllegalStateException("Unexpected status code '%s'".formatted(status));
         }
+    }
+
+    private static boolean isBinary(HttpRequest request) {
+        String contentType = request.headers().getFirst("Content-Type");
+        if (contentType == null) return false;
+        int parameters = contentType.indexOf(';');
+        String mediaType = parameters < 0 ? contentType : contentType.substring(0, parameters);
+        return mediaType.trim().equalsIgnoreCase(BINARY_DOCUMENT_CONTENT_TYPE);
+    }
 
+    private static String clientVersion(HttpRequest request) {
+        return Optional.ofNullable(request.headers().get(Headers.CLIENT_VERSION))
+                       .filter(l -> !l.isEmpty()).map(l -> l.get(0))
+                       .orElse("unknown");
     }
 
     static class StorageCluster {
@@ -17,6 +17,8 @@ import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.restapi.DocumentOperationExecutorConfig;
 import com.yahoo.document.restapi.resource.DocumentV1ApiHandler.StorageCluster;
+import com.yahoo.document.serialization.DocumentSerializer;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
 import com.yahoo.document.update.FieldUpdate;
 import com.yahoo.documentapi.AckToken;
 import com.yahoo.documentapi.AsyncParameters;
@@ -44,6 +46,12 @@ import com.yahoo.documentapi.VisitorResponse;
 import com.yahoo.documentapi.VisitorSession;
 import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.jdisc.Request;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ReadableContentChannel;
+import com.yahoo.jdisc.http.HttpRequest;
 import com.yahoo.jdisc.test.MockMetric;
 import com.yahoo.messagebus.StaticThrottlePolicy;
 import com.yahoo.messagebus.Trace;
@@ -54,6 +62,7 @@ import com.yahoo.slime.Inspector;
 import com.yahoo.slime.JsonFormat;
 import com.yahoo.slime.SlimeUtils;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import com.yahoo.test.ManualClock;
 import com.yahoo.vdslib.VisitorStatistics;
 import com.yahoo.vespa.config.content.AllClustersBucketSpacesConfig;
@@ -62,8 +71,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
@@ -288,6 +300,233 @@ public class DocumentV1ApiTest {
         driver.close();
     }
 
+    @Test
+    public void testBatch() {
+        RequestHandlerTestDriver driver = new RequestHandlerTestDriver(handler);
+        access.session.expect((operation, parameters) -> {
+            if (operation instanceof DocumentPut put) {
+                assertEquals(doc1.getId(), put.getId());
+                assertTrue(put.getCreateIfNonExistent());
+                parameters.responseHandler().get().handleResponse(new Response(0, null, Response.Outcome.SUCCESS));
+            }
+            else if (operation instanceof DocumentUpdate update) {
+                assertEquals(doc2.getId(), update.getId());
+                parameters.responseHandler().get().handleResponse(new UpdateResponse(0, false));
+            }
+            else {
+                assertEquals("true", ((DocumentRemove) operation).getCondition().getSelection());
+                parameters.responseHandler().get().handleResponse(new Response(0, "no dice", Response.Outcome.CONDITION_FAILED));
+            }
+            return new Result();
+        });
+        var response = driver.sendRequest("http://localhost/document/v1/batch", POST, """
+                {"put": "id:space:music::one", "create": true, "fields": {"artist": "Tom Waits"}}
+                {"update": "id:space:music:n=1:two", "fields": {"artist": {"assign": "Asa-Chan & Jun-Ray"}}}
+
+                {"remove": "id:space:music:g=a:three", "condition": "true"}
+                {"fields": {}}
+                """);
+        String[] lines = response.readAll().split("\n");
+        assertEquals(200, response.getStatus());
+        assertEquals("application/x-ndjson; charset=UTF-8", response.getResponse().headers().getFirst("Content-Type"));
+        assertEquals(4, lines.length);
+        assertSameJson("""
+                       {"index": 0, "status": 200, "id": "id:space:music::one"}""", lines[0]);
+        assertSameJson("""
+                       {"index": 1, "status": 200, "id": "id:space:music:n=1:two"}""", lines[1]);
+        assertSameJson("""
+                       {"index": 2, "status": 412, "id": "id:space:music:g=a:three", "message": "no dice"}""", lines[2]);
+        assertSameJson("""
+                       {"index": 3, "status": 400, "pathId": "/document/v1/batch",
+                        "message": "Missing a document operation ('put', 'update' or 'remove')"}""", lines[3]);
+        assertEquals(1, metric.metrics().get("httpapi_succeeded").get(Map.of()), 0);
+        assertEquals(1, metric.metrics().get("httpapi_not_found").get(Map.of()), 0);
+        assertEquals(1, metric.metrics().get("httpapi_condition_not_met").get(Map.of()), 0);
+        assertEquals(1, metric.metrics().get("httpapi_parse_error").get(Map.of()), 0);
+
+        // Operations in a batch are throttled like single operations, and overload is reported per operation.
+        access.session.expect((id, parameters) -> new Result(Result.ResultType.TRANSIENT_ERROR, Result.toError(Result.ResultType.TRANSIENT_ERROR)));
+        response = driver.sendRequest("http://localhost/document/v1/batch", POST, """
+                {"remove": "id:space:music::one"}
+                {"remove": "id:space:music::two"}
+                {"remove": "id:space:music::three"}
+                """);
+        access.session.expect((id, parameters) -> new Result(Result.ResultType.FATAL_ERROR, Result.toError(Result.ResultType.FATAL_ERROR)));
+        handler.dispatchEnqueued();
+        lines = response.readAll().split("\n");
+        assertEquals(200, response.getStatus());
+        assertEquals(3, lines.length);
+        assertSameJson("""
+                       {"index": 2, "status": 429, "pathId": "/document/v1/batch",
+                        "message": "Rejecting execution due to overload: 2 requests already enqueued"}""", lines[0]);
+        assertSameJson("""
+                       {"index": 0, "status": 500, "pathId": "/document/v1/batch", "message": "[FATAL_ERROR @ localhost]: FATAL_ERROR"}""", lines[1]);
+        assertSameJson("""
+                       {"index": 1, "status": 500, "pathId": "/document/v1/batch", "message": "[FATAL_ERROR @ localhost]: FATAL_ERROR"}""", lines[2]);
+
+        // Request level conditions are not allowed, as these belong to each operation.
+        response = driver.sendRequest("http://localhost/document/v1/batch?condition=true", POST, "");
+        assertEquals(400, response.getStatus());
+        driver.close();
+    }
+
+    @Test
+    public void testBinaryDocuments() {
+        RequestHandlerTestDriver driver = new RequestHandlerTestDriver(handler);
+        DocumentUpdate expectedUpdate = new DocumentUpdate(doc1.getDataType(), doc1.getId());
+        expectedUpdate.addFieldUpdate(FieldUpdate.createAssign(doc1.getField("artist"), new StringFieldValue("Lisa Ekdahl")));
+        access.session.expect((operation, parameters) -> {
+            if (operation instanceof DocumentPut put) {
+                assertEquals(doc1, put.getDocument());
+                assertTrue(put.getCreateIfNonExistent());
+            }
+            else
+                assertEquals(expectedUpdate, operation);
+
+            parameters.responseHandler().get().handleResponse(new Response(0, null, Response.Outcome.SUCCESS));
+            return new Result();
+        });
+        var response = driver.sendRequest("http://localhost/document/v1/space/music/docid/one?create=true", POST,
+                                          serialize(serializer -> serializer.write(doc1)), "application/x-vespa-document");
+        assertSameJson("{ \"pathId\": \"/document/v1/space/music/docid/one\", \"id\": \"id:space:music::one\" }", response.readAll());
+        assertEquals(200, response.getStatus());
+
+        response = driver.sendRequest("http://localhost/document/v1/space/music/docid/one", PUT,
+                                      serialize(expectedUpdate::serialize), "Application/X-Vespa-Document; charset=binary");
+        assertSameJson("{ \"pathId\": \"/document/v1/space/music/docid/one\", \"id\": \"id:space:music::one\" }", response.readAll());
+        assertEquals(200, response.getStatus());
+
+        // The document ID in the path must match that of the serialized document.
+        access.session.expect((__, ___) -> { throw new AssertionError("Not supposed to happen"); });
+        response = driver.sendRequest("http://localhost/document/v1/space/music/docid/two", POST,
+                                      serialize(serializer -> serializer.write(doc1)), "application/x-vespa-document");
+        assertSameJson("{ \"pathId\": \"/document/v1/space/music/docid/two\"," +
+                       "  \"message\": \"document ID in the path, 'id:space:music::two', does not match the one in the serialized document, 'id:space:music::one'\" }",
+                       response.readAll());
+        assertEquals(400, response.getStatus());
+
+        response = driver.sendRequest("http://localhost/document/v1/space/music/docid/one", POST,
+                                      ByteBuffer.wrap(new byte[]{ 0, 1, 2 }), "application/x-vespa-document");
+        assertTrue(response.readAll().contains("failed deserializing document"));
+        assertEquals(400, response.getStatus());
+
+        // Trailing bytes after the serialized document are rejected.
+        ByteBuffer document = serialize(serializer -> serializer.write(doc1));
+        ByteBuffer withTrailingBytes = ByteBuffer.allocate(document.remaining() + 3).put(document).put(new byte[]{ 1, 2, 3 }).flip();
+        response = driver.sendRequest("http://localhost/document/v1/space/music/docid/one", POST,
+                                      withTrailingBytes, "application/x-vespa-document");
+        assertTrue(response.readAll().contains("3 trailing bytes after the serialized document"));
+        assertEquals(400, response.getStatus());
+        assertEquals(3, metric.metrics().get("httpapi_parse_error").get(Map.of()), 0);
+        driver.close();
+    }
+
+    private static ByteBuffer serialize(Consumer<DocumentSerializer> writer) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        writer.accept(DocumentSerializerFactory.createHead(buffer));
+        buffer.flip();
+        return buffer.getByteBuffer();
+    }
+
+    @Test
+    public void testColumnarVisit() throws IOException {
+        RequestHandlerTestDriver driver = new RequestHandlerTestDriver(handler);
+        List<AckToken> tokens = List.of(new AckToken(null), new AckToken(null), new AckToken(null));
+        access.expect(tokens);
+        access.expect(parameters -> {
+            assertEquals("music:embedding", parameters.getFieldSet());
+            parameters.getLocalDataHandler().onMessage(new PutDocumentMessage(new DocumentPut(doc1)), tokens.get(0));
+            parameters.getLocalDataHandler().onMessage(new RemoveDocumentMessage(new DocumentRemove(doc3.getId())), tokens.get(1));
+            parameters.getLocalDataHandler().onMessage(new PutDocumentMessage(new DocumentPut(doc2)), tokens.get(2));
+            parameters.getControlHandler().onDone(VisitorControlHandler.CompletionCode.SUCCESS, "success");
+        });
+        DataInputStream in = readColumnar(driver, "http://localhost/document/v1/space/music/docid?stream=true&format=columnar" +
+                                                  "&includeRemoves=true&fieldSet=music:embedding");
+        assertEquals(ColumnarFormat.MAGIC, in.readInt());
+        assertEquals(ColumnarFormat.VERSION, in.readInt());
+        assertEquals(ColumnarFormat.ROW_GROUP, in.readByte());
+        in.readInt();
+        assertEquals("music", readString(in));
+        assertEquals(3, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(doc1.getId().toString(), readString(in));
+        assertEquals(doc3.getId().toString(), readString(in));
+        assertEquals(doc2.getId().toString(), readString(in));
+        assertEquals(0b010, in.readByte());
+        assertEquals("embedding", readString(in));
+        assertEquals(ColumnarFormat.TENSOR, in.readByte());
+        assertEquals("tensor(x[3])", readString(in));
+        assertEquals(0b101, in.readByte());
+        assertEquals(Tensor.from("tensor(x[3]):[1,2,3]"), readTensor(in));
+        assertEquals(Tensor.from("tensor(x[3]):[4,5,6]"), readTensor(in));
+        assertEquals(ColumnarFormat.TRAILER, in.readByte());
+        in.readInt();
+        assertSameJson("""
+                       {
+                         "pathId": "/document/v1/space/music/docid",
+                         "documentCount": 3
+                       }""", new String(in.readAllBytes(), UTF_8));
+
+        // The default field set for a document type has all its fields as columns, and strings are dictionary encoded.
+        access.expect(tokens);
+        access.expect(parameters -> {
+            parameters.getLocalDataHandler().onMessage(new PutDocumentMessage(new DocumentPut(doc1)), tokens.get(0));
+            parameters.getLocalDataHandler().onMessage(new PutDocumentMessage(new DocumentPut(doc2)), tokens.get(1));
+            parameters.getLocalDataHandler().onMessage(new PutDocumentMessage(new DocumentPut(doc1)), tokens.get(2));
+            parameters.getControlHandler().onDone(VisitorControlHandler.CompletionCode.SUCCESS, "success");
+        });
+        in = readColumnar(driver, "http://localhost/document/v1/space/music/docid?format=columnar&wantedDocumentCount=3");
+        in.skipBytes(8 + 5);
+        assertEquals("music", readString(in));
+        assertEquals(3, in.readInt());
+        assertEquals(2, in.readInt());
+        for (int i = 0; i < 3; i++) readString(in);
+        assertEquals(0, in.readByte());
+        assertEquals("artist", readString(in));
+        assertEquals(ColumnarFormat.STRING, in.readByte());
+        assertEquals(0b111, in.readByte());
+        assertEquals(2, in.readInt());
+        assertEquals("Tom Waits", readString(in));
+        assertEquals("Asa-Chan & Jun-Ray", readString(in));
+        assertEquals(0, in.readInt());
+        assertEquals(1, in.readInt());
+        assertEquals(0, in.readInt());
+        assertEquals("embedding", readString(in));
+        in.readAllBytes();
+
+        var response = driver.sendRequest("http://localhost/document/v1/space/music/docid?format=parquet");
+        assertSameJson("""
+                       {
+                         "pathId": "/document/v1/space/music/docid",
+                         "message": "Failed parsing 'parquet': Format must be 'json' or 'columnar'"
+                       }""", response.readAll());
+        assertEquals(400, response.getStatus());
+        driver.close();
+    }
+
+    private static DataInputStream readColumnar(RequestHandlerTestDriver driver, String uri) {
+        ReadableContentChannel content = new ReadableContentChannel();
+        AtomicReference<com.yahoo.jdisc.Response> response = new AtomicReference<>();
+        Request request = HttpRequest.newServerRequest(driver.jDiscDriver(), URI.create(uri), HttpRequest.Method.GET);
+        request.connect(received -> {
+            response.set(received);
+            return content;
+        }).close(null);
+        request.release();
+        DataInputStream in = new DataInputStream(content.toStream());
+        assertEquals(200, response.get().getStatus());
+        assertEquals(List.of(ColumnarFormat.CONTENT_TYPE), response.get().headers().get("Content-Type"));
+        return in;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), UTF_8);
+    }
+
+    private static Tensor readTensor(DataInputStream in) throws IOException {
+        return TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(in.readNBytes(in.readInt())));
+    }
+
     @Test
     public void testResponses() {
         RequestHandlerTestDriver driver = new RequestHandlerTestDriver(handler);
@@ -299,6 +538,7 @@ public class DocumentV1ApiTest {
                          "pathId": "/document/v1/not-found",
                          "message": "Nothing at '/document/v1/not-found'. Available paths are:
                        /document/v1/
+                       /document/v1/batch
                        /document/v1/{namespace}/{documentType}/docid/
                        /document/v1/{namespace}/{documentType}/group/{group}/
                        /document/v1/{namespace}/{documentType}/number/{number}/
@@ -1157,6 +1397,57 @@ public class DocumentV1ApiTest {
         }
     }
 
+    @Test(timeout = 60_000)
+    public void testBatchEndsWithErrorWhenRequestBodyFails() throws IOException {
+        RequestHandlerTestDriver driver = new RequestHandlerTestDriver(handler);
+        access.session.expect((operation, parameters) -> {
+            parameters.responseHandler().get().handleResponse(new Response(0, null, Response.Outcome.SUCCESS));
+            return new Result();
+        });
+        ReadableContentChannel content = new ReadableContentChannel();
+        AtomicReference<com.yahoo.jdisc.Response> response = new AtomicReference<>();
+        Request request = HttpRequest.newServerRequest(driver.jDiscDriver(), URI.create("http://localhost/document/v1/batch"), POST);
+        ContentChannel requestContent = request.connect(received -> {
+            response.set(received);
+            return content;
+        });
+        request.release();
+        requestContent.write(ByteBuffer.wrap(("{\"remove\": \"id:space:music::one\"}\n" +
+                                              "{\"remove\": \"id:space:mu").getBytes(UTF_8)), null);
+        requestContent.onError(new IOException("connection reset"));
+        requestContent.close(null); // As done by the HTTP server after an error
+
+        String[] lines = new String(content.toStream().readAllBytes(), UTF_8).split("\n");
+        assertEquals(200, response.get().getStatus());
+        assertEquals(2, lines.length);
+        assertSameJson("""
+                       {"index": 0, "status": 200, "id": "id:space:music::one"}""", lines[0]);
+        assertSameJson("""
+                       {"status": 400, "message": "Failed reading request body: connection reset"}""", lines[1]);
+        driver.close();
+    }
+
+    @Test
+    public void testJsonLinesSplitAcrossBuffers() {
+        Map<Integer, String> lines = new TreeMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CompletionHandler handler = new CompletionHandler() {
+            @Override public void completed() { }
+            @Override public void failed(Throwable t) { failure.set(t); }
+        };
+        var channel = new DocumentV1ApiHandler.JsonLinesContentChannel((index, line) -> lines.put(index, new String(line, UTF_8)),
+                                                                       () -> { }, failure::set);
+        channel.write(ByteBuffer.wrap("  \n{\"a\"}\n{\"b".getBytes(UTF_8)), handler);
+        ByteBuffer direct = ByteBuffer.allocateDirect(16);
+        direct.put("c\"}\n\n{\"d".getBytes(UTF_8)).flip();
+        channel.write(direct, handler);
+        channel.write(ByteBuffer.wrap("}\"".getBytes(UTF_8), 1, 1), handler);
+        channel.write(ByteBuffer.wrap("}".getBytes(UTF_8)), handler);
+        channel.close(handler);
+        assertNull(failure.get());
+        assertEquals(Map.of(0, "{\"a\"}", 1, "{\"bc\"}", 2, "{\"d\"}"), lines);
+    }
+
     @Test
     public void visit_timestamp_ranges_can_be_open_in_both_ends() {
         // Only specifying fromTimestamp; visit up to current time
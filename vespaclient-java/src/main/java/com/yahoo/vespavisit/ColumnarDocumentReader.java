@@ -0,0 +1,352 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespavisit;
+
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads documents visited through /document/v1 with {@code format=columnar}, one row group at a time.
+ * The values of each column of a row group are decoded into an array indexed by row, and string columns
+ * keep their dictionary, so the dictionary index of a row can be used in place of its string.
+ * Tensors are decoded on access, as views over the bytes of their row group.
+ * <pre>
+ * try (ColumnarDocumentReader reader = new ColumnarDocumentReader(response.getEntity().getContent())) {
+ *     for (Optional&lt;RowGroup&gt; group; (group = reader.next()).isPresent(); ) {
+ *         DoubleColumn price = (DoubleColumn) group.get().column("price").get();
+ *         ...
+ *     }
+ *     String continuation = reader.trailer(); // JSON with "continuation", "documentCount" and "message", as applicable
+ * }
+ * </pre>
+ * See {@code com.yahoo.document.restapi.resource.ColumnarFormat} in {@code vespaclient-container-plugin} for the layout.
+ */
+public class ColumnarDocumentReader implements Closeable {
+
+    static final int MAGIC = 0x56434f4c; // "VCOL"
+    static final int VERSION = 1;
+    static final byte ROW_GROUP = 'R';
+    static final byte TRAILER = 'T';
+
+    private final DataInputStream in;
+    private String trailer = null;
+
+    /** Creates a new reader of the given stream, and verifies its header. */
+    public ColumnarDocumentReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        int magic = this.in.readInt();
+        if (magic != MAGIC)
+            throw new IllegalArgumentException("Not a columnar document stream, magic was " + Integer.toHexString(magic));
+        int version = this.in.readInt();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported columnar document stream version " + version +
+                                               ", expected " + VERSION);
+    }
+
+    /** Returns the next row group of the stream, or empty when the stream has ended, and the trailer is available. */
+    public Optional<RowGroup> next() throws IOException {
+        if (trailer != null) return Optional.empty();
+
+        byte kind;
+        try {
+            kind = in.readByte();
+        }
+        catch (EOFException e) {
+            throw new IOException("Columnar document stream ended before its trailer; the response was likely cut short", e);
+        }
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return switch (kind) {
+            case ROW_GROUP -> Optional.of(new RowGroup(ByteBuffer.wrap(payload)));
+            case TRAILER -> {
+                trailer = new String(payload, UTF_8);
+                yield Optional.empty();
+            }
+            default -> throw new IOException("Unknown frame kind '" + (char) kind + "' in columnar document stream");
+        };
+    }
+
+    /**
+     * Returns the JSON object which ends the stream, with the same fields as a JSON visit response has, except
+     * "documents", or null if the end of the stream has not yet been reached by {@link #next()}.
+     */
+    public String trailer() { return trailer; }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** A group of documents of a single document type, stored column-wise. */
+    public static class RowGroup {
+
+        private final String documentType;
+        private final String[] ids;
+        private final byte[] removed;
+        private final List<Column> columns;
+
+        RowGroup(ByteBuffer buffer) {
+            documentType = readString(buffer);
+            int rows = buffer.getInt();
+            int columnCount = buffer.getInt();
+            ids = new String[rows];
+            for (int row = 0; row < rows; row++)
+                ids[row] = readString(buffer);
+            removed = readBitmap(buffer, rows);
+            List<Column> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++)
+                columns.add(readColumn(buffer, rows));
+            this.columns = Collections.unmodifiableList(columns);
+        }
+
+        public String documentType() { return documentType; }
+
+        /** Returns the number of documents in this. */
+        public int size() { return ids.length; }
+
+        /** Returns the document id of the given row. */
+        public String id(int row) { return ids[row]; }
+
+        /** Returns whether the given row is a removed document, which has no values in any column. */
+        public boolean isRemoval(int row) { return isSet(removed, row); }
+
+        /** Returns the columns of this, in document type order. */
+        public List<Column> columns() { return columns; }
+
+        /** Returns the column with the given name, if present in this row group. */
+        public Optional<Column> column(String name) {
+            return columns.stream().filter(column -> column.name().equals(name)).findFirst();
+        }
+
+    }
+
+    /** The types of columns, by their code in the stream. */
+    public enum Type {
+
+        INT(1), LONG(2), FLOAT(3), DOUBLE(4), BOOL(5), BYTE(6), STRING(7), TENSOR(8), JSON(9);
+
+        private final int code;
+
+        Type(int code) { this.code = code; }
+
+        static Type of(int code) {
+            for (Type type : values())
+                if (type.code == code)
+                    return type;
+
+            throw new IllegalArgumentException("Unknown column type " + code);
+        }
+
+    }
+
+    /** The values of a field for all rows of a row group. */
+    public abstract static class Column {
+
+        private final String name;
+        private final byte[] present;
+
+        Column(String name, byte[] present) {
+            this.name = name;
+            this.present = present;
+        }
+
+        public String name() { return name; }
+
+        public abstract Type type();
+
+        /** Returns whether the given row has a value for this; the typed getters return 0, false or null when not. */
+        public boolean isPresent(int row) { return isSet(present, row); }
+
+    }
+
+    public static final class IntColumn extends Column {
+        private final int[] values;
+        IntColumn(String name, byte[] present, int[] values) { super(name, present); this.values = values; }
+        @Override public Type type() { return Type.INT; }
+        public int get(int row) { return values[row]; }
+    }
+
+    public static final class LongColumn extends Column {
+        private final long[] values;
+        LongColumn(String name, byte[] present, long[] values) { super(name, present); this.values = values; }
+        @Override public Type type() { return Type.LONG; }
+        public long get(int row) { return values[row]; }
+    }
+
+    public static final class FloatColumn extends Column {
+        private final float[] values;
+        FloatColumn(String name, byte[] present, float[] values) { super(name, present); this.values = values; }
+        @Override public Type type() { return Type.FLOAT; }
+        public float get(int row) { return values[row]; }
+    }
+
+    public static final class DoubleColumn extends Column {
+        private final double[] values;
+        DoubleColumn(String name, byte[] present, double[] values) { super(name, present); this.values = values; }
+        @Override public Type type() { return Type.DOUBLE; }
+        public double get(int row) { return values[row]; }
+    }
+
+    public static final class BoolColumn extends Column {
+        private final byte[] values;
+        BoolColumn(String name, byte[] present, byte[] values) { super(name, present); this.values = values; }
+        @Override public Type type() { return Type.BOOL; }
+        public boolean get(int row) { return values[row] != 0; }
+    }
+
+    public static final class ByteColumn extends Column {
+        private final byte[] values;
+        ByteColumn(String name, byte[] present, byte[] values) { super(name, present); this.values = values; }
+        @Override public Type type() { return Type.BYTE; }
+        public byte get(int row) { return values[row]; }
+    }
+
+    /** A dictionary encoded string column. */
+    public static final class StringColumn extends Column {
+
+        private final List<String> dictionary;
+        private final int[] indices;
+
+        StringColumn(String name, byte[] present, List<String> dictionary, int[] indices) {
+            super(name, present);
+            this.dictionary = dictionary;
+            this.indices = indices;
+        }
+
+        @Override public Type type() { return Type.STRING; }
+
+        /** Returns the distinct strings of this column. */
+        public List<String> dictionary() { return dictionary; }
+
+        /** Returns the index of the value of the given row in the dictionary of this, or -1 if not present. */
+        public int index(int row) { return indices[row]; }
+
+        public String get(int row) { return indices[row] < 0 ? null : dictionary.get(indices[row]); }
+
+    }
+
+    /** A column of tensors, which are kept as their serialized bytes until accessed. */
+    public static final class TensorColumn extends Column {
+
+        private final TensorType tensorType;
+        private final ByteBuffer[] values;
+
+        TensorColumn(String name, byte[] present, TensorType tensorType, ByteBuffer[] values) {
+            super(name, present);
+            this.tensorType = tensorType;
+            this.values = values;
+        }
+
+        @Override public Type type() { return Type.TENSOR; }
+
+        public TensorType tensorType() { return tensorType; }
+
+        public Tensor get(int row) {
+            if (values[row] == null) return null;
+            ByteBuffer value = values[row];
+            return TypedBinaryFormat.decodeView(Optional.of(tensorType),
+                                                GrowableByteBuffer.wrap(value.array(), value.arrayOffset(), value.remaining()));
+        }
+
+    }
+
+    /** A column of field values of any other type, as they are rendered in the JSON document format. */
+    public static final class JsonColumn extends Column {
+        private final String[] values;
+        JsonColumn(String name, byte[] present, String[] values) { super(name, present); this.values = values; }
+        @Override public Type type() { return Type.JSON; }
+        public String get(int row) { return values[row]; }
+    }
+
+    private static Column readColumn(ByteBuffer buffer, int rows) {
+        String name = readString(buffer);
+        Type type = Type.of(buffer.get());
+        TensorType tensorType = type == Type.TENSOR ? TensorType.fromSpec(readString(buffer)) : null;
+        byte[] present = readBitmap(buffer, rows);
+        switch (type) {
+            case INT -> {
+                int[] values = new int[rows];
+                for (int row = 0; row < rows; row++) if (isSet(present, row)) values[row] = buffer.getInt();
+                return new IntColumn(name, present, values);
+            }
+            case LONG -> {
+                long[] values = new long[rows];
+                for (int row = 0; row < rows; row++) if (isSet(present, row)) values[row] = buffer.getLong();
+                return new LongColumn(name, present, values);
+            }
+            case FLOAT -> {
+                float[] values = new float[rows];
+                for (int row = 0; row < rows; row++) if (isSet(present, row)) values[row] = buffer.getFloat();
+                return new FloatColumn(name, present, values);
+            }
+            case DOUBLE -> {
+                double[] values = new double[rows];
+                for (int row = 0; row < rows; row++) if (isSet(present, row)) values[row] = buffer.getDouble();
+                return new DoubleColumn(name, present, values);
+            }
+            case BOOL, BYTE -> {
+                byte[] values = new byte[rows];
+                for (int row = 0; row < rows; row++) if (isSet(present, row)) values[row] = buffer.get();
+                return type == Type.BOOL ? new BoolColumn(name, present, values) : new ByteColumn(name, present, values);
+            }
+            case STRING -> {
+                String[] dictionary = new String[buffer.getInt()];
+                for (int i = 0; i < dictionary.length; i++)
+                    dictionary[i] = readString(buffer);
+                int[] indices = new int[rows];
+                for (int row = 0; row < rows; row++) indices[row] = isSet(present, row) ? buffer.getInt() : -1;
+                return new StringColumn(name, present, List.of(dictionary), indices);
+            }
+            case TENSOR -> {
+                ByteBuffer[] values = new ByteBuffer[rows];
+                for (int row = 0; row < rows; row++) if (isSet(present, row)) values[row] = readBytes(buffer);
+                return new TensorColumn(name, present, tensorType, values);
+            }
+            default -> {
+                String[] values = new String[rows];
+                for (int row = 0; row < rows; row++) if (isSet(present, row)) values[row] = readString(buffer);
+                return new JsonColumn(name, present, values);
+            }
+        }
+    }
+
+    private static boolean isSet(byte[] bitmap, int row) {
+        return (bitmap[row / 8] & (1 << (row % 8))) != 0;
+    }
+
+    private static byte[] readBitmap(ByteBuffer buffer, int rows) {
+        byte[] bitmap = new byte[(rows + 7) / 8];
+        buffer.get(bitmap);
+        return bitmap;
+    }
+
+    /** Returns a slice of the given buffer with the length preceding it, and advances the buffer past it. */
+    private static ByteBuffer readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        ByteBuffer bytes = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+}
@@ -0,0 +1,135 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespavisit;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import com.yahoo.vespavisit.ColumnarDocumentReader.DoubleColumn;
+import com.yahoo.vespavisit.ColumnarDocumentReader.IntColumn;
+import com.yahoo.vespavisit.ColumnarDocumentReader.JsonColumn;
+import com.yahoo.vespavisit.ColumnarDocumentReader.RowGroup;
+import com.yahoo.vespavisit.ColumnarDocumentReader.StringColumn;
+import com.yahoo.vespavisit.ColumnarDocumentReader.TensorColumn;
+import com.yahoo.vespavisit.ColumnarDocumentReader.Type;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarDocumentReaderTest {
+
+    @Test
+    void testReading() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x56434f4c);
+        out.writeInt(1);
+
+        ByteArrayOutputStream group = new ByteArrayOutputStream();
+        DataOutputStream rows = new DataOutputStream(group);
+        writeString(rows, "music");
+        rows.writeInt(3);
+        rows.writeInt(4);
+        writeString(rows, "id:ns:music::a");
+        writeString(rows, "id:ns:music::b");
+        writeString(rows, "id:ns:music::c");
+        rows.writeByte(0b100);
+
+        writeString(rows, "year");
+        rows.writeByte(1);
+        rows.writeByte(0b011);
+        rows.writeInt(1984);
+        rows.writeInt(2001);
+
+        writeString(rows, "artist");
+        rows.writeByte(7);
+        rows.writeByte(0b011);
+        rows.writeInt(1);
+        writeString(rows, "Tom Waits");
+        rows.writeInt(0);
+        rows.writeInt(0);
+
+        writeString(rows, "embedding");
+        rows.writeByte(8);
+        writeString(rows, "tensor<float>(x[2])");
+        rows.writeByte(0b010);
+        byte[] tensor = TypedBinaryFormat.encode(Tensor.from("tensor<float>(x[2]):[1,2]"));
+        rows.writeInt(tensor.length);
+        rows.write(tensor);
+
+        writeString(rows, "tags");
+        rows.writeByte(9);
+        rows.writeByte(0b001);
+        writeString(rows, "[\"jazz\"]");
+
+        out.writeByte('R');
+        out.writeInt(group.size());
+        group.writeTo(out);
+
+        byte[] trailer = "{\"documentCount\":3}".getBytes(UTF_8);
+        out.writeByte('T');
+        out.writeInt(trailer.length);
+        out.write(trailer);
+
+        try (ColumnarDocumentReader reader = new ColumnarDocumentReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            RowGroup rowGroup = reader.next().get();
+            assertNull(reader.trailer());
+            assertEquals("music", rowGroup.documentType());
+            assertEquals(3, rowGroup.size());
+            assertEquals("id:ns:music::b", rowGroup.id(1));
+            assertFalse(rowGroup.isRemoval(1));
+            assertTrue(rowGroup.isRemoval(2));
+            assertEquals(List.of("year", "artist", "embedding", "tags"),
+                         rowGroup.columns().stream().map(ColumnarDocumentReader.Column::name).toList());
+
+            IntColumn year = (IntColumn) rowGroup.column("year").get();
+            assertEquals(Type.INT, year.type());
+            assertEquals(2001, year.get(1));
+            assertFalse(year.isPresent(2));
+
+            StringColumn artist = (StringColumn) rowGroup.column("artist").get();
+            assertEquals(List.of("Tom Waits"), artist.dictionary());
+            assertEquals("Tom Waits", artist.get(1));
+            assertEquals(-1, artist.index(2));
+            assertNull(artist.get(2));
+
+            TensorColumn embedding = (TensorColumn) rowGroup.column("embedding").get();
+            assertEquals("tensor<float>(x[2])", embedding.tensorType().toString());
+            assertNull(embedding.get(0));
+            assertEquals(Tensor.from("tensor<float>(x[2]):[1,2]"), embedding.get(1));
+
+            assertEquals("[\"jazz\"]", ((JsonColumn) rowGroup.column("tags").get()).get(0));
+            assertTrue(rowGroup.column("price").isEmpty());
+
+            assertTrue(reader.next().isEmpty());
+            assertEquals("{\"documentCount\":3}", reader.trailer());
+            assertTrue(reader.next().isEmpty());
+        }
+    }
+
+    @Test
+    void testInvalidStreams() {
+        assertEquals("Not a columnar document stream, magic was 7b226964",
+                     assertThrows(IllegalArgumentException.class,
+                                  () -> new ColumnarDocumentReader(new ByteArrayInputStream("{\"id\":1}".getBytes(UTF_8))))
+                             .getMessage());
+        assertThrows(IOException.class,
+                     () -> new ColumnarDocumentReader(new ByteArrayInputStream(new byte[] { 'V', 'C', 'O', 'L', 0, 0, 0, 1 })).next());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
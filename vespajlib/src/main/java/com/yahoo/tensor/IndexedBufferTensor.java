@@ -0,0 +1,62 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only indexed tensor which reads its values from a buffer holding them in the
+ * big-endian binary encoding of the cell type of the tensor, without copying them.
+ */
+class IndexedBufferTensor extends IndexedTensor {
+
+    private final ByteBuffer cells;
+    private final int size;
+
+    IndexedBufferTensor(TensorType type, DimensionSizes dimensionSizes, ByteBuffer cells) {
+        super(type, dimensionSizes);
+        this.cells = cells;
+        this.size = (int)dimensionSizes.totalSize();
+        if (cells.remaining() != (long)size * type.valueType().sizeOfCell())
+            throw new IllegalArgumentException("Expected " + size + " cells of type " + type.valueType() +
+                                               " but got " + cells.remaining() + " bytes");
+    }
+
+    @Override
+    public long size() { return size; }
+
+    @Override
+    public int sizeAsInt() { return size; }
+
+    @Override
+    public double get(long valueIndex) {
+        return type().valueType() == TensorType.Value.DOUBLE ? cells.getDouble((int)valueIndex * 8) : getFloat(valueIndex);
+    }
+
+    @Override
+    public float getFloat(long valueIndex) {
+        int index = (int)valueIndex;
+        return switch (type().valueType()) {
+            case DOUBLE -> (float)cells.getDouble(index * 8);
+            case FLOAT -> cells.getFloat(index * 4);
+            case BFLOAT16 -> Float.intBitsToFloat(cells.getShort(index * 2) << 16);
+            case INT8 -> cells.get(index);
+        };
+    }
+
+    @Override
+    public IndexedTensor withType(TensorType type) {
+        throwOnIncompatibleType(type);
+        return new IndexedBufferTensor(type, dimensionSizes(), cells);
+    }
+
+    /** Returns the same hash code as a tensor holding these values in a double or float array */
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++)
+            result = 31 * result + (type().valueType() == TensorType.Value.DOUBLE ? Double.hashCode(get(i))
+                                                                                   : Float.hashCode(getFloat(i)));
+        return result;
+    }
+
+}
@@ -3,6 +3,7 @@ package com.yahoo.tensor;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -158,6 +159,17 @@ public abstract class IndexedTensor implements Tensor {
      */
     public abstract float getFloat(long valueIndex);
 
+    /**
+     * Returns a read-only tensor which reads its values directly from the given buffer, without copying them.
+     * The buffer must contain exactly the cells of the tensor, in standard value order, encoded as in the binary
+     * tensor format for the value type of the given type. It must not be modified while the tensor is in use.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain the expected number of bytes
+     */
+    public static IndexedTensor view(TensorType type, DimensionSizes sizes, ByteBuffer cells) {
+        return new IndexedBufferTensor(type, sizes, cells.slice().asReadOnlyBuffer());
+    }
+
     static long toValueIndex(long[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
         if (indexes.length == 0) return 0; // for speed
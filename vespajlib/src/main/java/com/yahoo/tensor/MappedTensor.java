@@ -2,13 +2,20 @@
 package com.yahoo.tensor;
 
 import com.google.common.collect.ImmutableMap;
+import com.yahoo.tensor.impl.LabelCache;
+import com.yahoo.tensor.impl.TensorAddressAny;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
- * A sparse implementation of a tensor backed by a Map of cells to values.
+ * A sparse implementation of a tensor, storing its cells column-wise: The labels of all cells in a single array,
+ * the values in another, and an open-addressing hash table of cell indexes for lookup by address.
+ * Cells are kept in insertion order, and may be accessed by their index in this order, which allows
+ * tensor functions and serializers to visit the cells without creating an address and cell object for each.
  *
  * @author bratseth
  */
@@ -16,41 +23,96 @@ public class MappedTensor implements Tensor {
 
     private final TensorType type;
 
-    private final ImmutableMap<TensorAddress, Double> cells;
+    /** The number of labels in each cell address */
+    private final int rank;
+
+    /** The labels of each cell, in order, with the labels of cell i at i * rank to (i + 1) * rank */
+    private final Label[] labels;
+
+    /** The value of each cell, in order */
+    private final double[] values;
+
+    /** Open-addressing hash table of cell index + 1 by address, where 0 denotes an empty slot */
+    private final int[] slots;
+
+    /** The cells of this as a map, created on demand */
+    private volatile Map<TensorAddress, Double> cells;
 
     /** Creates a sparse tensor. The cell addresses must match the type. */
-    private MappedTensor(TensorType type, Map<TensorAddress, Double> cells) {
+    private MappedTensor(TensorType type, Label[] labels, double[] values, int[] slots) {
         this.type = type;
-        this.cells = ImmutableMap.copyOf(cells);
+        this.rank = type.dimensions().size();
+        this.labels = labels;
+        this.values = values;
+        this.slots = slots;
     }
 
     @Override
     public TensorType type() { return type; }
 
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     /** Once we can store more cells than an int we should drop this. */
     @Override
-    public int sizeAsInt() { return cells.size(); }
+    public int sizeAsInt() { return values.length; }
+
+    /** Returns the label in the given dimension of the cell at the given index, in insertion order */
+    public Label label(int cell, int dimension) { return labels[cell * rank + dimension]; }
+
+    /** Returns the value of the cell at the given index, in insertion order */
+    public double value(int cell) { return values[cell]; }
+
+    /** Returns the address of the cell at the given index, in insertion order */
+    public TensorAddress address(int cell) {
+        return TensorAddressAny.ofUnsafe(Arrays.copyOfRange(labels, cell * rank, (cell + 1) * rank));
+    }
+
+    /** Returns the index of the cell with the given address, or -1 if this has no such cell */
+    public int indexOf(TensorAddress address) {
+        if (address.size() != rank) return -1;
+        int hash = 1;
+        for (int i = 0; i < rank; i++)
+            hash = 31 * hash + address.objectLabel(i).hashCode();
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int cell = slots[slot] - 1;
+            if (hasAddress(labels, rank, cell, address)) return cell;
+        }
+        return -1;
+    }
 
     @Override
-    public double get(TensorAddress address) { return cells.getOrDefault(address, 0.0); }
+    public double get(TensorAddress address) {
+        int cell = indexOf(address);
+        return cell < 0 ? 0.0 : values[cell];
+    }
 
     @Override
-    public boolean has(TensorAddress address) { return cells.containsKey(address); }
+    public boolean has(TensorAddress address) { return indexOf(address) >= 0; }
 
     @Override
-    public Double getAsDouble(TensorAddress address) { return cells.get(address); }
+    public Double getAsDouble(TensorAddress address) {
+        int cell = indexOf(address);
+        return cell < 0 ? null : values[cell];
+    }
 
     @Override
-    public Iterator<Cell> cellIterator() { return new CellIteratorAdaptor(cells.entrySet().iterator()); }
+    public Iterator<Cell> cellIterator() { return new CellIterator(); }
 
     @Override
-    public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+    public Iterator<Double> valueIterator() { return Arrays.stream(values).iterator(); }
 
     @Override
-    public Map<TensorAddress, Double> cells() { return cells; }
+    public Map<TensorAddress, Double> cells() {
+        if (cells == null) {
+            ImmutableMap.Builder<TensorAddress, Double> builder = ImmutableMap.builderWithExpectedSize(values.length);
+            for (int i = 0; i < values.length; i++)
+                builder.put(address(i), values[i]);
+            cells = builder.build();
+        }
+        return cells;
+    }
 
     @Override
     public Tensor withType(TensorType other) {
@@ -58,24 +120,21 @@ public class MappedTensor implements Tensor {
             throw new IllegalArgumentException("MappedTensor.withType: types are not compatible. Current type: '" +
                     this.type + "', requested type: '" + type.toString() + "'");
         }
-        return new MappedTensor(other, cells);
+        return new MappedTensor(other, labels, values, slots);
     }
 
     @Override
     public Tensor remove(Set<TensorAddress> addresses) {
-        Tensor.Builder builder = Tensor.Builder.of(type());
-        for (Iterator<Tensor.Cell> i = cellIterator(); i.hasNext(); ) {
-            Tensor.Cell cell = i.next();
-            TensorAddress address = cell.getKey();
-            if ( ! addresses.contains(address)) {
-                builder.cell(address, cell.getValue());
-            }
+        Builder builder = Builder.of(type);
+        for (int i = 0; i < values.length; i++) {
+            if ( ! addresses.contains(address(i)))
+                builder.cell(labels, i * rank, values[i]);
         }
         return builder.build();
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() { return cells().hashCode(); }
 
     @Override
     public String toString() { return toString(true, true); }
@@ -98,15 +157,44 @@ public class MappedTensor implements Tensor {
         return Tensor.equals(this, ((Tensor)other));
     }
 
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(Label[] labels, int offset, int rank) {
+        int hash = 1;
+        for (int i = 0; i < rank; i++)
+            hash = 31 * hash + labels[offset + i].hashCode();
+        return hash;
+    }
+
+    private static boolean hasAddress(Label[] labels, int rank, int cell, TensorAddress address) {
+        for (int i = 0; i < rank; i++)
+            if ( ! labels[cell * rank + i].isEqualTo(address.objectLabel(i))) return false;
+        return true;
+    }
+
+    private static boolean hasSameAddress(Label[] labels, int rank, int cell, int otherCell) {
+        for (int i = 0; i < rank; i++)
+            if ( ! labels[cell * rank + i].isEqualTo(labels[otherCell * rank + i])) return false;
+        return true;
+    }
+
     public static class Builder implements Tensor.Builder {
 
         private final TensorType type;
-        private final ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        private final int rank;
+        private Label[] labels;
+        private double[] values;
+        private int size = 0;
 
         public static Builder of(TensorType type) { return new Builder(type); }
 
         private Builder(TensorType type) {
             this.type = type;
+            this.rank = type.dimensions().size();
+            this.labels = new Label[8 * rank];
+            this.values = new double[8];
         }
 
         public CellBuilder cell() {
@@ -123,7 +211,11 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            cells.put(address, value);
+            if (address.size() != rank)
+                throw new IllegalArgumentException(address + " is not a valid address in " + type);
+            int offset = add(value);
+            for (int i = 0; i < rank; i++)
+                labels[offset + i] = address.objectLabel(i);
             return this;
         }
 
@@ -134,32 +226,75 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(double value, long... labels) {
-            cells.put(TensorAddress.of(labels), value);
+            if (labels.length != rank)
+                throw new IllegalArgumentException(Arrays.toString(labels) + " is not a valid address in " + type);
+            for (long label : labels)
+                if (label < Tensor.invalidIndex)
+                    throw new IndexOutOfBoundsException("cell label " + label + " must be positive");
+            int offset = add(value);
+            for (int i = 0; i < rank; i++)
+                this.labels[offset + i] = LabelCache.GLOBAL.getOrCreateLabel(labels[i]);
             return this;
         }
 
+        /**
+         * Adds a cell with the given labels, one for each dimension of the type of this, in order.
+         * The labels are copied, so the given array may be reused.
+         */
+        public Builder cell(Label[] labels, double value) {
+            if (labels.length != rank)
+                throw new IllegalArgumentException(Arrays.toString(labels) + " is not a valid address in " + type);
+            return cell(labels, 0, value);
+        }
+
+        private Builder cell(Label[] labels, int from, double value) {
+            System.arraycopy(labels, from, this.labels, add(value), rank);
+            return this;
+        }
+
+        /** Adds room for another cell with the given value, and returns the offset of its labels */
+        private int add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                labels = Arrays.copyOf(labels, size * 2 * rank);
+            }
+            values[size] = value;
+            return size++ * rank;
+        }
+
         @Override
         public MappedTensor build() {
-            return new MappedTensor(type, cells.build());
+            Label[] labels = Arrays.copyOf(this.labels, size * rank);
+            double[] values = Arrays.copyOf(this.values, size);
+            int[] slots = new int[Math.max(2, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1)];
+            int mask = slots.length - 1;
+            for (int cell = 0; cell < size; cell++) {
+                int slot = spread(hash(labels, cell * rank, rank)) & mask;
+                for ( ; slots[slot] != 0; slot = (slot + 1) & mask)
+                    if (hasSameAddress(labels, rank, slots[slot] - 1, cell))
+                        throw new IllegalArgumentException("Multiple values for cell " +
+                                                           TensorAddressAny.ofUnsafe(Arrays.copyOfRange(labels, cell * rank, (cell + 1) * rank)).toString(type) +
+                                                           " in " + type);
+                slots[slot] = cell + 1;
+            }
+            return new MappedTensor(type, labels, values, slots);
         }
 
     }
 
-    private static class CellIteratorAdaptor implements Iterator<Cell> {
+    private class CellIterator implements Iterator<Cell> {
 
-        private final Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator;
-
-        private CellIteratorAdaptor(Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator) {
-            this.adaptedIterator = adaptedIterator;
-        }
+        private int next = 0;
 
         @Override
-        public boolean hasNext() { return adaptedIterator.hasNext(); }
+        public boolean hasNext() { return next < values.length; }
 
         @Override
         public Cell next() {
-            Map.Entry<TensorAddress, Double> entry = adaptedIterator.next();
-            return new Cell(entry.getKey(), entry.getValue());
+            if ( ! hasNext()) throw new NoSuchElementException();
+            Cell cell = new Cell(address(next), values[next]);
+            next++;
+            return cell;
         }
 
     }
@@ -5,8 +5,8 @@ package com.yahoo.tensor;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -30,24 +30,137 @@ public class MixedTensor implements Tensor {
     /** The dimension specification for this tensor */
     private final TensorType type;
 
-    // XXX consider using "record" instead
-    /** only exposed for internal use; subject to change without notice */
-    public static final class DenseSubspace {
+    /**
+     * A dense subspace, storing its cells in an array of the primitive type matching the cell value type.
+     * Only exposed for internal use; subject to change without notice.
+     */
+    public static abstract class DenseSubspace {
+
         public final TensorAddress sparseAddress;
-        public final double[] cells;
-        DenseSubspace(TensorAddress sparseAddress, double[] cells) {
+
+        private DenseSubspace(TensorAddress sparseAddress) {
             this.sparseAddress = sparseAddress;
-            this.cells = cells;
         }
+
+        /**
+         * Returns a new, zero-filled subspace with storage suitable for the given value type.
+         * As in IndexedTensor, bfloat16 and int8 cells are stored as floats, such that values are
+         * only truncated to the value type when serialized.
+         */
+        static DenseSubspace of(TensorType.Value valueType, TensorAddress sparseAddress, int size) {
+            return switch (valueType) {
+                case DOUBLE -> new DoubleSubspace(sparseAddress, new double[size]);
+                case FLOAT, BFLOAT16, INT8 -> new FloatSubspace(sparseAddress, new float[size]);
+            };
+        }
+
+        /** Returns the number of cells in this */
+        public abstract int size();
+
+        /** Returns the value of the cell at the given dense offset */
+        public abstract double get(int offset);
+
+        /** Returns the value of the cell at the given dense offset as a float */
+        public float getFloat(int offset) { return (float)get(offset); }
+
+        abstract void set(int offset, double value);
+
+        void set(int offset, float value) { set(offset, (double)value); }
+
         @Override public int hashCode() {
-            return Objects.hash(sparseAddress, cells[0]);
+            return Objects.hash(sparseAddress, get(0));
         }
+
         @Override public boolean equals(Object other) {
-            if (other instanceof DenseSubspace o) {
-                return sparseAddress.equals(o.sparseAddress) && Arrays.equals(cells, o.cells);
-            }
-            return false;
+            if ( ! (other instanceof DenseSubspace o)) return false;
+            if ( ! sparseAddress.equals(o.sparseAddress) || size() != o.size()) return false;
+            for (int i = 0; i < size(); i++)
+                if (Double.compare(get(i), o.get(i)) != 0) return false;
+            return true;
+        }
+
+    }
+
+    /** A dense subspace of double cells. Only exposed for internal use; subject to change without notice. */
+    public static final class DoubleSubspace extends DenseSubspace {
+
+        public final double[] cells;
+
+        private DoubleSubspace(TensorAddress sparseAddress, double[] cells) {
+            super(sparseAddress);
+            this.cells = cells;
+        }
+
+        @Override public int size() { return cells.length; }
+        @Override public double get(int offset) { return cells[offset]; }
+        @Override void set(int offset, double value) { cells[offset] = value; }
+
+    }
+
+    /** A dense subspace of float cells. Only exposed for internal use; subject to change without notice. */
+    public static final class FloatSubspace extends DenseSubspace {
+
+        public final float[] cells;
+
+        private FloatSubspace(TensorAddress sparseAddress, float[] cells) {
+            super(sparseAddress);
+            this.cells = cells;
+        }
+
+        @Override public int size() { return cells.length; }
+        @Override public double get(int offset) { return cells[offset]; }
+        @Override public float getFloat(int offset) { return cells[offset]; }
+        @Override void set(int offset, double value) { cells[offset] = (float)value; }
+        @Override void set(int offset, float value) { cells[offset] = value; }
+
+    }
+
+    /**
+     * A read-only dense subspace which reads its cells from a buffer holding them in the binary
+     * encoding of the given cell type, without copying them.
+     * Only exposed for internal use; subject to change without notice.
+     */
+    public static final class SerializedSubspace extends DenseSubspace {
+
+        public final TensorType.Value valueType;
+        public final ByteBuffer cells;
+
+        private SerializedSubspace(TensorAddress sparseAddress, TensorType.Value valueType, ByteBuffer cells) {
+            super(sparseAddress);
+            this.valueType = valueType;
+            this.cells = cells;
+        }
+
+        @Override public int size() { return cells.remaining() / valueType.sizeOfCell(); }
+
+        @Override
+        public double get(int offset) {
+            return valueType == TensorType.Value.DOUBLE ? cells.getDouble(offset * 8) : getFloat(offset);
+        }
+
+        @Override
+        public float getFloat(int offset) {
+            return switch (valueType) {
+                case DOUBLE -> (float)cells.getDouble(offset * 8);
+                case FLOAT -> cells.getFloat(offset * 4);
+                case BFLOAT16 -> Float.intBitsToFloat(cells.getShort(offset * 2) << 16);
+                case INT8 -> cells.get(offset);
+            };
         }
+
+        @Override
+        void set(int offset, double value) {
+            throw new UnsupportedOperationException("Serialized subspaces are read-only");
+        }
+
+        /** Returns a modifiable copy of this */
+        DenseSubspace copy() {
+            DenseSubspace copy = DenseSubspace.of(valueType, sparseAddress, size());
+            for (int i = 0; i < size(); i++)
+                copy.set(i, get(i));
+            return copy;
+        }
+
     }
 
     /** only exposed for internal use; subject to change without notice */
@@ -74,27 +187,27 @@ public class MixedTensor implements Tensor {
     public double get(TensorAddress address) {
         var block = index.blockOf(address);
         int denseOffset = index.denseOffsetOf(address);
-        if (block == null || denseOffset < 0 || denseOffset >= block.cells.length) {
+        if (block == null || denseOffset < 0 || denseOffset >= block.size()) {
             return 0.0;
         }
-        return block.cells[denseOffset];
+        return block.get(denseOffset);
     }
 
     @Override
     public Double getAsDouble(TensorAddress address) {
         var block = index.blockOf(address);
         int denseOffset = index.denseOffsetOf(address);
-        if (block == null || denseOffset < 0 || denseOffset >= block.cells.length) {
+        if (block == null || denseOffset < 0 || denseOffset >= block.size()) {
             return null;
         }
-        return block.cells[denseOffset];
+        return block.get(denseOffset);
     }
 
     @Override
     public boolean has(TensorAddress address) {
         var block = index.blockOf(address);
         int denseOffset = index.denseOffsetOf(address);
-        return (block != null && denseOffset >= 0 && denseOffset < block.cells.length);
+        return (block != null && denseOffset >= 0 && denseOffset < block.size());
     }
 
     /**
@@ -130,7 +243,7 @@ public class MixedTensor implements Tensor {
                 }
                 TensorAddress fullAddr = currentBlock.sparseAddress.fullAddressOf(index.type.dimensions(), labels);
                 prevOffset = currOffset;
-                double value = currentBlock.cells[currOffset++];
+                double value = currentBlock.get(currOffset++);
                 return new Cell(fullAddr, value);
             }
         };
@@ -145,7 +258,7 @@ public class MixedTensor implements Tensor {
         return new Iterator<>() {
 
             final Iterator<DenseSubspace> blockIterator = index.denseSubspaces.iterator();
-            double[] currentBlock = null;
+            DenseSubspace currentBlock = null;
             int currOffset = index.denseSubspaceSize;
 
             @Override
@@ -156,10 +269,10 @@ public class MixedTensor implements Tensor {
             @Override
             public Double next() {
                 if (currOffset == index.denseSubspaceSize) {
-                    currentBlock = blockIterator.next().cells;
+                    currentBlock = blockIterator.next();
                     currOffset = 0;
                 }
-                return currentBlock[currOffset++];
+                return currentBlock.get(currOffset++);
             }
         };
     }
@@ -290,7 +403,7 @@ public class MixedTensor implements Tensor {
     public static class BoundBuilder extends Builder {
 
         /** For each sparse partial address, hold a dense subspace */
-        private final Map<TensorAddress, double[]> denseSubspaceMap;
+        private final Map<TensorAddress, DenseSubspace> denseSubspaceMap;
         private final Index.Builder indexBuilder;
         private final Index index;
         private final TensorType denseSubtype;
@@ -308,14 +421,21 @@ public class MixedTensor implements Tensor {
             return index.denseSubspaceSize();
         }
 
-        private double[] denseSubspace(TensorAddress sparseAddress) {
-            return denseSubspaceMap.computeIfAbsent(sparseAddress, (key) -> new double[(int)denseSubspaceSize()]);
+        /** Returns the modifiable subspace at the given address, copying it first if it is a serialized one */
+        private DenseSubspace denseSubspace(TensorAddress sparseAddress) {
+            DenseSubspace subspace = denseSubspaceMap.computeIfAbsent(sparseAddress,
+                                                                      (key) -> DenseSubspace.of(type.valueType(), key, (int)denseSubspaceSize()));
+            if (subspace instanceof SerializedSubspace serialized) {
+                subspace = serialized.copy();
+                denseSubspaceMap.put(sparseAddress, subspace);
+            }
+            return subspace;
         }
 
         public IndexedTensor.DirectIndexBuilder denseSubspaceBuilder(TensorAddress sparseAddress) {
-            double[] values = new double[(int)denseSubspaceSize()];
-            denseSubspaceMap.put(sparseAddress, values);
-            return new DenseSubspaceBuilder(denseSubtype, values);
+            DenseSubspace subspace = DenseSubspace.of(type.valueType(), sparseAddress, (int)denseSubspaceSize());
+            denseSubspaceMap.put(sparseAddress, subspace);
+            return new DenseSubspaceBuilder(denseSubtype, subspace);
         }
 
         @Override
@@ -327,31 +447,73 @@ public class MixedTensor implements Tensor {
         public Tensor.Builder cell(TensorAddress address, double value) {
             TensorAddress sparsePart = address.mappedPartialAddress(index.sparseType, index.type.dimensions());
             int denseOffset = index.denseOffsetOf(address);
-            double[] denseSubspace = denseSubspace(sparsePart);
-            denseSubspace[denseOffset] = value;
+            denseSubspace(sparsePart).set(denseOffset, value);
             return this;
         }
 
         public Tensor.Builder block(TensorAddress sparsePart, double[] values) {
+            validateBlockSize(values.length);
+            DenseSubspace denseSubspace = denseSubspace(sparsePart);
+            if (denseSubspace instanceof DoubleSubspace doubles)
+                System.arraycopy(values, 0, doubles.cells, 0, doubles.cells.length);
+            else
+                for (int i = 0; i < denseSubspace.size(); i++)
+                    denseSubspace.set(i, values[i]);
+            return this;
+        }
+
+        public Tensor.Builder block(TensorAddress sparsePart, float[] values) {
+            validateBlockSize(values.length);
+            DenseSubspace denseSubspace = denseSubspace(sparsePart);
+            if (denseSubspace instanceof FloatSubspace floats)
+                System.arraycopy(values, 0, floats.cells, 0, floats.cells.length);
+            else
+                for (int i = 0; i < denseSubspace.size(); i++)
+                    denseSubspace.set(i, values[i]);
+            return this;
+        }
+
+        /** Adds a block of bfloat16 values, given as the upper 16 bits of the corresponding floats */
+        public Tensor.Builder bfloat16Block(TensorAddress sparsePart, short[] values) {
+            validateBlockSize(values.length);
+            DenseSubspace denseSubspace = denseSubspace(sparsePart);
+            for (int i = 0; i < denseSubspace.size(); i++)
+                denseSubspace.set(i, Float.intBitsToFloat(values[i] << 16));
+            return this;
+        }
+
+        public Tensor.Builder block(TensorAddress sparsePart, byte[] values) {
+            validateBlockSize(values.length);
+            DenseSubspace denseSubspace = denseSubspace(sparsePart);
+            for (int i = 0; i < denseSubspace.size(); i++)
+                denseSubspace.set(i, values[i]);
+            return this;
+        }
+
+        /**
+         * Adds a block which reads its values directly from the given buffer, without copying them.
+         * The buffer must contain exactly the cells of one dense subspace, encoded as in the binary
+         * tensor format for the value type of this. It must not be modified while the tensor is in use.
+         */
+        public Tensor.Builder serializedBlock(TensorAddress sparsePart, ByteBuffer cells) {
+            long expectedBytes = denseSubspaceSize() * type.valueType().sizeOfCell();
+            if (cells.remaining() != expectedBytes)
+                throw new IllegalArgumentException("Block should have " + expectedBytes + " bytes, but has " + cells.remaining());
+            denseSubspaceMap.put(sparsePart, new SerializedSubspace(sparsePart, type.valueType(), cells.slice().asReadOnlyBuffer()));
+            return this;
+        }
+
+        private void validateBlockSize(int size) {
             int denseSubspaceSize = (int)denseSubspaceSize();
-            if (values.length < denseSubspaceSize)
+            if (size < denseSubspaceSize)
                 throw new IllegalArgumentException("Block should have " + denseSubspaceSize +
-                                                   " values, but has only " + values.length);
-            double[] denseSubspace = denseSubspace(sparsePart);
-            System.arraycopy(values, 0, denseSubspace, 0, denseSubspaceSize);
-            return this;
+                                                   " values, but has only " + size);
         }
 
         @Override
         public MixedTensor build() {
-            // TODO: This can be solved more efficiently with a single map.
-            Set<Map.Entry<TensorAddress, double[]>> entrySet = denseSubspaceMap.entrySet();
-            for (Map.Entry<TensorAddress, double[]> entry : entrySet) {
-                TensorAddress sparsePart = entry.getKey();
-                double[] denseSubspace = entry.getValue();
-                var block = new DenseSubspace(sparsePart, denseSubspace);
+            for (DenseSubspace block : denseSubspaceMap.values())
                 indexBuilder.addBlock(block);
-            }
             return new MixedTensor(type, indexBuilder.build());
         }
 
@@ -575,8 +737,8 @@ public class MixedTensor implements Tensor {
                 // value
                 switch (type.valueType()) {
                     case DOUBLE:   b.append(getDouble(subspaceIndex, index, tensor)); break;
-                    case FLOAT:    b.append(getDouble(subspaceIndex, index, tensor)); break; // TODO: Really use floats
-                    case BFLOAT16: b.append(getDouble(subspaceIndex, index, tensor)); break;
+                    case FLOAT:    b.append(getFloat(subspaceIndex, index, tensor)); break;
+                    case BFLOAT16: b.append(getFloat(subspaceIndex, index, tensor)); break;
                     case INT8:     b.append(getDouble(subspaceIndex, index, tensor)); break;
                     default:
                         throw new IllegalStateException("Unexpected value type " + type.valueType());
@@ -589,7 +751,11 @@ public class MixedTensor implements Tensor {
         }
 
         private double getDouble(int subspaceIndex, int denseOffset, MixedTensor tensor) {
-            return tensor.index.denseSubspaces.get(subspaceIndex).cells[denseOffset];
+            return tensor.index.denseSubspaces.get(subspaceIndex).get(denseOffset);
+        }
+
+        private float getFloat(int subspaceIndex, int denseOffset, MixedTensor tensor) {
+            return tensor.index.denseSubspaces.get(subspaceIndex).getFloat(denseOffset);
         }
 
         private static class Builder {
@@ -604,9 +770,9 @@ public class MixedTensor implements Tensor {
             }
 
             void addBlock(DenseSubspace block) {
-                if (block.cells.length != index.denseSubspaceSize) {
+                if (block.size() != index.denseSubspaceSize) {
                     throw new IllegalStateException("dense subspace size mismatch, expected " + index.denseSubspaceSize
-                            + " cells, but got: " + block.cells.length);
+                            + " cells, but got: " + block.size());
                 }
                 builder.put(block.sparseAddress, count++);
                 listBuilder.add(block);
@@ -624,16 +790,16 @@ public class MixedTensor implements Tensor {
         }
     }
 
-    private record DenseSubspaceBuilder(TensorType type, double[] values) implements IndexedTensor.DirectIndexBuilder {
+    private record DenseSubspaceBuilder(TensorType type, DenseSubspace subspace) implements IndexedTensor.DirectIndexBuilder {
 
         @Override
         public void cellByDirectIndex(long index, double value) {
-            values[(int) index] = value;
+            subspace.set((int) index, value);
         }
 
         @Override
         public void cellByDirectIndex(long index, float value) {
-            values[(int) index] = value;
+            subspace.set((int) index, value);
         }
 
     }
@@ -35,7 +35,8 @@ public class TensorType {
         // Types added must also be added to TensorTypeParser.parseValueTypeSpec, serialization, and largestOf below
         DOUBLE("double"), FLOAT("float"), BFLOAT16("bfloat16"), INT8("int8");
 
-        int sizeOfCell() {
+        /** Returns the number of bytes used by a cell of this type in the binary tensor format */
+        public int sizeOfCell() {
             return switch (this) {
                 case DOUBLE -> 8;
                 case FLOAT -> 4;
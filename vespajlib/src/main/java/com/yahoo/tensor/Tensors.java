@@ -78,11 +78,11 @@ public class Tensors {
         }
         else if (tensor instanceof MixedTensor mixed) {
             for (var denseSubspace : mixed.getInternalDenseSubspaces()) {
-                for (int i = 0; i < denseSubspace.cells.length; ) {
+                for (int i = 0; i < denseSubspace.size(); ) {
                     var packedAddress = denseSubspace.sparseAddress.fullAddressOf(mixed.type().dimensions(), new int[]{i / 8});
                     int packedValue = 0;
-                    for (int j = 0; j < 8 && i < denseSubspace.cells.length; j++)
-                        packedValue = packInto(packedValue, denseSubspace.cells[i], j, i++);
+                    for (int j = 0; j < 8 && i < denseSubspace.size(); j++)
+                        packedValue = packInto(packedValue, denseSubspace.get(i), j, i++);
                     builder.cell(packedAddress, (byte)packedValue);
                 }
             }
@@ -4,6 +4,7 @@ package com.yahoo.tensor.functions;
 import com.google.common.collect.Sets;
 import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.MappedTensor;
 import com.yahoo.tensor.PartialAddress;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
@@ -335,6 +336,11 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         int[] aIndexesInJoined = mapIndexes(a.type(), joinedType);
         int[] bIndexesInJoined = mapIndexes(b.type(), joinedType);
 
+        Tensor.Builder builder = Tensor.Builder.of(joinedType);
+        if (a instanceof MappedTensor mappedA && b instanceof MappedTensor mappedB && builder instanceof MappedTensor.Builder mappedBuilder)
+            return mappedColumnarHashJoin(mappedA, mappedB, swapTensors, aIndexesInCommon, bIndexesInCommon,
+                                          aIndexesInJoined, bIndexesInJoined, mappedBuilder, combinator);
+
         // Iterate once through the smaller tensor and construct a hash map for common dimensions
         Map<TensorAddress, List<Tensor.Cell>> aCellsByCommonAddress = new HashMap<>(a.sizeAsInt());
         for (Iterator<Tensor.Cell> cellIterator = a.cellIterator(); cellIterator.hasNext(); ) {
@@ -344,7 +350,6 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         }
 
         // Iterate once through the larger tensor and use the hash map to find joinable cells
-        Tensor.Builder builder = Tensor.Builder.of(joinedType);
         for (Iterator<Tensor.Cell> cellIterator = b.cellIterator(); cellIterator.hasNext(); ) {
             Tensor.Cell bCell = cellIterator.next();
             TensorAddress partialCommonAddress = bCell.getKey().partialCopy(bIndexesInCommon);
@@ -362,6 +367,51 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return builder.build();
     }
 
+    /** Hash join of two mapped tensors which reads their labels and values directly, without creating cell objects */
+    private static Tensor mappedColumnarHashJoin(MappedTensor a, MappedTensor b, boolean swapTensors,
+                                                 int[] aIndexesInCommon, int[] bIndexesInCommon,
+                                                 int[] aIndexesInJoined, int[] bIndexesInJoined,
+                                                 MappedTensor.Builder builder, DoubleBinaryOperator combinator) {
+        // Chain the cells of the smaller tensor by the hash of their common labels,
+        // adding them in reverse so each chain is in cell order
+        int aSize = a.sizeAsInt();
+        int[] heads = new int[Integer.highestOneBit(Math.max(1, aSize) * 2 - 1) << 1];
+        Arrays.fill(heads, -1);
+        int mask = heads.length - 1;
+        int[] next = new int[aSize];
+        int[] hashes = new int[aSize];
+        for (int aCell = aSize - 1; aCell >= 0; aCell--) {
+            hashes[aCell] = labelHash(a, aCell, aIndexesInCommon);
+            next[aCell] = heads[hashes[aCell] & mask];
+            heads[hashes[aCell] & mask] = aCell;
+        }
+
+        // Iterate once through the larger tensor and follow the chains to find joinable cells
+        Label[] joinedLabels = new Label[builder.type().dimensions().size()];
+        for (int bCell = 0, bSize = b.sizeAsInt(); bCell < bSize; bCell++) {
+            int hash = labelHash(b, bCell, bIndexesInCommon);
+            for (int aCell = heads[hash & mask]; aCell >= 0; aCell = next[aCell]) {
+                if (hashes[aCell] != hash) continue;
+                Arrays.fill(joinedLabels, LabelCache.INVALID_INDEX_LABEL);
+                mapContent(a, aCell, joinedLabels, aIndexesInJoined);
+                if ( ! mapContent(b, bCell, joinedLabels, bIndexesInJoined)) continue; // not combinable
+                double combinedValue = swapTensors ?
+                        combinator.applyAsDouble(b.value(bCell), a.value(aCell)) :
+                        combinator.applyAsDouble(a.value(aCell), b.value(bCell));
+                builder.cell(joinedLabels, combinedValue);
+            }
+        }
+        return builder.build();
+    }
+
+    /** Returns a hash of the labels of the given cell in the given dimensions */
+    static int labelHash(MappedTensor tensor, int cell, int[] dimensions) {
+        int hash = 1;
+        for (int dimension : dimensions)
+            hash = 31 * hash + tensor.label(cell, dimension).hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
     /**
      * Returns an array having one entry in order for each dimension of fromType
      * containing the index at which toType contains the same dimension name.
@@ -403,6 +453,18 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return true;
     }
 
+    /** Same as {@link #mapContent(TensorAddress, Label[], int[])} for the given cell of a mapped tensor */
+    private static boolean mapContent(MappedTensor from, int cell, Label[] to, int[] indexMap) {
+        for (int i = 0; i < indexMap.length; i++) {
+            int toIndex = indexMap[i];
+            Label label = from.label(cell, i);
+            if (!to[toIndex].isEqualTo(LabelCache.INVALID_INDEX_LABEL) && !to[toIndex].isEqualTo(label))
+                return false;
+            to[toIndex] = label;
+        }
+        return true;
+    }
+
     /** Returns common dimension of a and b as a new tensor type */
     private static TensorType commonDimensions(Tensor a, Tensor b) {
         TensorType aType = a.type();
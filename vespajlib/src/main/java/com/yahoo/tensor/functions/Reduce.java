@@ -4,6 +4,8 @@ package com.yahoo.tensor.functions;
 import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.DirectIndexedAddress;
 import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Label;
+import com.yahoo.tensor.MappedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -14,6 +16,7 @@ import com.yahoo.tensor.evaluation.TypeContext;
 import com.yahoo.tensor.impl.Convert;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -133,6 +136,8 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         int[] indexesToKeep = createIndexesToKeep(argument.type(), indexesToReduce);
         if (argument instanceof IndexedTensor indexedTensor && reducedType.hasOnlyIndexedBoundDimensions()) {
             return reduceIndexedTensor(indexedTensor, reducedType, indexesToKeep, indexesToReduce, aggregator);
+        } else if (argument instanceof MappedTensor mappedTensor) {
+            return reduceMappedTensor(mappedTensor, reducedType, indexesToKeep, aggregator);
         } else {
             return reduceGeneral(argument, reducedType, indexesToKeep, aggregator);
         }
@@ -201,6 +206,47 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         return reducedBuilder.build();
     }
 
+    /** Reduces a mapped tensor by grouping its cells on their labels directly, without creating cell objects */
+    private static Tensor reduceMappedTensor(MappedTensor argument, TensorType reducedType, int[] indexesToKeep, Aggregator aggregator) {
+        int size = argument.sizeAsInt();
+        int[] heads = new int[Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1];
+        Arrays.fill(heads, -1);
+        int mask = heads.length - 1;
+        int[] next = new int[size];
+        int[] firstCells = new int[size];
+        ValueAggregator[] aggregators = new ValueAggregator[size];
+        int groups = 0;
+        for (int cell = 0; cell < size; cell++) {
+            int slot = Join.labelHash(argument, cell, indexesToKeep) & mask;
+            int group = heads[slot];
+            while (group >= 0 && ! sameLabels(argument, firstCells[group], cell, indexesToKeep))
+                group = next[group];
+            if (group < 0) {
+                group = groups++;
+                firstCells[group] = cell;
+                aggregators[group] = ValueAggregator.ofType(aggregator);
+                next[group] = heads[slot];
+                heads[slot] = group;
+            }
+            aggregators[group].aggregate(argument.value(cell));
+        }
+
+        MappedTensor.Builder reducedBuilder = MappedTensor.Builder.of(reducedType);
+        Label[] labels = new Label[indexesToKeep.length];
+        for (int group = 0; group < groups; group++) {
+            for (int i = 0; i < indexesToKeep.length; i++)
+                labels[i] = argument.label(firstCells[group], indexesToKeep[i]);
+            reducedBuilder.cell(labels, aggregators[group].aggregatedValue());
+        }
+        return reducedBuilder.build();
+    }
+
+    private static boolean sameLabels(MappedTensor tensor, int cell, int otherCell, int[] dimensions) {
+        for (int dimension : dimensions)
+            if ( ! tensor.label(cell, dimension).isEqualTo(tensor.label(otherCell, dimension))) return false;
+        return true;
+    }
+
     private static int[] createIndexesToReduce(TensorType tensorType, List<String> dimensions) {
         int[] indexesToReduce = new int[dimensions.size()];
         for (int i = 0; i < dimensions.size(); i++) {
@@ -226,6 +272,11 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
 
     private static Tensor reduceAllGeneral(Tensor argument, Aggregator aggregator) {
         ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
+        if (argument instanceof MappedTensor mappedTensor) {
+            for (int i = 0; i < mappedTensor.sizeAsInt(); i++)
+                valueAggregator.aggregate(mappedTensor.value(i));
+            return Tensor.Builder.of(TensorType.empty).cell(valueAggregator.aggregatedValue()).build();
+        }
         for (Iterator<Double> i = argument.valueIterator(); i.hasNext(); )
             valueAggregator.aggregate(i.next());
         return Tensor.Builder.of(TensorType.empty).cell(valueAggregator.aggregatedValue()).build();
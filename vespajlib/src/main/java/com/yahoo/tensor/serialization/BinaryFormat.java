@@ -28,4 +28,16 @@ interface BinaryFormat {
      */
     Tensor decode(Optional<TensorType> type, GrowableByteBuffer buffer);
 
+    /**
+     * Deserialize the given binary data into a read-only Tensor object which, where supported,
+     * reads cell values directly from the buffer instead of copying them.
+     * The buffer content must not be modified while the returned tensor is in use.
+     *
+     * @param type the expected abstract type of the tensor to serialize, or empty to use type information from the data
+     * @param buffer the buffer containing the tensor binary data
+     */
+    default Tensor decodeView(Optional<TensorType> type, GrowableByteBuffer buffer) {
+        return decode(type, buffer);
+    }
+
 }
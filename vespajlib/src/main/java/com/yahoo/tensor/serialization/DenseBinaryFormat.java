@@ -7,6 +7,7 @@ import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 /**
@@ -77,6 +78,15 @@ public class DenseBinaryFormat implements BinaryFormat {
 
     @Override
     public Tensor decode(Optional<TensorType> optionalType, GrowableByteBuffer buffer) {
+        return decode(optionalType, buffer, false);
+    }
+
+    @Override
+    public Tensor decodeView(Optional<TensorType> optionalType, GrowableByteBuffer buffer) {
+        return decode(optionalType, buffer, true);
+    }
+
+    private Tensor decode(Optional<TensorType> optionalType, GrowableByteBuffer buffer, boolean view) {
         TensorType type;
         DimensionSizes sizes;
         if (optionalType.isPresent()) {
@@ -95,11 +105,22 @@ public class DenseBinaryFormat implements BinaryFormat {
             type = decodeType(buffer);
             sizes = sizesFromType(type);
         }
+        if (view && type.hasOnlyIndexedBoundDimensions())
+            return decodeView(type, sizes, buffer);
+
         Tensor.Builder builder = Tensor.Builder.of(type, sizes);
         decodeCells(sizes, buffer, (IndexedTensor.BoundBuilder)builder);
         return builder.build();
     }
 
+    /** Returns a tensor reading its cells from the given buffer, and moves the buffer position past them */
+    private Tensor decodeView(TensorType type, DimensionSizes sizes, GrowableByteBuffer buffer) {
+        int length = (int)sizes.totalSize() * serializationValueType.sizeOfCell();
+        ByteBuffer cells = buffer.getByteBuffer().slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return IndexedTensor.view(type, sizes, cells);
+    }
+
     private TensorType decodeType(GrowableByteBuffer buffer) {
         TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         int dimensionCount = buffer.getInt1_4Bytes();
@@ -129,6 +129,16 @@ public class JsonFormat {
     }
 
     private static void encodeCells(Tensor tensor, Cursor cellsArray) {
+        if (tensor instanceof MappedTensor mapped) {
+            for (int cell = 0; cell < mapped.sizeAsInt(); cell++) {
+                Cursor cellObject = cellsArray.addObject();
+                Cursor addressObject = cellObject.setObject("address");
+                for (int i = 0; i < tensor.type().rank(); i++)
+                    addressObject.setString(tensor.type().dimensions().get(i).name(), mapped.label(cell, i).asString());
+                setValue("value", mapped.value(cell), tensor.type().valueType(), cellObject);
+            }
+            return;
+        }
         for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
             Tensor.Cell cell = i.next();
             Cursor cellObject = cellsArray.addObject();
@@ -140,7 +150,8 @@ public class JsonFormat {
     private static void encodeSingleDimensionCells(MappedTensor tensor, Cursor cells) {
         if (tensor.type().dimensions().size() > 1)
             throw new IllegalStateException("JSON encode of mapped tensor can only contain a single dimension");
-        tensor.cells().forEach((k,v) -> setValue(k.label(0), v, tensor.type().valueType(), cells));
+        for (int cell = 0; cell < tensor.sizeAsInt(); cell++)
+            setValue(tensor.label(cell, 0).asString(), tensor.value(cell), tensor.type().valueType(), cells);
     }
 
     private static void encodeAddress(TensorType type, TensorAddress address, Cursor addressObject) {
@@ -232,12 +243,15 @@ public class JsonFormat {
 
     private static void encodeLabeledSubspace(String label, MixedTensor.DenseSubspace subspace, TensorType denseSubType, Cursor cursor, boolean hexForDensePart) {
         if (hexForDensePart) {
-            cursor.setString(label, asHexString(subspace.cells.length,
+            cursor.setString(label, asHexString(subspace.size(),
                                                 denseSubType.valueType(),
-                                                i -> subspace.cells[i],
-                                                i -> (float)subspace.cells[i]));
+                                                subspace::get,
+                                                subspace::getFloat));
         } else {
-            IndexedTensor denseSubspace = IndexedTensor.Builder.of(denseSubType, subspace.cells).build();
+            IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(denseSubType);
+            for (int i = 0; i < subspace.size(); i++)
+                builder.cellByDirectIndex(i, subspace.get(i));
+            IndexedTensor denseSubspace = builder.build();
             var target = cursor.setArray(label);
             encodeDenseValues(denseSubspace, target);
         }
@@ -12,7 +12,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -81,14 +80,42 @@ class MixedBinaryFormat implements BinaryFormat {
             for (int index = 0; index < subspace.sparseAddress.size(); index++) {
                 buffer.putUtf8String(subspace.sparseAddress.label(index));
             }
-            for (double val : subspace.cells) {
-                consumer.accept(val);
+            if ( ! encodeStoredCells(buffer, subspace)) {
+                for (int i = 0; i < subspace.size(); i++) {
+                    consumer.accept(subspace.get(i));
+                }
             }
         }
     }
 
+    /** Writes the cells of the given subspace directly if they are stored as the serialization value type */
+    private boolean encodeStoredCells(GrowableByteBuffer buffer, MixedTensor.DenseSubspace subspace) {
+        if (serializationValueType == TensorType.Value.DOUBLE && subspace instanceof MixedTensor.DoubleSubspace doubles) {
+            for (double value : doubles.cells) buffer.putDouble(value);
+        }
+        else if (serializationValueType == TensorType.Value.FLOAT && subspace instanceof MixedTensor.FloatSubspace floats) {
+            for (float value : floats.cells) buffer.putFloat(value);
+        }
+        else if (subspace instanceof MixedTensor.SerializedSubspace serialized && serialized.valueType == serializationValueType) {
+            buffer.put(serialized.cells.duplicate());
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
     @Override
     public Tensor decode(Optional<TensorType> optionalType, GrowableByteBuffer buffer) {
+        return decode(optionalType, buffer, false);
+    }
+
+    @Override
+    public Tensor decodeView(Optional<TensorType> optionalType, GrowableByteBuffer buffer) {
+        return decode(optionalType, buffer, true);
+    }
+
+    private Tensor decode(Optional<TensorType> optionalType, GrowableByteBuffer buffer, boolean view) {
         TensorType type;
         if (optionalType.isPresent()) {
             type = optionalType.get();
@@ -105,7 +132,7 @@ class MixedBinaryFormat implements BinaryFormat {
             type = decodeType(buffer);
         }
         MixedTensor.BoundBuilder builder = (MixedTensor.BoundBuilder)MixedTensor.Builder.of(type);
-        decodeCells(buffer, builder, type);
+        decodeCells(buffer, builder, type, view);
         return builder.build();
     }
 
@@ -122,37 +149,64 @@ class MixedBinaryFormat implements BinaryFormat {
         return builder.build();
     }
 
-    private void decodeCells(GrowableByteBuffer buffer, MixedTensor.BoundBuilder builder, TensorType type) {
-        switch (serializationValueType) {
-            case DOUBLE: decodeCells(buffer, builder, type, buffer::getDouble); break;
-            case FLOAT: decodeCells(buffer, builder, type, () -> (double)buffer.getFloat()); break;
-            case BFLOAT16: decodeCells(buffer, builder, type, () ->
-                    (double)TypedBinaryFormat.floatFromBFloat16Bits(buffer.getShort())); break;
-            case INT8: decodeCells(buffer, builder, type, () -> (double)buffer.get()); break;
-        }
-    }
-
-    private void decodeCells(GrowableByteBuffer buffer, MixedTensor.BoundBuilder builder, TensorType type, Supplier<Double> supplier) {
+    private void decodeCells(GrowableByteBuffer buffer, MixedTensor.BoundBuilder builder, TensorType type, boolean view) {
         List<TensorType.Dimension> sparseDimensions = type.dimensions().stream().filter(d -> !d.isIndexed()).toList();
         TensorType sparseType = MixedTensor.createPartialType(type.valueType(), sparseDimensions);
-        long denseSubspaceSize = builder.denseSubspaceSize();
+        int denseSubspaceSize = (int)builder.denseSubspaceSize();
 
         int numBlocks = 1;
         if (sparseDimensions.size() > 0) {
             numBlocks = buffer.getInt1_4Bytes();
         }
 
-        double[] denseSubspace = new double[(int)denseSubspaceSize];
+        // Read each block into an array of the serialized cell type, which the builder stores as is if it matches,
+        // or, for a view, let the builder refer to the serialized cells directly
+        int blockBytes = denseSubspaceSize * serializationValueType.sizeOfCell();
+        BlockDecoder decoder = view ? sparseAddress -> {
+            builder.serializedBlock(sparseAddress, buffer.getByteBuffer().slice(buffer.position(), blockBytes));
+            buffer.position(buffer.position() + blockBytes);
+        } : switch (serializationValueType) {
+            case DOUBLE -> {
+                double[] values = new double[denseSubspaceSize];
+                yield sparseAddress -> {
+                    for (int i = 0; i < values.length; i++) values[i] = buffer.getDouble();
+                    builder.block(sparseAddress, values);
+                };
+            }
+            case FLOAT -> {
+                float[] values = new float[denseSubspaceSize];
+                yield sparseAddress -> {
+                    for (int i = 0; i < values.length; i++) values[i] = buffer.getFloat();
+                    builder.block(sparseAddress, values);
+                };
+            }
+            case BFLOAT16 -> {
+                short[] values = new short[denseSubspaceSize];
+                yield sparseAddress -> {
+                    for (int i = 0; i < values.length; i++) values[i] = buffer.getShort();
+                    builder.bfloat16Block(sparseAddress, values);
+                };
+            }
+            case INT8 -> {
+                byte[] values = new byte[denseSubspaceSize];
+                yield sparseAddress -> {
+                    buffer.get(values);
+                    builder.block(sparseAddress, values);
+                };
+            }
+        };
+
         for (int i = 0; i < numBlocks; ++i) {
             TensorAddress.Builder sparseAddress = new TensorAddress.Builder(sparseType);
             for (TensorType.Dimension sparseDimension : sparseDimensions) {
                 sparseAddress.add(sparseDimension.name(), buffer.getUtf8String());
             }
-            for (long denseOffset = 0; denseOffset < denseSubspaceSize; denseOffset++) {
-                denseSubspace[(int)denseOffset] = supplier.get();
-            }
-            builder.block(sparseAddress.build(), denseSubspace);
+            decoder.decode(sparseAddress.build());
         }
     }
 
+    private interface BlockDecoder {
+        void decode(TensorAddress sparseAddress);
+    }
+
 }
@@ -2,9 +2,12 @@
 package com.yahoo.tensor.serialization;
 
 import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.Label;
+import com.yahoo.tensor.MappedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.impl.LabelCache;
 
 import java.util.Iterator;
 import java.util.List;
@@ -59,6 +62,15 @@ class SparseBinaryFormat implements BinaryFormat {
     }
 
     private void encodeCells(GrowableByteBuffer buffer, Tensor tensor, Consumer<Double> consumer) {
+        if (tensor instanceof MappedTensor mapped) {
+            int rank = mapped.type().rank();
+            for (int cell = 0; cell < mapped.sizeAsInt(); cell++) {
+                for (int i = 0; i < rank; i++)
+                    buffer.putUtf8String(mapped.label(cell, i).asString());
+                consumer.accept(mapped.value(cell));
+            }
+            return;
+        }
         for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
             Tensor.Cell cell = i.next();
             encodeAddress(buffer, cell.getKey());
@@ -113,6 +125,20 @@ class SparseBinaryFormat implements BinaryFormat {
 
     private void decodeCells(GrowableByteBuffer buffer, Tensor.Builder builder, TensorType type, Supplier<Double> supplier) {
         long numCells = buffer.getInt1_4Bytes(); // XXX: Size truncation
+        if (builder instanceof MappedTensor.Builder mappedBuilder) {
+            Label[] labels = new Label[type.rank()];
+            for (long i = 0; i < numCells; ++i) {
+                for (int j = 0; j < labels.length; j++) {
+                    String label = buffer.getUtf8String();
+                    if (label.isEmpty())
+                        throw new IllegalArgumentException("Missing a label for dimension '" +
+                                                           type.dimensions().get(j).name() + "' for " + type);
+                    labels[j] = LabelCache.GLOBAL.getOrCreateLabel(label);
+                }
+                mappedBuilder.cell(labels, supplier.get());
+            }
+            return;
+        }
         for (long i = 0; i < numCells; ++i) {
             Tensor.Builder.CellBuilder cellBuilder = builder.cell();
             decodeAddress(buffer, cellBuilder, type);
@@ -54,6 +54,22 @@ public class TypedBinaryFormat {
         return decoder.decode(type, buffer);
     }
 
+    /**
+     * Decode some data to a read-only tensor which reads dense cell values directly from the buffer,
+     * instead of copying them. This is cheaper than {@link #decode} when the tensor is only read, e.g., rendered
+     * or used as an argument to tensor functions. Sparse tensors are decoded as by {@link #decode}.
+     * The content of the buffer must not be modified while the returned tensor is in use.
+     *
+     * @param type the type to decode and validate to, or empty to use the type given in the data
+     * @param buffer the buffer containing the data, use GrowableByteByffer.wrap(byte[]) if you have a byte array
+     * @return the resulting tensor
+     * @throws IllegalArgumentException if the tensor data was invalid
+     */
+    public static Tensor decodeView(Optional<TensorType> type, GrowableByteBuffer buffer) {
+        BinaryFormat decoder = getFormatDecoder(buffer);
+        return decoder.decodeView(type, buffer);
+    }
+
     private static BinaryFormat getFormatEncoder(GrowableByteBuffer buffer, Tensor tensor) {
         boolean hasMappedDimensions = tensor.type().hasMappedDimensions();
         boolean hasIndexedDimensions = tensor.type().hasIndexedDimensions();
@@ -3,10 +3,14 @@ package com.yahoo.tensor;
 
 import org.junit.Test;
 
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Basic tensor tests. Tensor operations are tested in EvaluationTestCase
@@ -49,4 +53,63 @@ public class MappedTensorTestCase {
         assertEquals("tensor(x{},y{}):{{x:0,y:0}:1.0, {x:1,y:0}:2.0}", tensor.toString());
     }
 
+    @Test
+    public void testCellAccess() {
+        MappedTensor tensor = (MappedTensor) Tensor.from("tensor(x{},y{}):{{x:a,y:0}:1.0, {x:b,y:1}:2.0, {x:c,y:0}:3.0}");
+        assertEquals(3, tensor.sizeAsInt());
+        assertEquals("b", tensor.label(1, 0).asString());
+        assertEquals("1", tensor.label(1, 1).asString());
+        assertEquals(2.0, tensor.value(1), 0);
+        assertEquals(TensorAddress.ofLabels("c", "0"), tensor.address(2));
+        assertEquals(2, tensor.indexOf(TensorAddress.ofLabels("c", "0")));
+        assertEquals(-1, tensor.indexOf(TensorAddress.ofLabels("c", "1")));
+        assertEquals(-1, tensor.indexOf(TensorAddress.ofLabels("c")));
+        assertEquals(3.0, tensor.get(TensorAddress.ofLabels("c", "0")), 0);
+        assertEquals(0.0, tensor.get(TensorAddress.ofLabels("a", "1")), 0);
+        assertNull(tensor.getAsDouble(TensorAddress.ofLabels("a", "1")));
+        assertFalse(tensor.has(TensorAddress.ofLabels("b", "0")));
+        assertEquals(List.of(TensorAddress.ofLabels("a", "0"), TensorAddress.ofLabels("b", "1"), TensorAddress.ofLabels("c", "0")),
+                     List.copyOf(tensor.cells().keySet()));
+    }
+
+    @Test
+    public void testManyCells() {
+        TensorType type = TensorType.fromSpec("tensor(x{},y{})");
+        MappedTensor.Builder builder = MappedTensor.Builder.of(type);
+        for (int i = 0; i < 1000; i++)
+            builder.cell().label("x", "x" + i).label("y", i % 7).value(i);
+        MappedTensor tensor = builder.build();
+        assertEquals(1000, tensor.size());
+        for (int i = 0; i < 1000; i++) {
+            TensorAddress address = TensorAddress.ofLabels("x" + i, String.valueOf(i % 7));
+            assertEquals(i, tensor.indexOf(address));
+            assertEquals(i, tensor.get(address), 0);
+        }
+        assertEquals(tensor, Tensor.from(tensor.toString()));
+    }
+
+    @Test
+    public void testDuplicateCells() {
+        try {
+            Tensor.Builder.of("tensor(x{})").cell().label("x", "a").value(1.0)
+                                            .cell().label("x", "a").value(2.0).build();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Multiple values for cell {x:a} in tensor(x{})", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testJoinAndReduce() {
+        Tensor a = Tensor.from("tensor(x{},y{}):{{x:a,y:0}:1.0, {x:a,y:1}:2.0, {x:b,y:0}:3.0, {x:c,y:2}:4.0}");
+        Tensor b = Tensor.from("tensor(y{},z{}):{{y:0,z:p}:5.0, {y:0,z:q}:6.0, {y:1,z:p}:7.0, {y:3,z:p}:8.0}");
+        assertEquals(Tensor.from("tensor(x{},y{},z{}):{{x:a,y:0,z:p}:5.0, {x:a,y:0,z:q}:6.0, {x:a,y:1,z:p}:14.0," +
+                                 "{x:b,y:0,z:p}:15.0, {x:b,y:0,z:q}:18.0}"),
+                     a.multiply(b));
+        assertEquals(Tensor.from("tensor(x{}):{a:3.0, b:3.0, c:4.0}"), a.sum("y"));
+        assertEquals(Tensor.from("tensor(y{}):{0:3.0, 1:2.0, 2:4.0}"), a.max("x"));
+        assertEquals(Tensor.from(10.0), a.sum());
+    }
+
 }
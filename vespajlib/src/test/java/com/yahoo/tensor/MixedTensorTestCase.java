@@ -185,4 +185,30 @@ public class MixedTensorTestCase {
         assertEquals("tensor(x[3]):[4.0, 5.0, 6.0]", indexedTensors.get("key2").toString());
     }
 
+    @Test
+    public void testCellTypeStorage() {
+        assertStorage(MixedTensor.DoubleSubspace.class, "tensor(x{},y[2]):{a:[1.5, -2.0]}");
+        assertStorage(MixedTensor.FloatSubspace.class, "tensor<float>(x{},y[2]):{a:[1.5, -2.0]}");
+        assertStorage(MixedTensor.FloatSubspace.class, "tensor<bfloat16>(x{},y[2]):{a:[1.5, -2.0]}");
+        assertStorage(MixedTensor.FloatSubspace.class, "tensor<int8>(x{},y[2]):{a:[1.0, -2.0]}");
+
+        // Values are stored as in indexed tensors of the same cell type
+        MixedTensor bfloat16 = (MixedTensor) Tensor.from("tensor<bfloat16>(x{},y[2]):{a:[1.1, 3.0]}");
+        Tensor indexedBfloat16 = Tensor.from("tensor<bfloat16>(y[2]):[1.1, 3.0]");
+        assertEquals(1.1f, bfloat16.get(TensorAddress.ofLabels("a", "0")), 0);
+        assertEquals(indexedBfloat16.get(TensorAddress.of(0)), bfloat16.get(TensorAddress.ofLabels("a", "0")), 0);
+        assertEquals(indexedBfloat16, bfloat16.reduce(Reduce.Aggregator.sum, "x"));
+        MixedTensor int8 = (MixedTensor) Tensor.from("tensor<int8>(x{},y[2]):{a:[127, -128]}");
+        assertEquals(-128.0, int8.get(TensorAddress.ofLabels("a", "1")), 0);
+        MixedTensor floats = (MixedTensor) Tensor.from("tensor<float>(x{},y[2]):{a:[1.1, 3.0]}");
+        assertEquals("tensor<float>(x{},y[2]):{a:[1.1, 3.0]}", floats.toString());
+    }
+
+    private static void assertStorage(Class<? extends MixedTensor.DenseSubspace> expected, String tensorString) {
+        MixedTensor tensor = (MixedTensor) Tensor.from(tensorString);
+        assertEquals(1, tensor.getInternalDenseSubspaces().size());
+        assertEquals(expected, tensor.getInternalDenseSubspaces().get(0).getClass());
+        assertEquals(tensorString, tensor.toString());
+    }
+
 }
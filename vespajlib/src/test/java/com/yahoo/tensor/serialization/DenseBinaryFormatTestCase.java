@@ -3,6 +3,7 @@ package com.yahoo.tensor.serialization;
 
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 import org.junit.Test;
 
@@ -108,6 +109,22 @@ public class DenseBinaryFormatTestCase {
         assertSerialization("tensor<int8>(x[2],y[2]):[2, 3, 4, 5]");
     }
 
+    @Test
+    public void testDecodeView() {
+        Tensor tensor = Tensor.from("tensor<bfloat16>(x[2],y[3]):[[1.5, -2.0, 3.0], [4.0, 5.0, 6.5]]");
+        byte[] encoded = TypedBinaryFormat.encode(tensor);
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 7, encoded.length);
+        GrowableByteBuffer buffer = GrowableByteBuffer.wrap(padded, 7, encoded.length);
+        Tensor view = TypedBinaryFormat.decodeView(Optional.empty(), buffer);
+        assertEquals(7 + encoded.length, buffer.position());
+        assertEquals(tensor, view);
+        assertEquals(-2.0, view.get(TensorAddress.of(0, 1)), 0);
+        assertEquals(tensor.hashCode(), view.hashCode());
+        assertEquals(new String(JsonFormat.encode(tensor, true, false)), new String(JsonFormat.encode(view, true, false)));
+        assertEquals(Tensor.from("tensor<bfloat16>(x[2]):[2.5, 15.5]"), view.sum("y"));
+    }
+
     private void assertSerialization(String tensorString) {
         assertSerialization(Tensor.from(tensorString));
     }
@@ -120,6 +137,9 @@ public class DenseBinaryFormatTestCase {
         byte[] encodedTensor = TypedBinaryFormat.encode(tensor);
         Tensor decodedTensor = TypedBinaryFormat.decode(Optional.of(expectedType), GrowableByteBuffer.wrap(encodedTensor));
         assertEquals(tensor, decodedTensor);
+        Tensor decodedView = TypedBinaryFormat.decodeView(Optional.of(expectedType), GrowableByteBuffer.wrap(encodedTensor));
+        assertEquals(tensor, decodedView);
+        assertEquals(Arrays.toString(encodedTensor), Arrays.toString(TypedBinaryFormat.encode(decodedView)));
     }
 
 }
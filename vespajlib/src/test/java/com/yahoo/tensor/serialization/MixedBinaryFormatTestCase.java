@@ -5,6 +5,7 @@ package com.yahoo.tensor.serialization;
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.MixedTensor;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 import org.junit.Test;
 
@@ -145,6 +146,44 @@ public class MixedBinaryFormatTestCase {
         assertSerialization("tensor<int8>(x{},y[2]):{{x:0,y:0}:2, {x:0,y:1}:3, {x:1,y:0}:4, {x:1,y:1}:5}");
     }
 
+    @Test
+    public void testSerializationOfStoredCellTypes() {
+        TensorType type = TensorType.fromSpec("tensor<bfloat16>(x{},y[3])");
+        MixedTensor.BoundBuilder builder = MixedTensor.BoundBuilder.of(type);
+        builder.block(TensorAddress.ofLabels("a"), new float[] { 1.5f, -2.0f, 3.09375f });
+        builder.bfloat16Block(TensorAddress.ofLabels("b"), new short[] { 0x3fc0, (short)0xc000, 0x4046 });
+        Tensor tensor = builder.build();
+        assertEquals(Tensor.from("tensor<bfloat16>(x{},y[3]):{a:[1.5, -2.0, 3.09375], b:[1.5, -2.0, 3.09375]}"), tensor);
+        assertSerialization(tensor);
+
+        MixedTensor int8 = (MixedTensor) Tensor.from("tensor<int8>(x{},y[3]):{a:[1, -2, 3], b:[4, 5, -6]}");
+        assertSerialization(int8);
+        assertSerialization(Tensor.from("tensor<float>(x{},y[3]):{a:[1.1, -2.2, 3.3]}"));
+    }
+
+    @Test
+    public void testDecodeView() {
+        Tensor tensor = Tensor.from("tensor<int8>(x{},y[3]):{a:[1, -2, 3], b:[4, 5, -6]}");
+        MixedTensor view = (MixedTensor) TypedBinaryFormat.decodeView(Optional.empty(),
+                                                                     GrowableByteBuffer.wrap(TypedBinaryFormat.encode(tensor)));
+        assertEquals(MixedTensor.SerializedSubspace.class, view.getInternalDenseSubspaces().get(0).getClass());
+        assertEquals(tensor, view);
+        assertEquals(-6.0, view.get(TensorAddress.ofLabels("b", "2")), 0);
+        assertEquals(new String(JsonFormat.encode(tensor, true, false)), new String(JsonFormat.encode(view, true, false)));
+        assertEquals(Tensor.from("tensor<int8>(x{}):{a:2, b:3}"), view.sum("y"));
+
+        // Modifying a copy materializes the modified subspace only
+        MixedTensor.BoundBuilder builder = MixedTensor.BoundBuilder.of(view.type());
+        for (var subspace : view.getInternalDenseSubspaces())
+            builder.serializedBlock(subspace.sparseAddress, ((MixedTensor.SerializedSubspace)subspace).cells);
+        builder.cell(TensorAddress.ofLabels("a", "0"), 7);
+        MixedTensor modified = builder.build();
+        assertEquals(Tensor.from("tensor<int8>(x{},y[3]):{a:[7, -2, 3], b:[4, 5, -6]}"), modified);
+        assertEquals(MixedTensor.FloatSubspace.class, modified.getInternalDenseSubspaces().get(0).getClass());
+        assertEquals(MixedTensor.SerializedSubspace.class, modified.getInternalDenseSubspaces().get(1).getClass());
+        assertEquals(tensor, view);
+    }
+
     private void assertSerialization(String tensorString) {
         assertSerialization(Tensor.from(tensorString));
     }
@@ -157,6 +196,9 @@ public class MixedBinaryFormatTestCase {
         byte[] encodedTensor = TypedBinaryFormat.encode(tensor);
         Tensor decodedTensor = TypedBinaryFormat.decode(Optional.of(expectedType), GrowableByteBuffer.wrap(encodedTensor));
         assertEquals(tensor, decodedTensor);
+        Tensor decodedView = TypedBinaryFormat.decodeView(Optional.of(expectedType), GrowableByteBuffer.wrap(encodedTensor));
+        assertEquals(tensor, decodedView);
+        assertEquals(Arrays.toString(encodedTensor), Arrays.toString(TypedBinaryFormat.encode(decodedView)));
     }
 
 }